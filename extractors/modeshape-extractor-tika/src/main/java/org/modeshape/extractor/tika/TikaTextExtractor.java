@@ -16,6 +16,7 @@
 package org.modeshape.extractor.tika;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +30,7 @@ import org.apache.tika.parser.DefaultParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.modeshape.common.collection.Collections;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.StringUtil;
@@ -133,7 +135,10 @@ public class TikaTextExtractor extends TextExtractor {
             Metadata metadata = prepareMetadata(binary, context);
             //TODO author=Horia Chiorean date=1/30/13 description=//TIKA 1.2 TXTParser seems to have a bug, always adding 1 ignorable whitespace to the actual chars to be parsed
             //https://issues.apache.org/jira/browse/TIKA-1069
-            ContentHandler textHandler = writeLimit == null ? new BodyContentHandler() : new BodyContentHandler(writeLimit + 1);
+            // the text is streamed to the output as it is parsed, so that large documents are never held in memory ...
+            Writer writer = new TrimmingWriter(output.writer());
+            ContentHandler textHandler = writeLimit == null ? new BodyContentHandler(writer) : new BodyContentHandler(
+                    new WriteOutContentHandler(writer, writeLimit + 1));
             try {
                 LOGGER.debug("Using TikaTextExtractor to extract text");
                 // Parse the input stream ...
@@ -146,11 +151,7 @@ public class TikaTextExtractor extends TextExtractor {
                 LOGGER.error(e, TikaI18n.errorWhileExtractingTextFrom, e.getMessage());
             } finally {
                 // Record all of the text in the body ...
-                String text = textHandler.toString().trim();
-                if (!StringUtil.isBlank(text)) {
-                    output.recordText(text);
-                    LOGGER.debug("TikaTextExtractor found text: " + text);
-                }
+                writer.close();
             }
             return null;
         });
@@ -250,6 +251,67 @@ public class TikaTextExtractor extends TextExtractor {
         return parserSupportedMediaTypes;
     }
 
+    /**
+     * A writer which drops the leading and trailing whitespace of the text written to it, like {@link String#trim()} does for
+     * the whole text, without holding the text in memory. Whitespace is only held back while it might be at the end of the
+     * text.
+     */
+    private static final class TrimmingWriter extends Writer {
+        private final Writer delegate;
+        private final StringBuilder whitespace = new StringBuilder();
+        private boolean started;
+
+        protected TrimmingWriter( Writer delegate ) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write( char[] chars,
+                           int offset,
+                           int length ) throws IOException {
+            int start = offset;
+            int end = offset + length;
+            for (int i = offset; i != end; ++i) {
+                if (chars[i] > ' ') {
+                    continue;
+                }
+                // write everything up to this whitespace, and hold back the whitespace ...
+                if (i > start) {
+                    writeText(chars, start, i - start);
+                }
+                if (started) {
+                    whitespace.append(chars[i]);
+                }
+                start = i + 1;
+            }
+            if (end > start) {
+                writeText(chars, start, end - start);
+            }
+        }
+
+        private void writeText( char[] chars,
+                                int offset,
+                                int length ) throws IOException {
+            if (whitespace.length() > 0) {
+                delegate.append(whitespace);
+                whitespace.setLength(0);
+            }
+            delegate.write(chars, offset, length);
+            started = true;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // any whitespace still held back is at the end of the text, so it is dropped ...
+            delegate.close();
+        }
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("TikaTextExtractor{");
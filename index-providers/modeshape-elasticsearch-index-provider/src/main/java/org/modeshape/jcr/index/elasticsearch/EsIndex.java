@@ -16,12 +16,14 @@
 package org.modeshape.jcr.index.elasticsearch;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.jcr.query.qom.Constraint;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.api.index.IndexDefinition;
+import org.modeshape.jcr.index.elasticsearch.client.EsBulkRequest;
 import org.modeshape.jcr.index.elasticsearch.client.EsClient;
 import org.modeshape.jcr.index.elasticsearch.client.EsRequest;
 import org.modeshape.jcr.spi.index.IndexConstraints;
@@ -30,16 +32,31 @@ import org.modeshape.jcr.value.basic.ModeShapeDateTime;
 
 /**
  * Index stored in Elasticsearch.
+ * <p>
+ * The changes to the documents are accumulated per node and sent to the Elasticsearch engine in bulk requests when the index
+ * is committed, when it is searched, or when too many nodes have been changed. Only the changed fields of a node are sent, so
+ * the stored documents never have to be read. Commits refresh the index at most once per
+ * {@link EsClient#getRefreshInterval() refresh interval}, while searches always refresh the index if it was changed since the
+ * last refresh.
+ * </p>
  *
  * @author kulikov
  */
 public class EsIndex implements ProvidedIndex {
 
+    /**
+     * The maximum number of nodes with pending changes before the changes are sent without waiting for the commit.
+     */
+    private static final int MAX_PENDING_NODES = 1000;
+
     private final String name;
     private final String workspace;
     private final EsIndexColumns columns;
     private final Operations operations;
     private final EsClient client;
+    private final Map<String, PendingDocument> pending = new LinkedHashMap<>();
+    private volatile boolean refreshNeeded;
+    private volatile long lastRefresh;
     
     /**
      * Creates new index.
@@ -106,13 +123,10 @@ public class EsIndex implements ProvidedIndex {
         EsIndexColumn column = columns.column(propertyName);
         assert column != null : "Unexpected column for the index " + name();
 
-        try {
-            EsRequest doc = findOrCreateDoc(nodeKey);
-            putValue(doc, column, value);
-            client.storeDocument(name(), workspace, nodeKey, doc);
-        } catch (IOException e) {
-            throw new EsIndexException(e);
+        synchronized (pending) {
+            putValue(pendingDocument(nodeKey).fields, column, value);
         }
+        flushIfFull();
     }
 
     @Override
@@ -124,78 +138,138 @@ public class EsIndex implements ProvidedIndex {
         EsIndexColumn column = columns.column(propertyName);
         assert column != null : "Unexpected column for the index " + name();
 
-        try {
-            EsRequest doc = findOrCreateDoc(nodeKey);
-            putValues(doc, column, values);
-            client.storeDocument(name(), workspace, nodeKey, doc);
-        } catch (IOException e) {
-            throw new EsIndexException(e);
+        synchronized (pending) {
+            putValues(pendingDocument(nodeKey).fields, column, values);
         }
+        flushIfFull();
     }
 
     @Override
     public void remove(String nodeKey) {
         CheckArg.isNotNull(nodeKey, "nodeKey");
-        try {
-            client.deleteDocument(name(), workspace, nodeKey);
-        } catch (IOException e) {
-            throw new EsIndexException(e);
+        synchronized (pending) {
+            pending.put(nodeKey, new PendingDocument(true));
         }
+        flushIfFull();
     }
 
     @Override
     public void remove(String nodeKey, String propertyName, Object value) {
         CheckArg.isNotNull(nodeKey, "nodeKey");
         CheckArg.isNotNull(propertyName, "propertyName");
-
-        try {
-            EsRequest doc = find(nodeKey);
-            if (doc == null) {
-                return;
-            }
-            doc.remove(propertyName);            
-            client.storeDocument(name(), workspace, nodeKey, doc);
-        } catch (IOException e) {
-            throw new EsIndexException(e);
-        }
+        removeValues(nodeKey, propertyName);
     }
 
     @Override
     public void remove(String nodeKey, String propertyName, Object[] values) {
         CheckArg.isNotNull(nodeKey, "nodeKey");
         CheckArg.isNotNull(propertyName, "propertyName");
+        removeValues(nodeKey, propertyName);
+    }
 
-        try {
-            EsRequest doc = find(nodeKey);
-            doc.remove(propertyName);
-            client.storeDocument(name(), workspace, nodeKey, doc);
-        } catch (Exception e) {
-            throw new EsIndexException(e);
+    /**
+     * Records the removal of all values of the given column and related pseudo columns.
+     *
+     * @param nodeKey node key being indexed.
+     * @param propertyName the name of the property
+     */
+    private void removeValues(String nodeKey, String propertyName) {
+        EsIndexColumn column = columns.column(propertyName);
+        String[] fieldNames = column != null ? new String[] {column.getName(), column.getLowerCaseFieldName(),
+                column.getUpperCaseFieldName(), column.getLengthFieldName()} : new String[] {propertyName};
+        synchronized (pending) {
+            PendingDocument doc = pendingDocument(nodeKey);
+            for (String fieldName : fieldNames) {
+                if (doc.replaced) {
+                    // the document will be replaced, so it just should not have this field ...
+                    doc.fields.remove(fieldName);
+                } else {
+                    // a null value removes the stored value of the field ...
+                    doc.fields.put(fieldName, (Object) null);
+                }
+            }
         }
+        flushIfFull();
     }
 
     /**
-     * Searches indexed node's properties by node key.
-     * 
+     * Gets the pending changes for the given node. Must be called while holding the lock on {@link #pending}.
+     *
      * @param nodeKey node key being indexed.
-     * @return list of stored properties as json document.
-     * @throws IOException 
+     * @return the pending changes; never null
      */
-    private EsRequest find(String nodeKey) throws IOException {
-        return client.getDocument(name(), workspace, nodeKey);
+    private PendingDocument pendingDocument(String nodeKey) {
+        PendingDocument doc = pending.get(nodeKey);
+        if (doc == null) {
+            doc = new PendingDocument(false);
+            pending.put(nodeKey, doc);
+        }
+        return doc;
+    }
+
+    private void flushIfFull() {
+        boolean full;
+        synchronized (pending) {
+            full = pending.size() >= MAX_PENDING_NODES;
+        }
+        if (full) {
+            flush();
+        }
     }
 
     /**
-     * Searches indexed node's properties by node key or creates new empty list.
-     * 
-     * @param nodeKey node key being indexed.
-     * @return list of stored properties as json document or empty document 
-     * if not found.
-     * @throws IOException 
+     * Sends all pending changes to the Elasticsearch engine with a single bulk request.
      */
-    private EsRequest findOrCreateDoc(String nodeKey) throws IOException {
-        EsRequest doc = client.getDocument(name(), workspace, nodeKey);
-        return doc != null ? doc : new EsRequest();
+    private void flush() {
+        EsBulkRequest request = new EsBulkRequest();
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, PendingDocument> entry : pending.entrySet()) {
+                String nodeKey = entry.getKey();
+                PendingDocument doc = entry.getValue();
+                if (doc.replaced) {
+                    if (doc.hasValues()) {
+                        request.index(nodeKey, doc.fields);
+                    } else {
+                        request.delete(nodeKey);
+                    }
+                } else {
+                    // only the changed fields are sent, so the stored document does not need to be read ...
+                    request.update(nodeKey, doc.fields, doc.hasValues());
+                }
+            }
+            pending.clear();
+        }
+        try {
+            client.bulk(name(), workspace, request);
+            refreshNeeded = true;
+        } catch (IOException e) {
+            throw new EsIndexException(e);
+        }
+    }
+
+    /**
+     * Makes all changes visible to searches, which requires sending the pending changes and refreshing the index if there were
+     * any changes since the last refresh.
+     */
+    private void prepareForSearch() {
+        flush();
+        if (refreshNeeded) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        refreshNeeded = false;
+        try {
+            client.refresh(name());
+            lastRefresh = System.currentTimeMillis();
+        } catch (IOException e) {
+            refreshNeeded = true;
+            throw new EsIndexException(e);
+        }
     }
 
     /**
@@ -246,10 +320,10 @@ public class EsIndex implements ProvidedIndex {
 
     @Override
     public void commit() {
-        try {
-            client.refresh(name());
-        } catch (IOException e) {
-            throw new EsIndexException(e);
+        flush();
+        // searches refresh the index themselves, so refreshes caused by frequent commits are coalesced ...
+        if (refreshNeeded && System.currentTimeMillis() - lastRefresh >= client.getRefreshInterval()) {
+            refresh();
         }
     }
 
@@ -260,18 +334,21 @@ public class EsIndex implements ProvidedIndex {
 
     @Override
     public Results filter(IndexConstraints constraints, long cardinalityEstimate) {
+        prepareForSearch();
         EsRequest query = operations.createQuery(constraints.getConstraints(), constraints.getVariables());
         return new SearchResults(client, name(), workspace, query);
     }
 
     @Override
     public long estimateCardinality(List<Constraint> constraints, Map<String, Object> variables) {
+        prepareForSearch();
         EsRequest query = operations.createQuery(constraints, variables);
         return new SearchResults(client, name(), workspace, query).getCardinality();
     }
 
     @Override
     public long estimateTotalCount() {
+        prepareForSearch();
         try {
             return client.count(name(), workspace);
         } catch (IOException e) {
@@ -286,6 +363,9 @@ public class EsIndex implements ProvidedIndex {
 
     @Override
     public void clearAllData() {
+        synchronized (pending) {
+            pending.clear();
+        }
         try {
             client.deleteAll(name(), workspace);
         } catch (IOException e) {
@@ -295,7 +375,12 @@ public class EsIndex implements ProvidedIndex {
 
     @Override
     public void shutdown(boolean destroyed) {
-        if (destroyed) {
+        if (!destroyed) {
+            flush();
+        } else {
+            synchronized (pending) {
+                pending.clear();
+            }
             try {
                 client.deleteIndex(name());
             } catch (Exception e) {
@@ -303,4 +388,23 @@ public class EsIndex implements ProvidedIndex {
             }
         }
     }
+
+    /**
+     * The changes to the fields of one node's document that have not yet been sent.
+     */
+    private static final class PendingDocument {
+        /**
+         * Whether the stored document is replaced by the fields, rather than updated with them.
+         */
+        protected final boolean replaced;
+        protected final EsRequest fields = new EsRequest();
+
+        protected PendingDocument(boolean replaced) {
+            this.replaced = replaced;
+        }
+
+        protected boolean hasValues() {
+            return fields.hasValues();
+        }
+    }
 }
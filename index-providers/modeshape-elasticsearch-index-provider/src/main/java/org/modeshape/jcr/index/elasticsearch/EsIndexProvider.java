@@ -44,6 +44,10 @@ public class EsIndexProvider extends IndexProvider {
 
     private String host = "localhost";
     private int port = 9200;
+    private long bulkMaxBytes = EsClient.DEFAULT_BULK_MAX_BYTES;
+    private int bulkConcurrency = EsClient.DEFAULT_BULK_CONCURRENCY;
+    private int bulkRetries = EsClient.DEFAULT_BULK_RETRIES;
+    private long refreshInterval = EsClient.DEFAULT_REFRESH_INTERVAL;
     private EsClient client;
 
     @Override
@@ -51,6 +55,10 @@ public class EsIndexProvider extends IndexProvider {
         logger().debug("Elasticsearch index provider for repository '{0}' "
                 + "is trying to connect to cluster", getRepositoryName());
         client = new EsClient(host, port);
+        client.setBulkMaxBytes(bulkMaxBytes);
+        client.setBulkConcurrency(bulkConcurrency);
+        client.setBulkRetries(bulkRetries);
+        client.setRefreshInterval(refreshInterval);
     }
 
     /**
@@ -89,9 +97,84 @@ public class EsIndexProvider extends IndexProvider {
         this.port = port;
     }
 
+    /**
+     * Gets the maximum size of a single bulk request.
+     *
+     * @return the number of bytes
+     */
+    public long getBulkMaxBytes() {
+        return bulkMaxBytes;
+    }
+
+    /**
+     * Assigns the maximum size of a single bulk request.
+     *
+     * @param bulkMaxBytes the number of bytes
+     */
+    public void setBulkMaxBytes(long bulkMaxBytes) {
+        this.bulkMaxBytes = bulkMaxBytes;
+    }
+
+    /**
+     * Gets the maximum number of bulk requests sent concurrently.
+     *
+     * @return the number of requests
+     */
+    public int getBulkConcurrency() {
+        return bulkConcurrency;
+    }
+
+    /**
+     * Assigns the maximum number of bulk requests sent concurrently.
+     *
+     * @param bulkConcurrency the number of requests
+     */
+    public void setBulkConcurrency(int bulkConcurrency) {
+        this.bulkConcurrency = bulkConcurrency;
+    }
+
+    /**
+     * Gets the number of times that failed bulk operations are retried.
+     *
+     * @return the number of retries
+     */
+    public int getBulkRetries() {
+        return bulkRetries;
+    }
+
+    /**
+     * Assigns the number of times that failed bulk operations are retried.
+     *
+     * @param bulkRetries the number of retries
+     */
+    public void setBulkRetries(int bulkRetries) {
+        this.bulkRetries = bulkRetries;
+    }
+
+    /**
+     * Gets the minimum time between index refreshes caused by commits.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Assigns the minimum time between index refreshes caused by commits.
+     *
+     * @param refreshInterval the interval in milliseconds
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
     @Override
     protected void postShutdown() {
         logger().debug("Shutting down the elasticsearch index provider '{0}' in repository '{1}'", getName(), getRepositoryName());
+        if (client != null) {
+            client.close();
+        }
     }
 
     @Override
@@ -0,0 +1,177 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.elasticsearch.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Operations on the documents of a single index that are sent to the Elasticsearch engine in one or more requests to the
+ * <code>_bulk</code> API.
+ * <p>
+ * Each operation is kept as its own newline-delimited JSON fragment, so that the operations can be split into requests of a
+ * limited size and so that only the failed operations need to be sent again.
+ * </p>
+ */
+public class EsBulkRequest {
+
+    private final List<Item> items = new ArrayList<>();
+    private long bytes;
+
+    /**
+     * Adds an operation that stores the complete document, replacing any existing document with the same identifier.
+     *
+     * @param id document id
+     * @param doc document
+     */
+    public void index(String id, EsRequest doc) {
+        add(new Item(action("index", id), doc.toString(), false));
+    }
+
+    /**
+     * Adds an operation that merges the supplied fields into the existing document. A field with a null value removes the
+     * existing value of that field.
+     *
+     * @param id document id
+     * @param doc the fields to be changed
+     * @param upsert true if the fields should be stored as a new document when there is no existing document, or false if the
+     * operation should be ignored when there is no existing document
+     */
+    public void update(String id, EsRequest doc, boolean upsert) {
+        EsRequest source = new EsRequest();
+        source.put("doc", doc);
+        if (upsert) {
+            source.put("doc_as_upsert", true);
+        }
+        add(new Item(action("update", id), source.toString(), !upsert));
+    }
+
+    /**
+     * Adds an operation that deletes the document, which is ignored when there is no such document.
+     *
+     * @param id document id
+     */
+    public void delete(String id) {
+        add(new Item(action("delete", id), null, true));
+    }
+
+    /**
+     * Gets the number of operations.
+     *
+     * @return the number of operations.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Tests whether there are any operations.
+     *
+     * @return true if there are no operations.
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Gets the size of the request body.
+     *
+     * @return the number of bytes.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Tests whether the failure of the specified operation because there is no such document should be ignored.
+     *
+     * @param index the position of the operation
+     * @return true if a missing document is not a failure.
+     */
+    protected boolean ignoresMissing(int index) {
+        return items.get(index).ignoreMissing;
+    }
+
+    /**
+     * Splits the operations into requests that each have at most the specified size, unless a single operation is larger.
+     *
+     * @param maxBytes the maximum number of bytes in each request.
+     * @return the requests; never empty.
+     */
+    protected List<EsBulkRequest> split(long maxBytes) {
+        List<EsBulkRequest> requests = new ArrayList<>();
+        EsBulkRequest request = new EsBulkRequest();
+        for (Item item : items) {
+            if (!request.isEmpty() && request.bytes + item.bytes > maxBytes) {
+                requests.add(request);
+                request = new EsBulkRequest();
+            }
+            request.add(item);
+        }
+        requests.add(request);
+        return requests;
+    }
+
+    /**
+     * Creates a request with the specified operations of this request.
+     *
+     * @param indexes the positions of the operations.
+     * @return the new request.
+     */
+    protected EsBulkRequest subset(Collection<Integer> indexes) {
+        EsBulkRequest request = new EsBulkRequest();
+        for (Integer index : indexes) {
+            request.add(items.get(index));
+        }
+        return request;
+    }
+
+    private void add(Item item) {
+        items.add(item);
+        bytes += item.bytes;
+    }
+
+    private static String action(String name, String id) {
+        EsRequest metadata = new EsRequest();
+        metadata.put("_id", id);
+        EsRequest action = new EsRequest();
+        action.put(name, metadata);
+        return action.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Item item : items) {
+            sb.append(item.body);
+        }
+        return sb.toString();
+    }
+
+    private static final class Item {
+        protected final String body;
+        protected final long bytes;
+        protected final boolean ignoreMissing;
+
+        protected Item(String action, String source, boolean ignoreMissing) {
+            this.body = source != null ? action + '\n' + source + '\n' : action + '\n';
+            this.bytes = body.getBytes(StandardCharsets.UTF_8).length;
+            this.ignoreMissing = ignoreMissing;
+        }
+    }
+}
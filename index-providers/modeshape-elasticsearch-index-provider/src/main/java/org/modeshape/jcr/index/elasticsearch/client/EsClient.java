@@ -16,6 +16,13 @@
 package org.modeshape.jcr.index.elasticsearch.client;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
@@ -26,6 +33,8 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.schematic.document.Document;
 import org.modeshape.jcr.index.elasticsearch.query.MatchAllQuery;
 
@@ -36,8 +45,35 @@ import org.modeshape.jcr.index.elasticsearch.query.MatchAllQuery;
  */
 public class EsClient {
 
+    /**
+     * The default maximum size in bytes of a single request to the <code>_bulk</code> API.
+     */
+    public static final long DEFAULT_BULK_MAX_BYTES = 5L * 1024L * 1024L;
+
+    /**
+     * The default maximum number of concurrent requests to the <code>_bulk</code> API.
+     */
+    public static final int DEFAULT_BULK_CONCURRENCY = 2;
+
+    /**
+     * The default number of times that failed bulk operations are sent again.
+     */
+    public static final int DEFAULT_BULK_RETRIES = 3;
+
+    /**
+     * The default minimum time in milliseconds between the refreshes of an index that are caused by commits.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000L;
+
+    private static final long RETRY_DELAY = 100L;
+
     private final String host;
     private final int port;
+    private long bulkMaxBytes = DEFAULT_BULK_MAX_BYTES;
+    private int bulkConcurrency = DEFAULT_BULK_CONCURRENCY;
+    private int bulkRetries = DEFAULT_BULK_RETRIES;
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private ExecutorService bulkExecutor;
 
     /**
      * Creates new instance.
@@ -50,6 +86,52 @@ public class EsClient {
         this.port = port;
     }
 
+    /**
+     * Assigns the maximum size of a single request to the <code>_bulk</code> API. Larger bulk requests are split into several
+     * requests.
+     *
+     * @param bulkMaxBytes the maximum number of bytes; must be positive
+     */
+    public void setBulkMaxBytes(long bulkMaxBytes) {
+        this.bulkMaxBytes = Math.max(1L, bulkMaxBytes);
+    }
+
+    /**
+     * Assigns the maximum number of requests to the <code>_bulk</code> API that are sent concurrently.
+     *
+     * @param bulkConcurrency the maximum number of concurrent requests; must be positive
+     */
+    public synchronized void setBulkConcurrency(int bulkConcurrency) {
+        this.bulkConcurrency = Math.max(1, bulkConcurrency);
+    }
+
+    /**
+     * Assigns the number of times that bulk operations failing with a temporary error are sent again.
+     *
+     * @param bulkRetries the number of retries; may be 0
+     */
+    public void setBulkRetries(int bulkRetries) {
+        this.bulkRetries = Math.max(0, bulkRetries);
+    }
+
+    /**
+     * Gets the minimum time between the refreshes of an index that are caused by commits.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Assigns the minimum time between the refreshes of an index that are caused by commits.
+     *
+     * @param refreshInterval the interval in milliseconds; 0 refreshes on every commit
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = Math.max(0L, refreshInterval);
+    }
+
     /**
      * Tests for the index existence with specified name.
      *
@@ -307,4 +389,163 @@ public class EsClient {
         }
     }
 
+    /**
+     * Executes the bulk operations. The operations are split into requests of at most the configured size, which are sent
+     * concurrently up to the configured limit. Operations that fail with a temporary error are sent again up to the configured
+     * number of retries.
+     *
+     * @param name index name.
+     * @param type index type.
+     * @param request the operations
+     * @throws IOException if any of the operations failed.
+     */
+    public void bulk(final String name, final String type, EsBulkRequest request) throws IOException {
+        if (request.isEmpty()) {
+            return;
+        }
+        List<EsBulkRequest> requests = request.split(bulkMaxBytes);
+        List<Future<Void>> futures = new ArrayList<>(requests.size());
+        ExecutorService executor = bulkExecutor();
+        for (final EsBulkRequest chunk : requests) {
+            futures.add(executor.submit(() -> {
+                bulkWithRetries(name, type, chunk);
+                return null;
+            }));
+        }
+        IOException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bulk requests");
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Releases the threads used to send bulk requests.
+     */
+    public synchronized void close() {
+        if (bulkExecutor != null) {
+            bulkExecutor.shutdown();
+            bulkExecutor = null;
+        }
+    }
+
+    private synchronized ExecutorService bulkExecutor() {
+        if (bulkExecutor == null) {
+            bulkExecutor = Executors.newFixedThreadPool(bulkConcurrency, new NamedThreadFactory("modeshape-es-bulk"));
+        }
+        return bulkExecutor;
+    }
+
+    private void bulkWithRetries(String name, String type, EsBulkRequest request) throws IOException {
+        for (int attempt = 0;; attempt++) {
+            List<Integer> failed;
+            try {
+                failed = retriableFailures(request, sendBulk(name, type, request));
+            } catch (TemporaryFailure e) {
+                if (attempt >= bulkRetries) {
+                    throw new IOException(e.getMessage());
+                }
+                failed = null;
+            }
+            if (failed != null) {
+                if (failed.isEmpty()) {
+                    return;
+                }
+                if (attempt >= bulkRetries) {
+                    throw new IOException(String.format("%d bulk operations on index '%s' failed after %d retries",
+                                                        failed.size(), name, bulkRetries));
+                }
+                request = request.subset(failed);
+            }
+            try {
+                Thread.sleep(RETRY_DELAY << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while retrying bulk operations");
+            }
+        }
+    }
+
+    private EsResponse sendBulk(String name, String type, EsBulkRequest request) throws IOException {
+        CloseableHttpClient client = HttpClients.createDefault();
+        HttpPost method = new HttpPost(String.format("http://%s:%d/%s/%s/_bulk", host, port, name, type));
+        try {
+            StringEntity requestEntity = new StringEntity(request.toString(), ContentType.APPLICATION_JSON);
+            method.setEntity(requestEntity);
+            CloseableHttpResponse resp;
+            try {
+                resp = client.execute(method);
+            } catch (IOException e) {
+                throw new TemporaryFailure(e.getMessage());
+            }
+            int status = resp.getStatusLine().getStatusCode();
+            if (status == 429 || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                throw new TemporaryFailure(resp.getStatusLine().getReasonPhrase() + ": "
+                                           + EntityUtils.toString(resp.getEntity()));
+            }
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException(resp.getStatusLine().getReasonPhrase());
+            }
+            return EsResponse.read(resp.getEntity().getContent());
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Finds the operations that failed with a temporary error and so should be sent again.
+     *
+     * @param request the operations that were sent
+     * @param response the response to the bulk request
+     * @return the positions of the operations to be sent again; never null
+     * @throws IOException if any operation failed with an error that is not temporary
+     */
+    private List<Integer> retriableFailures(EsBulkRequest request, EsResponse response) throws IOException {
+        List<Integer> failed = new ArrayList<>();
+        if (!Boolean.TRUE.equals(response.get("errors"))) {
+            return failed;
+        }
+        Object[] items = (Object[]) response.get("items");
+        for (int i = 0; i < items.length; i++) {
+            // each item has a single field named after the action ...
+            Document item = (Document) ((Document) items[i]).fields().iterator().next().getValue();
+            int status = item.getInteger("status", HttpStatus.SC_OK);
+            if (status < HttpStatus.SC_MULTIPLE_CHOICES) {
+                continue;
+            }
+            if (status == HttpStatus.SC_NOT_FOUND && request.ignoresMissing(i)) {
+                continue;
+            }
+            if (status == 429 || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                failed.add(i);
+                continue;
+            }
+            throw new IOException(String.format("Bulk operation on document '%s' failed: %s", item.getString("_id"),
+                                                item.get("error")));
+        }
+        return failed;
+    }
+
+    /**
+     * Signals that a bulk request failed with an error that may not happen again.
+     */
+    private static final class TemporaryFailure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        protected TemporaryFailure(String message) {
+            super(message);
+        }
+    }
 }
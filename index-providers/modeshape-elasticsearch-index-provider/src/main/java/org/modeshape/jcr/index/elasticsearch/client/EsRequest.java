@@ -21,6 +21,7 @@ import org.modeshape.schematic.DocumentFactory;
 import org.modeshape.schematic.document.Document;
 import org.modeshape.schematic.document.EditableDocument;
 import org.modeshape.schematic.document.Json;
+import org.modeshape.schematic.document.Null;
 import org.modeshape.schematic.internal.document.BasicArray;
 
 /**
@@ -51,11 +52,13 @@ public class EsRequest {
      * Adds single property value.
      * 
      * @param name property name.
-     * @param value property value.
+     * @param value property value; may be null
      */
     public void put(String name, Object value) {
         if (value instanceof EsRequest) {
             document.setDocument(name, ((EsRequest)value).document);
+        } else if (value == null) {
+            document.setNull(name);
         } else {
             document.set(name, value);
         }
@@ -99,6 +102,20 @@ public class EsRequest {
         document.remove(name);
     }
     
+    /**
+     * Tests whether any property has a value other than null.
+     * 
+     * @return true if at least one property has a non-null value.
+     */
+    public boolean hasValues() {
+        for (Document.Field field : document.fields()) {
+            if (!Null.matches(field.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Writes document content to the stream.
      * 
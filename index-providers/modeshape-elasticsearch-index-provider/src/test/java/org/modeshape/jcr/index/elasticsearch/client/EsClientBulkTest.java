@@ -0,0 +1,164 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.elasticsearch.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the bulk requests of {@link EsClient} against a local HTTP server standing in for the Elasticsearch engine.
+ */
+public class EsClientBulkTest {
+
+    private HttpServer server;
+    private EsClient client;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    private final Queue<String> responses = new LinkedList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + "\n" + read(exchange.getRequestBody()));
+            String response;
+            synchronized (responses) {
+                response = responses.isEmpty() ? "{\"errors\":false,\"items\":[]}" : responses.poll();
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        client = new EsClient("localhost", server.getAddress().getPort());
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldSendAllOperationsInOneRequest() throws Exception {
+        EsBulkRequest request = new EsBulkRequest();
+        request.index("a", doc("field1", "value1"));
+        request.update("b", doc("field1", "value2"), true);
+        request.delete("c");
+        client.bulk("index", "type", request);
+
+        assertEquals(1, requests.size());
+        String[] lines = requests.get(0).split("\n");
+        assertEquals("POST /index/type/_bulk", lines[0]);
+        assertEquals(6, lines.length);
+        assertTrue(lines[1].contains("\"index\"") && lines[1].contains("\"a\""));
+        assertTrue(lines[2].contains("value1"));
+        assertTrue(lines[3].contains("\"update\"") && lines[3].contains("\"b\""));
+        assertTrue(lines[4].contains("\"doc_as_upsert\""));
+        assertTrue(lines[5].contains("\"delete\"") && lines[5].contains("\"c\""));
+    }
+
+    @Test
+    public void shouldSplitOperationsIntoRequestsOfLimitedSize() throws Exception {
+        EsBulkRequest request = new EsBulkRequest();
+        for (int i = 0; i < 10; i++) {
+            request.index("node" + i, doc("field1", "value" + i));
+        }
+        client.setBulkMaxBytes(request.bytes() / 3);
+        client.bulk("index", "type", request);
+
+        assertEquals(4, requests.size());
+        int operations = 0;
+        for (String body : requests) {
+            operations += (body.split("\n").length - 1) / 2;
+        }
+        assertEquals(10, operations);
+    }
+
+    @Test
+    public void shouldRetryOnlyTheOperationsThatFailedTemporarily() throws Exception {
+        responses.add("{\"errors\":true,\"items\":[{\"index\":{\"_id\":\"a\",\"status\":201}},"
+                      + "{\"index\":{\"_id\":\"b\",\"status\":429,\"error\":\"rejected\"}},"
+                      + "{\"delete\":{\"_id\":\"c\",\"status\":404,\"found\":false}}]}");
+        EsBulkRequest request = new EsBulkRequest();
+        request.index("a", doc("field1", "value1"));
+        request.index("b", doc("field1", "value2"));
+        request.delete("c");
+        client.bulk("index", "type", request);
+
+        assertEquals(2, requests.size());
+        String[] lines = requests.get(1).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("\"b\""));
+    }
+
+    @Test( expected = IOException.class )
+    public void shouldFailWhenOperationFailsPermanently() throws Exception {
+        responses.add("{\"errors\":true,\"items\":[{\"index\":{\"_id\":\"a\",\"status\":400,\"error\":\"mapper_parsing\"}}]}");
+        EsBulkRequest request = new EsBulkRequest();
+        request.index("a", doc("field1", "value1"));
+        client.bulk("index", "type", request);
+    }
+
+    @Test
+    public void shouldFailWhenRetriesAreExhausted() throws Exception {
+        String rejected = "{\"errors\":true,\"items\":[{\"update\":{\"_id\":\"a\",\"status\":503,\"error\":\"unavailable\"}}]}";
+        for (int i = 0; i < 3; i++) {
+            responses.add(rejected);
+        }
+        client.setBulkRetries(2);
+        EsBulkRequest request = new EsBulkRequest();
+        request.update("a", doc("field1", "value1"), true);
+        try {
+            client.bulk("index", "type", request);
+            assertTrue("Expected the bulk request to fail", false);
+        } catch (IOException e) {
+            assertEquals(3, requests.size());
+        }
+    }
+
+    private static EsRequest doc(String name, Object value) {
+        EsRequest doc = new EsRequest();
+        doc.put(name, value);
+        return doc;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
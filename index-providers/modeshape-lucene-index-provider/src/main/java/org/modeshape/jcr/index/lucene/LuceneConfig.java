@@ -116,8 +116,23 @@ public final class LuceneConfig {
         return lastSuccessfulCommitTime.get();
     }
     
-    protected int refreshTimeSeconds() {
-        return 30;
+    /**
+     * Returns the maximum time a searcher may lag behind the changes made to an index when no search is waiting for them.
+     * 
+     * @return the number of seconds
+     */
+    protected double maxStaleSeconds() {
+        return 1.0;
+    }
+
+    /**
+     * Returns the minimum time between two reopens of a searcher when searches are waiting for changes made to an index, so that
+     * searches issued right after each other share a single reopen.
+     * 
+     * @return the number of seconds
+     */
+    protected double minStaleSeconds() {
+        return 0.01;
     }
 
     /**
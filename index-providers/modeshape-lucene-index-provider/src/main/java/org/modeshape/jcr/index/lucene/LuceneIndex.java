@@ -31,6 +31,7 @@ import org.apache.lucene.document.LegacyIntField;
 import org.apache.lucene.document.LegacyLongField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexWriter;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.annotation.ThreadSafe;
@@ -128,7 +129,81 @@ public abstract class LuceneIndex implements ProvidedIndex<Object> {
 
     @Override
     public Results filter(IndexConstraints constraints, long cardinalityEstimate) {
-        return searcher.filter(constraints, queryFactory(constraints.getVariables()), cardinalityEstimate);
+        LuceneQueryFactory queryFactory = queryFactory(constraints.getVariables());
+        List<String> columns = new ArrayList<>();
+        if (returnsColumnValues()) {
+            for (String column : constraints.getRequestedColumns()) {
+                PropertyType type = propertyTypesByName.get(column);
+                if (type == null || type == PropertyType.BINARY) {
+                    // this index doesn't store the values, so the nodes have to be loaded anyway
+                    return searcher.filter(constraints, queryFactory, cardinalityEstimate);
+                }
+                columns.add(column);
+            }
+        }
+        return searcher.filter(constraints, queryFactory, cardinalityEstimate, columns,
+                               document -> columnValues(document, columns));
+    }
+
+    @Override
+    public boolean returnsColumnValues() {
+        // all the values (except binaries) are stored in the Lucene documents
+        return true;
+    }
+
+    protected Map<String, Object> columnValues( Document document, List<String> columns ) {
+        Map<String, Object> valuesByColumn = new HashMap<>();
+        for (String column : columns) {
+            IndexableField[] fields = document.getFields(column);
+            if (fields.length == 0) {
+                continue;
+            }
+            PropertyType type = propertyTypesByName.get(column);
+            if (fields.length == 1) {
+                valuesByColumn.put(column, fieldToValue(type, fields[0]));
+            } else {
+                Object[] values = new Object[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    values[i] = fieldToValue(type, fields[i]);
+                }
+                valuesByColumn.put(column, values);
+            }
+        }
+        return valuesByColumn;
+    }
+
+    protected Object fieldToValue( PropertyType type, IndexableField field ) {
+        switch (type) {
+            case STRING: {
+                return field.stringValue();
+            }
+            case NAME:
+            case PATH:
+            case REFERENCE:
+            case SIMPLEREFERENCE:
+            case WEAKREFERENCE:
+            case URI: {
+                return context.getValueFactories().getValueFactory(type).create(field.stringValue());
+            }
+            case BOOLEAN: {
+                return field.numericValue().intValue() == 1;
+            }
+            case DATE: {
+                // dates are stored as millis
+                return context.getValueFactories().getDateFactory().create(field.numericValue().longValue());
+            }
+            case DECIMAL: {
+                return FieldUtil.stringToDecimal(field.stringValue());
+            }
+            case DOUBLE: {
+                return field.numericValue().doubleValue();
+            }
+            case LONG: {
+                return field.numericValue().longValue();
+            }
+            default:
+                throw new LuceneIndexException("Unsupported property type: " + type);
+        }
     }
 
     @Override
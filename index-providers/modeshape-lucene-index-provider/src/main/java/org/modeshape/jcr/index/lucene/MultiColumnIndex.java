@@ -16,11 +16,15 @@
 package org.modeshape.jcr.index.lucene;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.jcr.query.qom.Constraint;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LegacyDoubleField;
@@ -34,6 +38,7 @@ import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.index.lucene.query.LuceneQueryFactory;
+import org.modeshape.jcr.spi.index.IndexConstraints;
 import org.modeshape.jcr.value.PropertyType;
 
 /**
@@ -42,6 +47,10 @@ import org.modeshape.jcr.value.PropertyType;
  * <p>
  * Whenever possible, prefer the {@link SingleColumnIndex} implementation to this one. 
  * </p>
+ * <p>
+ * To reduce the cost of merging, all the property changes for a node are buffered until the index is committed or searched, 
+ * and then written as a single document update. The existing document is only read when some of its values are kept.
+ * </p>
  * @author Horia Chiorean (hchiorea@redhat.com)
  * @since 4.5
  */
@@ -50,8 +59,15 @@ import org.modeshape.jcr.value.PropertyType;
 @SuppressWarnings("deprecation")
 class MultiColumnIndex extends LuceneIndex {
 
+    /**
+     * The maximum number of nodes whose changes are buffered before they are written to the index, even if the changes are
+     * not yet committed.
+     */
+    private static final int MAX_PENDING_NODES = 1000;
+
     private final DocumentIdCache cache;
-    
+    private final Map<String, PendingDocument> pending = new LinkedHashMap<>();
+
     protected MultiColumnIndex( String name,
                                 String workspaceName, 
                                 LuceneConfig config,
@@ -68,37 +84,145 @@ class MultiColumnIndex extends LuceneIndex {
         CheckArg.isNotNull(nodeKey, "nodeKey");
         CheckArg.isNotNull(propertyName, "propertyName");
         CheckArg.isNotNull(values, "values");
-       
+        // the changes for a node are buffered, so that each node's document is written only once...
+        synchronized (pending) {
+            pendingDocument(nodeKey).set(propertyName, values);
+        }
+    }
+
+    @Override
+    protected void remove( final String nodeKey, final String propertyName ) {
+        CheckArg.isNotNull(nodeKey, "nodeKey");
+        CheckArg.isNotNull(propertyName, "propertyName");
+        synchronized (pending) {
+            pendingDocument(nodeKey).set(propertyName, null);
+        }
+    }
+
+    @Override
+    public void remove( String nodeKey ) {
+        CheckArg.isNotNull(nodeKey, "nodeKey");
+        synchronized (pending) {
+            // any existing document (and any buffered changes) will be replaced...
+            pending.put(nodeKey, new PendingDocument(true));
+            flushIfNeeded();
+        }
+    }
+
+    @Override
+    public void commit() {
+        flushPending();
+        super.commit();
+    }
+
+    private void flushPending() {
+        synchronized (pending) {
+            flush();
+        }
+    }
+
+    @Override
+    public long estimateCardinality( List<Constraint> andedConstraints, Map<String, Object> variables ) {
+        flushPending();
+        return super.estimateCardinality(andedConstraints, variables);
+    }
+
+    @Override
+    public long estimateTotalCount() {
+        flushPending();
+        return super.estimateTotalCount();
+    }
+
+    @Override
+    public Results filter( IndexConstraints constraints, long cardinalityEstimate ) {
+        // the buffered changes are written first so that they are visible to searches, just like other uncommitted changes
+        flushPending();
+        return super.filter(constraints, cardinalityEstimate);
+    }
+
+    @Override
+    public void clearAllData() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        super.clearAllData();
+    }
+
+    private PendingDocument pendingDocument( String nodeKey ) {
+        PendingDocument document = pending.get(nodeKey);
+        if (document == null) {
+            flushIfNeeded();
+            document = new PendingDocument(false);
+            pending.put(nodeKey, document);
+        }
+        return document;
+    }
+
+    private void flushIfNeeded() {
+        if (pending.size() >= MAX_PENDING_NODES) {
+            flush();
+        }
+    }
+
+    private void flush() {
         try {
-            // first look at the cache and commit data to check if a document exists or not with this key. If a document does not
-            // exist, this operation will be a lot faster. Otherwise the document needs to be loaded which is costly....
-            // THIS IS A COSTLY OPERATION...
-            if (documentExists(nodeKey)) {
-                // we're updating an existing document
-                logger.debug("Updating the property '{0}' of document '{1}' in the Lucene index '{2}' with the values '{3}'",
-                             propertyName, nodeKey, name, values);
-                Document oldDocument = searcher.loadDocumentById(nodeKey);
-                Document newDocument = clone(oldDocument, propertyName);
-                                            
-                //add the fields for the new property
-                List<Field> fields = valuesToFields(propertyName, values);
-                fields.stream().forEach(newDocument::add);
-                writer.updateDocument(FieldUtil.idTerm(nodeKey), newDocument);
-            } else {
-                // we're creating the document for the first time...
-                logger.debug("Adding the document '{0}' in the Lucene Index '{1}' with the property '{2}' and values '{3}",
-                             nodeKey, name, propertyName, values);                 
-                Document document = new Document();
-                addProperty(nodeKey, document, propertyName, values);
-                writer.addDocument(document);
-                // mark the node key as added
-                cache.add(nodeKey);
+            for (Map.Entry<String, PendingDocument> entry : pending.entrySet()) {
+                write(entry.getKey(), entry.getValue());
             }
         } catch (IOException e) {
             throw new LuceneIndexException(e);
+        } finally {
+            pending.clear();
         }
     }
 
+    private void write( String nodeKey, PendingDocument changes ) throws IOException {
+        Term idTerm = FieldUtil.idTerm(nodeKey);
+        boolean exists = documentExists(nodeKey);
+        Document document = new Document();
+        if (exists && !changes.replacesDocument(propertyTypesByName.keySet())) {
+            // some of the existing values are kept, so the document needs to be loaded which is costly....
+            logger.debug("Updating the properties '{0}' of document '{1}' in the Lucene index '{2}'", changes.valuesByProperty.keySet(),
+                         nodeKey, name);
+            Document oldDocument = searcher.loadDocumentById(nodeKey);
+            if (oldDocument != null) {
+                document = clone(oldDocument, changes.excludedFields());
+            }
+        }
+        boolean hasValues = false;
+        for (Map.Entry<String, Object[]> entry : changes.valuesByProperty.entrySet()) {
+            Object[] values = entry.getValue();
+            if (values != null && values.length > 0) {
+                valuesToFields(entry.getKey(), values).forEach(document::add);
+                hasValues = true;
+            }
+        }
+        hasValues |= document.getFields().stream().anyMatch(field -> !FieldUtil.ID.equals(field.name()));
+        // a removed node may have a document even if it's not tracked in the commit data...
+        boolean mayExist = exists || changes.replaced;
+        if (!hasValues) {
+            if (mayExist) {
+                // there are no more values, so remove the entire document....
+                writer.deleteDocuments(idTerm);
+                // mark the node key as removed
+                cache.remove(nodeKey);
+            }
+            return;
+        }
+        if (document.getField(FieldUtil.ID) == null) {
+            document.add(FieldUtil.idField(nodeKey));
+        }
+        if (mayExist) {
+            writer.updateDocument(idTerm, document);
+        } else {
+            logger.debug("Adding the document '{0}' in the Lucene Index '{1}' with the properties '{2}'", nodeKey, name,
+                         changes.valuesByProperty.keySet());
+            writer.addDocument(document);
+        }
+        // mark the node key as added
+        cache.add(nodeKey);
+    }
+
     private Document clone(Document oldDocument, String... excludeProps) {
         List<String> excluded = Arrays.asList(excludeProps);
 
@@ -144,52 +268,46 @@ class MultiColumnIndex extends LuceneIndex {
         cache.updateCommitData(commitData);
     }
 
-    @Override
-    protected void remove(final String nodeKey, final String propertyName) {
-        CheckArg.isNotNull(nodeKey, "nodeKey");
-        CheckArg.isNotNull(propertyName, "propertyName");
-       
-        if (!documentExists(nodeKey)) {
-            // no document found so nothing to do
-            return;
-        }
-        try {
-            Document document = searcher.loadDocumentById(nodeKey);
-            boolean hasProperty = document.getField(propertyName) != null;
-            if (!hasProperty) {
-                return;
-            }
-            Term idTerm = FieldUtil.idTerm(nodeKey);
-            if (document.getFields().size() == 1) {
-                // there are no more fields, so remove the entire document....
-                writer.deleteDocuments(idTerm);
-                // mark the node key as removed
-                cache.remove(nodeKey);
-            } else {
-                // create a clone without the property
-                Document newDocument = clone(document, propertyName);
-                writer.updateDocument(idTerm, newDocument);
-            }
-        } catch (IOException e) {
-            throw new LuceneIndexException(e);
-        }
-    }
-
     @Override
     protected LuceneQueryFactory queryFactory( Map<String, Object> variables ) {
         return LuceneQueryFactory.forMultiColumnIndex(context.getValueFactories(), variables, propertyTypesByName);
     }
 
-    @Override
-    public void remove( String nodeKey ) {
-        super.remove(nodeKey);
-        if (documentExists(nodeKey)) {
-            cache.remove(nodeKey);
-        }
+    private boolean documentExists( String nodeKey ) {
+        Boolean exists = cache.exists(nodeKey);
+        return exists != null ? exists : writer.getCommitData().containsKey(nodeKey);
     }
 
-    private boolean documentExists( String nodeKey ) {
-        return cache.hasNode(nodeKey) || writer.getCommitData().containsKey(nodeKey);
+    /**
+     * The buffered changes to the document of a single node.
+     */
+    private static class PendingDocument {
+        // the new values for each changed property, or null for the properties that were removed
+        protected final Map<String, Object[]> valuesByProperty = new HashMap<>();
+        // whether the existing document (if there is one) is completely replaced
+        protected final boolean replaced;
+
+        protected PendingDocument( boolean replaced ) {
+            this.replaced = replaced;
+        }
+
+        protected void set( String propertyName, Object[] values ) {
+            valuesByProperty.put(propertyName, values);
+        }
+
+        protected boolean replacesDocument( Set<String> allProperties ) {
+            // the existing document is not needed if all of its properties have been changed...
+            return replaced || valuesByProperty.keySet().containsAll(allProperties);
+        }
+
+        protected String[] excludedFields() {
+            List<String> fields = new ArrayList<>();
+            for (String propertyName : valuesByProperty.keySet()) {
+                fields.add(propertyName);
+                fields.add(FieldUtil.lengthField(propertyName));
+            }
+            return fields.toArray(new String[fields.size()]);
+        }
     }
 
     /**
@@ -206,8 +324,11 @@ class MultiColumnIndex extends LuceneIndex {
             this.added = new HashSet<>();
         }
 
-        protected synchronized boolean hasNode(String nodeKey) {
-            return added.contains(nodeKey) || removed.contains(nodeKey);
+        protected synchronized Boolean exists(String nodeKey) {
+            if (added.contains(nodeKey)) {
+                return Boolean.TRUE;
+            }
+            return removed.contains(nodeKey) ? Boolean.FALSE : null;
         }
 
         protected synchronized void add(String nodeKey) {
@@ -17,19 +17,18 @@ package org.modeshape.jcr.index.lucene;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import javax.jcr.query.qom.Constraint;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
@@ -38,6 +37,7 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -50,7 +50,6 @@ import org.apache.lucene.util.Bits;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
-import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.index.lucene.query.LuceneQueryFactory;
 import org.modeshape.jcr.spi.index.IndexConstraints;
@@ -58,6 +57,12 @@ import org.modeshape.jcr.spi.index.provider.Filter;
 
 /**
  * Class which handles the actual Lucene searching for the {@link LuceneIndexProvider}
+ * <p>
+ * The searchers are reopened in the background by a {@link ControlledRealTimeReopenThread}, so that they never are more than
+ * {@link LuceneConfig#maxStaleSeconds()} behind the index writer. Each search waits for a searcher that reflects a given
+ * {@link #currentGeneration() generation} of the writer, which gives read-your-writes semantics: a search only waits when the
+ * writer has changed since the last reopen, and concurrent searches waiting for the same changes share a single reopen.
+ * </p>
  * 
  * @author Horia Chiorean (hchiorea@redhat.com)
  * @since 4.5
@@ -73,27 +78,29 @@ public class Searcher {
     private static final long MAX_RAM_BYTES_TO_USE = 50 * 1024L * 1024L;
 
     private static final Set<String> ID_FIELD_SET = Collections.singleton(FieldUtil.ID);
+
+    // the generation which makes a search use the current searcher
+    protected static final long NO_GENERATION = -1L;
     
+    private final IndexWriter writer;
     private final SearcherManager searchManager;
-    private final ScheduledExecutorService searchManagerRefreshService;
-    private final ScheduledFuture<?> searchManagerRefreshResult;
+    private final ControlledRealTimeReopenThread<IndexSearcher> searchManagerReopenThread;
     private final QueryCache queryCache;
 
     protected Searcher( LuceneConfig config, IndexWriter writer, String name ) {
+        this.writer = writer;
         this.searchManager = config.searchManager(writer);
         this.queryCache = new LRUQueryCache(MAX_QUERIES_TO_CACHE, MAX_RAM_BYTES_TO_USE);
-        this.searchManagerRefreshService = Executors.newScheduledThreadPool(1, new NamedThreadFactory(
-                name + "-lucene-search-manager-refresher"));
-        this.searchManagerRefreshResult = this.searchManagerRefreshService.scheduleWithFixedDelay(this::refreshSearchManager,
-                                                                                                  0,
-                                                                                                  config.refreshTimeSeconds(),
-                                                                                                  TimeUnit.SECONDS);
+        this.searchManagerReopenThread = new ControlledRealTimeReopenThread<>(writer, searchManager, config.maxStaleSeconds(),
+                                                                              config.minStaleSeconds());
+        this.searchManagerReopenThread.setName(name + "-lucene-search-manager-reopener");
+        this.searchManagerReopenThread.setDaemon(true);
+        this.searchManagerReopenThread.start();
     }
     
     protected void close() {
         try {
-            searchManagerRefreshResult.cancel(false);
-            searchManagerRefreshService.shutdown();
+            searchManagerReopenThread.close();
             searchManager.close();
         } catch (IOException e) {
             LOGGER.warn(e, LuceneIndexProviderI18n.warnErrorWhileClosingSearcher);
@@ -103,24 +110,53 @@ public class Searcher {
     protected Filter.Results filter(IndexConstraints indexConstraints, 
                                     LuceneQueryFactory queryFactory,
                                     long cardinalityEstimate) {
+        return filter(indexConstraints, queryFactory, cardinalityEstimate, Collections.emptySet(), null);
+    }
+
+    protected Filter.Results filter(IndexConstraints indexConstraints,
+                                    LuceneQueryFactory queryFactory,
+                                    long cardinalityEstimate,
+                                    Collection<String> columns,
+                                    Function<Document, Map<String, Object>> columnValuesReader) {
+        assert columns.isEmpty() || columnValuesReader != null;
         Query query = createQueryFromConstraints(indexConstraints.getConstraints(), queryFactory);
-        return new LuceneResults(query, queryFactory.scoreDocuments(), cardinalityEstimate);
+        // the results must reflect all the changes made before the query, even if the query runs later...
+        long generation = currentGeneration();
+        if (columns.isEmpty()) {
+            return new LuceneResults(query, queryFactory.scoreDocuments(), cardinalityEstimate, ID_FIELD_SET, null, generation);
+        }
+        // load the stored values of the requested columns along with the ID of each document
+        Set<String> fieldsToLoad = new HashSet<>(columns);
+        fieldsToLoad.add(FieldUtil.ID);
+        return new LuceneResults(query, queryFactory.scoreDocuments(), cardinalityEstimate, fieldsToLoad, columnValuesReader,
+                                 generation);
     }
     
     protected long estimateCardinality( final List<Constraint> andedConstraints, final LuceneQueryFactory queryFactory ) throws IOException {
         return search(searcher -> {
             Query query = createQueryFromConstraints(andedConstraints, queryFactory);
             return (long) searcher.count(query);
-        }, true);
+        }, currentGeneration());
     }
     
     protected Document loadDocumentById(final String id) throws IOException {
-        // this is a potentially costly operation
+        // this is a potentially costly operation which is done while writing, so don't wait for the reopen thread...
+        refreshSearchManager();
         return search(searcher -> {
             DocumentByIdCollector collector = new DocumentByIdCollector();
             searcher.search(FieldUtil.idQuery(id), collector);
             return collector.document();
-        }, true);
+        }, NO_GENERATION);
+    }
+
+    /**
+     * Returns the generation of the index writer which reflects all the changes made to the index so far, including those which
+     * have not been committed yet.
+     * 
+     * @return the generation; can be passed to {@link #search(Searchable, long)}
+     */
+    protected long currentGeneration() {
+        return writer.getMaxCompletedSequenceNumber();
     }
 
     private Query createQueryFromConstraints( Collection<Constraint> andedConstraints, LuceneQueryFactory queryFactory ) {
@@ -149,9 +185,23 @@ public class Searcher {
         }
     }
 
-    protected <T> T search(Searchable<T> searchable, boolean refreshReader) {
-        if (refreshReader) {
-            refreshSearchManager();
+    /**
+     * Runs a search using a searcher which reflects at least the given generation of the index writer, waiting for the
+     * searcher to be reopened if necessary.
+     * 
+     * @param searchable the search to run; may not be null
+     * @param generation the minimum generation which the searcher must reflect, or {@link #NO_GENERATION} if the current
+     * searcher should be used regardless of how stale it is
+     * @return the result of the search
+     */
+    protected <T> T search(Searchable<T> searchable, long generation) {
+        if (generation > NO_GENERATION) {
+            try {
+                searchManagerReopenThread.waitForGeneration(generation);
+            } catch (InterruptedException e) {
+                // use the current searcher
+                Thread.currentThread().interrupt();
+            }
         }
         IndexSearcher searcher = null;
         try {
@@ -175,17 +225,26 @@ public class Searcher {
         
         private final boolean scoreDocuments;
         private final long size;
+        private final Set<String> fieldsToLoad;
+        private final Function<Document, Map<String, Object>> columnValuesReader;
+        private final long generation;
         
         private Query query;
         private Iterator<NodeKey> keysIterator;
         private Iterator<Float> scoresIterator;
+        private Iterator<Map<String, Object>> columnValuesIterator;
         private int currentBatch;
+        private long count = -1L;
 
-        protected LuceneResults( Query query, boolean scoreDocuments, long size ) {
+        protected LuceneResults( Query query, boolean scoreDocuments, long size, Set<String> fieldsToLoad,
+                                 Function<Document, Map<String, Object>> columnValuesReader, long generation ) {
             this.scoreDocuments = scoreDocuments;
+            this.generation = generation;
             this.query = query;
             this.currentBatch = 0;
             this.size = size;
+            this.fieldsToLoad = fieldsToLoad;
+            this.columnValuesReader = columnValuesReader;
         }
 
         @Override
@@ -197,6 +256,7 @@ public class Searcher {
             return new Filter.ResultBatch() {
                 private int keysCount = 0;
                 private int scoresCount = 0;
+                private int columnValuesCount = 0;
                 
                 @Override
                 public Iterable<NodeKey> keys() {
@@ -252,6 +312,36 @@ public class Searcher {
                     };
                 }
 
+                @Override
+                public Iterable<Map<String, Object>> columnValues() {
+                    if (columnValuesReader == null) {
+                        return null;
+                    }
+                    return () -> new Iterator<Map<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            if (columnValuesCount == size) {
+                                return false;
+                            }
+                            if (columnValuesIterator == null) {
+                                runQuery();
+                            }
+                            return columnValuesIterator.hasNext();
+                        }
+
+                        @Override
+                        public Map<String, Object> next() {
+                            if (columnValuesCount++ == size) {
+                                throw new NoSuchElementException();
+                            }
+                            if (columnValuesIterator == null) {
+                                runQuery();
+                            }
+                            return columnValuesIterator.next();
+                        }
+                    };
+                }
+
                 @Override
                 public boolean hasNext() {
                     return hasNextBatch;
@@ -264,15 +354,30 @@ public class Searcher {
 
                 private void runQuery() {
                     if (keysIterator == null && scoresIterator == null) {
-                        Map<NodeKey, Float> results = search(searcher -> getSearchResults(searcher), true);
+                        List<Map<String, Object>> columnValues = columnValuesReader != null ? new ArrayList<>() : null;
+                        Map<NodeKey, Float> results = search(searcher -> getSearchResults(searcher, columnValues),
+                                                                  generation);
                         keysIterator = results.keySet().iterator();
                         scoresIterator = results.values().iterator();
+                        if (columnValues != null) {
+                            columnValuesIterator = columnValues.iterator();
+                        }
                     }
                 }
             };
         }
 
-        private Map<NodeKey, Float> getSearchResults(IndexSearcher searcher) throws IOException {
+        @Override
+        public long count() {
+            if (count < 0 && query != null) {
+                // counting the hits of the same generation is much cheaper than collecting them...
+                count = search(searcher -> (long) searcher.count(query), generation);
+            }
+            return count;
+        }
+
+        private Map<NodeKey, Float> getSearchResults(IndexSearcher searcher, List<Map<String, Object>> columnValues)
+                throws IOException {
             IdsCollector collector = new IdsCollector(scoreDocuments, searcher.getIndexReader().maxDoc());
             searcher.search(query, collector);
             BitSet docIds = collector.documents();
@@ -280,10 +385,13 @@ public class Searcher {
             for (int i = docIds.nextSetBit(0); i >= 0; i = docIds.nextSetBit(i + 1)) {
                 try {
                     // this is a valid document which we have to load...
-                    Document document = searcher.doc(i, ID_FIELD_SET);
+                    Document document = searcher.doc(i, fieldsToLoad);
                     String id = document.getBinaryValue(FieldUtil.ID).utf8ToString();
                     Float score = collector.scoreFor(i);
-                    results.put(new NodeKey(id), score);
+                    if (results.put(new NodeKey(id), score) == null && columnValues != null) {
+                        // the stored values of the covered columns, so that the nodes don't have to be loaded...
+                        columnValues.add(columnValuesReader.apply(document));
+                    }
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -295,6 +403,7 @@ public class Searcher {
         public void close() {
             keysIterator = null;
             scoresIterator = null;
+            columnValuesIterator = null;
             query = null;
         }
 
@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr.index.lucene;
 
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,12 @@ class TextIndex extends SingleColumnIndex {
         super(name, workspaceName, config, propertyTypesByName, context);
     }
 
+    @Override
+    public boolean returnsColumnValues() {
+        // the values are analyzed for full text search and cannot be returned as they were stored
+        return false;
+    }
+
     @Override
     protected LuceneQueryFactory queryFactory( Map<String, Object> variables ) {
         return LuceneQueryFactory.forTextIndex(context.getValueFactories(), variables, propertyTypesByName, config);
@@ -69,8 +76,19 @@ class TextIndex extends SingleColumnIndex {
         // not supported
     }
 
+    @Override
+    public boolean supportsTextReaders() {
+        // the text fields are analyzed while the document is written, so the extracted text can be streamed 
+        return true;
+    }
+
     @Override
     protected void addBinaryField( String propertyName, Object value, List<Field> fields ) {
+        if (value instanceof Reader) {
+            // the field is never stored and the reader is consumed when the document is added to the index
+            fields.add(new TextField(propertyName, (Reader)value));
+            return;
+        }
         String valueString = value instanceof String ? (String)value : stringFactory.create(value); 
         fields.add(new TextField(propertyName, valueString, Field.Store.NO));
     }
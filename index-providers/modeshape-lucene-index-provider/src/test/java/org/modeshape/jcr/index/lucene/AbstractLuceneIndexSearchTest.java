@@ -212,9 +212,15 @@ public abstract class AbstractLuceneIndexSearchTest {
     protected class TestIndexConstraints implements org.modeshape.jcr.spi.index.IndexConstraints {
 
         private final Constraint constraint;
+        private final Collection<String> requestedColumns;
 
         private TestIndexConstraints( Constraint constraint ) {
+            this(constraint, Collections.emptySet());
+        }
+
+        protected TestIndexConstraints( Constraint constraint, Collection<String> requestedColumns ) {
             this.constraint = constraint;
+            this.requestedColumns = requestedColumns;
         }
 
         @Override
@@ -246,5 +252,10 @@ public abstract class AbstractLuceneIndexSearchTest {
         public Map<String, Object> getParameters() {
             return Collections.emptyMap();
         }
+
+        @Override
+        public Collection<String> getRequestedColumns() {
+            return requestedColumns;
+        }
     }
 }
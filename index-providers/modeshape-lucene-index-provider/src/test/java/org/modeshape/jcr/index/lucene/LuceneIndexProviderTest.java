@@ -16,6 +16,7 @@
 package org.modeshape.jcr.index.lucene;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -96,6 +97,40 @@ public class LuceneIndexProviderTest extends LocalIndexProviderTest {
         validateQuery().rowCount(3L).hasNodesAtPaths("/node1", "/node2", "/node3").useIndex("multiColIndex").validate(query, query.execute());        
     }
     
+    @Test
+    public void shouldReturnColumnValuesFromCoveringMultiColumnIndex() throws Exception {
+        registerNodeType("nt:testType");
+        Map<String, Integer> properties = new HashMap<>();
+        properties.put("stringProp", PropertyType.STRING);
+        properties.put("longProp", PropertyType.LONG);
+        properties.put("jcr:primaryType", PropertyType.NAME);
+        registerValueIndex("coveringIndex", "nt:testType", null, "*", properties);
+
+        Node root = session().getRootNode();
+        Node node1 = root.addNode("node1", "nt:testType");
+        node1.setProperty("stringProp", "string1");
+        node1.setProperty("longProp", 1);
+        Node node2 = root.addNode("node2", "nt:testType");
+        node2.setProperty("longProp", 2);
+        session.save();
+
+        // all the columns are stored in the index, so the values are obtained without loading the nodes
+        Query query = jcrSql2Query("SELECT [stringProp], [longProp] FROM [nt:testType] WHERE longProp >= 1 ORDER BY [longProp]");
+        validateQuery().rowCount(2L).useIndex("coveringIndex").onEachRow((rowNumber, row) -> {
+            if (rowNumber == 1) {
+                assertEquals("string1", row.getValue("stringProp").getString());
+                assertEquals(1L, row.getValue("longProp").getLong());
+                assertEquals("/node1", row.getPath());
+            } else {
+                assertNull(row.getValue("stringProp"));
+                assertEquals(2L, row.getValue("longProp").getLong());
+                assertEquals("/node2", row.getPath());
+            }
+        }).validate(query, query.execute());
+        String plan = ((org.modeshape.jcr.api.query.QueryResult)query.execute()).getPlan();
+        assertTrue("Expected a covering index in the plan: " + plan, plan.contains("covering="));
+    }
+
     @Test(expected = InvalidIndexDefinitionException.class)
     public void shouldNotAllowMultiColumnTextIndex() throws  Exception {
         Map<String, Integer> properties = new HashMap<>();
@@ -161,7 +196,14 @@ public class LuceneIndexProviderTest extends LocalIndexProviderTest {
     public void shouldNotReindexOnStartup() throws Exception {
         super.shouldNotReindexOnStartup();
     }
-    
+
+    @Override
+    @Test
+    @Ignore( "Lucene indexes are not used for descendant or child constraints" )
+    public void shouldUseNodePathIndexForDescendantAndChildConstraints() throws Exception {
+        super.shouldUseNodePathIndexForDescendantAndChildConstraints();
+    }
+
     @Test
     @FixFor("MODE-2683")
     public void shouldUseIndexWithUpperAndLowerOperands() throws Exception {
@@ -87,4 +87,23 @@ public class MultiColumnIndexPersistenceTest extends SingleColumnIndexPersistenc
         index.commit();
         assertEquals(1, index.estimateTotalCount());
     }
+
+    @Test
+    public void shouldReplaceDocumentWhenNodeIsRemovedAndAddedBeforeCommit() throws Exception {
+        String nodeKey = UUID.randomUUID().toString();
+        addMultiplePropertiesToSameNode(index, nodeKey, 2, PropertyType.LONG);
+        addMultiplePropertiesToSameNode(index, nodeKey, 1, PropertyType.STRING);
+        index.commit();
+
+        // the changes are written as a single document which doesn't contain any of the old values
+        index.remove(nodeKey);
+        String decimalProperty = addMultiplePropertiesToSameNode(index, nodeKey, 1, PropertyType.DECIMAL);
+        index.commit();
+        assertEquals(1, index.estimateTotalCount());
+
+        // removing the only remaining property removes the document
+        index.remove(nodeKey, decimalProperty);
+        index.commit();
+        assertEquals(0, index.estimateTotalCount());
+    }
 }
@@ -15,6 +15,11 @@
  */
 package org.modeshape.jcr.index.lucene;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.modeshape.jcr.api.query.qom.Operator.EQUAL_TO;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.DATE_PROP;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.LONG_PROP;
@@ -22,10 +27,15 @@ import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.REF_PROP;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.SIMPLE_REF_PROP;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.STRING_PROP;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.WEAK_REF_PROP;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.junit.Test;
+import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.query.model.Constraint;
+import org.modeshape.jcr.spi.index.provider.Filter;
 
 /**
  * Tests the search behavior of the {@link MultiColumnIndex}
@@ -97,5 +107,36 @@ public class MultiColumnIndexSearchTest extends SingleColumnIndexSearchTest {
         validateCardinality(existsLongProp, 1);
         validateFilterResults(existsLongProp, 1, false, nodes.get(1));
     }
-    
+
+    @Test
+    public void shouldReturnStoredColumnValuesForRequestedColumns() throws Exception {
+        List<String> nodes = indexNodes(STRING_PROP, "a", "b");
+        String node1 = nodes.get(0);
+        addValues(node1, LONG_PROP, 1l, 2l);
+        DateTime date = valueFactories.getDateFactory().create();
+        addValues(node1, DATE_PROP, date);
+        assertTrue(index.returnsColumnValues());
+
+        Constraint constraint = propertyValue(STRING_PROP, EQUAL_TO, "a");
+        List<String> columns = Arrays.asList(STRING_PROP, LONG_PROP, DATE_PROP);
+        Filter.ResultBatch batch = index.filter(new TestIndexConstraints(constraint, columns), 1).getNextBatch(1);
+        assertEquals(node1, batch.keys().iterator().next().toString());
+        Iterable<Map<String, Object>> columnValues = batch.columnValues();
+        assertNotNull(columnValues);
+        Map<String, Object> values = columnValues.iterator().next();
+        assertEquals("a", values.get(STRING_PROP));
+        assertArrayEquals(new Object[] {1l, 2l}, (Object[])values.get(LONG_PROP));
+        assertEquals(date, values.get(DATE_PROP));
+
+        // the second node doesn't have any value for the long and date columns
+        constraint = propertyValue(STRING_PROP, EQUAL_TO, "b");
+        batch = index.filter(new TestIndexConstraints(constraint, columns), 1).getNextBatch(1);
+        assertEquals(nodes.get(1), batch.keys().iterator().next().toString());
+        values = batch.columnValues().iterator().next();
+        assertEquals(Collections.singletonMap(STRING_PROP, "b"), values);
+
+        // no values are returned when no columns are requested
+        batch = index.filter(new TestIndexConstraints(constraint, Collections.emptySet()), 1).getNextBatch(1);
+        assertNull(batch.columnValues());
+    }
 }
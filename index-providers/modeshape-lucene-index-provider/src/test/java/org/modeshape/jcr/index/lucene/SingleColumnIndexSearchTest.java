@@ -752,4 +752,30 @@ public class SingleColumnIndexSearchTest extends AbstractLuceneIndexSearchTest {
         validateCardinality(constraint, 1);
         validateFilterResults(constraint, 1, false, nodeKeys.get(0));
     }
+
+    @Test
+    public void shouldSeeChangesMadeRightBeforeEachSearch() throws Exception {
+        Constraint constraint = propertyValue(STRING_PROP, EQUAL_TO, "value");
+        for (int i = 1; i <= 20; i++) {
+            indexNodes(STRING_PROP, "value");
+            if (i % 2 == 0) {
+                index.commit();
+            }
+            validateCardinality(constraint, i);
+        }
+    }
+
+    @Test
+    public void shouldReopenSearcherInBackgroundAfterCommit() throws Exception {
+        indexNodes(STRING_PROP, "s1", "s2");
+        index.commit();
+        long start = System.nanoTime();
+        // searches which don't wait for a generation eventually see the changes...
+        while (index.searcher.search(searcher -> searcher.getIndexReader().numDocs(), Searcher.NO_GENERATION) != 2) {
+            if (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) > 10) {
+                fail("The searcher was not reopened after the commit");
+            }
+            Thread.sleep(50);
+        }
+    }
 }
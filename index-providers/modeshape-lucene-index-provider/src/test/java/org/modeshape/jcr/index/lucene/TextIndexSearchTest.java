@@ -15,7 +15,11 @@
  */
 package org.modeshape.jcr.index.lucene;
 
+import static org.junit.Assert.assertTrue;
+import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.BINARY_PROP;
 import static org.modeshape.jcr.index.lucene.PropertiesTestUtil.STRING_PROP;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +37,7 @@ public class TextIndexSearchTest extends AbstractLuceneIndexSearchTest {
     private static final Map<String, PropertyType> ALLOWED_PROPERTIES = new HashMap<String, PropertyType>(){
         {
             put(STRING_PROP, PropertyType.STRING);
+            put(BINARY_PROP, PropertyType.BINARY);
         }
     };    
     
@@ -64,6 +69,20 @@ public class TextIndexSearchTest extends AbstractLuceneIndexSearchTest {
         validateFilterResults(fts, 1, false, nodeKeys.get(1), nodeKeys.get(2));
     }
 
+    @Test
+    public void shouldSupportFTSOnTextReadFromReaders() throws Exception {
+        assertTrue(index.supportsTextReaders());
+        List<String> nodeKeys = indexNodes(BINARY_PROP, (Reader)new StringReader("the quick"), new StringReader("brown fox"));
+
+        Constraint fts = fullTextSearch(BINARY_PROP, "quick");
+        validateCardinality(fts, 1);
+        validateFilterResults(fts, 1, true, nodeKeys.get(0));
+
+        fts = fullTextSearch(BINARY_PROP, "fox");
+        validateCardinality(fts, 1);
+        validateFilterResults(fts, 1, true, nodeKeys.get(1));
+    }
+
     @Test
     public void shouldSupportFTSWithSimpleExpressionsAndNoPropertyName() throws Exception {
         List<String> nodeKeys = indexNodes(STRING_PROP, "the quick", "brown fox", "green fox");
@@ -16,11 +16,14 @@
 package org.modeshape.jcr.api;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import javax.jcr.RepositoryException;
 
 /**
- * An extension of the standard {@link javax.jcr.Binary} interface, with methods to obtain the SHA-1 hash of the binary value.
+ * An extension of the standard {@link javax.jcr.Binary} interface, with methods to obtain the SHA-1 hash of the binary value
+ * to read only part of the binary value, and to find the local file (if any) that holds the binary value.
  */
 public interface Binary extends javax.jcr.Binary {
 
@@ -71,4 +74,51 @@ public interface Binary extends javax.jcr.Binary {
      */
     public String getMimeType( String name ) throws IOException, RepositoryException;
 
+    /**
+     * Returns an {@link InputStream} representation of part of this value, starting at the supplied offset and containing at
+     * most the supplied number of bytes. Where possible the content is read starting at the offset, rather than read and
+     * discarded up to the offset, so this is the efficient way to read a range of a large value.
+     * <p>
+     * As with {@link #getStream()}, the caller is responsible for closing the stream.
+     * </p>
+     * <p>
+     * By default, this method skips the first <code>offset</code> bytes of the {@link #getStream() stream} of the whole value.
+     * </p>
+     *
+     * @param offset the position of the first byte that is to be read, starting at 0; may not be negative
+     * @param length the maximum number of bytes that are to be read; may not be negative
+     * @return the stream, which is empty if <code>offset</code> is not less than the {@link #getSize() size}; never null
+     * @throws RepositoryException if an error occurs.
+     * @since 5.5
+     */
+    public default InputStream getStream( long offset,
+                                          long length ) throws RepositoryException {
+        try {
+            return BoundedInputStream.skipAndBound(getStream(), offset, length);
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Returns the path of the local file that holds exactly the content of this value, if the content is stored in such a
+     * file. Callers that are able to transfer the content of a file without copying it through their own buffers (for example,
+     * with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} or a servlet
+     * container's "sendfile" support) can use this file rather than the {@link #getStream() stream}.
+     * <p>
+     * The file belongs to the repository, so it must only ever be read, and it may be removed once the value is no longer used.
+     * </p>
+     *
+     * <p>
+     * By default, this method returns null.
+     * </p>
+     *
+     * @return the path of the file, or null if the content is not stored in a local file
+     * @throws RepositoryException if an error occurs.
+     * @since 5.5
+     */
+    public default Path getLocalPath() throws RepositoryException {
+        return null;
+    }
+
 }
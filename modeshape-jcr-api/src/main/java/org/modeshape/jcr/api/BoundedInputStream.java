@@ -0,0 +1,150 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} implementation that wraps another input stream and reads at most a fixed number of bytes from it, used
+ * to read a range of the content of a {@link Binary#getStream(long, long) binary value}. Closing this stream closes the wrapped
+ * stream.
+ *
+ * @since 5.5
+ */
+public class BoundedInputStream extends InputStream {
+    private final InputStream stream;
+    private long remaining;
+    private long markedRemaining;
+
+    /**
+     * Create a stream that reads at most the supplied number of bytes from another stream.
+     *
+     * @param stream the stream that is to be read; may not be null
+     * @param length the maximum number of bytes to read; may not be negative
+     */
+    public BoundedInputStream( InputStream stream,
+                               long length ) {
+        if (stream == null) throw new IllegalArgumentException("The stream may not be null");
+        if (length < 0L) throw new IllegalArgumentException("The length may not be negative: " + length);
+        this.stream = stream;
+        this.remaining = length;
+        this.markedRemaining = length;
+    }
+
+    /**
+     * Create a stream that skips the supplied number of bytes of another stream, and then reads at most the supplied number of
+     * bytes from it. This is a convenience for streams that cannot be positioned any other way. The supplied stream is closed
+     * if the bytes cannot be skipped.
+     *
+     * @param stream the stream that is to be read; may not be null
+     * @param offset the number of bytes to skip; may not be negative
+     * @param length the maximum number of bytes to read; may not be negative
+     * @return the bounded stream, which is empty if the stream has no more than <code>offset</code> bytes; never null
+     * @throws IOException if there is a problem skipping the bytes
+     */
+    public static BoundedInputStream skipAndBound( InputStream stream,
+                                                   long offset,
+                                                   long length ) throws IOException {
+        if (offset < 0L) throw new IllegalArgumentException("The offset may not be negative: " + offset);
+        if (length < 0L) throw new IllegalArgumentException("The length may not be negative: " + length);
+        try {
+            long skip = offset;
+            while (skip > 0L) {
+                long skipped = stream.skip(skip);
+                if (skipped <= 0L) {
+                    // Some streams only skip buffered bytes, so read a byte to find out whether the stream has ended ...
+                    if (stream.read() == -1) return new BoundedInputStream(stream, 0L);
+                    skipped = 1L;
+                }
+                skip -= skipped;
+            }
+            return new BoundedInputStream(stream, length);
+        } catch (IOException | RuntimeException e) {
+            try {
+                stream.close();
+            } catch (IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0L) {
+            return -1;
+        }
+        int result = stream.read();
+        if (result != -1) {
+            --remaining;
+        }
+        return result;
+    }
+
+    @Override
+    public int read( byte[] b,
+                     int off,
+                     int len ) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0L) {
+            return -1;
+        }
+        int n = stream.read(b, off, (int)Math.min(len, remaining));
+        if (n > 0) {
+            remaining -= n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip( long n ) throws IOException {
+        long skipped = stream.skip(Math.min(n, remaining));
+        if (skipped > 0L) {
+            remaining -= skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int)Math.min(stream.available(), remaining);
+    }
+
+    @Override
+    public synchronized void mark( int readlimit ) {
+        stream.mark(readlimit);
+        markedRemaining = remaining;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        stream.reset();
+        remaining = markedRemaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return stream.markSupported();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -19,6 +19,7 @@ package org.modeshape.jcr.api.index;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.RepositoryException;
 import javax.jcr.Workspace;
 import javax.jcr.nodetype.NodeTypeManager;
@@ -141,6 +142,25 @@ public interface IndexManager {
      * never {@code null}
      */
     List<String> getIndexNames(String providerName, String workspaceName, IndexStatus status);
+
+    /**
+     * Block until the asynchronous indexes in a workspace have been updated with all of the changes that were saved in that
+     * workspace before this method is called. A session that needs its own changes to be visible to queries that use
+     * asynchronous indexes can call this method right after saving, instead of making those indexes synchronous and paying
+     * the cost of updating them during each save.
+     * <p>
+     * Only the changes that are queued for the asynchronous indexes (when the repository is configured to apply them in
+     * batches) are waited for; otherwise this method returns immediately. Synchronous indexes are always updated before the
+     * save completes.
+     * </p>
+     *
+     * @param workspaceName the name of the workspace in which the changes were saved; may not be null
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout; may not be null
+     * @return {@code true} if the indexes have been updated, or {@code false} if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean waitForIndexes( String workspaceName, long timeout, TimeUnit unit ) throws InterruptedException;
     
     /**
      * Enum with a list of possible statuses for managed indexes.
@@ -44,7 +44,26 @@ public enum DurationMetric {
      * instances are strings containing the sequencer name and the input and output paths.
      */
     SEQUENCER_EXECUTION_TIME("sequencer-execution-time", "Sequencing duration",
-                             "The metric measuring how long sequencers take to run and save the changes.");
+                             "The metric measuring how long sequencers take to run and save the changes."),
+    /**
+     * The metric that captures how long sequencing work waits in the queue before a sequencer runs. Note that the payload of the
+     * {@link DurationActivity} instances are strings containing the sequencer name and the input path.
+     */
+    SEQUENCER_QUEUE_TIME("sequencer-queue-time", "Sequencing queue time",
+                         "The metric measuring how long sequencing work waits in the queue before the sequencer runs."),
+    /**
+     * The metric that captures the duration of the removals of unused binary values from the binary store. Note that the payload
+     * of the {@link DurationActivity} instances are the repository names.
+     */
+    BINARY_GARBAGE_COLLECTION_TIME("binary-garbage-collection-time", "Binary garbage collection duration",
+                                   "The metric measuring how long it takes to remove the unused binary values from the binary store."),
+    /**
+     * The metric that captures the time between asking for the text of a binary value and having the text extracted and stored,
+     * including the time spent waiting in the queue. Note that the payload of the {@link DurationActivity} instances are the
+     * binary keys.
+     */
+    TEXT_EXTRACTION_LATENCY("text-extraction-latency", "Text extraction latency",
+                            "The metric measuring how long it takes to extract and store the text of binary values, including the time spent waiting in the queue.");
 
     private static final Map<String, DurationMetric> BY_LITERAL;
     private static final Map<String, DurationMetric> BY_NAME;
@@ -104,7 +104,31 @@ public enum ValueMetric {
     /**
      * The metric that records the number of nodes that were sequenced.
      */
-    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window.");
+    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window."),
+    /**
+     * The metric that records the number of changes that were not queued for sequencing because the same property was already
+     * waiting to be sequenced.
+     */
+    SEQUENCER_COALESCED_COUNT("sequencer-coalesced-count", false, "Coalesced sequencing work",
+                              "The number of changes during the window that were combined with sequencing work already waiting in the queue."),
+    /**
+     * The metric that records the number of saved change sets that have yet to be applied to the asynchronous indexes.
+     */
+    INDEX_UPDATE_QUEUE_SIZE(
+                            "index-update-queue-size",
+                            true,
+                            "Index update queue size",
+                            "The number of saved change sets at the end of the window that have yet to be applied to the asynchronous indexes."),
+    /**
+     * The metric that records the number of bytes of unused binary values that were removed from the binary store.
+     */
+    BINARY_BYTES_RECLAIMED("binary-bytes-reclaimed", false, "Reclaimed binary bytes",
+                           "The number of bytes of unused binary values that were removed from the binary store during the window."),
+    /**
+     * The metric that records the number of binary values that are waiting for their text to be extracted.
+     */
+    TEXT_EXTRACTION_QUEUE_SIZE("text-extraction-queue-size", true, "Text extraction queue size",
+                               "The number of binary values at the end of the window that are waiting for their text to be extracted.");
 
     private static final Map<String, ValueMetric> BY_LITERAL;
     private static final Map<String, ValueMetric> BY_NAME;
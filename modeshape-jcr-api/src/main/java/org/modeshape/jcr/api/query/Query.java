@@ -46,6 +46,22 @@ public interface Query extends javax.jcr.query.Query {
      */
     public boolean cancel();
 
+    /**
+     * Specify that the next {@link #execute() execution} of this query should return only the rows that follow the last row of a
+     * previous result, as identified by the {@link org.modeshape.jcr.api.query.QueryResult#getContinuationToken() continuation
+     * token} of that result. This is an efficient alternative to {@link #setOffset(long) offsets} for paging through the results
+     * of a query with an <code>ORDER BY</code> clause, since the rows before the token need not be sorted and skipped: the cost of
+     * obtaining a page of results does not depend on how deep the page is.
+     * <p>
+     * The token must have been obtained from the results of this same query statement. Use the same
+     * {@link #setLimit(long) limit} for each page, and do not specify an offset.
+     * </p>
+     * 
+     * @param token the continuation token, or null if the results should start with the first row
+     * @see org.modeshape.jcr.api.query.QueryResult#getContinuationToken()
+     */
+    public void setContinuationToken( String token );
+
     /**
      * Get the underlying and immutable Abstract Query Model representation of this query.
      * 
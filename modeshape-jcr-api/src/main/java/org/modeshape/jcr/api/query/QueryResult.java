@@ -70,6 +70,17 @@ public interface QueryResult extends javax.jcr.query.QueryResult, AutoCloseable
      */
     public Collection<String> getWarnings();
 
+    /**
+     * Get the opaque token that identifies the position just after the last row in these results, which can be
+     * {@link Query#setContinuationToken(String) supplied} to the next execution of the same query to obtain the following page
+     * of results. The token is made from the values of the <code>ORDER BY</code> operands and the node keys of the last row, and
+     * is only available once all of the rows in these results have been iterated.
+     * 
+     * @return the continuation token, or null if the query has no <code>ORDER BY</code> clause and row limit, or if not all of
+     *         the rows have yet been iterated
+     */
+    public String getContinuationToken();
+
     /**
      * Close and release all resources associated with these results. This method is optional but recommended, since it allows
      * client applications full control over when such resources can be reclaimed. If this method is not called, then the results'
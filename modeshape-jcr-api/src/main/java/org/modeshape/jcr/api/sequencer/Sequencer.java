@@ -82,6 +82,18 @@ public abstract class Sequencer {
 
     private Set<String> acceptedMimeTypesSet = null;
 
+    /**
+     * The priority of the work of this sequencer, set via reflection. Queued work of sequencers with a higher priority is run
+     * first.
+     */
+    private int priority = 0;
+
+    /**
+     * The maximum number of queued work items of this sequencer that are run at the same time, set via reflection. Zero means
+     * the number is only limited by the size of the sequencing thread pool.
+     */
+    private int maxConcurrentExecutions = 0;
+
     private boolean initialized = false;
 
     /**
@@ -111,6 +123,27 @@ public abstract class Sequencer {
         return repositoryName;
     }
 
+    /**
+     * Get the priority of the work of this sequencer, relative to the other sequencers of the repository. Queued work of
+     * sequencers with a higher priority is run first.
+     * 
+     * @return the priority; 0 by default
+     * @since 5.5
+     */
+    public final int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Get the maximum number of queued work items of this sequencer that are run at the same time.
+     * 
+     * @return the maximum number of concurrent executions, or 0 if only the size of the sequencing thread pool limits it
+     * @since 5.5
+     */
+    public final int getMaxConcurrentExecutions() {
+        return maxConcurrentExecutions;
+    }
+
     /**
      * Obtain the path expressions as configured on the sequencer. This method always returns a copy to prevent modification of
      * the values.
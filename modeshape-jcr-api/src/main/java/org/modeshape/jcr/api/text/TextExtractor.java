@@ -17,6 +17,8 @@ package org.modeshape.jcr.api.text;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashSet;
 import java.util.Set;
 import javax.jcr.RepositoryException;
@@ -173,5 +175,31 @@ public abstract class TextExtractor {
          * @param text the text extracted from the content.
          */
         void recordText( String text );
+
+        /**
+         * Get a writer to which the text can be written in chunks, as it is being extracted. Everything written to the writer
+         * until it is closed is recorded as a single text, so the extractor must always close the writer. Outputs that can
+         * consume the text incrementally override this method, so that extractors using it never have to hold the whole text
+         * of large documents in memory; by default, the text is collected and {@link #recordText(String) recorded} when the
+         * writer is closed.
+         *
+         * @return a new writer; never null
+         * @since 5.5
+         */
+        default Writer writer() {
+            return new StringWriter() {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        if (getBuffer().length() > 0) {
+                            recordText(toString());
+                        }
+                    }
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class BoundedInputStreamTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes();
+
+    @Test
+    public void shouldReadAtMostTheSuppliedNumberOfBytes() throws Exception {
+        assertArrayEquals(Arrays.copyOf(CONTENT, 5), readAll(new BoundedInputStream(new ByteArrayInputStream(CONTENT), 5L)));
+        assertArrayEquals(CONTENT, readAll(new BoundedInputStream(new ByteArrayInputStream(CONTENT), 100L)));
+    }
+
+    @Test
+    public void shouldSkipToTheOffsetBeforeReading() throws Exception {
+        InputStream stream = BoundedInputStream.skipAndBound(new ByteArrayInputStream(CONTENT), 3L, 4L);
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 3, 7), readAll(stream));
+    }
+
+    @Test
+    public void shouldBeEmptyWhenTheOffsetIsBeyondTheEndOfTheStream() throws Exception {
+        InputStream stream = BoundedInputStream.skipAndBound(new NonSkippingStream(CONTENT), 25L, 4L);
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void shouldResetToTheMarkedPosition() throws Exception {
+        InputStream stream = BoundedInputStream.skipAndBound(new ByteArrayInputStream(CONTENT), 2L, 6L);
+        assertEquals('2', stream.read());
+        stream.mark(10);
+        assertEquals('3', stream.read());
+        assertEquals('4', stream.read());
+        stream.reset();
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 3, 8), readAll(stream));
+    }
+
+    @Test
+    public void shouldCloseTheStreamWhenSkippingFails() throws Exception {
+        FailingStream stream = new FailingStream(false);
+        try {
+            BoundedInputStream.skipAndBound(stream, 10L, 5L);
+            fail("Expected the failure to skip to be thrown");
+        } catch (IOException e) {
+            assertSame(stream.failure, e);
+            assertTrue(stream.closed);
+            assertEquals(0, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheSkippingFailureWhenClosingAlsoFails() throws Exception {
+        FailingStream stream = new FailingStream(true);
+        try {
+            BoundedInputStream.skipAndBound(stream, 10L, 5L);
+            fail("Expected the failure to skip to be thrown");
+        } catch (IOException e) {
+            assertSame(stream.failure, e);
+            assertEquals(1, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void shouldNotCloseTheStreamWhenSkippingSucceeds() throws Exception {
+        FailingStream stream = new FailingStream(false);
+        BoundedInputStream.skipAndBound(stream, 0L, 5L);
+        assertFalse(stream.closed);
+    }
+
+    private static byte[] readAll( InputStream stream ) throws IOException {
+        try (InputStream input = stream) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[3];
+            int read = 0;
+            while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * A stream that never skips bytes, like streams which only skip what they have buffered.
+     */
+    private static final class NonSkippingStream extends ByteArrayInputStream {
+        protected NonSkippingStream( byte[] content ) {
+            super(content);
+        }
+
+        @Override
+        public synchronized long skip( long n ) {
+            return 0L;
+        }
+    }
+
+    /**
+     * A stream that fails to skip bytes, and which records whether it was closed.
+     */
+    private static final class FailingStream extends InputStream {
+        protected final IOException failure = new IOException("Unable to skip");
+        private final boolean failToClose;
+        protected boolean closed;
+
+        protected FailingStream( boolean failToClose ) {
+            this.failToClose = failToClose;
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+            throw failure;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (failToClose) {
+                throw new IOException("Unable to close");
+            }
+        }
+    }
+}
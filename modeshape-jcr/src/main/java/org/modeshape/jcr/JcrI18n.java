@@ -229,6 +229,7 @@ public final class JcrI18n {
     public static I18n equiJoinWithOneJcrPathPseudoColumnIsInvalid;
     public static I18n equiJoinWithOneNodeIdPseudoColumnIsInvalid;
     public static I18n noSuchVariableInQuery;
+    public static I18n invalidContinuationToken;
     public static I18n setQueryContainsResultSetsWithDifferentColumns;
     public static I18n setQueryContainsResultSetsWithDifferentFullTextSearch;
     public static I18n setQueryContainsResultSetsWithDifferentNumberOfColumns;
@@ -395,6 +396,8 @@ public final class JcrI18n {
 
     // Lucene query engine ...
     public static I18n errorExtractingTextFromBinary;
+    public static I18n unableToReadPendingTextExtractions;
+    public static I18n unableToRecordPendingTextExtractions;
     public static I18n missingVariableValue;
 
     public static I18n unableToInitializeMimeTypeDetector;
@@ -416,6 +419,8 @@ public final class JcrI18n {
     public static I18n projectedPathPointsTowardsInternalNode;
 
     public static I18n reindexAll;
+    public static I18n reindexingProgress;
+    public static I18n reindexingCompleted;
 
     public static I18n errorCreatingDatabaseTable;
     public static I18n warnExtractedTextTooLarge;
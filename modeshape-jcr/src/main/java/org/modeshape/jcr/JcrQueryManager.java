@@ -316,17 +316,37 @@ class JcrQueryManager implements QueryManager {
             return session.node(node, (AbstractJcrNode.Type)null);
         }
 
+        @Override
+        public boolean hasTransientChanges() {
+            return session.cache().hasChanges();
+        }
+
         @Override
         public boolean canRead( CachedNode node ) {
             if (node == null) {
                 return false;
             }
-            Path path = getPath(node);
             try {
-                session.checkPermission(path, ModeShapePermissions.READ);
+                // The path is computed only if the security context needs it, so nodes returned by covering indexes
+                // don't always have to be loaded ...
+                session.checkPermission(node, session.cache(), ModeShapePermissions.READ);
+                return true;
+            } catch (AccessDeniedException ade) {
+                LOGGER.debug("READ access denied on '{0}'", getPath(node));
+                return false;
+            }
+        }
+
+        @Override
+        public boolean canReadAllNodes() {
+            if (session.checkPermissionsWhenIteratingChildren()) {
+                // ACLs or a custom authorization provider may deny access to some of the nodes ...
+                return false;
+            }
+            try {
+                session.checkWorkspacePermission(session.workspaceName(), ModeShapePermissions.READ);
                 return true;
             } catch (AccessDeniedException ade) {
-                LOGGER.debug("READ access denied on '{0}'", path);
                 return false;
             }
         }
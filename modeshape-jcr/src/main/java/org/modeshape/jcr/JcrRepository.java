@@ -85,6 +85,7 @@ import org.modeshape.jcr.api.Repository;
 import org.modeshape.jcr.api.RepositoryManager;
 import org.modeshape.jcr.api.RestoreOptions;
 import org.modeshape.jcr.api.Workspace;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.query.Query;
 import org.modeshape.jcr.api.txn.TransactionManagerLookup;
@@ -1172,7 +1173,8 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 }
 
                 if (other != null && !change.extractorsChanged) {
-                    this.extractors = new TextExtractors(this, other.config.getTextExtraction());
+                    // reuse the extractors, so that their queue (and any record of it) is not owned by two instances ...
+                    this.extractors = other.extractors;
                 } else {
                     this.extractors = new TextExtractors(this, config.getTextExtraction());
                 }
@@ -1819,13 +1821,20 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             if (logger.isDebugEnabled()) {
                 logger.debug("Starting binary value cleanup in the '{0}' repository", repositoryName());
             }
+            long start = System.nanoTime();
             try {
-                this.binaryStore.removeValuesUnusedLongerThan(RepositoryConfiguration.UNUSED_BINARY_VALUE_AGE_IN_MILLIS,
-                                                              TimeUnit.MILLISECONDS);
+                long reclaimed = this.binaryStore.reclaimValuesUnusedLongerThan(
+                        RepositoryConfiguration.UNUSED_BINARY_VALUE_AGE_IN_MILLIS, TimeUnit.MILLISECONDS);
+                if (reclaimed > 0L) {
+                    statistics.increment(ValueMetric.BINARY_BYTES_RECLAIMED, reclaimed);
+                }
             } catch (Throwable e) {
                 logger.error(e, JcrI18n.errorDuringGarbageCollection, e.getMessage());
             }
 
+            long durationInNanos = Math.abs(System.nanoTime() - start);
+            statistics.recordDuration(DurationMetric.BINARY_GARBAGE_COLLECTION_TIME, durationInNanos, TimeUnit.NANOSECONDS,
+                                      Collections.singletonMap("repositoryName", repositoryName()));
             if (logger.isDebugEnabled()) {
                 logger.debug("Finishing binary value cleanup in the '{0}' repository", repositoryName());
             }
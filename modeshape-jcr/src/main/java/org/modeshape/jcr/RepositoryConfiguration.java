@@ -62,7 +62,9 @@ import org.modeshape.jcr.txn.DefaultTransactionManagerLookup;
 import org.modeshape.jcr.value.PropertyType;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStoreException;
+import org.modeshape.jcr.value.binary.CachingBinaryStore;
 import org.modeshape.jcr.value.binary.CassandraBinaryStore;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
 import org.modeshape.jcr.value.binary.DatabaseBinaryStore;
 import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
@@ -288,6 +290,38 @@ public class RepositoryConfiguration {
          */
         public static final String MINIMUM_STRING_SIZE = "minimumStringSize";
 
+        /**
+         * The average size of the chunks into which a chunked binary store splits the content of binary values. Smaller chunks
+         * find more of the content that values have in common, but need larger manifests and more files. The value must be a
+         * power of two, and the default value is '65536' bytes, or 64 kilobytes.
+         */
+        public static final String AVERAGE_CHUNK_SIZE_IN_BYTES = "averageChunkSizeInBytes";
+
+        /**
+         * The optional document of a binary store that keeps recently read binary values in a directory on the local file
+         * system, so that they are not read again from a remote or slow store. The document has a {@link #DIRECTORY} field and an
+         * optional {@link #MAXIMUM_SIZE_IN_BYTES} field.
+         */
+        public static final String LOCAL_CACHE = "localCache";
+
+        /**
+         * The maximum total size of the binary values that a {@link #LOCAL_CACHE local cache} keeps. The default value is
+         * '1073741824' bytes, or 1 gigabyte.
+         */
+        public static final String MAXIMUM_SIZE_IN_BYTES = "maximumSizeInBytes";
+
+        /**
+         * The number of threads that a file system binary store uses to remove unused binary values from different shards of its
+         * trash directory at the same time. The default value is '2'.
+         */
+        public static final String GARBAGE_COLLECTION_THREADS = "garbageCollectionThreads";
+
+        /**
+         * The maximum number of trash files per second that a file system binary store examines while removing unused binary
+         * values, which limits the disk throughput that the removal uses. The default value of '0' does not limit the rate.
+         */
+        public static final String GARBAGE_COLLECTION_FILES_PER_SECOND = "garbageCollectionFilesPerSecond";
+
         /**
          * The name attribute which can be set on a binary store. It's only used when a {@link CompositeBinaryStore} is
          * configured.
@@ -431,6 +465,15 @@ public class RepositoryConfiguration {
         public static final String REINDEXING = "reindexing";
         public static final String REINDEXING_ASYNC = "async";
         public static final String REINDEXING_MODE = "mode";
+        public static final String REINDEXING_PARALLELISM = "parallelism";
+        public static final String REINDEXING_BATCH_SIZE = "batchSize";
+        public static final String QUERY_CACHING = "queryCaching";
+        public static final String QUERY_CACHING_ENABLED = "enabled";
+        public static final String QUERY_CACHING_MAX_ENTRIES = "maxEntries";
+        public static final String QUERY_CACHING_MAX_ROWS_PER_ENTRY = "maxRowsPerEntry";
+        public static final String ASYNC_INDEXING = "asyncIndexing";
+        public static final String ASYNC_INDEXING_ENABLED = "enabled";
+        public static final String ASYNC_INDEXING_BATCH_SIZE = "batchSize";
         public static final String ADDRESS = "address";
         public static final String DATABASE = "database";
         public static final String HOST = "host";
@@ -458,6 +501,24 @@ public class RepositoryConfiguration {
          * The name of the field which allows the configuration of the maximum number of threads that can be spawned by a pool
          */
         public static final String MAX_POOL_SIZE = "maxPoolSize";
+
+        /**
+         * The name of the field (under "sequencing" and "textExtraction") specifying the maximum number of sequencing work items
+         * or binary values that can wait in the queue.
+         */
+        public static final String QUEUE_SIZE = "queueSize";
+
+        /**
+         * The name of the field (under "sequencing") specifying the maximum number of sequencing work items whose output is saved
+         * together.
+         */
+        public static final String SEQUENCING_BATCH_SIZE = "batchSize";
+
+        /**
+         * The name of the field (under "textExtraction") specifying the directory in which the pending text extractions are
+         * recorded.
+         */
+        public static final String QUEUE_DIRECTORY = "queueDirectory";
         
         /**
          * The name of the journaling schema field.
@@ -497,6 +558,28 @@ public class RepositoryConfiguration {
          */
         public static final long MINIMUM_BINARY_SIZE_IN_BYTES = 4 * 1024L;
 
+        /**
+         * The default value of the {@link FieldName#AVERAGE_CHUNK_SIZE_IN_BYTES} field is '{@value} ' (64 kilobytes).
+         */
+        public static final int AVERAGE_CHUNK_SIZE_IN_BYTES = ChunkedFileSystemBinaryStore.DEFAULT_AVERAGE_CHUNK_SIZE_IN_BYTES;
+
+        /**
+         * The default value of the {@link FieldName#MAXIMUM_SIZE_IN_BYTES} field of a binary store's local cache is '{@value} '
+         * (1 gigabyte).
+         */
+        public static final long LOCAL_CACHE_MAXIMUM_SIZE_IN_BYTES = CachingBinaryStore.DEFAULT_MAXIMUM_CACHE_SIZE_IN_BYTES;
+
+        /**
+         * The default value of the {@link FieldName#GARBAGE_COLLECTION_THREADS} field is '{@value} '.
+         */
+        public static final int GARBAGE_COLLECTION_THREADS = FileSystemBinaryStore.DEFAULT_GARBAGE_COLLECTION_THREADS;
+
+        /**
+         * The default value of the {@link FieldName#GARBAGE_COLLECTION_FILES_PER_SECOND} field is '{@value} ', which does not limit
+         * the rate.
+         */
+        public static final int GARBAGE_COLLECTION_FILES_PER_SECOND = 0;
+
         /**
          * The default value of the {@link FieldName#ALLOW_CREATION} field is '{@value} '.
          */
@@ -567,12 +650,24 @@ public class RepositoryConfiguration {
         public static final String WORKSPACES = "*";
 
         public static final int SEQUENCING_MAX_POOL_SIZE = 10;
+        public static final int SEQUENCING_QUEUE_SIZE = 10000;
+        public static final int SEQUENCING_BATCH_SIZE = 1;
         public static final int TEXT_EXTRACTION_MAX_POOL_SIZE = 5;
+        public static final int TEXT_EXTRACTION_QUEUE_SIZE = 10000;
+
+        public static final int REINDEXING_PARALLELISM = Runtime.getRuntime().availableProcessors();
+        public static final int REINDEXING_BATCH_SIZE = 500;
+
+        public static final int QUERY_CACHING_MAX_ENTRIES = 1000;
+        public static final int QUERY_CACHING_MAX_ROWS_PER_ENTRY = 1000;
+
+        public static final int ASYNC_INDEXING_BATCH_SIZE = 100;
     }
 
     public static final class FieldValue {
         public static final String BINARY_STORAGE_TYPE_TRANSIENT = "transient";
         public static final String BINARY_STORAGE_TYPE_FILE = "file";
+        public static final String BINARY_STORAGE_TYPE_CHUNKED = "chunked";
         public static final String BINARY_STORAGE_TYPE_DATABASE = "database";
         public static final String BINARY_STORAGE_TYPE_COMPOSITE = "composite";
         public static final String BINARY_STORAGE_TYPE_CASSANDRA = "cassandra";
@@ -989,6 +1084,24 @@ public class RepositoryConfiguration {
         return new Reindexing(doc.getDocument(FieldName.REINDEXING));
     }
 
+    /**
+     * Returns the configuration of the cache of query results.
+     *
+     * @return a {@link org.modeshape.jcr.RepositoryConfiguration.QueryCaching} instance, never {@code null}.
+     */
+    public QueryCaching getQueryCaching() {
+        return new QueryCaching(doc.getDocument(FieldName.QUERY_CACHING));
+    }
+
+    /**
+     * Returns the configuration of how the asynchronous indexes are updated.
+     *
+     * @return a {@link org.modeshape.jcr.RepositoryConfiguration.AsyncIndexing} instance, never {@code null}.
+     */
+    public AsyncIndexing getAsyncIndexing() {
+        return new AsyncIndexing(doc.getDocument(FieldName.ASYNC_INDEXING));
+    }
+
     /**
      * Returns a list with the cnd files which should be loaded at startup.
      *
@@ -1130,6 +1243,7 @@ public class RepositoryConfiguration {
             excludeList.add(FieldName.TYPE);
             excludeList.add(FieldName.CLASSNAME);
             excludeList.add(FieldName.CLASSLOADER);
+            excludeList.add(FieldName.LOCAL_CACHE);
         }
 
         public long getMinimumBinarySizeInBytes() {
@@ -1152,7 +1266,18 @@ public class RepositoryConfiguration {
                 assert directory != null;
                 File dir = new File(directory);
                 File trashDir = trash != null ? new File(trash) : null;
-                store = FileSystemBinaryStore.create(dir, trashDir);
+                FileSystemBinaryStore fileStore = FileSystemBinaryStore.create(dir, trashDir);
+                fileStore.setGarbageCollectionThreads(binaryStorage.getInteger(FieldName.GARBAGE_COLLECTION_THREADS,
+                                                                               Default.GARBAGE_COLLECTION_THREADS));
+                fileStore.setGarbageCollectionFilesPerSecond(binaryStorage.getInteger(FieldName.GARBAGE_COLLECTION_FILES_PER_SECOND,
+                                                                                      Default.GARBAGE_COLLECTION_FILES_PER_SECOND));
+                store = fileStore;
+            } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_CHUNKED)) {
+                String directory = binaryStorage.getString(FieldName.DIRECTORY);
+                assert directory != null;
+                int averageChunkSize = binaryStorage.getInteger(FieldName.AVERAGE_CHUNK_SIZE_IN_BYTES,
+                                                                Default.AVERAGE_CHUNK_SIZE_IN_BYTES);
+                store = ChunkedFileSystemBinaryStore.create(new File(directory), averageChunkSize);
             } else if (type.equalsIgnoreCase(FieldValue.BINARY_STORAGE_TYPE_DATABASE)) {
                 String driverClass = binaryStorage.getString(FieldName.JDBC_DRIVER_CLASS);
                 String connectionURL = binaryStorage.getString(FieldName.CONNECTION_URL);
@@ -1215,7 +1340,18 @@ public class RepositoryConfiguration {
                 store = new S3BinaryStore(username, password, bucketName, endPoint, deleteUnusedNatively);
             }
 
-            if (store == null) store = TransientBinaryStore.get();
+            if (store == null) {
+                store = TransientBinaryStore.get();
+            } else {
+                Document localCache = binaryStorage.getDocument(FieldName.LOCAL_CACHE);
+                if (localCache != null) {
+                    String directory = localCache.getString(FieldName.DIRECTORY);
+                    assert directory != null;
+                    long maximumSize = localCache.getLong(FieldName.MAXIMUM_SIZE_IN_BYTES,
+                                                          Default.LOCAL_CACHE_MAXIMUM_SIZE_IN_BYTES);
+                    store = new CachingBinaryStore(store, new File(directory), maximumSize);
+                }
+            }
             store.setMinimumBinarySizeInBytes(getMinimumBinarySizeInBytes());
             return store;
         }
@@ -1807,6 +1943,99 @@ public class RepositoryConfiguration {
             String reindexingMode = reindexing == null ? defaultMode : reindexing.getString(FieldName.REINDEXING_MODE, defaultMode);
             return ReindexingMode.valueOf(reindexingMode.toUpperCase());
         }
+
+        /**
+         * Get the number of threads that concurrently read the nodes and prepare them for the indexes during reindexing.
+         * 
+         * @return the parallelism; always positive, and the number of available processors by default
+         */
+        public int getParallelism() {
+            if (reindexing == null) return Default.REINDEXING_PARALLELISM;
+            return Math.max(1, reindexing.getInteger(FieldName.REINDEXING_PARALLELISM, Default.REINDEXING_PARALLELISM));
+        }
+
+        /**
+         * Get the number of nodes that are loaded from the store with a single request and then written to the indexes during
+         * reindexing.
+         * 
+         * @return the batch size; always positive
+         */
+        public int getBatchSize() {
+            if (reindexing == null) return Default.REINDEXING_BATCH_SIZE;
+            return Math.max(1, reindexing.getInteger(FieldName.REINDEXING_BATCH_SIZE, Default.REINDEXING_BATCH_SIZE));
+        }
+    }
+
+    /**
+     * The configuration of the cache of query results, which is disabled unless explicitly configured.
+     */
+    @Immutable
+    public class QueryCaching {
+        private final Document queryCaching;
+
+        protected QueryCaching( Document queryCaching ) {
+            this.queryCaching = queryCaching != null ? queryCaching : EMPTY;
+        }
+
+        /**
+         * Get whether the results of queries should be cached.
+         *
+         * @return {@code true} if a query caching configuration was provided and is enabled, {@code false} otherwise
+         */
+        public boolean isEnabled() {
+            return queryCaching != EMPTY && queryCaching.getBoolean(FieldName.QUERY_CACHING_ENABLED, true);
+        }
+
+        /**
+         * Get the maximum number of query results that are cached at any one time.
+         *
+         * @return the maximum number of cached results
+         */
+        public int getMaxEntries() {
+            return queryCaching.getInteger(FieldName.QUERY_CACHING_MAX_ENTRIES, Default.QUERY_CACHING_MAX_ENTRIES);
+        }
+
+        /**
+         * Get the maximum number of rows in the results of a query that can be cached. The results of queries with more rows
+         * are never cached.
+         *
+         * @return the maximum number of rows in a cached result
+         */
+        public int getMaxRowsPerEntry() {
+            return queryCaching.getInteger(FieldName.QUERY_CACHING_MAX_ROWS_PER_ENTRY, Default.QUERY_CACHING_MAX_ROWS_PER_ENTRY);
+        }
+    }
+
+    /**
+     * The configuration of the background indexer that queues the changes for the asynchronous indexes of each workspace and
+     * applies them in batches, which is disabled unless explicitly configured. When disabled, each asynchronous index is
+     * updated separately with each saved change set.
+     */
+    @Immutable
+    public class AsyncIndexing {
+        private final Document asyncIndexing;
+
+        protected AsyncIndexing( Document asyncIndexing ) {
+            this.asyncIndexing = asyncIndexing != null ? asyncIndexing : EMPTY;
+        }
+
+        /**
+         * Get whether the changes for the asynchronous indexes should be queued and applied in batches.
+         *
+         * @return {@code true} if an asynchronous indexing configuration was provided and is enabled, {@code false} otherwise
+         */
+        public boolean isEnabled() {
+            return asyncIndexing != EMPTY && asyncIndexing.getBoolean(FieldName.ASYNC_INDEXING_ENABLED, true);
+        }
+
+        /**
+         * Get the maximum number of saved change sets that are combined and applied to the indexes with a single commit.
+         *
+         * @return the batch size; always positive
+         */
+        public int getBatchSize() {
+            return Math.max(1, asyncIndexing.getInteger(FieldName.ASYNC_INDEXING_BATCH_SIZE, Default.ASYNC_INDEXING_BATCH_SIZE));
+        }
     }
 
     /**
@@ -1844,6 +2073,25 @@ public class RepositoryConfiguration {
             return textExtracting.getInteger(FieldName.MAX_POOL_SIZE, Default.TEXT_EXTRACTION_MAX_POOL_SIZE);
         }
 
+        /**
+         * Get the maximum number of binary values that can wait for their text to be extracted. When the queue is full, the text
+         * is extracted in the thread that asks for it.
+         *
+         * @return the maximum size of the queue; always positive
+         */
+        public int getQueueSize() {
+            return Math.max(1, textExtracting.getInteger(FieldName.QUEUE_SIZE, Default.TEXT_EXTRACTION_QUEUE_SIZE));
+        }
+
+        /**
+         * Get the directory in which the binary values that are waiting for their text to be extracted are recorded, so that
+         * the extraction resumes after the repository is restarted.
+         *
+         * @return the directory, or null if the pending text extractions should only be kept in memory
+         */
+        public String getQueueDirectory() {
+            return textExtracting.getString(FieldName.QUEUE_DIRECTORY);
+        }
 
         /**
          * Get the ordered list of text extractors. All text extractors are configured with this list.
@@ -2042,6 +2290,25 @@ public class RepositoryConfiguration {
             return sequencing.getInteger(FieldName.MAX_POOL_SIZE, Default.SEQUENCING_MAX_POOL_SIZE);
         }
 
+        /**
+         * Get the maximum number of sequencing work items that can wait in the queue. Changes to a property that is already
+         * waiting to be sequenced do not take up more room in the queue.
+         *
+         * @return the maximum size of the queue; always positive
+         */
+        public int getQueueSize() {
+            return Math.max(1, sequencing.getInteger(FieldName.QUEUE_SIZE, Default.SEQUENCING_QUEUE_SIZE));
+        }
+
+        /**
+         * Get the maximum number of queued work items of the same sequencer whose output is saved with a single save.
+         *
+         * @return the batch size; always positive
+         */
+        public int getBatchSize() {
+            return Math.max(1, sequencing.getInteger(FieldName.SEQUENCING_BATCH_SIZE, Default.SEQUENCING_BATCH_SIZE));
+        }
+
         /**
          * Get the ordered list of sequencers. All sequencers are configured with this list.
          *
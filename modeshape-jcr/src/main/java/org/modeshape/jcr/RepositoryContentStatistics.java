@@ -0,0 +1,160 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.change.AbstractNodeChange;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.NodeAdded;
+import org.modeshape.jcr.cache.change.NodeRemoved;
+import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.query.ContentStatistics;
+import org.modeshape.jcr.value.Name;
+
+/**
+ * The {@link ContentStatistics} for a repository, which counts the nodes in each workspace by primary type and mixin type.
+ * <p>
+ * The counts for a workspace are only known after all of the workspace's content has been {@link #startScan(String) scanned}
+ * (which the {@link RepositoryQueryManager} does when it reindexes the whole workspace), and are thereafter kept up-to-date by
+ * {@link #notify(ChangeSet) applying} the nodes added and removed in each change set. Change sets that arrive while the scan is
+ * still running are ignored, since the scan reads the content they change and would otherwise count those nodes twice. The
+ * counts for the system workspace are included in the counts for all other workspaces, since the system content is visible in
+ * every workspace.
+ * </p>
+ */
+@ThreadSafe
+final class RepositoryContentStatistics implements ContentStatistics {
+
+    private final ConcurrentMap<String, Counts> countsByWorkspaceName = new ConcurrentHashMap<>();
+    private final String systemWorkspaceName;
+
+    RepositoryContentStatistics( String systemWorkspaceName ) {
+        this.systemWorkspaceName = systemWorkspaceName;
+    }
+
+    @Override
+    public long getNodeCount( String workspaceName,
+                              Name nodeTypeName ) {
+        Counts counts = countsByWorkspaceName.get(workspaceName);
+        if (counts == null || !counts.isComplete()) return UNKNOWN;
+        long count = counts.get(nodeTypeName);
+        if (!workspaceName.equals(systemWorkspaceName)) {
+            Counts systemCounts = countsByWorkspaceName.get(systemWorkspaceName);
+            if (systemCounts != null && systemCounts.isComplete()) count += systemCounts.get(nodeTypeName);
+        }
+        return count;
+    }
+
+    /**
+     * Begin a scan of all of the content in the named workspace. Any existing counts for the workspace are discarded, and new
+     * counts will become available only after the scan is {@link Counts#complete() completed}.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     * @return the counts that should be populated during the scan; never null
+     */
+    Counts startScan( String workspaceName ) {
+        Counts counts = new Counts();
+        countsByWorkspaceName.put(workspaceName, counts);
+        return counts;
+    }
+
+    /**
+     * Update the counts with the nodes added and removed in the supplied change set. The change set is ignored if the content of
+     * its workspace is still being scanned.
+     *
+     * @param changeSet the change set; may not be null
+     */
+    void notify( ChangeSet changeSet ) {
+        String workspaceName = changeSet.getWorkspaceName();
+        Counts counts = workspaceName != null ? countsByWorkspaceName.get(workspaceName) : null;
+        for (Change change : changeSet) {
+            if (change instanceof WorkspaceRemoved) {
+                remove(((WorkspaceRemoved)change).getWorkspaceName());
+            } else if (counts == null || !counts.isComplete()) {
+                continue;
+            } else if (change instanceof NodeAdded) {
+                AbstractNodeChange added = (AbstractNodeChange)change;
+                counts.record(added.getPrimaryType(), added.getMixinTypes(), 1L);
+            } else if (change instanceof NodeRemoved) {
+                AbstractNodeChange removed = (AbstractNodeChange)change;
+                counts.record(removed.getPrimaryType(), removed.getMixinTypes(), -1L);
+            }
+        }
+    }
+
+    /**
+     * Remove all counts for the named workspace.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     */
+    void remove( String workspaceName ) {
+        countsByWorkspaceName.remove(workspaceName);
+    }
+
+    /**
+     * The node counts for a single workspace.
+     */
+    @ThreadSafe
+    static final class Counts {
+        private final ConcurrentMap<Name, LongAdder> countsByTypeName = new ConcurrentHashMap<>();
+        private volatile boolean complete = false;
+
+        /**
+         * Record a node with the given primary type and mixin types.
+         *
+         * @param primaryType the name of the primary type; may be null
+         * @param mixinTypes the names of the mixin types; may be null or empty
+         */
+        void record( Name primaryType,
+                     Set<Name> mixinTypes ) {
+            record(primaryType, mixinTypes, 1L);
+        }
+
+        /**
+         * Mark these counts as including all of the workspace content.
+         */
+        void complete() {
+            complete = true;
+        }
+
+        protected boolean isComplete() {
+            return complete;
+        }
+
+        protected long get( Name nodeTypeName ) {
+            LongAdder count = countsByTypeName.get(nodeTypeName);
+            return count != null ? Math.max(0L, count.sum()) : 0L;
+        }
+
+        protected void record( Name primaryType,
+                               Set<Name> mixinTypes,
+                               long delta ) {
+            if (primaryType != null) {
+                countsByTypeName.computeIfAbsent(primaryType, name -> new LongAdder()).add(delta);
+            }
+            if (mixinTypes != null) {
+                for (Name mixinType : mixinTypes) {
+                    countsByTypeName.computeIfAbsent(mixinType, name -> new LongAdder()).add(delta);
+                }
+            }
+        }
+    }
+}
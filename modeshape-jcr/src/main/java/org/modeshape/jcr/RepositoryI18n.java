@@ -72,6 +72,7 @@ public final class RepositoryI18n {
     public static I18n unableToFindPropertyForSequencing;
     public static I18n atLeastOneSequencerPathExpressionMustBeSpecified;
     public static I18n shutdownWhileSequencing;
+    public static I18n sequencingQueueFull;
 
     // Properties
     public static I18n errorReadingPropertiesFromContainerNode;
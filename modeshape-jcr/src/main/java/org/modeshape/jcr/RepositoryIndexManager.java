@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -302,6 +303,11 @@ class RepositoryIndexManager implements IndexManager, NodeTypes.Listener {
         // Set the name of the system workspace
         Reflection.setValue(provider, "systemWorkspaceName", systemWorkspaceName);
 
+        // Set how the asynchronous indexes are updated
+        RepositoryConfiguration.AsyncIndexing asyncIndexing = config.getAsyncIndexing();
+        Reflection.setValue(provider, "asyncIndexingBatchSize", asyncIndexing.isEnabled() ? asyncIndexing.getBatchSize() : 0);
+        Reflection.setValue(provider, "statistics", repository.statistics());
+
         if (initialized.get()) {
             // This manager is already initialized, so we have to initialize the new provider ...
             doInitialize(provider);
@@ -395,6 +401,22 @@ class RepositoryIndexManager implements IndexManager, NodeTypes.Listener {
         return result;
     }
 
+    @Override
+    public boolean waitForIndexes( String workspaceName,
+                                   long timeout,
+                                   TimeUnit unit ) throws InterruptedException {
+        CheckArg.isNotNull(workspaceName, "workspaceName");
+        CheckArg.isNotNull(unit, "unit");
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (IndexProvider provider : providers.values()) {
+            if (!provider.waitForIndexUpdates(workspaceName, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public Set<String> getProviderNames() {
         return Collections.unmodifiableSet(new HashSet<>(providers.keySet()));
@@ -15,17 +15,21 @@
  */
 package org.modeshape.jcr;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
@@ -44,11 +48,11 @@ import org.modeshape.jcr.api.index.IndexManager;
 import org.modeshape.jcr.api.query.QueryCancelledException;
 import org.modeshape.jcr.api.query.qom.QueryCommand;
 import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNode.Properties;
 import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
-import org.modeshape.jcr.cache.PathCache;
 import org.modeshape.jcr.cache.RepositoryCache;
 import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
@@ -60,6 +64,7 @@ import org.modeshape.jcr.query.CompositeIndexWriter;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.QueryEngine;
 import org.modeshape.jcr.query.QueryEngineBuilder;
+import org.modeshape.jcr.query.QueryResultCache;
 import org.modeshape.jcr.query.QueryResults;
 import org.modeshape.jcr.query.engine.IndexQueryEngine;
 import org.modeshape.jcr.query.engine.ScanningQueryEngine;
@@ -68,21 +73,28 @@ import org.modeshape.jcr.query.validate.Schemata;
 import org.modeshape.jcr.spi.index.IndexWriter;
 import org.modeshape.jcr.spi.index.provider.IndexProvider;
 import org.modeshape.jcr.spi.index.provider.ManagedIndex;
+import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.PathFactory;
 
 /**
  * The query manager a the repository. Each instance lazily starts up the {@link QueryEngine}, which can be expensive.
  */
 class RepositoryQueryManager implements ChangeSetListener {
 
+    private static final long REINDEXING_PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final Logger logger = Logger.getLogger(getClass());
     private final Logger indexLogger = Logger.getLogger(getClass().getPackage().getName() + ".index");
     private final RunningState runningState;
     private final ExecutorService indexingExecutorService;
+    private final ExecutorService reindexingWorkers;
     private final RepositoryConfiguration repoConfig;
     private final RepositoryConfiguration.Reindexing reindexingCfg;
     private final RepositoryIndexManager indexManager;
+    private final RepositoryContentStatistics statistics;
+    private final QueryResultCache resultCache;
     private final Lock engineInitLock = new ReentrantLock();
     @GuardedBy( "engineInitLock" )
     private volatile QueryEngine queryEngine;
@@ -98,16 +110,30 @@ class RepositoryQueryManager implements ChangeSetListener {
         this.indexingExecutorService = indexingExecutorService;
         this.repoConfig = config;
         this.reindexingCfg = reindexingCfg;
+        // Reindexing uses additional threads to concurrently prepare the nodes for the indexes ...
+        int parallelism = reindexingCfg.getParallelism();
+        this.reindexingWorkers = parallelism > 1 ? runningState.context().getCachedTreadPool("modeshape-reindexing-workers",
+                                                                                             parallelism - 1) : null;
         this.indexManager = new RepositoryIndexManager(runningState, config);
+        this.statistics = new RepositoryContentStatistics(runningState.systemWorkspaceName());
+        RepositoryConfiguration.QueryCaching queryCaching = config.getQueryCaching();
+        this.resultCache = queryCaching.isEnabled() ? new QueryResultCache(runningState.systemWorkspaceName(),
+                                                                           queryCaching.getMaxEntries(),
+                                                                           queryCaching.getMaxRowsPerEntry()) : null;
     }
 
     synchronized void initialize() {
         this.toBeScanned.add(indexManager.initialize());
+        if (resultCache != null) {
+            // Cached results must be evicted before the saving session can query again, and after the indexes are updated ...
+            runningState.changeBus().registerInThread(resultCache);
+        }
         started.set(true);
     }
 
     @Override
     public synchronized void notify( ChangeSet changeSet ) {
+        statistics.notify(changeSet);
         if (started.get()) {
             boolean scanRequired = this.toBeScanned.add(this.indexManager.notify(changeSet));
             if (scanRequired) {
@@ -127,6 +153,7 @@ class RepositoryQueryManager implements ChangeSetListener {
     void shutdown() {
         started.compareAndSet(true, false);
         indexingExecutorService.shutdown();
+        if (reindexingWorkers != null) reindexingWorkers.shutdown();
         if (queryEngine != null) {
             try {
                 engineInitLock.lock();
@@ -142,6 +169,10 @@ class RepositoryQueryManager implements ChangeSetListener {
             }
         }
         indexManager.shutdown();
+        if (resultCache != null) {
+            runningState.changeBus().unregister(resultCache);
+            resultCache.clear();
+        }
     }
 
     void stopReindexing() {
@@ -220,6 +251,15 @@ class RepositoryQueryManager implements ChangeSetListener {
         return indexManager;
     }
 
+    /**
+     * Get the cache of query results.
+     *
+     * @return the cache, or null if the results of queries are not cached
+     */
+    QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
     /**
      * Get an immutable snapshot of the index definitions. This can be used by the query engine to determine which indexes might
      * be usable when quering a specific selector (node type).
@@ -252,7 +292,8 @@ class RepositoryQueryManager implements ChangeSetListener {
                         logger.debug("Queries with no indexes are enabled for the '{0}' repository. Executing queries will always scan the repository contents.",
                                      repoConfig.getName());
                     }
-                    queryEngine = builder.using(repoConfig, indexManager, runningState.context()).build();
+                    queryEngine = builder.using(repoConfig, indexManager, runningState.context()).with(statistics)
+                                         .with(resultCache).build();
                 }
             } finally {
                 engineInitLock.unlock();
@@ -622,9 +663,16 @@ class RepositoryQueryManager implements ChangeSetListener {
         }
         // track if at least one index was updated as a result of this reindexing....
         boolean indexesUpdated = false;
-        // Get the path for the first node (we already have it, but we need to populate the cache) ...
-        final PathCache paths = new PathCache(cache);
-        Path nodePath = paths.getPath(node);
+        Path nodePath = node.getPath(cache);
+
+        // When all of the content in the workspace is scanned, count the nodes by type for the query optimizer ...
+        RepositoryContentStatistics.Counts counts = null;
+        boolean unlimitedDepth = depth >= Integer.MAX_VALUE - 1; // the system content is scanned with one less than the max
+        if (unlimitedDepth && (node.getKey().equals(cache.getRootKey())
+                               || node.getKey().equals(runningState.repositoryCache().getSystemKey()))) {
+            counts = statistics.startScan(workspaceName);
+            counts.record(node.getPrimaryType(cache), node.getMixinTypes(cache));
+        }
 
         // Index the first node ...
         if (indexLogger.isTraceEnabled()) {
@@ -637,11 +685,13 @@ class RepositoryQueryManager implements ChangeSetListener {
                                       node.getPropertiesByName(cache));
 
         if (depth == 1) {
+            if (counts != null) counts.complete();
             return indexesUpdated;
         }
 
-        // Create a queue for processing the subgraph
-        final Queue<NodeKey> queue = new LinkedList<NodeKey>();
+        // Create a queue for processing the subgraph. The path of each node is computed from its parent's path ...
+        final PathFactory pathFactory = runningState.context().getValueFactories().getPathFactory();
+        final Queue<PendingNode> queue = new ArrayDeque<>();
 
         if (reindexSystemContent) {
             // We need to look for the system node, and index it differently ...
@@ -652,10 +702,10 @@ class RepositoryQueryManager implements ChangeSetListener {
                 NodeKey childKey = childRef.getKey();
                 if (childKey.equals(systemKey)) {
                     // This is the "/jcr:system" node ...
-                    node = cache.getNode(childKey);
-                    indexesUpdated |= reindexSystemContent(node, depth - 1, indexes);
+                    CachedNode systemNode = cache.getNode(childKey);
+                    indexesUpdated |= reindexSystemContent(systemNode, depth - 1, indexes);
                 } else {
-                    queue.add(childKey);
+                    queue.add(new PendingNode(childRef, node.getKey(), nodePath, pathFactory));
                 }
             }
         } else {
@@ -664,46 +714,216 @@ class RepositoryQueryManager implements ChangeSetListener {
                 NodeKey childKey = childRef.getKey();
                 // we should not reindex anything which is in the system area
                 if (!childKey.getWorkspaceKey().equals(runningState.systemWorkspaceKey())) {
-                    queue.add(childKey);
+                    queue.add(new PendingNode(childRef, node.getKey(), nodePath, pathFactory));
                 }
             }
         }
 
-        // Now, process the queue until empty ...
-        while (true) {
-            NodeKey key = queue.poll();
-            if (key == null) {
+        // Now, process the queue in batches until empty ...
+        ReindexingProgress progress = new ReindexingProgress(workspaceName);
+        progress.add(1);
+        final int batchSize = reindexingCfg.getBatchSize();
+        final List<PendingNode> batch = new ArrayList<>(batchSize);
+        while (!queue.isEmpty()) {
+            while (batch.size() < batchSize && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            List<IndexedNode> indexedNodes = prepare(cache, batch, depth, pathFactory);
+            batch.clear();
+            if (indexedNodes == null) {
+                // We were interrupted, so stop reindexing ...
+                logger.debug("Reindexing of workspace '{0}' in repository '{1}' was interrupted", workspaceName,
+                             runningState.name());
                 break;
             }
 
-            // Look up the node and find the path ...
-            node = cache.getNode(key);
-            if (node == null || node.isExcludedFromSearch(cache)) {
-                continue;
+            // Write the batch to the indexes in the same order the nodes were found ...
+            for (IndexedNode indexed : indexedNodes) {
+                if (indexed == null) continue;
+                if (indexLogger.isTraceEnabled()) {
+                    String path = runningState.context().getValueFactories().getStringFactory().create(indexed.path);
+                    indexLogger.debug("Reindexing node '{0}' in workspace '{1}' of repository '{2}': {3}", path, workspaceName,
+                                      runningState.name(), indexed.node);
+                }
+                indexesUpdated |= indexes.add(workspaceName, indexed.node.getKey(), indexed.path, indexed.primaryType,
+                                              indexed.mixinTypes, indexed.properties);
+                if (counts != null) counts.record(indexed.primaryType, indexed.mixinTypes);
+                queue.addAll(indexed.children);
+                progress.add(1);
             }
-            nodePath = paths.getPath(node);
+        }
+        progress.complete();
+        if (counts != null) counts.complete();
+        return indexesUpdated;
+    }
 
-            // Index the node ...
-            if (indexLogger.isTraceEnabled()) {
-                String path = runningState.context().getValueFactories().getStringFactory().create(nodePath);
-                indexLogger.debug("Reindexing node '{0}' in workspace '{1}' of repository '{2}': {3}", path, workspaceName,
-                                  runningState.name(), node);
-            }
-            indexesUpdated |= indexes.add(workspaceName, node.getKey(), nodePath, node.getPrimaryType(cache),
-                                          node.getMixinTypes(cache),
-                                          node.getPropertiesByName(cache));
-
-            // Check the depth ...
-            if (nodePath.size() <= depth) {
-                // Add the children to the queue ...
-                for (ChildReference childRef : node.getChildReferences(cache)) {
-                    queue.add(childRef.getKey());
+    /**
+     * Load the nodes in the supplied batch with a single request, and then concurrently prepare each of them for the indexes.
+     *
+     * @param cache the cache containing the nodes; may not be null
+     * @param batch the nodes to be prepared; may not be null
+     * @param depth the maximum depth of the content being reindexed
+     * @param pathFactory the factory for the paths of the children; may not be null
+     * @return the prepared nodes in the same order as the batch, with null for each node that no longer exists or is excluded
+     *         from search; or null if this thread was interrupted
+     */
+    private List<IndexedNode> prepare( final NodeCache cache,
+                                       final List<PendingNode> batch,
+                                       final int depth,
+                                       final PathFactory pathFactory ) {
+        final int size = batch.size();
+        List<NodeKey> keys = new ArrayList<>(size);
+        for (PendingNode pending : batch) {
+            keys.add(pending.key);
+        }
+        final List<CachedNode> nodes = cache.getNodes(keys);
+        final IndexedNode[] results = new IndexedNode[size];
+        int chunks = reindexingWorkers != null ? Math.min(reindexingCfg.getParallelism(), size) : 1;
+        int chunkSize = (size + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        for (int start = chunkSize; start < size; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, size);
+            Runnable task = () -> {
+                for (int i = from; i != to; ++i) {
+                    results[i] = prepare(cache, batch.get(i), nodes.get(i), depth, pathFactory);
                 }
+            };
+            try {
+                futures.add(reindexingWorkers.submit(task));
+            } catch (RejectedExecutionException e) {
+                // All of the workers are busy with other reindexing operations, so just use this thread ...
+                task.run();
             }
         }
-        return indexesUpdated;
+        for (int i = 0; i != Math.min(chunkSize, size); ++i) {
+            results[i] = prepare(cache, batch.get(i), nodes.get(i), depth, pathFactory);
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+        return Arrays.asList(results);
     }
-    
+
+    private IndexedNode prepare( NodeCache cache,
+                                 PendingNode pending,
+                                 CachedNode node,
+                                 int depth,
+                                 PathFactory pathFactory ) {
+        if (node == null || node.isExcludedFromSearch(cache)) {
+            return null;
+        }
+        Path path = pending.path;
+        if (!pending.parentKey.equals(node.getParentKey(cache))) {
+            // The node is shared or was moved since its parent was read, so use its own path ...
+            path = node.getPath(cache);
+        }
+        List<PendingNode> children = Collections.emptyList();
+        // Check the depth ...
+        if (path.size() <= depth) {
+            children = new ArrayList<>();
+            for (ChildReference childRef : node.getChildReferences(cache)) {
+                children.add(new PendingNode(childRef, node.getKey(), path, pathFactory));
+            }
+        }
+        return new IndexedNode(node, path, node.getPrimaryType(cache), node.getMixinTypes(cache),
+                               node.getPropertiesByName(cache), children);
+    }
+
+    /**
+     * A node that has been found while walking the content to be reindexed, but that has not yet been loaded.
+     */
+    private static final class PendingNode {
+        protected final NodeKey key;
+        protected final NodeKey parentKey;
+        protected final Path path;
+
+        protected PendingNode( ChildReference childRef,
+                               NodeKey parentKey,
+                               Path parentPath,
+                               PathFactory pathFactory ) {
+            this.key = childRef.getKey();
+            this.parentKey = parentKey;
+            this.path = pathFactory.create(parentPath, childRef.getSegment());
+        }
+    }
+
+    /**
+     * The information about a node that is written to the indexes, plus the children of that node that are to be reindexed.
+     */
+    private static final class IndexedNode {
+        protected final CachedNode node;
+        protected final Path path;
+        protected final Name primaryType;
+        protected final Set<Name> mixinTypes;
+        protected final Properties properties;
+        protected final List<PendingNode> children;
+
+        protected IndexedNode( CachedNode node,
+                               Path path,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               Properties properties,
+                               List<PendingNode> children ) {
+            this.node = node;
+            this.path = path;
+            this.primaryType = primaryType;
+            this.mixinTypes = mixinTypes;
+            this.properties = properties;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Counts the nodes that are reindexed in a workspace, and periodically logs the number of nodes and the throughput.
+     */
+    private final class ReindexingProgress {
+        private final String workspaceName;
+        private final long started = System.nanoTime();
+        private long lastReported = started;
+        private long count;
+
+        protected ReindexingProgress( String workspaceName ) {
+            this.workspaceName = workspaceName;
+        }
+
+        protected void add( int nodes ) {
+            count += nodes;
+            long now = System.nanoTime();
+            if (now - lastReported >= REINDEXING_PROGRESS_INTERVAL_NANOS) {
+                lastReported = now;
+                logger.info(JcrI18n.reindexingProgress, count, workspaceName, runningState.name(), throughput(now));
+            }
+        }
+
+        protected void complete() {
+            long now = System.nanoTime();
+            long millis = TimeUnit.NANOSECONDS.toMillis(now - started);
+            if (now - started >= REINDEXING_PROGRESS_INTERVAL_NANOS) {
+                // The reindexing took long enough that progress was reported, so also report that it completed ...
+                logger.info(JcrI18n.reindexingCompleted, count, workspaceName, runningState.name(), millis, throughput(now));
+            } else if (logger.isDebugEnabled()) {
+                logger.debug(JcrI18n.reindexingCompleted.text(count, workspaceName, runningState.name(), millis, throughput(now)));
+            }
+        }
+
+        private long throughput( long now ) {
+            long nanos = Math.max(1L, now - started);
+            return count * TimeUnit.SECONDS.toNanos(1) / nanos;
+        }
+    }
+
     protected void updateIndexesStatus( String workspaceName, final IndexManager.IndexStatus currentStatus, final IndexManager.IndexStatus newStatus ) {
         for (IndexProvider indexProvider : indexManager.getProviders()) {
             indexProvider.onEachIndexInWorkspace(workspaceName, new IndexProvider.ManagedIndexOperation() {
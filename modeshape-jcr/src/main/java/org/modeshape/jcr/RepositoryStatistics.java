@@ -68,6 +68,12 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * <li><b>{@link ValueMetric#SESSION_SAVES save operations}</b> - the number of Session save operations performed the window;</li>
  * <li><b>{@link ValueMetric#NODE_CHANGES changed nodes}</b> - the number of nodes that were created, updated, or deleted during
  * the window;</li>
+ * <li><b>{@link ValueMetric#BINARY_BYTES_RECLAIMED reclaimed binary bytes}</b> - the number of bytes of unused binary values
+ * that were removed during the window;</li>
+ * <li><b>{@link ValueMetric#TEXT_EXTRACTION_QUEUE_SIZE text extraction queue size}</b> - the number of binary values waiting for
+ * their text to be extracted;</li>
+ * <li><b>{@link ValueMetric#SEQUENCER_COALESCED_COUNT coalesced sequencing work}</b> - the number of changes that were combined
+ * with sequencing work already waiting in the queue during the window;</li>
  * </ol>
  * and the metrics that record durations include:
  * <ol>
@@ -76,6 +82,12 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * window;</li>
  * <li><b>{@link DurationMetric#SEQUENCER_EXECUTION_TIME sequencer execution time}</b> - the duration of sequencing operations
  * completed during the window;</li>
+ * <li><b>{@link DurationMetric#SEQUENCER_QUEUE_TIME sequencer queue time}</b> - the time the sequencing work that started during
+ * the window waited in the queue;</li>
+ * <li><b>{@link DurationMetric#BINARY_GARBAGE_COLLECTION_TIME binary garbage collection time}</b> - the duration of the removals
+ * of unused binary values completed during the window;</li>
+ * <li><b>{@link DurationMetric#TEXT_EXTRACTION_LATENCY text extraction latency}</b> - the time it took to extract the text of
+ * binary values, including the time spent in the queue;</li>
  * </ol>
  * This class provides a way to obtain the {@link History history} for a particular metric during a specified window, where the
  * window is comprised of the {@link Statistics statistics} (the average value, minimum value, maximum value, variance, standard
@@ -113,6 +125,16 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
      */
     public static final int MAXIMUM_LONG_RUNNING_SESSION_COUNT = 15;
 
+    /**
+     * The maximum number of longest-running removals of unused binary values to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_BINARY_GARBAGE_COLLECTION_COUNT = 15;
+
+    /**
+     * The maximum number of longest-running text extractions to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_TEXT_EXTRACTION_COUNT = 15;
+
     /**
      * The frequency at which the metric values are rolled into statistics.
      */
@@ -163,8 +185,14 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
                                                                                MAXIMUM_LONG_RUNNING_QUERY_COUNT));
         durations.put(DurationMetric.SEQUENCER_EXECUTION_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                                    MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
+        durations.put(DurationMetric.SEQUENCER_QUEUE_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
+                                                                               MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
         durations.put(DurationMetric.SESSION_LIFETIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                            MAXIMUM_LONG_RUNNING_SESSION_COUNT));
+        durations.put(DurationMetric.BINARY_GARBAGE_COLLECTION_TIME,
+                      new DurationHistory(TimeUnit.MILLISECONDS, MAXIMUM_LONG_RUNNING_BINARY_GARBAGE_COLLECTION_COUNT));
+        durations.put(DurationMetric.TEXT_EXTRACTION_LATENCY,
+                      new DurationHistory(TimeUnit.MILLISECONDS, MAXIMUM_LONG_RUNNING_TEXT_EXTRACTION_COUNT));
 
         for (ValueMetric metric : EnumSet.allOf(ValueMetric.class)) {
             boolean resetUponRollup = !metric.isContinuous();
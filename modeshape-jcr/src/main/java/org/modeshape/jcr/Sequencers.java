@@ -17,10 +17,12 @@ package org.modeshape.jcr;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -29,8 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.NamespaceRegistry;
@@ -38,11 +42,14 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeTypeManager;
 import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.GuardedBy;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.HashCode;
+import org.modeshape.common.util.ObjectUtil;
 import org.modeshape.common.util.Reflection;
 import org.modeshape.jcr.RepositoryConfiguration.Component;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.sequencer.Sequencer;
 import org.modeshape.jcr.api.value.DateTime;
@@ -114,7 +121,7 @@ public class Sequencers implements ChangeSetListener {
             int maxThreadCount = sequencing.getMaxPoolSize();
             String threadPoolName = sequencing.getThreadPoolName();
             this.sequencingExecutor = repository.context().getCachedTreadPool(threadPoolName, maxThreadCount);
-            this.workQueue = new SequencingWorkQueue();
+            this.workQueue = new SequencingWorkQueue(sequencing.getQueueSize(), sequencing.getBatchSize(), maxThreadCount);
             this.processId = repository.context().getProcessId();
             ExecutionContext context = this.repository.context();
             this.stringFactory = context.getValueFactories().getStringFactory();
@@ -344,6 +351,15 @@ public class Sequencers implements ChangeSetListener {
         }
     }
 
+    /**
+     * Get the number of work items that are waiting to be sequenced.
+     *
+     * @return the number of queued work items; never negative
+     */
+    protected final int queueSize() {
+        return workQueue != null ? workQueue.size() : 0;
+    }
+
     protected final RepositoryStatistics statistics() {
         return repository.statistics();
     }
@@ -359,7 +375,6 @@ public class Sequencers implements ChangeSetListener {
                                                              inputWorkspaceName, matcher.getSelectedPath(),
                                                              matcher.getJcrInputPath(), matcher.getOutputPath(),
                                                              matcher.getOutputWorkspaceName(), propertyName);
-        statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
         workQueue.submit(workItem);
     }
 
@@ -514,23 +529,217 @@ public class Sequencers implements ChangeSetListener {
     protected static interface WorkQueue {
         void submit( SequencingWorkItem work );
 
+        int size();
+
         void shutdown();
     }
 
+    /**
+     * A {@link WorkQueue} that runs the work items of each sequencer in the order they were submitted, and which runs the work
+     * of sequencers with a higher {@link Sequencer#getPriority() priority} first. Work items that are submitted again while
+     * they are still waiting to be run are only run once, and consecutive work items of the same sequencer can be run as a
+     * single batch whose output is saved at once. At most the configured number of threads take work from the queue, and at
+     * most {@link Sequencer#getMaxConcurrentExecutions()} of them run the work of the same sequencer.
+     */
     protected final class SequencingWorkQueue implements WorkQueue {
-        private final List<Future<?>> results = new ArrayList<Future<?>>();
+        private final int maxQueueSize;
+        private final int batchSize;
+        private final int maxConcurrentRunners;
+        private final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+        @GuardedBy( "this" )
+        private final Map<UUID, Deque<QueuedWork>> queuesBySequencerId = new HashMap<>();
+        @GuardedBy( "this" )
+        private final Map<SequencingWorkItem, QueuedWork> queuedWork = new HashMap<>();
+        @GuardedBy( "this" )
+        private final Map<UUID, Integer> runningBySequencerId = new HashMap<>();
+        @GuardedBy( "this" )
+        private int activeRunners;
+        @GuardedBy( "this" )
+        private long sequence;
+
+        protected SequencingWorkQueue( int maxQueueSize,
+                                       int batchSize,
+                                       int maxConcurrentRunners ) {
+            this.maxQueueSize = maxQueueSize;
+            this.batchSize = batchSize;
+            this.maxConcurrentRunners = maxConcurrentRunners;
+        }
 
         @Override
         public void submit( SequencingWorkItem work ) {
-            results.add(sequencingExecutor.submit(new SequencingRunner(repository, work)));
+            QueuedWork queued;
+            boolean startRunner = false;
+            synchronized (this) {
+                queued = queuedWork.get(work);
+                if (queued != null) {
+                    // the same input is already waiting to be sequenced, so only the latest user is kept ...
+                    queued.work = work;
+                    statistics().increment(ValueMetric.SEQUENCER_COALESCED_COUNT);
+                    return;
+                }
+                if (!acceptsWork || queuedWork.size() >= maxQueueSize) {
+                    queued = null;
+                } else {
+                    queued = new QueuedWork(work, sequence++);
+                    queuedWork.put(work, queued);
+                    queuesBySequencerId.computeIfAbsent(work.getSequencerId(), id -> new ArrayDeque<>()).add(queued);
+                    if (activeRunners < maxConcurrentRunners) {
+                        ++activeRunners;
+                        startRunner = true;
+                    }
+                }
+            }
+            if (queued == null) {
+                rejected(work);
+                return;
+            }
+            statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
+            if (startRunner) {
+                try {
+                    sequencingExecutor.execute(this::runQueuedWork);
+                } catch (RejectedExecutionException e) {
+                    synchronized (this) {
+                        --activeRunners;
+                        if (activeRunners > 0 || queuedWork.remove(work) == null) {
+                            // another thread will take the work from the queue ...
+                            return;
+                        }
+                        queuesBySequencerId.get(work.getSequencerId()).remove(queued);
+                    }
+                    statistics().decrement(ValueMetric.SEQUENCER_QUEUE_SIZE);
+                    rejected(work);
+                }
+            }
         }
 
         @Override
         public void shutdown() {
-            for (Future<?> workItem : results) {
-                workItem.cancel(true);
+            int abandoned;
+            synchronized (this) {
+                abandoned = queuedWork.size();
+                queuedWork.clear();
+                queuesBySequencerId.clear();
+            }
+            if (abandoned > 0) {
+                statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE, -abandoned);
+            }
+            for (Thread thread : runningThreads) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public synchronized int size() {
+            return queuedWork.size();
+        }
+
+        private void rejected( SequencingWorkItem work ) {
+            // running the work in the calling thread is not an option, since that is the thread notifying the changes ...
+            Sequencer sequencer = getSequencer(work.getSequencerId());
+            LOGGER.warn(RepositoryI18n.sequencingQueueFull, repository.name(), work.getInputPath(),
+                        work.getInputWorkspaceName(), sequencer != null ? sequencer.getName() : work.getSequencerId());
+        }
+
+        private void runQueuedWork() {
+            Thread thread = Thread.currentThread();
+            runningThreads.add(thread);
+            try {
+                while (true) {
+                    List<SequencingWorkItem> batch = nextBatch();
+                    if (batch == null) {
+                        return;
+                    }
+                    try {
+                        new SequencingRunner(repository, batch).run();
+                    } finally {
+                        synchronized (this) {
+                            runningBySequencerId.merge(batch.get(0).getSequencerId(), -1, Integer::sum);
+                        }
+                    }
+                }
+            } finally {
+                runningThreads.remove(thread);
             }
-            results.clear();
+        }
+
+        /**
+         * Take the next work items from the queue: the oldest work of the sequencer with the highest priority that may run more
+         * work, followed by the next work items of that sequencer with the same input and output workspaces.
+         *
+         * @return the work items, or null if this thread should stop taking work from the queue
+         */
+        private List<SequencingWorkItem> nextBatch() {
+            List<QueuedWork> taken = new ArrayList<>();
+            synchronized (this) {
+                Deque<QueuedWork> next = null;
+                int nextPriority = 0;
+                if (acceptsWork) {
+                    for (Map.Entry<UUID, Deque<QueuedWork>> entry : queuesBySequencerId.entrySet()) {
+                        Deque<QueuedWork> queue = entry.getValue();
+                        if (queue.isEmpty()) {
+                            continue;
+                        }
+                        Sequencer sequencer = getSequencer(entry.getKey());
+                        int priority = sequencer != null ? sequencer.getPriority() : 0;
+                        int maxRunning = sequencer != null ? sequencer.getMaxConcurrentExecutions() : 0;
+                        if (maxRunning > 0 && runningBySequencerId.getOrDefault(entry.getKey(), 0) >= maxRunning) {
+                            continue;
+                        }
+                        if (next == null || priority > nextPriority
+                            || (priority == nextPriority && queue.peek().sequence < next.peek().sequence)) {
+                            next = queue;
+                            nextPriority = priority;
+                        }
+                    }
+                }
+                if (next == null) {
+                    --activeRunners;
+                    return null;
+                }
+                QueuedWork first = next.poll();
+                taken.add(first);
+                while (taken.size() < batchSize && !next.isEmpty() && first.sameWorkspaces(next.peek().work)) {
+                    taken.add(next.poll());
+                }
+                for (QueuedWork queued : taken) {
+                    queuedWork.remove(queued.work);
+                }
+                runningBySequencerId.merge(first.work.getSequencerId(), 1, Integer::sum);
+            }
+            statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE, -taken.size());
+            List<SequencingWorkItem> batch = new ArrayList<>(taken.size());
+            long now = System.nanoTime();
+            for (QueuedWork queued : taken) {
+                SequencingWorkItem work = queued.work;
+                Sequencer sequencer = getSequencer(work.getSequencerId());
+                Map<String, String> payload = new HashMap<>();
+                payload.put("sequencerName", sequencer != null ? sequencer.getClass().getName() : work.getSequencerId().toString());
+                payload.put("sequencedPath", work.getInputPath());
+                statistics().recordDuration(DurationMetric.SEQUENCER_QUEUE_TIME, Math.abs(now - queued.submittedNanos),
+                                            TimeUnit.NANOSECONDS, payload);
+                batch.add(work);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * A work item waiting in the {@link SequencingWorkQueue}.
+     */
+    protected static final class QueuedWork {
+        protected final long sequence;
+        protected final long submittedNanos = System.nanoTime();
+        protected volatile SequencingWorkItem work;
+
+        protected QueuedWork( SequencingWorkItem work,
+                              long sequence ) {
+            this.work = work;
+            this.sequence = sequence;
+        }
+
+        protected boolean sameWorkspaces( SequencingWorkItem other ) {
+            return work.getInputWorkspaceName().equals(other.getInputWorkspaceName())
+                   && ObjectUtil.isEqualWithNulls(work.getOutputWorkspaceName(), other.getOutputWorkspaceName());
         }
     }
 
@@ -702,8 +911,10 @@ public class Sequencers implements ChangeSetListener {
                 if (!this.sequencerId.equals(that.sequencerId)) return false;
                 if (!this.inputWorkspaceName.equals(that.inputWorkspaceName)) return false;
                 if (!this.inputPath.equals(that.inputPath)) return false;
-                if (!this.outputPath.equals(that.outputWorkspaceName)) return false;
-                if (!this.outputWorkspaceName.equals(that.outputWorkspaceName)) return false;
+                if (!this.changedPropertyName.equals(that.changedPropertyName)) return false;
+                if (!ObjectUtil.isEqualWithNulls(this.selectedPath, that.selectedPath)) return false;
+                if (!this.outputPath.equals(that.outputPath)) return false;
+                if (!ObjectUtil.isEqualWithNulls(this.outputWorkspaceName, that.outputWorkspaceName)) return false;
                 return true;
             }
             return false;
@@ -18,7 +18,10 @@ package org.modeshape.jcr;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +47,7 @@ import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.sequencer.Sequencer;
 import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.change.RecordingChanges;
 import org.modeshape.jcr.value.Name;
 
@@ -58,20 +62,41 @@ final class SequencingRunner implements Runnable {
     private static final String DERIVED_FROM_PROPERTY_NAME = "mode:derivedFrom";
 
     private final RunningState repository;
-    private final SequencingWorkItem work;
+    private final List<SequencingWorkItem> work;
 
     protected SequencingRunner( RunningState repository,
                                 SequencingWorkItem work ) {
+        this(repository, Collections.singletonList(work));
+    }
+
+    /**
+     * Create a runner for several work items with the same input and output workspaces, whose output is saved with a single
+     * save. When any of them fails, the unsaved output is discarded and each work item is run and saved on its own.
+     *
+     * @param repository the repository; may not be null
+     * @param work the work items; may not be null or empty
+     */
+    protected SequencingRunner( RunningState repository,
+                                List<SequencingWorkItem> work ) {
+        assert !work.isEmpty();
         this.repository = repository;
         this.work = work;
     }
 
     @Override
     public void run() {
+        if (work.size() > 1 && runInBatch()) {
+            return;
+        }
+        for (SequencingWorkItem item : work) {
+            run(item);
+        }
+    }
+
+    private void run( SequencingWorkItem work ) {
         JcrSession inputSession = null;
         JcrSession outputSession = null;
         final RepositoryStatistics stats = repository.statistics();
-        Sequencer sequencer = null;
         String sequencerName = null;
         try {
             // Create the required session(s) ...
@@ -83,143 +108,22 @@ final class SequencingRunner implements Runnable {
             }
 
             // Get the sequencer ...
-            sequencer = repository.sequencers().getSequencer(work.getSequencerId());
+            Sequencer sequencer = sequencer(work);
             if (sequencer == null) {
-                if (DEBUG) {
-                    LOGGER.debug("Unable to find sequencer with ID '{0}' in repository '{1}'; skipping input '{3}:{2}' and output '{5}:{4}'",
-                                 work.getSequencerId(), repository.name(), work.getInputPath(), work.getInputWorkspaceName(),
-                                 work.getOutputPath(), work.getOutputWorkspaceName());
-                }
                 return;
             }
             sequencerName = sequencer.getName();
 
-            String logMsg = null;
-            if (TRACE || DEBUG) {
-                logMsg = StringUtil.createString("sequencer '{0}' in repository '{1}' with input '{3}:{2}' to produce '{5}:{4}'",
-                                                 sequencerName,
-                                                 repository.name(),
-                                                 work.getInputPath(),
-                                                 work.getInputWorkspaceName(),
-                                                 work.getOutputPath(),
-                                                 work.getOutputWorkspaceName() != null ? work.getOutputWorkspaceName() : work.getInputWorkspaceName());
-                LOGGER.debug("Running {0}", logMsg);
-            }
-
-            // Find the selected node ...
-            AbstractJcrNode selectedNode = inputSession.getNode(work.getSelectedPath());
-
-            // Find the input that has changed and is to be sequenced ...
-            Item inputItem = inputSession.getItem(work.getInputPath());
-            Property changedProperty = null;
-            if (inputItem instanceof Property) {
-                changedProperty = (Property)inputItem;
-            } else {
-                Node changedNode = (Node)inputItem;
-                // now look for a property that was changed or added ...
-                changedProperty = changedNode.getProperty(work.getChangedPropertyName());
-            }
-            assert changedProperty != null;
-
-            if (sequencer.hasAcceptedMimeTypes()) {
-                // Get the MIME type, first by looking at the changed property's parent node
-                // (or grand-parent node if parent is 'jcr:content') ...
-                String mimeType = getInputMimeType(changedProperty);
-
-                // See if the sequencer accepts the MIME type ...
-                if (mimeType != null && !sequencer.isAccepted(mimeType)) {
-                    LOGGER.debug("Skipping sequencing because MIME type of input doesn't match expectations for {0}", logMsg);
-                    return; // nope
-                }
-            }
-
-            AbstractJcrNode outputNode = null;
-            String primaryType = null;
-            if (work.getSelectedPath().equals(work.getOutputPath())) {
-                // The output is to go directly under the sequenced node ...
-                outputNode = selectedNode.getName().equals(JcrConstants.JCR_CONTENT) ? selectedNode.getParent() : selectedNode;
-                primaryType = selectedNode.getPrimaryNodeType().getName();
-            } else {
-                // Find the parent of the output if it exists, or create the node(s) along the path if not ...
-                AbstractJcrNode parentOfOutput = null;
-                try {
-                    parentOfOutput = outputSession.getNode(work.getOutputPath());
-                } catch (PathNotFoundException e) {
-                    LOGGER.trace("Creating missing output path for {0}", logMsg);
-                    JcrTools tools = new JcrTools();
-                    parentOfOutput = (AbstractJcrNode)tools.findOrCreateNode(outputSession, work.getOutputPath());
-                }
-
-                // Now determine the name of top node in the output, using the last segment of the selected path ...
-                String outputNodeName = computeOutputNodeName(selectedNode);
-
-                // Remove any existing output (from a prior sequencing run on this same input) ...
-                removeExistingOutputNodes(parentOfOutput, outputNodeName, work.getSelectedPath(), logMsg);
-
-                // Create the output node
-                if (parentOfOutput.isNew() && parentOfOutput.getName().equals(outputNodeName)) {
-                    // avoid creating a duplicate path with the same name
-                    outputNode = parentOfOutput;
-                } else {
-                    if (TRACE) {
-                        LOGGER.trace("Creating output node '{0}' under parent '{1}' for {2}", outputNodeName,
-                                     parentOfOutput.getPath(), logMsg);
-                    }
-                    outputNode = parentOfOutput.addNode(outputNodeName, JcrConstants.NT_UNSTRUCTURED);
-                }
-
-                // and make sure the output node has the 'mode:derived' mixin ...
-                outputNode.addMixin(DERIVED_NODE_TYPE_NAME);
-                outputNode.setProperty(DERIVED_FROM_PROPERTY_NAME, work.getSelectedPath());
-            }
-
-            // Execute the sequencer ...
-            DateTime now = outputSession.dateFactory().create();
-            Sequencer.Context context = new SequencingContext(now, outputSession.getValueFactory());
-            if (inputSession.isLive() && (inputSession == outputSession || outputSession.isLive())) {
-                final long start = System.nanoTime();
-
+            final long start = System.nanoTime();
+            Sequenced sequenced = sequence(work, sequencer, inputSession, outputSession, false);
+            if (sequenced != null) {
                 try {
-                    LOGGER.trace("Executing {0}", logMsg);
-                    if (sequencer.execute(changedProperty, outputNode, context)) {
-                        LOGGER.trace("Completed executing {0}", logMsg);
-
-                        // Make sure that the sequencer did not change the primary type of the selected node ..
-                        if (selectedNode == outputNode && !selectedNode.getPrimaryNodeType().getName().equals(primaryType)) {
-                            String msg = RepositoryI18n.sequencersMayNotChangeThePrimaryTypeOfTheSelectedNode.text();
-                            throw new RepositoryException(msg);
-                        }
-
-                        // find the new nodes created by the sequencing before saving, so we can properly fire the events
-                        List<AbstractJcrNode> outputNodes = findOutputNodes(outputNode);
-
-                        // set the createdBy property (if it applies) to the user which triggered the sequencing, not the context
-                        // of the saving session
-                        setCreatedByIfNecessary(outputSession, outputNodes);
-
-                        // outputSession
-                        LOGGER.trace("Saving session used by {0}", logMsg);
-                        outputSession.save();
-                        
-                        long durationInNanos = Math.abs(System.nanoTime() - start);
-                        Map<String, String> payload = new HashMap<String, String>();
-                        payload.put("sequencerName", sequencer.getClass().getName());
-                        payload.put("sequencedPath", changedProperty.getPath());
-                        payload.put("outputPath", outputNode.getPath());
-                        stats.recordDuration(DurationMetric.SEQUENCER_EXECUTION_TIME, durationInNanos, TimeUnit.NANOSECONDS,
-                                             payload);
-
-                        // fire the sequencing event after save (hopefully by this time the transaction has been committed)
-                        // and after the metrics have been updated
-                        LOGGER.trace("Firing events resulting from {0}", logMsg);
-                        fireSequencingEvent(selectedNode, outputNodes, outputSession, sequencerName);
-                    }
+                    // outputSession
+                    LOGGER.trace("Saving session used by {0}", sequenced.logMsg);
+                    outputSession.save();
+                    sequenced.completed(outputSession, Math.abs(System.nanoTime() - start));
                 } catch (Throwable t) {
-                    try {
-                        fireSequencingFailureEvent(selectedNode, inputSession, t, sequencerName);
-                    } catch (Exception e) {
-                        LOGGER.debug(e, "Error while trying to fire sequencing failure event");
-                    }
+                    sequenced.failed(inputSession, t);
                     // let it bubble down, because we still want to log it and update the stats
                     throw t;
                 }
@@ -245,12 +149,238 @@ final class SequencingRunner implements Runnable {
             }
         } finally {
             stats.increment(ValueMetric.SEQUENCED_COUNT);
-            stats.decrement(ValueMetric.SEQUENCER_QUEUE_SIZE);
             if (inputSession != null && inputSession.isLive()) inputSession.logout();
             if (outputSession != null && outputSession != inputSession && outputSession.isLive()) outputSession.logout();
         }
     }
 
+    /**
+     * Run all of the work items using the same sessions, and save their output at once.
+     *
+     * @return true if the work items were run, or false if they have to be run one by one because one of them failed
+     */
+    private boolean runInBatch() {
+        SequencingWorkItem first = work.get(0);
+        JcrSession inputSession = null;
+        JcrSession outputSession = null;
+        final RepositoryStatistics stats = repository.statistics();
+        List<Sequenced> batch = new ArrayList<>(work.size());
+        try {
+            // Create the required session(s), which are the same for all of the work items ...
+            inputSession = repository.loginInternalSession(first.getInputWorkspaceName());
+            if (first.getOutputWorkspaceName() != null && !first.getOutputWorkspaceName().equals(first.getInputWorkspaceName())) {
+                outputSession = repository.loginInternalSession(first.getOutputWorkspaceName());
+            } else {
+                outputSession = inputSession;
+            }
+
+            Set<NodeKey> outputKeys = new HashSet<>();
+            for (SequencingWorkItem item : work) {
+                Sequencer sequencer = sequencer(item);
+                if (sequencer == null) {
+                    continue;
+                }
+                final long start = System.nanoTime();
+                Sequenced sequenced = sequence(item, sequencer, inputSession, outputSession, true);
+                if (sequenced != null) {
+                    sequenced.executionTime = Math.abs(System.nanoTime() - start);
+                    // the output nodes of the previous work items are new as well, so don't report them again ...
+                    for (Iterator<AbstractJcrNode> iter = sequenced.outputNodes.iterator(); iter.hasNext();) {
+                        if (!outputKeys.add(iter.next().key())) {
+                            iter.remove();
+                        }
+                    }
+                    batch.add(sequenced);
+                }
+            }
+
+            final long start = System.nanoTime();
+            LOGGER.trace("Saving session used by {0} sequencing work items", work.size());
+            outputSession.save();
+            final long saveTime = Math.abs(System.nanoTime() - start);
+
+            for (Sequenced sequenced : batch) {
+                try {
+                    sequenced.completed(outputSession, sequenced.executionTime + saveTime);
+                } catch (Throwable t) {
+                    LOGGER.debug(t, "Error while completing {0}", sequenced.logMsg);
+                }
+            }
+        } catch (InterruptedException ie) {
+            // most likely the repository is being shut down and is asking the runnable to interrupt
+            Thread.interrupted();
+            LOGGER.warn(RepositoryI18n.shutdownWhileSequencing, first.getInputPath(), ie.getMessage());
+        } catch (Throwable t) {
+            if (!repository.sequencers().acceptsWork()) {
+                // the repository has already been shut down, so we'll just log a warning
+                LOGGER.warn(RepositoryI18n.shutdownWhileSequencing, first.getInputPath(), t.getMessage());
+            } else {
+                // the unsaved output of the batch is discarded with the sessions ...
+                LOGGER.debug(t, "Unable to sequence {0} work items together; sequencing them one by one", work.size());
+                return false;
+            }
+        } finally {
+            if (inputSession != null && inputSession.isLive()) inputSession.logout();
+            if (outputSession != null && outputSession != inputSession && outputSession.isLive()) outputSession.logout();
+        }
+        for (int i = 0; i != work.size(); ++i) {
+            stats.increment(ValueMetric.SEQUENCED_COUNT);
+        }
+        return true;
+    }
+
+    private Sequencer sequencer( SequencingWorkItem work ) {
+        Sequencer sequencer = repository.sequencers().getSequencer(work.getSequencerId());
+        if (sequencer == null && DEBUG) {
+            LOGGER.debug("Unable to find sequencer with ID '{0}' in repository '{1}'; skipping input '{3}:{2}' and output '{5}:{4}'",
+                         work.getSequencerId(), repository.name(), work.getInputPath(), work.getInputWorkspaceName(),
+                         work.getOutputPath(), work.getOutputWorkspaceName());
+        }
+        return sequencer;
+    }
+
+    /**
+     * Run the sequencer for the work item, leaving its output unsaved in the output session.
+     *
+     * @param work the work item; may not be null
+     * @param sequencer the sequencer of the work item; may not be null
+     * @param inputSession the session used to read the input; may not be null
+     * @param outputSession the session used to write the output; may not be null
+     * @param batched true if the output session holds the unsaved output of other work items, in which case failures are not
+     *        notified because the caller discards the output and runs the work item again
+     * @return the unsaved output of the sequencer, or null if there is no output
+     * @throws DiscardedOutputException if the work item is batched and has no output, but its output node was already changed
+     * @throws Throwable if the sequencing fails
+     */
+    private Sequenced sequence( SequencingWorkItem work,
+                                Sequencer sequencer,
+                                JcrSession inputSession,
+                                JcrSession outputSession,
+                                boolean batched ) throws Throwable {
+        String sequencerName = sequencer.getName();
+        String logMsg = null;
+        if (TRACE || DEBUG) {
+            logMsg = StringUtil.createString("sequencer '{0}' in repository '{1}' with input '{3}:{2}' to produce '{5}:{4}'",
+                                             sequencerName,
+                                             repository.name(),
+                                             work.getInputPath(),
+                                             work.getInputWorkspaceName(),
+                                             work.getOutputPath(),
+                                             work.getOutputWorkspaceName() != null ? work.getOutputWorkspaceName() : work.getInputWorkspaceName());
+            LOGGER.debug("Running {0}", logMsg);
+        }
+
+        // Find the selected node ...
+        AbstractJcrNode selectedNode = inputSession.getNode(work.getSelectedPath());
+
+        // Find the input that has changed and is to be sequenced ...
+        Item inputItem = inputSession.getItem(work.getInputPath());
+        Property changedProperty = null;
+        if (inputItem instanceof Property) {
+            changedProperty = (Property)inputItem;
+        } else {
+            Node changedNode = (Node)inputItem;
+            // now look for a property that was changed or added ...
+            changedProperty = changedNode.getProperty(work.getChangedPropertyName());
+        }
+        assert changedProperty != null;
+
+        if (sequencer.hasAcceptedMimeTypes()) {
+            // Get the MIME type, first by looking at the changed property's parent node
+            // (or grand-parent node if parent is 'jcr:content') ...
+            String mimeType = getInputMimeType(changedProperty);
+
+            // See if the sequencer accepts the MIME type ...
+            if (mimeType != null && !sequencer.isAccepted(mimeType)) {
+                LOGGER.debug("Skipping sequencing because MIME type of input doesn't match expectations for {0}", logMsg);
+                return null; // nope
+            }
+        }
+
+        AbstractJcrNode outputNode = null;
+        String primaryType = null;
+        if (work.getSelectedPath().equals(work.getOutputPath())) {
+            // The output is to go directly under the sequenced node ...
+            outputNode = selectedNode.getName().equals(JcrConstants.JCR_CONTENT) ? selectedNode.getParent() : selectedNode;
+            primaryType = selectedNode.getPrimaryNodeType().getName();
+        } else {
+            // Find the parent of the output if it exists, or create the node(s) along the path if not ...
+            AbstractJcrNode parentOfOutput = null;
+            try {
+                parentOfOutput = outputSession.getNode(work.getOutputPath());
+            } catch (PathNotFoundException e) {
+                LOGGER.trace("Creating missing output path for {0}", logMsg);
+                JcrTools tools = new JcrTools();
+                parentOfOutput = (AbstractJcrNode)tools.findOrCreateNode(outputSession, work.getOutputPath());
+            }
+
+            // Now determine the name of top node in the output, using the last segment of the selected path ...
+            String outputNodeName = computeOutputNodeName(selectedNode);
+
+            // Remove any existing output (from a prior sequencing run on this same input) ...
+            removeExistingOutputNodes(parentOfOutput, outputNodeName, work.getSelectedPath(), logMsg);
+
+            // Create the output node
+            if (parentOfOutput.isNew() && parentOfOutput.getName().equals(outputNodeName)) {
+                // avoid creating a duplicate path with the same name
+                outputNode = parentOfOutput;
+            } else {
+                if (TRACE) {
+                    LOGGER.trace("Creating output node '{0}' under parent '{1}' for {2}", outputNodeName,
+                                 parentOfOutput.getPath(), logMsg);
+                }
+                outputNode = parentOfOutput.addNode(outputNodeName, JcrConstants.NT_UNSTRUCTURED);
+            }
+
+            // and make sure the output node has the 'mode:derived' mixin ...
+            outputNode.addMixin(DERIVED_NODE_TYPE_NAME);
+            outputNode.setProperty(DERIVED_FROM_PROPERTY_NAME, work.getSelectedPath());
+        }
+
+        // Execute the sequencer ...
+        DateTime now = outputSession.dateFactory().create();
+        Sequencer.Context context = new SequencingContext(now, outputSession.getValueFactory());
+        if (!inputSession.isLive() || (inputSession != outputSession && !outputSession.isLive())) {
+            if (batched) {
+                throw new DiscardedOutputException(logMsg);
+            }
+            return null;
+        }
+        Sequenced sequenced = new Sequenced(work, sequencer, selectedNode, changedProperty, outputNode, logMsg);
+        try {
+            LOGGER.trace("Executing {0}", logMsg);
+            if (!sequencer.execute(changedProperty, outputNode, context)) {
+                if (batched) {
+                    // the previous output was removed and the output node changed in the session shared with the other work
+                    // items, and those changes can't be undone without discarding the output of the whole batch ...
+                    throw new DiscardedOutputException(logMsg);
+                }
+                return null;
+            }
+            LOGGER.trace("Completed executing {0}", logMsg);
+
+            // Make sure that the sequencer did not change the primary type of the selected node ..
+            if (selectedNode == outputNode && !selectedNode.getPrimaryNodeType().getName().equals(primaryType)) {
+                String msg = RepositoryI18n.sequencersMayNotChangeThePrimaryTypeOfTheSelectedNode.text();
+                throw new RepositoryException(msg);
+            }
+
+            // find the new nodes created by the sequencing before saving, so we can properly fire the events
+            sequenced.outputNodes.addAll(findOutputNodes(outputNode));
+
+            // set the createdBy property (if it applies) to the user which triggered the sequencing, not the context
+            // of the saving session
+            setCreatedByIfNecessary(work, outputSession, sequenced.outputNodes);
+            return sequenced;
+        } catch (Throwable t) {
+            if (!batched) {
+                sequenced.failed(inputSession, t);
+            }
+            // let it bubble down, because we still want to log it and update the stats
+            throw t;
+        }
+    }
+
     /**
      * @param changedProperty the property being sequenced
      * @return the MIME type, or null if the MIME type could not be found
@@ -301,7 +431,8 @@ final class SequencingRunner implements Runnable {
         return mimeType;
     }
 
-    private void setCreatedByIfNecessary( JcrSession outputSession,
+    private void setCreatedByIfNecessary( SequencingWorkItem work,
+                                          JcrSession outputSession,
                                           List<AbstractJcrNode> outputNodes ) throws RepositoryException {
         // if the mix:created mixin is on any of the new nodes, we need to set the createdBy here, otherwise it will be
         // set by the system session when it saves and it will default to "modeshape-worker"
@@ -313,7 +444,8 @@ final class SequencingRunner implements Runnable {
         }
     }
 
-    private void fireSequencingEvent( AbstractJcrNode sequencedNode,
+    private void fireSequencingEvent( SequencingWorkItem work,
+                                      AbstractJcrNode sequencedNode,
                                       List<AbstractJcrNode> outputNodes,
                                       JcrSession outputSession,
                                       String sequencerName ) throws RepositoryException {
@@ -335,7 +467,8 @@ final class SequencingRunner implements Runnable {
         repository.changeBus().notify(sequencingChanges);
     }
 
-    private void fireSequencingFailureEvent( AbstractJcrNode sequencedNode,
+    private void fireSequencingFailureEvent( SequencingWorkItem work,
+                                             AbstractJcrNode sequencedNode,
                                              JcrSession inputSession,
                                              Throwable cause,
                                              String sequencerName ) throws RepositoryException {
@@ -435,4 +568,77 @@ final class SequencingRunner implements Runnable {
         }
 
     }
+
+    /**
+     * The unsaved output of a sequencer for a work item.
+     */
+    private final class Sequenced {
+        protected final SequencingWorkItem work;
+        protected final Sequencer sequencer;
+        protected final AbstractJcrNode selectedNode;
+        protected final Property changedProperty;
+        protected final AbstractJcrNode outputNode;
+        protected final String logMsg;
+        protected final List<AbstractJcrNode> outputNodes = new ArrayList<>();
+        protected long executionTime;
+
+        protected Sequenced( SequencingWorkItem work,
+                             Sequencer sequencer,
+                             AbstractJcrNode selectedNode,
+                             Property changedProperty,
+                             AbstractJcrNode outputNode,
+                             String logMsg ) {
+            this.work = work;
+            this.sequencer = sequencer;
+            this.selectedNode = selectedNode;
+            this.changedProperty = changedProperty;
+            this.outputNode = outputNode;
+            this.logMsg = logMsg;
+        }
+
+        /**
+         * Record the metrics and fire the events once the output has been saved.
+         *
+         * @param outputSession the session that saved the output; may not be null
+         * @param durationInNanos the time it took to run the sequencer and save the output
+         * @throws RepositoryException if the event cannot be fired
+         */
+        @SuppressWarnings( "synthetic-access" )
+        protected void completed( JcrSession outputSession,
+                                  long durationInNanos ) throws RepositoryException {
+            Map<String, String> payload = new HashMap<String, String>();
+            payload.put("sequencerName", sequencer.getClass().getName());
+            payload.put("sequencedPath", changedProperty.getPath());
+            payload.put("outputPath", outputNode.getPath());
+            repository.statistics().recordDuration(DurationMetric.SEQUENCER_EXECUTION_TIME, durationInNanos,
+                                                   TimeUnit.NANOSECONDS, payload);
+
+            // fire the sequencing event after save (hopefully by this time the transaction has been committed)
+            // and after the metrics have been updated
+            LOGGER.trace("Firing events resulting from {0}", logMsg);
+            fireSequencingEvent(work, selectedNode, outputNodes, outputSession, sequencer.getName());
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        protected void failed( JcrSession inputSession,
+                               Throwable cause ) {
+            try {
+                fireSequencingFailureEvent(work, selectedNode, inputSession, cause, sequencer.getName());
+            } catch (Exception e) {
+                LOGGER.debug(e, "Error while trying to fire sequencing failure event");
+            }
+        }
+    }
+
+    /**
+     * Thrown when a batched work item has no output after its changes were made in the shared output session, so that the
+     * output of the batch is discarded and the work items are run one by one.
+     */
+    private static final class DiscardedOutputException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        protected DiscardedOutputException( String logMsg ) {
+            super(logMsg);
+        }
+    }
 }
@@ -15,43 +15,162 @@
  */
 package org.modeshape.jcr;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import org.modeshape.common.annotation.Immutable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.RepositoryConfiguration.Component;
+import org.modeshape.jcr.RepositoryConfiguration.Default;
+import org.modeshape.jcr.api.monitor.DurationMetric;
+import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.text.TextExtractor;
+import org.modeshape.jcr.text.SpooledTextExtractorOutput;
 import org.modeshape.jcr.text.TextExtractorOutput;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
 import org.modeshape.jcr.value.binary.InMemoryBinaryValue;
+import org.modeshape.jcr.value.binary.StoredBinaryValue;
 
 /**
- * Facility for managing {@link TextExtractor} instances and submitting text extraction work
+ * Facility for managing {@link TextExtractor} instances and submitting text extraction work.
+ * <p>
+ * The binary values whose text is to be extracted wait in a bounded queue, in order of their {@link Priority priority} and then
+ * in the order they were submitted, and at most the configured number of threads take values from the queue. Each binary value is
+ * queued at most once, so submitting a value that is already waiting or being extracted just returns the latch of the existing
+ * work. When the queue is full, the text is extracted in the submitting thread, which slows down whatever is producing the
+ * work. The latches are discarded once the extraction completes.
+ * </p>
+ * <p>
+ * When a queue directory is configured, the binary values are also recorded in a file until their text has been extracted, and
+ * the extraction of the values still recorded when the repository was shut down is resumed when a binary store
+ * {@link #resumePendingExtractions(AbstractBinaryStore, TextExtractor.Context) is given} these text extractors.
+ * </p>
  */
-@Immutable
+@ThreadSafe
 public final class TextExtractors {
 
+    /**
+     * The relative priority with which the text of binary values is extracted.
+     */
+    public static enum Priority {
+        /**
+         * The priority for extractions that should be done before any other queued extractions.
+         */
+        HIGH,
+        /**
+         * The priority for extractions submitted when the text of a binary value is requested.
+         */
+        NORMAL,
+        /**
+         * The priority for extractions that were still pending when the repository was shut down.
+         */
+        LOW
+    }
+
+    /**
+     * The name of the file in the queue directory in which the pending text extractions are recorded.
+     */
+    static final String PENDING_EXTRACTIONS_FILE_NAME = "pending-extractions";
+
+    /**
+     * The maximum number of binary values for which no text could be extracted that are remembered, so that they are not queued
+     * again each time their text is requested.
+     */
+    private static final int MAXIMUM_KEYS_WITHOUT_TEXT = 10000;
+
+    private static final CountDownLatch COMPLETED = new CountDownLatch(0);
+
     private static final Logger LOGGER = Logger.getLogger(TextExtractors.class);
 
     private final List<TextExtractor> extractors;
     private final ExecutorService extractingQueue;
-    private final List<Future<?>> extractionResults;
-    private final ConcurrentHashMap<BinaryKey, CountDownLatch> workerLatches;
+    private final int maxConcurrentExtractions;
+    private final int maxQueueSize;
+    private final RepositoryStatistics statistics;
+    private final PendingExtractions pendingExtractions;
+    private final ConcurrentHashMap<BinaryKey, CountDownLatch> workerLatches = new ConcurrentHashMap<>();
+    private final Set<Thread> extractingThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicInteger resuming = new AtomicInteger();
+    @GuardedBy( "queue" )
+    private final PriorityQueue<Worker> queue = new PriorityQueue<>();
+    @GuardedBy( "queue" )
+    private final Map<BinaryKey, Worker> queuedWorkers = new HashMap<>();
+    @GuardedBy( "queue" )
+    private int activeExtractions;
+    @GuardedBy( "keysWithoutText" )
+    private final Map<BinaryKey, Boolean> keysWithoutText = new LinkedHashMap<BinaryKey, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<BinaryKey, Boolean> eldest ) {
+            return size() > MAXIMUM_KEYS_WITHOUT_TEXT;
+        }
+    };
     private volatile boolean active;
 
     public TextExtractors( ExecutorService extractingQueue,
                            List<TextExtractor> extractors ) {
+        this(extractingQueue, Default.TEXT_EXTRACTION_MAX_POOL_SIZE, Default.TEXT_EXTRACTION_QUEUE_SIZE, null, null, extractors);
+    }
+
+    /**
+     * Create the text extractors.
+     *
+     * @param extractingQueue the executor service in which the queued text extractions run; may not be null
+     * @param maxConcurrentExtractions the maximum number of queued text extractions that run at the same time; must be positive
+     * @param maxQueueSize the maximum number of binary values that can wait for their text to be extracted; must be positive
+     * @param queueDirectory the directory in which the pending text extractions are recorded; may be null if they should only be
+     *        kept in memory
+     * @param statistics the statistics for the repository; may be null
+     * @param extractors the text extractors, in the order in which they are tried; may not be null
+     */
+    public TextExtractors( ExecutorService extractingQueue,
+                           int maxConcurrentExtractions,
+                           int maxQueueSize,
+                           File queueDirectory,
+                           RepositoryStatistics statistics,
+                           List<TextExtractor> extractors ) {
+        CheckArg.isNotNull(extractingQueue, "extractingQueue");
+        CheckArg.isPositive(maxConcurrentExtractions, "maxConcurrentExtractions");
+        CheckArg.isPositive(maxQueueSize, "maxQueueSize");
+        CheckArg.isNotNull(extractors, "extractors");
         this.extractingQueue = extractingQueue;
-        this.workerLatches = new ConcurrentHashMap<>();
-        this.extractionResults = new ArrayList<>();
+        this.maxConcurrentExtractions = maxConcurrentExtractions;
+        this.maxQueueSize = maxQueueSize;
+        this.statistics = statistics;
+        this.pendingExtractions = queueDirectory != null ? PendingExtractions.open(queueDirectory) : null;
         this.extractors = extractors;
         this.active = true;
     }
@@ -59,23 +178,59 @@ public final class TextExtractors {
     protected TextExtractors( JcrRepository.RunningState repository,
                               RepositoryConfiguration.TextExtraction extracting ) {
         this(repository.context().getCachedTreadPool(extracting.getThreadPoolName(), extracting.getMaxPoolSize()),
+             extracting.getMaxPoolSize(), extracting.getQueueSize(), queueDirectory(extracting), repository.statistics(),
              getConfiguredExtractors(repository, extracting));
     }
 
+    private static File queueDirectory( RepositoryConfiguration.TextExtraction extracting ) {
+        String directory = extracting.getQueueDirectory();
+        return StringUtil.isBlank(directory) ? null : new File(directory);
+    }
+
     public void shutdown() {
         this.active = false;
         this.extractors.clear();
+        List<Worker> abandoned;
+        synchronized (queue) {
+            abandoned = new ArrayList<>(queue);
+            queue.clear();
+            queuedWorkers.clear();
+        }
+        if (statistics != null && !abandoned.isEmpty()) {
+            statistics.increment(ValueMetric.TEXT_EXTRACTION_QUEUE_SIZE, -abandoned.size());
+        }
+        // release any threads waiting for the queued work; the work stays recorded so that it is resumed after a restart ...
+        for (Worker worker : abandoned) {
+            worker.latch.countDown();
+        }
         this.extractingQueue.shutdown();
-        for (Future<?> extractionResult : extractionResults) {
-            extractionResult.cancel(true);
+        for (Thread thread : extractingThreads) {
+            thread.interrupt();
+        }
+        if (pendingExtractions != null) {
+            if (resuming.get() == 0) {
+                // every store had the chance to resume its pending extractions, so the others refer to values no store has ...
+                pendingExtractions.removeAll(pendingExtractions.restored.keySet());
+            }
+            pendingExtractions.close();
         }
-        extractionResults.clear();
     }
 
     public boolean extractionEnabled() {
         return active && !extractors.isEmpty();
     }
 
+    /**
+     * Get the number of binary values that are waiting for their text to be extracted.
+     *
+     * @return the number of queued binary values; never negative
+     */
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
     public String extract( InMemoryBinaryValue inMemoryBinaryValue,
                            TextExtractor.Context context ) {
         if (!extractionEnabled()) {
@@ -103,6 +258,23 @@ public final class TextExtractors {
     public CountDownLatch extract( AbstractBinaryStore store,
                                    BinaryValue binaryValue,
                                    TextExtractor.Context context ) {
+        return extract(store, binaryValue, context, Priority.NORMAL);
+    }
+
+    /**
+     * Queue the extraction of the text of the supplied binary value, unless it is already queued or being extracted. If the queue
+     * is full, the text is extracted in the calling thread before this method returns.
+     *
+     * @param store the store in which the extracted text is stored; may not be null
+     * @param binaryValue the binary value; may not be null
+     * @param context the context for the text extractors; may not be null
+     * @param priority the priority of the extraction; may not be null
+     * @return the latch that is released when the extraction has completed, or null if the text is not extracted
+     */
+    public CountDownLatch extract( AbstractBinaryStore store,
+                                   BinaryValue binaryValue,
+                                   TextExtractor.Context context,
+                                   Priority priority ) {
         if (!extractionEnabled()) {
             return null;
         }
@@ -111,19 +283,172 @@ public final class TextExtractors {
             return null;
         }
         CheckArg.isNotNull(binaryValue, "binaryValue");
-        CountDownLatch latch = getWorkerLatch(binaryValue.getKey(), true);
-        extractionResults.add(extractingQueue.submit(new Worker(store, binaryValue, context, latch)));
+        CheckArg.isNotNull(priority, "priority");
+        BinaryKey key = binaryValue.getKey();
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch existingLatch = workerLatches.putIfAbsent(key, latch);
+        if (existingLatch != null) {
+            // the text is already being extracted, but make sure it does not wait behind less important work ...
+            raisePriority(key, priority);
+            return existingLatch;
+        }
+        if (pendingExtractions != null) {
+            pendingExtractions.add(key, binaryValue.getSize());
+        }
+        Worker worker = new Worker(store, binaryValue, context, latch, priority);
+        if (!enqueue(worker)) {
+            // the queue is full, so slow down the caller by extracting the text in its thread ...
+            worker.run();
+        }
         return latch;
     }
 
-    public CountDownLatch getWorkerLatch( BinaryKey binaryKey,
-                                          boolean createIfMissing ) {
-        if (createIfMissing) {
-            CountDownLatch latch = new CountDownLatch(1);
-            CountDownLatch existingLatch = workerLatches.putIfAbsent(binaryKey, latch);
-            return existingLatch != null ? existingLatch : latch;
+    /**
+     * Get the latch for the extraction of the text of the binary value with the supplied key.
+     *
+     * @param binaryKey the key of the binary value; may not be null
+     * @return the latch that is released when the extraction has completed, or null if the text is not being extracted
+     */
+    public CountDownLatch getWorkerLatch( BinaryKey binaryKey ) {
+        CountDownLatch latch = workerLatches.get(binaryKey);
+        if (latch == null) {
+            synchronized (keysWithoutText) {
+                if (keysWithoutText.containsKey(binaryKey)) {
+                    // the text was extracted recently, but there wasn't any ...
+                    return COMPLETED;
+                }
+            }
+        }
+        return latch;
+    }
+
+    /**
+     * Queue the extraction of the text of those binary values in the supplied store that were still waiting for their text to be
+     * extracted when the repository was shut down. The values are found and queued in a background thread, with a
+     * {@link Priority#LOW low} priority.
+     *
+     * @param store the store; may not be null
+     * @param context the context for the text extractors; may not be null
+     */
+    public void resumePendingExtractions( final AbstractBinaryStore store,
+                                          final TextExtractor.Context context ) {
+        if (pendingExtractions == null || pendingExtractions.restored.isEmpty() || !extractionEnabled()) {
+            return;
+        }
+        final Map<BinaryKey, Long> restored = pendingExtractions.restored;
+        resuming.incrementAndGet();
+        Runnable resume = () -> {
+            try {
+                for (Map.Entry<BinaryKey, Long> entry : restored.entrySet()) {
+                    if (!active) {
+                        return;
+                    }
+                    BinaryKey key = entry.getKey();
+                    if (store.hasBinary(key) && restored.remove(key) != null) {
+                        extract(store, new StoredBinaryValue(store, key, entry.getValue()), context, Priority.LOW);
+                    }
+                }
+            } finally {
+                resuming.decrementAndGet();
+            }
+        };
+        new NamedThreadFactory("modeshape-text-extraction-resume").newThread(resume).start();
+    }
+
+    private boolean enqueue( Worker worker ) {
+        boolean startExtracting = false;
+        synchronized (queue) {
+            if (!active || queue.size() >= maxQueueSize) {
+                return false;
+            }
+            queue.add(worker);
+            queuedWorkers.put(worker.key(), worker);
+            if (activeExtractions < maxConcurrentExtractions) {
+                ++activeExtractions;
+                startExtracting = true;
+            }
+        }
+        if (statistics != null) {
+            statistics.increment(ValueMetric.TEXT_EXTRACTION_QUEUE_SIZE);
+        }
+        if (startExtracting) {
+            try {
+                extractingQueue.execute(this::extractQueuedText);
+            } catch (RejectedExecutionException e) {
+                synchronized (queue) {
+                    --activeExtractions;
+                    if (activeExtractions > 0 || !queue.remove(worker)) {
+                        // another thread will take the worker from the queue ...
+                        return true;
+                    }
+                    queuedWorkers.remove(worker.key());
+                }
+                if (statistics != null) {
+                    statistics.decrement(ValueMetric.TEXT_EXTRACTION_QUEUE_SIZE);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void raisePriority( BinaryKey key,
+                                Priority priority ) {
+        synchronized (queue) {
+            Worker worker = queuedWorkers.get(key);
+            if (worker != null && priority.compareTo(worker.priority) < 0) {
+                queue.remove(worker);
+                worker.priority = priority;
+                queue.add(worker);
+            }
+        }
+    }
+
+    private void extractQueuedText() {
+        Thread thread = Thread.currentThread();
+        extractingThreads.add(thread);
+        try {
+            while (true) {
+                Worker worker;
+                synchronized (queue) {
+                    worker = active ? queue.poll() : null;
+                    if (worker == null) {
+                        --activeExtractions;
+                        return;
+                    }
+                    queuedWorkers.remove(worker.key());
+                }
+                if (statistics != null) {
+                    statistics.decrement(ValueMetric.TEXT_EXTRACTION_QUEUE_SIZE);
+                }
+                worker.run();
+            }
+        } finally {
+            extractingThreads.remove(thread);
         }
-        return workerLatches.get(binaryKey);
+    }
+
+    private void completed( Worker worker,
+                            boolean withoutText ) {
+        BinaryKey key = worker.key();
+        if (withoutText) {
+            synchronized (keysWithoutText) {
+                keysWithoutText.put(key, Boolean.TRUE);
+            }
+        }
+        if (active) {
+            // work that was interrupted by a shutdown stays recorded so that it is resumed ...
+            if (pendingExtractions != null) {
+                pendingExtractions.remove(key);
+            }
+            if (statistics != null) {
+                statistics.recordDuration(DurationMetric.TEXT_EXTRACTION_LATENCY, System.nanoTime() - worker.submittedNanos,
+                                          TimeUnit.NANOSECONDS, Collections.singletonMap("binaryKey", key.toString()));
+            }
+        }
+        workerLatches.remove(key, worker.latch);
+        // decrement the latch regardless of success/failure to avoid blocking, as extraction is not retried
+        worker.latch.countDown();
     }
 
     private static List<TextExtractor> getConfiguredExtractors( JcrRepository.RunningState repository,
@@ -146,51 +471,77 @@ public final class TextExtractors {
 
     /**
      * A unit of work which extracts text from a binary value, stores that text in a store and notifies a latch that the
-     * extraction operation has finished.
+     * extraction operation has finished. Workers are ordered by their priority and then by the order in which they were created.
      */
-    protected final class Worker implements Runnable {
+    protected final class Worker implements Runnable, Comparable<Worker> {
         private final BinaryValue binaryValue;
         private final TextExtractor.Context context;
         private final AbstractBinaryStore store;
         private final CountDownLatch latch;
+        private final long sequence;
+        private final long submittedNanos;
+        @GuardedBy( "queue" )
+        private Priority priority;
 
+        @SuppressWarnings( "synthetic-access" )
         protected Worker( AbstractBinaryStore store,
                           BinaryValue binaryValue,
                           TextExtractor.Context context,
-                          CountDownLatch latch ) {
+                          CountDownLatch latch,
+                          Priority priority ) {
             this.store = store;
             this.binaryValue = binaryValue;
             this.context = context;
             this.latch = latch;
+            this.priority = priority;
+            this.sequence = submitted.incrementAndGet();
+            this.submittedNanos = System.nanoTime();
+        }
+
+        protected BinaryKey key() {
+            return binaryValue.getKey();
+        }
+
+        @Override
+        public int compareTo( Worker that ) {
+            int diff = this.priority.compareTo(that.priority);
+            return diff != 0 ? diff : Long.compare(this.sequence, that.sequence);
         }
 
         @SuppressWarnings( "synthetic-access" )
         @Override
         public void run() {
-            if (!active) {
-                return;
-            }
+            boolean withoutText = false;
             try {
+                if (!active) {
+                    return;
+                }
                 // only extract text if there isn't a stored value for the binary key (note that any changes in the binary will
                 // produce a different key)
-                if (store.getExtractedText(binaryValue) != null) {
-                    return;
+                try (Reader storedText = store.getExtractedTextReader(binaryValue)) {
+                    if (storedText != null) {
+                        return;
+                    }
                 }
 
                 String mimeType = binaryValue.getMimeType();
-                TextExtractorOutput output = new TextExtractorOutput();
-                // Run through the extractors and have them extract the text - the first one which accepts the mime-type will win
-                for (TextExtractor extractor : extractors) {
-                    if (!extractor.supportsMimeType(mimeType)) {
-                        continue;
+                // the text of large documents is spooled to a temporary file rather than held in memory ...
+                try (SpooledTextExtractorOutput output = new SpooledTextExtractorOutput()) {
+                    // Run through the extractors and have them extract the text - the first one which accepts the mime-type will
+                    // win
+                    for (TextExtractor extractor : extractors) {
+                        if (!extractor.supportsMimeType(mimeType)) {
+                            continue;
+                        }
+                        extractor.extractFrom(binaryValue, output, context);
+                        break;
                     }
-                    extractor.extractFrom(binaryValue, output, context);
-                    break;
-                }
 
-                String extractedText = output.getText();
-                if (!StringUtil.isBlank(extractedText)) {
-                    store.storeExtractedText(binaryValue, extractedText);
+                    if (output.hasText()) {
+                        store.storeExtractedText(binaryValue, output.getReader());
+                    } else {
+                        withoutText = true;
+                    }
                 }
             } catch (InterruptedException ie) {
                 Thread.interrupted();
@@ -200,11 +551,149 @@ public final class TextExtractors {
                     LOGGER.warn(RepositoryI18n.shutdownWhileExtractingText, binaryValue.getKey(), t.getMessage());
                 } else {
                     LOGGER.error(t, JcrI18n.errorExtractingTextFromBinary, binaryValue.getHexHash(), t.getLocalizedMessage());
+                    withoutText = true;
                 }
             } finally {
-                // decrement the latch regardless of success/failure to avoid blocking, as extraction is not retried
-                latch.countDown();
+                completed(this, withoutText);
             }
         }
     }
+
+    /**
+     * The record of the binary values whose text has yet to be extracted, kept in a file. Each line of the file either adds
+     * ("+&lt;key> &lt;size>") or removes ("-&lt;key>") a binary value, and the file is rewritten with just the pending values
+     * when it is opened and whenever most of its lines are about values that are no longer pending. Failures to write the file
+     * are logged and turn the recording off, since they only mean that the extractions are not resumed after a restart.
+     */
+    @ThreadSafe
+    private static final class PendingExtractions {
+        private static final int MINIMUM_LINES_TO_COMPACT = 1024;
+
+        private final File file;
+        /**
+         * The values that were pending when the file was opened, and which have not yet been resumed.
+         */
+        protected final Map<BinaryKey, Long> restored;
+        @GuardedBy( "this" )
+        private final Map<BinaryKey, Long> pending = new LinkedHashMap<>();
+        @GuardedBy( "this" )
+        private Writer writer;
+        @GuardedBy( "this" )
+        private int lines;
+
+        protected static PendingExtractions open( File directory ) {
+            PendingExtractions pendingExtractions = new PendingExtractions(new File(directory, PENDING_EXTRACTIONS_FILE_NAME));
+            synchronized (pendingExtractions) {
+                pendingExtractions.compact();
+            }
+            return pendingExtractions;
+        }
+
+        private PendingExtractions( File file ) {
+            this.file = file;
+            if (file.exists()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                                                                                      StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        read(line);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error(e, JcrI18n.unableToReadPendingTextExtractions, file, e.getMessage());
+                }
+            }
+            this.restored = new ConcurrentHashMap<>(pending);
+        }
+
+        private void read( String line ) {
+            try {
+                if (line.startsWith("+")) {
+                    int separator = line.indexOf(' ');
+                    pending.put(new BinaryKey(line.substring(1, separator)), Long.valueOf(line.substring(separator + 1)));
+                } else if (line.startsWith("-")) {
+                    pending.remove(new BinaryKey(line.substring(1)));
+                }
+            } catch (RuntimeException e) {
+                // the line was only partially written, so ignore it ...
+                LOGGER.debug("Ignoring the malformed line '{0}' in {1}", line, file);
+            }
+        }
+
+        protected synchronized void add( BinaryKey key,
+                                         long size ) {
+            if (pending.put(key, size) == null) {
+                write("+" + key + " " + size);
+            }
+        }
+
+        protected synchronized void remove( BinaryKey key ) {
+            if (pending.remove(key) != null) {
+                write("-" + key);
+                if (lines > MINIMUM_LINES_TO_COMPACT && lines > 2 * pending.size()) {
+                    compact();
+                }
+            }
+        }
+
+        protected synchronized void removeAll( Set<BinaryKey> keys ) {
+            for (BinaryKey key : new ArrayList<>(keys)) {
+                if (pending.remove(key) != null) {
+                    write("-" + key);
+                }
+            }
+        }
+
+        protected synchronized void close() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LOGGER.error(e, JcrI18n.unableToRecordPendingTextExtractions, file, e.getMessage());
+                }
+                writer = null;
+            }
+        }
+
+        @GuardedBy( "this" )
+        private void write( String line ) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(line);
+                writer.write('\n');
+                writer.flush();
+                ++lines;
+            } catch (IOException e) {
+                LOGGER.error(e, JcrI18n.unableToRecordPendingTextExtractions, file, e.getMessage());
+                close();
+            }
+        }
+
+        @GuardedBy( "this" )
+        private void compact() {
+            close();
+            File compacted = new File(file.getParentFile(), file.getName() + ".tmp");
+            try {
+                file.getParentFile().mkdirs();
+                try (Writer output = newWriter(compacted, false)) {
+                    for (Map.Entry<BinaryKey, Long> entry : pending.entrySet()) {
+                        output.write("+" + entry.getKey() + " " + entry.getValue() + "\n");
+                    }
+                }
+                Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                lines = pending.size();
+                // the file is not written through an interruptible channel, so that interrupting extractions can't close it ...
+                writer = newWriter(file, true);
+            } catch (IOException e) {
+                LOGGER.error(e, JcrI18n.unableToRecordPendingTextExtractions, file, e.getMessage());
+            }
+        }
+
+        private static Writer newWriter( File file,
+                                         boolean append ) throws IOException {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8));
+        }
+    }
 }
@@ -15,7 +15,9 @@
  */
 package org.modeshape.jcr.cache;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * 
@@ -47,6 +49,22 @@ public interface NodeCache extends CachedNodeSupplier {
      */
     CachedNode getNode( ChildReference reference );
 
+    /**
+     * Get the cached representations of the nodes with the supplied keys. Implementations may load with a single request all of
+     * the nodes that are not yet cached, so this method should be used rather than {@link #getNode(NodeKey)} when many nodes are
+     * needed at once.
+     * 
+     * @param keys the node keys; may not be null
+     * @return the cached nodes in the same order as the keys, with null for each key that does not identify a node; never null
+     */
+    default List<CachedNode> getNodes( List<NodeKey> keys ) {
+        List<CachedNode> nodes = new ArrayList<>(keys.size());
+        for (NodeKey key : keys) {
+            nodes.add(getNode(key));
+        }
+        return nodes;
+    }
+
     /**
      * Get an iterator over all node keys within this cache. The order of the keys is not defined.
      * 
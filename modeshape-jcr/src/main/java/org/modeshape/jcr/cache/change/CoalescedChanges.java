@@ -0,0 +1,240 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.change;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Property;
+
+/**
+ * An immutable {@link ChangeSet} that combines several change sets made in the same workspace, in the order they were saved.
+ * <p>
+ * Successive changes to the same property of a node are collapsed into a single change that goes from the value before the
+ * first change to the value after the last change, and a property that is added and then removed is dropped altogether. The
+ * property changes of a node are kept until a later change to that node that is not a property change (or a change that alters
+ * the paths of other nodes), so that the combined changes describe the same end state as the original change sets.
+ * </p>
+ * <p>
+ * The user, session, timestamp and other information about the save are those of the last change set.
+ * </p>
+ */
+@Immutable
+public final class CoalescedChanges implements ChangeSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Combine the supplied change sets.
+     *
+     * @param changeSets the change sets in the order they were saved; may not be null or empty, and all must have the same
+     *        workspace name
+     * @return the combined change set; never null
+     */
+    public static ChangeSet coalesce( List<ChangeSet> changeSets ) {
+        CheckArg.isNotEmpty(changeSets, "changeSets");
+        if (changeSets.size() == 1) return changeSets.get(0);
+        return new CoalescedChanges(changeSets);
+    }
+
+    private final ChangeSet last;
+    private final List<Change> events;
+    private final Set<NodeKey> nodeKeys;
+    private final Set<BinaryKey> unusedBinaries;
+    private final Set<BinaryKey> usedBinaries;
+
+    private CoalescedChanges( List<ChangeSet> changeSets ) {
+        this.last = changeSets.get(changeSets.size() - 1);
+        List<Change> events = new ArrayList<>();
+        Set<NodeKey> nodeKeys = new HashSet<>();
+        Set<BinaryKey> unusedBinaries = new HashSet<>();
+        Set<BinaryKey> usedBinaries = new HashSet<>();
+        Map<NodeKey, Map<Name, AbstractPropertyChange>> pending = new LinkedHashMap<>();
+        for (ChangeSet changeSet : changeSets) {
+            assert changeSet.getWorkspaceName() != null && changeSet.getWorkspaceName().equals(last.getWorkspaceName());
+            for (Change change : changeSet) {
+                if (change instanceof AbstractPropertyChange) {
+                    AbstractPropertyChange propertyChange = (AbstractPropertyChange)change;
+                    Map<Name, AbstractPropertyChange> byName = pending.get(propertyChange.getKey());
+                    if (byName == null) {
+                        byName = new LinkedHashMap<>();
+                        pending.put(propertyChange.getKey(), byName);
+                    }
+                    Name name = propertyChange.getProperty().getName();
+                    AbstractPropertyChange merged = merge(byName.remove(name), propertyChange);
+                    if (merged != null) byName.put(name, merged);
+                } else if (change instanceof NodeMoved || change instanceof NodeRenamed || change instanceof NodeReordered
+                           || !(change instanceof AbstractNodeChange || change instanceof BinaryValueUsageChange)) {
+                    // The paths of other nodes may change, so apply all of the property changes seen so far ...
+                    for (Map<Name, AbstractPropertyChange> byName : pending.values()) {
+                        events.addAll(byName.values());
+                    }
+                    pending.clear();
+                    events.add(change);
+                } else if (change instanceof AbstractNodeChange) {
+                    Map<Name, AbstractPropertyChange> byName = pending.remove(((AbstractNodeChange)change).getKey());
+                    if (byName != null) events.addAll(byName.values());
+                    events.add(change);
+                } else {
+                    events.add(change);
+                }
+            }
+            nodeKeys.addAll(changeSet.changedNodes());
+            unusedBinaries.addAll(changeSet.unusedBinaries());
+            usedBinaries.addAll(changeSet.usedBinaries());
+        }
+        for (Map<Name, AbstractPropertyChange> byName : pending.values()) {
+            events.addAll(byName.values());
+        }
+        this.events = Collections.unmodifiableList(events);
+        this.nodeKeys = Collections.unmodifiableSet(nodeKeys);
+        this.unusedBinaries = Collections.unmodifiableSet(unusedBinaries);
+        this.usedBinaries = Collections.unmodifiableSet(usedBinaries);
+    }
+
+    /**
+     * Collapse two successive changes to the same property of a node.
+     *
+     * @param previous the earlier change; may be null if there is none
+     * @param next the later change; may not be null
+     * @return the change that has the same effect as both changes, or null if the changes cancel each other out
+     */
+    private static AbstractPropertyChange merge( AbstractPropertyChange previous,
+                                                 AbstractPropertyChange next ) {
+        if (previous == null) return next;
+        Property before = valueBefore(previous);
+        if (next instanceof PropertyRemoved) {
+            // The property no longer exists, so remove whatever value was there before the first change ...
+            if (before == null) return null;
+            return new PropertyRemoved(next.getKey(), next.getPrimaryType(), next.getMixinTypes(), next.getPathToNode(), before);
+        }
+        if (before == null) {
+            // The property did not exist before the first change ...
+            return new PropertyAdded(next.getKey(), next.getPrimaryType(), next.getMixinTypes(), next.getPathToNode(),
+                                     next.getProperty());
+        }
+        return new PropertyChanged(next.getKey(), next.getPrimaryType(), next.getMixinTypes(), next.getPathToNode(),
+                                   next.getProperty(), before);
+    }
+
+    private static Property valueBefore( AbstractPropertyChange change ) {
+        if (change instanceof PropertyChanged) return ((PropertyChanged)change).getOldProperty();
+        if (change instanceof PropertyRemoved) return change.getProperty();
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return events.isEmpty() && nodeKeys.isEmpty();
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return events.iterator();
+    }
+
+    @Override
+    public String getUserId() {
+        return last.getUserId();
+    }
+
+    @Override
+    public Map<String, String> getUserData() {
+        return last.getUserData();
+    }
+
+    @Override
+    public DateTime getTimestamp() {
+        return last.getTimestamp();
+    }
+
+    @Override
+    public String getProcessKey() {
+        return last.getProcessKey();
+    }
+
+    @Override
+    public String getRepositoryKey() {
+        return last.getRepositoryKey();
+    }
+
+    @Override
+    public String getWorkspaceName() {
+        return last.getWorkspaceName();
+    }
+
+    @Override
+    public Set<NodeKey> changedNodes() {
+        return nodeKeys;
+    }
+
+    @Override
+    public Set<BinaryKey> unusedBinaries() {
+        return unusedBinaries;
+    }
+
+    @Override
+    public Set<BinaryKey> usedBinaries() {
+        return usedBinaries;
+    }
+
+    @Override
+    public boolean hasBinaryChanges() {
+        return !usedBinaries.isEmpty() || !unusedBinaries.isEmpty();
+    }
+
+    @Override
+    public String getSessionId() {
+        return last.getSessionId();
+    }
+
+    @Override
+    public String getJournalId() {
+        return last.getJournalId();
+    }
+
+    @Override
+    public String getUUID() {
+        return last.getUUID();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Combined changes in workspace '").append(getWorkspaceName()).append("' up to the save by '")
+          .append(getUserId()).append("' at ").append(getTimestamp()).append("\n");
+        for (Change change : this) {
+            sb.append("  ").append(change).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -15,7 +15,11 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import org.modeshape.common.logging.Logger;
@@ -238,23 +242,58 @@ public class WorkspaceCache implements DocumentCache {
             }
             Document doc = documentFor(key);
             if (doc != null) {
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.trace("Materialized document '{0}' in '{1}' workspace from store: {2}", key, workspaceName, doc);
-                }
-                // Create a new node and put into this cache ...
-                CachedNode newNode = new LazyCachedNode(key, doc);
-                if (translator.isCacheable(doc)) {
-                    node = nodesByKey.putIfAbsent(key, newNode);
-                }
-                if (node == null) {
-                    // there was no previous entry, so just use our new CachedNode ...
-                    node = newNode;
-                }
+                node = materialize(key, doc);
             }
         }
         return node;
     }
 
+    @Override
+    public List<CachedNode> getNodes( List<NodeKey> keys ) {
+        checkNotClosed();
+        // Load with a single request all of the documents for the nodes that are not yet in this cache ...
+        List<String> missingKeys = new ArrayList<>();
+        for (NodeKey key : keys) {
+            if (!nodesByKey.containsKey(key)) missingKeys.add(key.toString());
+        }
+        Map<String, Document> docsByKey = new HashMap<>();
+        if (!missingKeys.isEmpty()) {
+            for (SchematicEntry entry : documentStore.load(missingKeys)) {
+                try {
+                    docsByKey.put(entry.id(), entry.content());
+                } catch (IllegalStateException e) {
+                    LOGGER.debug("The document '{0}' was concurrently removed; ignoring.", entry.id());
+                }
+            }
+        }
+        List<CachedNode> nodes = new ArrayList<>(keys.size());
+        for (NodeKey key : keys) {
+            CachedNode node = nodesByKey.get(key);
+            if (node == null) {
+                Document doc = docsByKey.get(key.toString());
+                // The node may have been evicted since we checked, so then just load it ...
+                node = doc != null ? materialize(key, doc) : getNode(key);
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private CachedNode materialize( NodeKey key,
+                                    Document doc ) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Materialized document '{0}' in '{1}' workspace from store: {2}", key, workspaceName, doc);
+        }
+        // Create a new node and put into this cache ...
+        CachedNode newNode = new LazyCachedNode(key, doc);
+        CachedNode node = null;
+        if (translator.isCacheable(doc)) {
+            node = nodesByKey.putIfAbsent(key, newNode);
+        }
+        // if there was no previous entry, just use our new CachedNode ...
+        return node != null ? node : newNode;
+    }
+
     @Override
     public CachedNode getNode( ChildReference reference ) {
         checkNotClosed();
@@ -0,0 +1,275 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.mapdb.BTreeKeySerializer;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+
+/**
+ * Statistics about the values in the column of a {@link LocalMapIndex}, which are used to estimate the number of values that
+ * satisfy a constraint without reading the index. The statistics consist of an equi-depth histogram, whose boundaries divide
+ * the sorted values into buckets that each contain the same number of values, and a {@link HyperLogLog sketch} of the number of
+ * distinct values.
+ * <p>
+ * The sketch is updated as values are added. The histogram is rebuilt from the index (along with the sketch, which cannot
+ * forget removed values) when the number of values added or removed since the last rebuild is a sizable fraction of the number
+ * of values, so the cost of rebuilding is proportional to the number of changes. The statistics are stored in the index's
+ * database, so they are available as soon as the index is reopened.
+ * </p>
+ *
+ * @param <T> the type of the values in the index
+ */
+@ThreadSafe
+final class ColumnStatistics<T> {
+
+    /**
+     * The maximum number of buckets in the histogram.
+     */
+    private static final int MAX_BUCKETS = 100;
+
+    /**
+     * The histogram is rebuilt when the number of changed values exceeds this fraction of the values.
+     */
+    private static final double REBUILD_FRACTION = 0.2d;
+
+    private static final String DEPTH = "depth";
+    private static final String COUNT = "count";
+    private static final String DISTINCT_VALUES = "distinct-values";
+
+    private final DB db;
+    private final String histogramName;
+    private final String statisticsName;
+    private final Comparator<T> comparator;
+    private final NavigableMap<Integer, T> storedBoundaries;
+    private final Map<String, Object> storedStatistics;
+    @GuardedBy( "this" )
+    private final HyperLogLog distinctValues;
+    @GuardedBy( "this" )
+    private long modifications;
+    @GuardedBy( "this" )
+    private boolean changed;
+    private volatile Histogram<T> histogram;
+
+    ColumnStatistics( String indexName,
+                      DB db,
+                      Comparator<T> comparator,
+                      Serializer<T> valueSerializer ) {
+        this.db = db;
+        this.histogramName = indexName + "/histogram";
+        this.statisticsName = indexName + "/statistics";
+        this.comparator = comparator;
+        this.storedBoundaries = db.createTreeMap(histogramName).keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_INT)
+                                  .valueSerializer(valueSerializer).makeOrGet();
+        this.storedStatistics = db.createHashMap(statisticsName).keySerializer(Serializer.STRING).makeOrGet();
+        this.distinctValues = new HyperLogLog((byte[])storedStatistics.get(DISTINCT_VALUES));
+        Long depth = (Long)storedStatistics.get(DEPTH);
+        Long count = (Long)storedStatistics.get(COUNT);
+        if (depth != null && count != null) {
+            this.histogram = new Histogram<>(new ArrayList<>(storedBoundaries.values()), depth, count);
+        }
+    }
+
+    /**
+     * Record that a value was added to the index.
+     *
+     * @param value the value; may not be null
+     */
+    synchronized void added( T value ) {
+        distinctValues.add(value.hashCode());
+        ++modifications;
+        changed = true;
+    }
+
+    /**
+     * Record that a value was removed from the index.
+     *
+     * @param value the value; may not be null
+     */
+    synchronized void removed( T value ) {
+        ++modifications;
+        changed = true;
+    }
+
+    /**
+     * Rebuild the statistics if enough values have changed since they were last built, and store them in the database so that
+     * they are committed with the index.
+     *
+     * @param values the values in the index; may not be null
+     * @param count the number of values in the index
+     */
+    void update( NavigableMap<T, ?> values,
+                 long count ) {
+        boolean rebuild;
+        synchronized (this) {
+            rebuild = histogram == null ? count > 0 || changed : modifications > count * REBUILD_FRACTION;
+        }
+        if (rebuild) rebuild(values, count);
+        store();
+    }
+
+    /**
+     * Discard all of the statistics, as is done when all of the values are removed from the index.
+     */
+    synchronized void clear() {
+        distinctValues.clear();
+        modifications = 0L;
+        changed = true;
+        histogram = new Histogram<>(Collections.<T>emptyList(), 1L, 0L);
+    }
+
+    /**
+     * Remove the statistics from the database.
+     */
+    synchronized void destroy() {
+        if (db.exists(histogramName)) db.delete(histogramName);
+        if (db.exists(statisticsName)) db.delete(statisticsName);
+    }
+
+    private void rebuild( NavigableMap<T, ?> values,
+                          long count ) {
+        int buckets = (int)Math.max(1L, Math.min(MAX_BUCKETS, count));
+        long depth = Math.max(1L, (count + buckets - 1) / buckets);
+        List<T> boundaries = new ArrayList<>(buckets + 1);
+        HyperLogLog sketch = new HyperLogLog();
+        long position = 0L;
+        T last = null;
+        for (T value : values.keySet()) {
+            if (position % depth == 0L) boundaries.add(value);
+            sketch.add(value.hashCode());
+            last = value;
+            ++position;
+        }
+        if (last != null && (position - 1L) % depth != 0L) {
+            // The last value always ends the last bucket ...
+            boundaries.add(last);
+        }
+        synchronized (this) {
+            distinctValues.clear();
+            distinctValues.merge(sketch);
+            modifications = 0L;
+            changed = true;
+            histogram = new Histogram<>(boundaries, depth, position);
+        }
+    }
+
+    private synchronized void store() {
+        if (!changed || histogram == null) return;
+        if (!storedBoundaries.isEmpty() || !histogram.boundaries.isEmpty()) {
+            storedBoundaries.clear();
+            int i = 0;
+            for (T boundary : histogram.boundaries) {
+                storedBoundaries.put(i++, boundary);
+            }
+        }
+        storedStatistics.put(DEPTH, histogram.depth);
+        storedStatistics.put(COUNT, histogram.count);
+        storedStatistics.put(DISTINCT_VALUES, distinctValues.toBytes());
+        changed = false;
+    }
+
+    /**
+     * Estimate the number of values within the supplied range.
+     *
+     * @param lower the lowest value in the range; may be null if the range has no lower bound
+     * @param lowerIncluded true if the range includes the lowest value, or false otherwise
+     * @param upper the highest value in the range; may be null if the range has no upper bound
+     * @param upperIncluded true if the range includes the highest value, or false otherwise
+     * @param singleValue true if all of the values in the range are equal (even if the bounds are not), as is the case for
+     *        an equality constraint
+     * @return the estimated number of values, or -1 if the statistics have not been built or if the index has so few values
+     *         that they should instead be counted
+     */
+    long estimateCount( T lower,
+                        boolean lowerIncluded,
+                        T upper,
+                        boolean upperIncluded,
+                        boolean singleValue ) {
+        Histogram<T> histogram = this.histogram;
+        if (histogram == null || histogram.depth == 1L) {
+            // Every value is a boundary, so the index is small enough to be counted exactly ...
+            return -1L;
+        }
+        List<T> boundaries = histogram.boundaries;
+        if (boundaries.isEmpty()) return 0L;
+        if (!isAboveLower(boundaries.get(boundaries.size() - 1), lower, lowerIncluded)) return 0L;
+        if (!isBelowUpper(boundaries.get(0), upper, upperIncluded)) return 0L;
+        long inside = 0L;
+        for (T boundary : boundaries) {
+            if (isAboveLower(boundary, lower, lowerIncluded) && isBelowUpper(boundary, upper, upperIncluded)) ++inside;
+        }
+        long estimate;
+        if (singleValue) {
+            // A value that is a boundary of several buckets fills the buckets between them ...
+            estimate = inside > 1L ? inside * histogram.depth : histogram.count / distinctValues(histogram.count);
+        } else {
+            // A range between two boundaries is assumed to contain half of a bucket ...
+            estimate = inside > 0L ? inside * histogram.depth : histogram.depth / 2L;
+        }
+        return Math.max(1L, Math.min(histogram.count, estimate));
+    }
+
+    /**
+     * Estimate the number of distinct values.
+     *
+     * @param count the number of values
+     * @return the estimated number of distinct values; at least 1 and at most <code>count</code> (unless it is 0)
+     */
+    synchronized long distinctValues( long count ) {
+        return Math.max(1L, Math.min(count, distinctValues.estimate()));
+    }
+
+    private boolean isAboveLower( T value,
+                                  T lower,
+                                  boolean lowerIncluded ) {
+        if (lower == null) return true;
+        int diff = comparator.compare(value, lower);
+        return lowerIncluded ? diff >= 0 : diff > 0;
+    }
+
+    private boolean isBelowUpper( T value,
+                                  T upper,
+                                  boolean upperIncluded ) {
+        if (upper == null) return true;
+        int diff = comparator.compare(value, upper);
+        return upperIncluded ? diff <= 0 : diff < 0;
+    }
+
+    @Immutable
+    private static final class Histogram<T> {
+        protected final List<T> boundaries;
+        protected final long depth;
+        protected final long count;
+
+        protected Histogram( List<T> boundaries,
+                             long depth,
+                             long count ) {
+            this.boundaries = Collections.unmodifiableList(boundaries);
+            this.depth = depth;
+            this.count = count;
+        }
+    }
+}
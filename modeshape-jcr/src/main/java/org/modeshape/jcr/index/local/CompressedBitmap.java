@@ -0,0 +1,591 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import org.modeshape.common.annotation.NotThreadSafe;
+
+/**
+ * A compressed set of non-negative integers, organized like a Roaring bitmap: the values are grouped into chunks by their upper
+ * 16 bits, and the lower 16 bits of the values in each chunk are stored either in a sorted array when the chunk contains only a
+ * few values, or in a bitmap of 2<sup>16</sup> bits when it contains many. Unions, intersections, differences and counts are
+ * computed chunk by chunk, without ever looking at the individual values of dense chunks.
+ */
+@NotThreadSafe
+final class CompressedBitmap {
+
+    /**
+     * The maximum number of values in an array chunk; above this a bitmap chunk (of 8KB) is smaller.
+     */
+    protected static final int MAX_ARRAY_SIZE = 4096;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    CompressedBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private CompressedBitmap( char[] keys,
+                              Container[] containers,
+                              int size ) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Add the value to this set.
+     *
+     * @param value the non-negative value
+     * @return true if the value was added, or false if it was already in this set
+     */
+    public boolean add( int value ) {
+        assert value >= 0;
+        char key = (char)(value >>> 16);
+        char low = (char)value;
+        int index = indexOf(key);
+        if (index >= 0) {
+            Container container = containers[index];
+            int before = container.cardinality();
+            containers[index] = container.add(low);
+            return containers[index].cardinality() != before;
+        }
+        insert(-index - 1, key, new ArrayContainer().add(low));
+        return true;
+    }
+
+    /**
+     * Remove the value from this set.
+     *
+     * @param value the non-negative value
+     * @return true if the value was removed, or false if it was not in this set
+     */
+    public boolean remove( int value ) {
+        int index = indexOf((char)(value >>> 16));
+        if (index < 0) return false;
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove((char)value);
+        if (container.cardinality() == before) return false;
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        } else {
+            containers[index] = container;
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether the value is in this set.
+     *
+     * @param value the value
+     * @return true if the value is in this set
+     */
+    public boolean contains( int value ) {
+        int index = indexOf((char)(value >>> 16));
+        return index >= 0 && containers[index].contains((char)value);
+    }
+
+    /**
+     * Get the number of values in this set.
+     *
+     * @return the number of values
+     */
+    public long cardinality() {
+        long result = 0L;
+        for (int i = 0; i != size; ++i) {
+            result += containers[i].cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * Determine whether this set is empty.
+     *
+     * @return true if there are no values in this set
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Create an independent copy of this set.
+     *
+     * @return the copy; never null
+     */
+    public CompressedBitmap copy() {
+        Container[] copies = new Container[Math.max(size, 4)];
+        for (int i = 0; i != size; ++i) {
+            copies[i] = containers[i].copy();
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, copies.length), copies, size);
+    }
+
+    /**
+     * Create the union of this set and the supplied set.
+     *
+     * @param other the other set; may not be null
+     * @return the new set with the values in either set; never null
+     */
+    public CompressedBitmap or( CompressedBitmap other ) {
+        CompressedBitmap result = new CompressedBitmap(new char[size + other.size], new Container[size + other.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i != size && j != other.size) {
+            char key = keys[i];
+            char otherKey = other.keys[j];
+            if (key < otherKey) {
+                result.append(key, containers[i++].copy());
+            } else if (key > otherKey) {
+                result.append(otherKey, other.containers[j++].copy());
+            } else {
+                result.append(key, or(containers[i++], other.containers[j++]));
+            }
+        }
+        while (i != size) {
+            result.append(keys[i], containers[i++].copy());
+        }
+        while (j != other.size) {
+            result.append(other.keys[j], other.containers[j++].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Create the intersection of this set and the supplied set.
+     *
+     * @param other the other set; may not be null
+     * @return the new set with the values in both sets; never null
+     */
+    public CompressedBitmap and( CompressedBitmap other ) {
+        CompressedBitmap result = new CompressedBitmap(new char[Math.max(Math.min(size, other.size), 1)],
+                                                       new Container[Math.max(Math.min(size, other.size), 1)], 0);
+        int i = 0;
+        int j = 0;
+        while (i != size && j != other.size) {
+            char key = keys[i];
+            char otherKey = other.keys[j];
+            if (key < otherKey) {
+                ++i;
+            } else if (key > otherKey) {
+                ++j;
+            } else {
+                Container container = and(containers[i++], other.containers[j++]);
+                if (container != null) result.append(key, container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create the difference of this set and the supplied set.
+     *
+     * @param other the other set; may not be null
+     * @return the new set with the values that are in this set but not in the other set; never null
+     */
+    public CompressedBitmap andNot( CompressedBitmap other ) {
+        CompressedBitmap result = new CompressedBitmap(new char[Math.max(size, 1)], new Container[Math.max(size, 1)], 0);
+        int j = 0;
+        for (int i = 0; i != size; ++i) {
+            char key = keys[i];
+            while (j != other.size && other.keys[j] < key) {
+                ++j;
+            }
+            if (j != other.size && other.keys[j] == key) {
+                Container container = andNot(containers[i], other.containers[j]);
+                if (container != null) result.append(key, container);
+            } else {
+                result.append(key, containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get an iterator over the values in this set, in increasing order. The set should not be modified while the iterator is
+     * used.
+     *
+     * @return the iterator; never null
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = 0;
+            private int from = 0;
+            private int next = findNext();
+
+            private int findNext() {
+                while (index < size) {
+                    int low = from <= 0xFFFF ? containers[index].next(from) : -1;
+                    if (low >= 0) {
+                        from = low + 1;
+                        return (keys[index] << 16) | low;
+                    }
+                    ++index;
+                    from = 0;
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) throw new NoSuchElementException();
+                int result = next;
+                next = findNext();
+                return result;
+            }
+        };
+    }
+
+    private int indexOf( char key ) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert( int index,
+                         char key,
+                         Container container ) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        ++size;
+    }
+
+    private void append( char key,
+                         Container container ) {
+        insert(size, key, container);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        PrimitiveIterator.OfInt iter = iterator();
+        for (int i = 0; iter.hasNext(); ++i) {
+            if (i == 100) {
+                sb.append(", ...");
+                break;
+            }
+            if (i != 0) sb.append(", ");
+            sb.append(iter.nextInt());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static Container or( Container first,
+                                 Container second ) {
+        if (first instanceof ArrayContainer && second instanceof ArrayContainer) {
+            ArrayContainer a = (ArrayContainer)first;
+            ArrayContainer b = (ArrayContainer)second;
+            char[] merged = new char[a.cardinality + b.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i != a.cardinality && j != b.cardinality) {
+                char x = a.values[i];
+                char y = b.values[j];
+                if (x <= y) ++i;
+                if (y <= x) ++j;
+                merged[count++] = x <= y ? x : y;
+            }
+            while (i != a.cardinality) {
+                merged[count++] = a.values[i++];
+            }
+            while (j != b.cardinality) {
+                merged[count++] = b.values[j++];
+            }
+            return new ArrayContainer(merged, count).normalize();
+        }
+        BitmapContainer result = first instanceof BitmapContainer ? ((BitmapContainer)first).copy() : ((BitmapContainer)second).copy();
+        Container other = first instanceof BitmapContainer ? second : first;
+        if (other instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer)other;
+            for (int i = 0; i != array.cardinality; ++i) {
+                result.set(array.values[i]);
+            }
+        } else {
+            long[] words = ((BitmapContainer)other).words;
+            for (int i = 0; i != words.length; ++i) {
+                result.words[i] |= words[i];
+            }
+            result.recount();
+        }
+        return result;
+    }
+
+    private static Container and( Container first,
+                                  Container second ) {
+        if (first instanceof ArrayContainer || second instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer)(first instanceof ArrayContainer ? first : second);
+            Container other = array == first ? second : first;
+            char[] values = new char[array.cardinality];
+            int count = 0;
+            for (int i = 0; i != array.cardinality; ++i) {
+                if (other.contains(array.values[i])) values[count++] = array.values[i];
+            }
+            return count == 0 ? null : new ArrayContainer(values, count);
+        }
+        BitmapContainer result = ((BitmapContainer)first).copy();
+        long[] words = ((BitmapContainer)second).words;
+        for (int i = 0; i != words.length; ++i) {
+            result.words[i] &= words[i];
+        }
+        result.recount();
+        return result.cardinality == 0 ? null : result.normalize();
+    }
+
+    private static Container andNot( Container first,
+                                     Container second ) {
+        if (first instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer)first;
+            char[] values = new char[array.cardinality];
+            int count = 0;
+            for (int i = 0; i != array.cardinality; ++i) {
+                if (!second.contains(array.values[i])) values[count++] = array.values[i];
+            }
+            return count == 0 ? null : new ArrayContainer(values, count);
+        }
+        BitmapContainer result = ((BitmapContainer)first).copy();
+        if (second instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer)second;
+            for (int i = 0; i != array.cardinality; ++i) {
+                result.clear(array.values[i]);
+            }
+        } else {
+            long[] words = ((BitmapContainer)second).words;
+            for (int i = 0; i != words.length; ++i) {
+                result.words[i] &= ~words[i];
+            }
+            result.recount();
+        }
+        return result.cardinality == 0 ? null : result.normalize();
+    }
+
+    /**
+     * The lower 16 bits of the values in one chunk.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains( char low );
+
+        /**
+         * Add the value, converting to another kind of container if needed.
+         *
+         * @param low the value
+         * @return the container with the value; never null
+         */
+        abstract Container add( char low );
+
+        /**
+         * Remove the value, converting to another kind of container if needed.
+         *
+         * @param low the value
+         * @return the container without the value; never null
+         */
+        abstract Container remove( char low );
+
+        /**
+         * Find the smallest value that is greater than or equal to the supplied value.
+         *
+         * @param from the value, at most 0xFFFF
+         * @return the next value, or -1 if there is none
+         */
+        abstract int next( int from );
+
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        protected char[] values;
+        protected int cardinality;
+
+        protected ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        protected ArrayContainer( char[] values,
+                                  int cardinality ) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains( char low ) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add( char low ) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) return this;
+            if (cardinality == MAX_ARRAY_SIZE) return toBitmap().add(low);
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            ++cardinality;
+            return this;
+        }
+
+        @Override
+        Container remove( char low ) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index < 0) return this;
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            --cardinality;
+            return this;
+        }
+
+        @Override
+        int next( int from ) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char)from);
+            if (index < 0) index = -index - 1;
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        ArrayContainer copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        protected Container normalize() {
+            return cardinality > MAX_ARRAY_SIZE ? toBitmap() : this;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i != cardinality; ++i) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        protected final long[] words;
+        protected int cardinality;
+
+        protected BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        private BitmapContainer( long[] words,
+                                 int cardinality ) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains( char low ) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add( char low ) {
+            set(low);
+            return this;
+        }
+
+        @Override
+        Container remove( char low ) {
+            clear(low);
+            return normalize();
+        }
+
+        @Override
+        int next( int from ) {
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == words.length) return -1;
+                word = words[index];
+            }
+            return index * 64 + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        BitmapContainer copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        protected void set( char low ) {
+            long before = words[low >>> 6];
+            long after = before | (1L << low);
+            if (before != after) {
+                words[low >>> 6] = after;
+                ++cardinality;
+            }
+        }
+
+        protected void clear( char low ) {
+            long before = words[low >>> 6];
+            long after = before & ~(1L << low);
+            if (before != after) {
+                words[low >>> 6] = after;
+                --cardinality;
+            }
+        }
+
+        protected void recount() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            cardinality = count;
+        }
+
+        protected Container normalize() {
+            if (cardinality > MAX_ARRAY_SIZE) return this;
+            char[] values = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int index = 0; index != words.length; ++index) {
+                long word = words[index];
+                while (word != 0) {
+                    values[count++] = (char)(index * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
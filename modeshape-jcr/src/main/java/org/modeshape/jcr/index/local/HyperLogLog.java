@@ -0,0 +1,117 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct values added to it, using a fixed and small amount of memory
+ * regardless of the number of values. The estimate has a standard error of about 2%.
+ * <p>
+ * Values cannot be removed from the sketch, so the sketch only ever over-estimates the number of distinct values that remain
+ * after some values have been removed; the sketch should be rebuilt from the remaining values when that matters.
+ * </p>
+ */
+final class HyperLogLog {
+
+    private static final int PRECISION = 11;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1.0 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers;
+
+    HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * Create a sketch from the registers of another sketch, as returned by {@link #toBytes()}.
+     *
+     * @param registers the registers; may be null if a new empty sketch is to be created
+     */
+    HyperLogLog( byte[] registers ) {
+        this.registers = registers != null && registers.length == REGISTER_COUNT ? registers.clone() : new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * Add a value to the sketch.
+     *
+     * @param hashCode the {@link Object#hashCode() hash code} of the value
+     */
+    void add( int hashCode ) {
+        long hash = mix(hashCode);
+        int index = (int)(hash >>> (Long.SIZE - PRECISION));
+        // The position of the leftmost 1-bit in the remaining bits, with a sentinel bit so the position is bounded ...
+        byte rank = (byte)(Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (registers[index] < rank) registers[index] = rank;
+    }
+
+    /**
+     * Estimate the number of distinct values added to this sketch.
+     *
+     * @return the estimated number of distinct values; never negative
+     */
+    long estimate() {
+        double sum = 0.0d;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0d / (1L << register);
+            if (register == 0) ++zeros;
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5d * REGISTER_COUNT && zeros != 0) {
+            // Use linear counting for small cardinalities ...
+            estimate = REGISTER_COUNT * Math.log((double)REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Add all of the values of another sketch to this sketch.
+     *
+     * @param other the other sketch; may not be null
+     */
+    void merge( HyperLogLog other ) {
+        for (int i = 0; i != REGISTER_COUNT; ++i) {
+            if (registers[i] < other.registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte)0);
+    }
+
+    byte[] toBytes() {
+        return registers.clone();
+    }
+
+    /**
+     * Spread the bits of a 32-bit hash code over 64 bits, using the finalizer of the MurmurHash3 algorithm.
+     *
+     * @param hashCode the hash code
+     * @return the 64-bit hash
+     */
+    private static long mix( int hashCode ) {
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -69,6 +69,14 @@ public class IndexValues {
          */
         T toUpperValue( StaticOperand operand,
                         Map<String, Object> variables );
+
+        /**
+         * Obtain the value that was indexed with the supplied index key.
+         *
+         * @param key the index key; may not be null
+         * @return the value; never null
+         */
+        Object toValue( T key );
     }
 
     public static <T> Converter<UniqueKey<T>> uniqueKeyConverter( Converter<T> converter ) {
@@ -99,6 +107,11 @@ public class IndexValues {
             T value = valueConverter.toLowerValue(operand, variables);
             return value != null ? new UniqueKey<T>(value, Long.MAX_VALUE) : null;
         }
+
+        @Override
+        public Object toValue( UniqueKey<T> key ) {
+            return valueConverter.toValue(key.actualKey);
+        }
     }
 
     protected static class StandardConverter<T> implements Converter<T> {
@@ -136,6 +149,10 @@ public class IndexValues {
             throw new LocalIndexException("Unexpected static operand: " + operand);
         }
 
+        @Override
+        public Object toValue( T key ) {
+            return key;
+        }
     }
 
     private IndexValues() {
@@ -31,6 +31,12 @@ import org.modeshape.jcr.spi.index.IndexConstraints;
 
 /**
  * An index for enumerated values. This index only supports string-based values, since all enumerated values are discrete.
+ * <p>
+ * The keys of the nodes with each value are stored in the database, but the index also keeps in memory a
+ * {@link CompressedBitmap compressed bitmap} of the {@link NodeOrdinals ordinals} of the nodes with each value. These bitmaps are
+ * rebuilt when the index is opened, and are used to compute the unions, intersections and counts of the nodes that satisfy the
+ * constraints without iterating over the sets of node keys.
+ * </p>
  *
  * @author Randall Hauch (rhauch@redhat.com)
  */
@@ -54,6 +60,8 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
     }
 
     protected final ConcurrentNavigableMap<String, Set<String>> nodeKeySetsByValue;
+    protected final ConcurrentNavigableMap<String, CompressedBitmap> ordinalsByValue;
+    private final NodeOrdinals ordinals;
     private final Converter<String> converter;
     private final Set<String> possibleValues;
     private final boolean isNew;
@@ -71,6 +79,8 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
         this.converter = converter;
         this.possibleValues = possibleValues != null ? new HashSet<String>(possibleValues) : new HashSet<String>();
         this.nodeKeySetsByValue = new ConcurrentSkipListMap<>();
+        this.ordinalsByValue = new ConcurrentSkipListMap<>();
+        this.ordinals = new NodeOrdinals(this.name, db);
         // Read all of the existing collections ...
         boolean foundContent = false;
         for (String collectionName : db.getAll().keySet()) {
@@ -94,6 +104,17 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
             }
         }
         this.isNew = !foundContent;
+        // Build the bitmaps of the node ordinals, and release any ordinals that are no longer used ...
+        CompressedBitmap used = new CompressedBitmap();
+        for (Map.Entry<String, Set<String>> entry : nodeKeySetsByValue.entrySet()) {
+            CompressedBitmap bitmap = new CompressedBitmap();
+            for (String nodeKey : entry.getValue()) {
+                bitmap.add(ordinals.assign(nodeKey));
+            }
+            ordinalsByValue.put(entry.getKey(), bitmap);
+            used = used.or(bitmap);
+        }
+        ordinals.retainAll(used);
     }
 
     private Set<String> createOrGetKeySet( String value ) {
@@ -143,47 +164,62 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
     @Override
     public Results filter(IndexConstraints filter, long cardinalityEstimate) {
         // Find all sets that match the name pattern ...
-        return Operations.createEnumeratedFilter(nodeKeySetsByValue, converter, filter.getConstraints(), filter.getVariables())
-                         .getResults();
+        return Operations.createEnumeratedFilter(ordinalsByValue, ordinals, this, converter, filter.getConstraints(),
+                                                 filter.getVariables()).getResults();
     }
 
     @Override
     public long estimateCardinality( List<Constraint> andedConstraints,
                                      Map<String, Object> variables ) {
-        return Operations.createEnumeratedFilter(nodeKeySetsByValue, converter, andedConstraints, variables)
+        return Operations.createEnumeratedFilter(ordinalsByValue, ordinals, this, converter, andedConstraints, variables)
                          .estimateCount();
     }
 
     @Override
-    public void add( String nodeKey,
-                     String propertyName, 
-                     String value ) {
+    public synchronized void add( String nodeKey,
+                                  String propertyName,
+                                  String value ) {
         // Find the set ...
         Set<String> keySet = nodeKeySetsByValue.computeIfAbsent(value, this::createOrGetKeySet);
         if (keySet.add(nodeKey)) {
             totalCount.incrementAndGet();
         }
+        ordinalsByValue.computeIfAbsent(value, v -> new CompressedBitmap()).add(ordinals.assign(nodeKey));
     }
 
     @Override
-    public void remove( String nodeKey ) {
-        for (Set<String> nodeKeySet : nodeKeySetsByValue.values()) {
-            if (nodeKeySet.remove(nodeKey)) {
-                totalCount.decrementAndGet();    
+    public synchronized void remove( String nodeKey ) {
+        Integer ordinal = ordinals.ordinal(nodeKey);
+        if (ordinal == null) return;
+        for (Map.Entry<String, CompressedBitmap> entry : ordinalsByValue.entrySet()) {
+            if (entry.getValue().remove(ordinal)) {
+                Set<String> nodeKeySet = nodeKeySetsByValue.get(entry.getKey());
+                if (nodeKeySet != null && nodeKeySet.remove(nodeKey)) {
+                    totalCount.decrementAndGet();
+                }
             }
         }
+        ordinals.release(nodeKey);
     }
 
     @Override
-    public void remove( String nodeKey,
-                        String propertyName, 
-                        String value ) {
+    public synchronized void remove( String nodeKey,
+                                     String propertyName,
+                                     String value ) {
         Set<String> nodeKeySet = nodeKeySetsByValue.get(value);
         if (nodeKeySet != null) {
             if (nodeKeySet.remove(nodeKey)) {
                 totalCount.decrementAndGet();
             }
         }
+        Integer ordinal = ordinals.ordinal(nodeKey);
+        CompressedBitmap bitmap = ordinalsByValue.get(value);
+        if (ordinal == null || bitmap == null || !bitmap.remove(ordinal)) return;
+        for (CompressedBitmap other : ordinalsByValue.values()) {
+            if (other.contains(ordinal)) return;
+        }
+        // The node no longer has any of the values ...
+        ordinals.release(nodeKey);
     }
 
     @Override
@@ -196,6 +232,8 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
             }
         }
         nodeKeySetsByValue.clear();
+        ordinalsByValue.clear();
+        ordinals.clear();
         totalCount.set(0);
     }
 
@@ -210,6 +248,8 @@ final class LocalEnumeratedIndex extends LocalIndex<String> {
                 }
             }
             nodeKeySetsByValue.clear();
+            ordinalsByValue.clear();
+            ordinals.destroy();
             totalCount.set(0);
         }
     }
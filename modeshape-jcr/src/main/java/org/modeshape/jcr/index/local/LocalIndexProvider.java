@@ -18,7 +18,10 @@ package org.modeshape.jcr.index.local;
 
 import java.io.File;
 import java.nio.file.Paths;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
+import javax.jcr.query.qom.ChildNode;
+import javax.jcr.query.qom.DescendantNode;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.modeshape.common.collection.Problems;
@@ -26,6 +29,7 @@ import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.NodeTypes;
 import org.modeshape.jcr.NodeTypes.Supplier;
+import org.modeshape.jcr.api.index.IndexColumnDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.query.qom.ChildCount;
 import org.modeshape.jcr.api.query.qom.QueryObjectModelConstants;
@@ -233,6 +237,35 @@ public class LocalIndexProvider extends IndexProvider {
                 // this index can't handle this
                 return false;
             }
+
+            @Override
+            protected boolean indexAppliesTo( DescendantNode constraint ) {
+                return matchesSelectorName(constraint.getSelectorName()) && isPathIndex(defn);
+            }
+
+            @Override
+            protected boolean indexAppliesTo( ChildNode constraint ) {
+                return matchesSelectorName(constraint.getSelectorName()) && isPathIndex(defn);
+            }
         };
     }
+
+    /**
+     * Determine whether the supplied index contains the paths of nodes in path order, so that the descendants of a node are
+     * within a range of the index.
+     *
+     * @param defn the index definition; may not be null
+     * @return true if the index is a value index of node paths, or false otherwise
+     */
+    protected static boolean isPathIndex( IndexDefinition defn ) {
+        switch (defn.getKind()) {
+            case VALUE:
+            case UNIQUE_VALUE:
+                IndexColumnDefinition column = defn.getColumnDefinition(0);
+                return defn.hasSingleColumn() && column.getColumnType() == PropertyType.PATH
+                       && "jcr:path".equals(column.getPropertyName());
+            default:
+                return false;
+        }
+    }
 }
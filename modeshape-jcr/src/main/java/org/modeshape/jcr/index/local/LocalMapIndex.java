@@ -16,6 +16,7 @@
 
 package org.modeshape.jcr.index.local;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@ import org.mapdb.Fun;
 import org.mapdb.Serializer;
 import org.modeshape.jcr.index.local.IndexValues.Converter;
 import org.modeshape.jcr.spi.index.IndexConstraints;
+import org.modeshape.jcr.spi.index.provider.Relocatable;
+import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.ValueComparators;
 
 /**
@@ -39,7 +42,7 @@ import org.modeshape.jcr.value.ValueComparators;
  * @param <T> the type of value to be indexed
  * @param <V> the raw type of value to be added
  */
-abstract class LocalMapIndex<T, V> extends LocalIndex<V> {
+abstract class LocalMapIndex<T, V> extends LocalIndex<V> implements Relocatable {
 
     protected final BTreeMap<T, String> keysByValue;
     protected final NavigableSet<Fun.Tuple2<String, T>> valuesByKey;
@@ -47,6 +50,7 @@ abstract class LocalMapIndex<T, V> extends LocalIndex<V> {
     private final Converter<T> converter;
    
     protected final Comparator<T> comparator;
+    private final ColumnStatistics<T> statistics;
     private final boolean isNew;
 
     LocalMapIndex( String name,
@@ -88,6 +92,13 @@ abstract class LocalMapIndex<T, V> extends LocalIndex<V> {
 
         // Bind the map and the set together so the set is auto-updated as the map is changed ...
         Bind.mapInverse(this.keysByValue, this.valuesByKey);
+
+        // Keep the statistics about the values up-to-date as the map is changed ...
+        this.statistics = new ColumnStatistics<>(name, db, comparator, valueRawSerializer);
+        this.keysByValue.modificationListenerAdd((value, oldNodeKey, newNodeKey) -> {
+            if (oldNodeKey == null && newNodeKey != null) statistics.added(value);
+            else if (oldNodeKey != null && newNodeKey == null) statistics.removed(value);
+        });
     }
 
     @Override
@@ -115,18 +126,58 @@ abstract class LocalMapIndex<T, V> extends LocalIndex<V> {
 
     @Override
     public Results filter(IndexConstraints filter, long cardinalityEstimate) {
-        return Operations.createFilter(keysByValue, converter, filter.getConstraints(), filter.getVariables()).getResults();
+        return Operations.createFilter(keysByValue, statistics, converter, filter.getConstraints(), filter.getVariables())
+                         .getResults();
     }
 
     @Override
     public long estimateCardinality( List<Constraint> andedConstraints,
                                      Map<String, Object> variables ) {
-        return Operations.createFilter(keysByValue, converter, andedConstraints, variables).estimateCount();
+        return Operations.createFilter(keysByValue, statistics, converter, andedConstraints, variables).estimateCount();
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override
+    public void relocateDescendants( Map<Path, Path> newPathsByOldPath,
+                                     String propertyName ) {
+        // Find all of the descendants before changing any of them, since the nodes may have exchanged their paths ...
+        List<String> nodeKeys = new ArrayList<>();
+        List<Path> oldPaths = new ArrayList<>();
+        List<Path> newPaths = new ArrayList<>();
+        for (Map.Entry<Path, Path> entry : newPathsByOldPath.entrySet()) {
+            Path oldPath = entry.getKey();
+            Path newPath = entry.getValue();
+            for (Map.Entry<T, String> descendant : Operations.descendants(keysByValue, converter, oldPath).entrySet()) {
+                Object value = converter.toValue(descendant.getKey());
+                if (!(value instanceof Path)) {
+                    // This index doesn't contain paths ...
+                    return;
+                }
+                Path path = (Path)value;
+                nodeKeys.add(descendant.getValue());
+                oldPaths.add(path);
+                newPaths.add(newPath.resolve(path.relativeTo(oldPath)));
+            }
+        }
+        for (int i = 0; i != nodeKeys.size(); ++i) {
+            remove(nodeKeys.get(i), propertyName, (V)oldPaths.get(i));
+        }
+        for (int i = 0; i != nodeKeys.size(); ++i) {
+            add(nodeKeys.get(i), propertyName, (V)newPaths.get(i));
+        }
+    }
+
+    @Override
+    public void commit() {
+        // Store the statistics (rebuilding them if needed) so they're committed with the values ...
+        statistics.update(keysByValue, keysByValue.sizeLong());
+        super.commit();
     }
 
     @Override
     public void clearAllData() {
         keysByValue.clear();
+        statistics.clear();
     }
 
     @Override
@@ -134,6 +185,7 @@ abstract class LocalMapIndex<T, V> extends LocalIndex<V> {
         if (destroyed) {
             // Remove the database since the index was destroyed ...
             db.delete(name);
+            statistics.destroy();
         }
     }
 
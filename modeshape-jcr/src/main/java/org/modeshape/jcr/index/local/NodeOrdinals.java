@@ -0,0 +1,172 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import org.mapdb.BTreeKeySerializer;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+/**
+ * A dictionary that assigns to each node key a dense integer ordinal, so that sets of node keys can be stored as
+ * {@link CompressedBitmap compressed bitmaps}. The dictionary is stored in the index's database, so that the ordinals remain
+ * the same when the index is reopened.
+ * <p>
+ * Ordinals are assigned in increasing order and an ordinal that is {@link #release(String) released} is never assigned to
+ * another node key, so that a bitmap computed before a node key was released never refers to a different node.
+ * </p>
+ */
+final class NodeOrdinals {
+
+    private final DB db;
+    private final String ordinalsName;
+    private final String nodeKeysName;
+    private final Map<String, Integer> ordinalsByNodeKey;
+    private final NavigableMap<Integer, String> nodeKeysByOrdinal;
+    private int nextOrdinal;
+
+    NodeOrdinals( String indexName,
+                  DB db ) {
+        this.db = db;
+        this.ordinalsName = indexName + "/ordinals";
+        this.nodeKeysName = indexName + "/nodeKeys";
+        this.ordinalsByNodeKey = db.createHashMap(ordinalsName).keySerializer(Serializer.STRING)
+                                   .valueSerializer(Serializer.INTEGER).makeOrGet();
+        this.nodeKeysByOrdinal = db.createTreeMap(nodeKeysName).keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_INT)
+                                   .valueSerializer(Serializer.STRING).makeOrGet();
+        this.nextOrdinal = nodeKeysByOrdinal.isEmpty() ? 0 : nodeKeysByOrdinal.lastKey() + 1;
+    }
+
+    /**
+     * Get the ordinal for the supplied node key, assigning a new ordinal if needed.
+     *
+     * @param nodeKey the node key; may not be null
+     * @return the ordinal; never negative
+     */
+    public synchronized int assign( String nodeKey ) {
+        Integer ordinal = ordinalsByNodeKey.get(nodeKey);
+        if (ordinal != null) return ordinal;
+        if (nextOrdinal < 0) {
+            throw new IllegalStateException("All ordinals have been assigned in the '" + ordinalsName + "' dictionary");
+        }
+        ordinal = nextOrdinal++;
+        ordinalsByNodeKey.put(nodeKey, ordinal);
+        nodeKeysByOrdinal.put(ordinal, nodeKey);
+        return ordinal;
+    }
+
+    /**
+     * Get the ordinal for the supplied node key.
+     *
+     * @param nodeKey the node key; may not be null
+     * @return the ordinal, or null if no ordinal is assigned to the node key
+     */
+    public Integer ordinal( String nodeKey ) {
+        return ordinalsByNodeKey.get(nodeKey);
+    }
+
+    /**
+     * Get the node key that has the supplied ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the node key, or null if the ordinal was released or never assigned
+     */
+    public String nodeKey( int ordinal ) {
+        return nodeKeysByOrdinal.get(ordinal);
+    }
+
+    /**
+     * Release the ordinal assigned to the supplied node key.
+     *
+     * @param nodeKey the node key; may not be null
+     */
+    public synchronized void release( String nodeKey ) {
+        Integer ordinal = ordinalsByNodeKey.remove(nodeKey);
+        if (ordinal != null) nodeKeysByOrdinal.remove(ordinal);
+    }
+
+    /**
+     * Release all of the ordinals that are not in the supplied set.
+     *
+     * @param used the ordinals that are still used; may not be null
+     */
+    public synchronized void retainAll( CompressedBitmap used ) {
+        for (Iterator<Map.Entry<Integer, String>> iter = nodeKeysByOrdinal.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<Integer, String> entry = iter.next();
+            if (!used.contains(entry.getKey())) {
+                ordinalsByNodeKey.remove(entry.getValue());
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Get an iterator over the node keys with the ordinals in the supplied set, skipping any ordinals that have since been
+     * released.
+     *
+     * @param ordinals the set of ordinals; may not be null and should not be modified while the iterator is used
+     * @return the iterator over the node keys; never null
+     */
+    public Iterator<String> nodeKeys( CompressedBitmap ordinals ) {
+        final PrimitiveIterator.OfInt iter = ordinals.iterator();
+        return new Iterator<String>() {
+            private String next = findNext();
+
+            private String findNext() {
+                while (iter.hasNext()) {
+                    String nodeKey = nodeKey(iter.nextInt());
+                    if (nodeKey != null) return nodeKey;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) throw new NoSuchElementException();
+                String result = next;
+                next = findNext();
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Remove all of the assigned ordinals.
+     */
+    public synchronized void clear() {
+        ordinalsByNodeKey.clear();
+        nodeKeysByOrdinal.clear();
+    }
+
+    /**
+     * Remove this dictionary from the database.
+     */
+    public synchronized void destroy() {
+        clear();
+        if (db.exists(ordinalsName)) db.delete(ordinalsName);
+        if (db.exists(nodeKeysName)) db.delete(nodeKeysName);
+    }
+}
@@ -17,6 +17,8 @@
 package org.modeshape.jcr.index.local;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -25,13 +27,13 @@ import java.util.NavigableMap;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import javax.jcr.query.qom.And;
+import javax.jcr.query.qom.ChildNode;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.DescendantNode;
 import javax.jcr.query.qom.Not;
 import javax.jcr.query.qom.Or;
 import javax.jcr.query.qom.PropertyExistence;
 import javax.jcr.query.qom.StaticOperand;
-import org.modeshape.common.collection.EmptyIterator;
-import org.modeshape.common.collection.MultiIterator;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.jcr.api.query.qom.Between;
 import org.modeshape.jcr.api.query.qom.Operator;
@@ -44,6 +46,9 @@ import org.modeshape.jcr.query.model.Literal;
 import org.modeshape.jcr.spi.index.Index;
 import org.modeshape.jcr.spi.index.provider.Filter;
 import org.modeshape.jcr.spi.index.provider.Filter.Results;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.basic.BasicPathSegment;
+import org.modeshape.jcr.value.basic.ChildPath;
 
 /**
  * Utility for building {@link Results index Operation} instances that will use an index to return those {@link NodeKey}s that
@@ -62,6 +67,11 @@ class Operations {
             return Filter.ResultBatch.EMPTY;
         }
 
+        @Override
+        public long count() {
+            return 0L;
+        }
+
         @Override
         public void close() {
         }
@@ -84,12 +94,15 @@ class Operations {
      * and the {@link Converter} to return all of the {@link NodeKey}s that satisfy the given constraints.
      *
      * @param keysByValue the index's map of values-to-NodeKey; may not be null
+     * @param statistics the statistics about the values in the index, used to estimate the number of results without counting
+     *        them; may be null if the results are to be counted
      * @param converter the converter; may not be null
      * @param constraints the constraints; may not be null but may be empty if there are no constraints
      * @param variables the bound variables for this query; may not be null but may be empty
      * @return the index operation; never null
      */
     public static <T> FilterOperation createFilter( NavigableMap<T, String> keysByValue,
+                                                    ColumnStatistics<T> statistics,
                                                     Converter<T> converter,
                                                     Collection<Constraint> constraints,
                                                     Map<String, Object> variables ) {
@@ -106,7 +119,8 @@ class Operations {
                 matchedKeys.addAll(keysByValue.values());
             }
         };
-        OperationBuilder<T> builder = new BasicOperationBuilder<>(keysByValue, converter, nodeKeysAccessor, variables);
+        OperationBuilder<T> builder = new BasicOperationBuilder<>(keysByValue, Range.<T>all(), statistics, converter,
+                                                                  nodeKeysAccessor, variables);
         for (Constraint constraint : constraints) {
             OperationBuilder<T> newBuilder = builder.apply(constraint, false);
             if (newBuilder != null) builder = newBuilder;
@@ -116,41 +130,89 @@ class Operations {
 
     /**
      * Create an {@link Results index operation} instance that will use the supplied {@link NavigableMap} (provided by an
-     * enumerated index) and the {@link Converter} to return all of the {@link NodeKey}s that satisfy the given constraints.
+     * enumerated index) and the {@link Converter} to return all of the {@link NodeKey}s that satisfy the given constraints. All
+     * of the constraints are evaluated as unions, intersections and differences of the bitmaps of node ordinals.
      *
-     * @param keySetByEnumeratedValue the index's map of NodeKey sets; may not be null
+     * @param ordinalsByEnumeratedValue the index's map of bitmaps of node ordinals; may not be null
+     * @param ordinals the dictionary of node ordinals; may not be null
+     * @param lock the object on which the index synchronizes changes to the bitmaps; may not be null
      * @param converter the converter; may not be null
      * @param constraints the constraints; may not be null but may be empty if there are no constraints
      * @param variables the bound variables for this query; may not be null but may be empty
      * @return the index operation; never null
      */
-    public static <T> FilterOperation createEnumeratedFilter( NavigableMap<T, Set<String>> keySetByEnumeratedValue,
+    public static <T> FilterOperation createEnumeratedFilter( NavigableMap<T, CompressedBitmap> ordinalsByEnumeratedValue,
+                                                              NodeOrdinals ordinals,
+                                                              Object lock,
                                                               Converter<T> converter,
                                                               Collection<Constraint> constraints,
                                                               Map<String, Object> variables ) {
-        if (keySetByEnumeratedValue.isEmpty()) return EMPTY_FILTER_OPERATION;
-        NodeKeysAccessor<T, Set<String>> nodeKeysAccessor = new NodeKeysAccessor<T, Set<String>>() {
+        if (ordinalsByEnumeratedValue.isEmpty()) return EMPTY_FILTER_OPERATION;
+        return new BitmapFilterOperation<>(ordinalsByEnumeratedValue, ordinals, lock, converter, constraints, variables);
+    }
+
+    /**
+     * Create a {@link Results} instance that returns the supplied node keys, each with the same score.
+     *
+     * @param filteredKeys the iterator over the node keys; may not be null
+     * @return the results; never null
+     */
+    protected static Results results( final Iterator<String> filteredKeys ) {
+        return results(filteredKeys, -1L);
+    }
+
+    /**
+     * Create a {@link Results} instance that returns the supplied node keys, each with the same score.
+     *
+     * @param filteredKeys the iterator over the node keys; may not be null
+     * @param count the exact number of node keys returned by the iterator, or -1 if that number is not known
+     * @return the results; never null
+     */
+    protected static Results results( final Iterator<String> filteredKeys,
+                                      final long count ) {
+        final float score = 1.0f;
+        return new Results() {
+            @Override
+            public Filter.ResultBatch getNextBatch(int batchSize) {
+                int count = 0;
+                final LinkedHashMap<NodeKey, Float> keysByScore = new LinkedHashMap<>();
+                while (count < batchSize && filteredKeys.hasNext()) {
+                    keysByScore.put(new NodeKey(filteredKeys.next()), score);
+                    count++;
+                }
+                return new Filter.ResultBatch() {
+                    @Override
+                    public Iterable<NodeKey> keys() {
+                        return () -> keysByScore.keySet().iterator();
+                    }
+
+                    @Override
+                    public Iterable<Float> scores() {
+                        return () -> keysByScore.values().iterator();
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return filteredKeys.hasNext();
+                    }
+
+                    @Override
+                    public int size() {
+                        return keysByScore.size();
+                    }
+                };
+            }
+
             @Override
-            public Iterator<String> getNodeKeys( NavigableMap<T, Set<String>> keysByValue ) {
-                if (keysByValue.isEmpty()) return new EmptyIterator<String>();
-                if (keysByValue.size() == 1) return keysByValue.values().iterator().next().iterator();
-                return MultiIterator.fromIterables(keysByValue.values());
+            public long count() {
+                return count;
             }
 
             @Override
-            public void addAllTo( NavigableMap<T, Set<String>> keysByValue,
-                                  Set<String> matchedKeys ) {
-                for (Map.Entry<T, Set<String>> entry : keysByValue.entrySet()) {
-                    matchedKeys.addAll(entry.getValue());
-                }
+            public void close() {
+                // Nothing to do ...
             }
         };
-        OperationBuilder<T> builder = new BasicOperationBuilder<>(keySetByEnumeratedValue, converter, nodeKeysAccessor, variables);
-        for (Constraint constraint : constraints) {
-            OperationBuilder<T> newBuilder = builder.apply(constraint, false);
-            if (newBuilder != null) builder = newBuilder;
-        }
-        return builder;
     }
 
     public static interface FilterOperation {
@@ -210,6 +272,12 @@ class Operations {
                 SetCriteria criteria = (SetCriteria)constraint;
                 return apply(criteria, negated);
             }
+            if (constraint instanceof DescendantNode) {
+                return apply((DescendantNode)constraint, negated);
+            }
+            if (constraint instanceof ChildNode) {
+                return apply((ChildNode)constraint, negated);
+            }
 
             // We don't know how to handle any of the other kinds of constraints ...
             LOGGER.debug("Unable to process constraint, so ignoring: {0}", constraint);
@@ -224,6 +292,12 @@ class Operations {
 
         protected abstract OperationBuilder<T> apply( SetCriteria setCriteria,
                                                       boolean negated );
+
+        protected abstract OperationBuilder<T> apply( DescendantNode descendantNode,
+                                                      boolean negated );
+
+        protected abstract OperationBuilder<T> apply( ChildNode childNode,
+                                                      boolean negated );
     }
 
     protected static interface NodeKeysAccessor<T, V> {
@@ -243,22 +317,44 @@ class Operations {
      */
     protected static class BasicOperationBuilder<T, V> extends OperationBuilder<T> {
         protected final NavigableMap<T, V> keysByValue;
+        protected final Range<T> range;
+        protected final ColumnStatistics<T> statistics;
         protected final Converter<T> converter;
         protected final NodeKeysAccessor<T, V> nodeKeysAccessor;
         protected final Map<String, Object> variables;
 
         protected BasicOperationBuilder( NavigableMap<T, V> keysByValue,
+                                         Range<T> range,
+                                         ColumnStatistics<T> statistics,
                                          Converter<T> converter,
                                          NodeKeysAccessor<T, V> nodeKeysAccessor,
                                          Map<String, Object> variables ) {
             this.keysByValue = keysByValue;
+            this.range = range;
+            this.statistics = statistics;
             this.converter = converter;
             this.nodeKeysAccessor = nodeKeysAccessor;
             this.variables = variables;
         }
 
-        protected OperationBuilder<T> create( NavigableMap<T, V> keysByValue ) {
-            return new BasicOperationBuilder<>(keysByValue, converter, nodeKeysAccessor, variables);
+        /**
+         * Create a builder for the values that are in the supplied range and in this builder's range.
+         *
+         * @param range the range; may not be null
+         * @return the new builder; never null
+         */
+        protected final OperationBuilder<T> create( Range<T> range ) {
+            Range<T> intersection = intersect(range);
+            return create(intersection.subMap(keysByValue, keysByValue.comparator()), intersection);
+        }
+
+        protected OperationBuilder<T> create( NavigableMap<T, V> keysByValue,
+                                              Range<T> range ) {
+            return new BasicOperationBuilder<>(keysByValue, range, statistics, converter, nodeKeysAccessor, variables);
+        }
+
+        protected final Range<T> intersect( Range<T> range ) {
+            return this.range.intersect(range, keysByValue.comparator());
         }
 
         @Override
@@ -269,11 +365,11 @@ class Operations {
             boolean isLowerIncluded = between.isLowerBoundIncluded();
             boolean isUpperIncluded = between.isUpperBoundIncluded();
             if (negated) {
-                OperationBuilder<T> lowerOp = create(keysByValue.headMap(lower, !isLowerIncluded));
-                OperationBuilder<T> upperOp = create(keysByValue.tailMap(upper, !isUpperIncluded));
+                OperationBuilder<T> lowerOp = create(Range.below(lower, !isLowerIncluded));
+                OperationBuilder<T> upperOp = create(Range.above(upper, !isUpperIncluded));
                 return new DualOperationBuilder<>(lowerOp, upperOp);
             }
-            return create(keysByValue.subMap(lower, isLowerIncluded, upper, isUpperIncluded));
+            return create(Range.between(lower, isLowerIncluded, upper, isUpperIncluded));
         }
 
         @Override
@@ -287,22 +383,22 @@ class Operations {
                 case EQUAL_TO:
                     T lowerValue = converter.toLowerValue(operand, variables);
                     T upperValue = converter.toUpperValue(operand, variables);
-                    return create(keysByValue.subMap(lowerValue, true, upperValue, true));
+                    return create(Range.equalTo(lowerValue, upperValue));
                 case GREATER_THAN:
                     T value = converter.toUpperValue(operand, variables);
-                    return create(keysByValue.tailMap(value, false));
+                    return create(Range.above(value, false));
                 case GREATER_THAN_OR_EQUAL_TO:
                     value = converter.toLowerValue(operand, variables);
-                    return create(keysByValue.tailMap(value, true));
+                    return create(Range.above(value, true));
                 case LESS_THAN:
                     value = converter.toLowerValue(operand, variables);
-                    return create(keysByValue.headMap(value, false));
+                    return create(Range.below(value, false));
                 case LESS_THAN_OR_EQUAL_TO:
                     value = converter.toUpperValue(operand, variables);
-                    return create(keysByValue.headMap(value, true));
+                    return create(Range.below(value, true));
                 case NOT_EQUAL_TO:
-                    OperationBuilder<T> lowerOp = create(keysByValue.headMap(converter.toLowerValue(operand, variables), false));
-                    OperationBuilder<T> upperOp = create(keysByValue.tailMap(converter.toUpperValue(operand, variables), false));
+                    OperationBuilder<T> lowerOp = create(Range.below(converter.toLowerValue(operand, variables), false));
+                    OperationBuilder<T> upperOp = create(Range.above(converter.toUpperValue(operand, variables), false));
                     return new DualOperationBuilder<>(lowerOp, upperOp);
                 case LIKE:
                     // We can't handle LIKE with this kind of index, but we can return the complete list of node keys
@@ -318,58 +414,90 @@ class Operations {
         @Override
         protected OperationBuilder<T> apply( SetCriteria setCriteria,
                                              boolean negated ) {
-            return new SetOperationBuilder<>(keysByValue, converter, nodeKeysAccessor, variables, setCriteria, negated);
+            return new SetOperationBuilder<>(keysByValue, range, statistics, converter, nodeKeysAccessor, variables, setCriteria,
+                                             negated);
         }
 
-        protected Iterator<String> keys() {
-            return nodeKeysAccessor.getNodeKeys(keysByValue);
+        @Override
+        protected OperationBuilder<T> apply( DescendantNode descendantNode,
+                                             boolean negated ) {
+            Path ancestor = pathOf(converter.toLowerValue(new Literal(descendantNode.getAncestorPath()), variables));
+            if (ancestor == null) {
+                // This index doesn't contain paths ...
+                return this;
+            }
+            return applyDescendantsOf(ancestor, negated);
+        }
+
+        protected OperationBuilder<T> applyDescendantsOf( Path ancestor,
+                                                          boolean negated ) {
+            Range<T> descendants = Range.descendantsOf(ancestor, converter, variables);
+            if (negated) {
+                OperationBuilder<T> lowerOp = create(Range.below(descendants.lower, true));
+                if (descendants.upper == null) return lowerOp;
+                OperationBuilder<T> upperOp = create(Range.above(descendants.upper, true));
+                return new DualOperationBuilder<>(lowerOp, upperOp);
+            }
+            return create(descendants);
         }
 
         @Override
-        public Results getResults() {
-            final Iterator<String> filteredKeys = keys();
-            final float score = 1.0f;
-            return new Results() {
-                @Override
-                public Filter.ResultBatch getNextBatch(int batchSize) {
-                    int count = 0;
-                    final LinkedHashMap<NodeKey, Float> keysByScore = new LinkedHashMap<>();
-                    while (count < batchSize && filteredKeys.hasNext()) {
-                        keysByScore.put(new NodeKey(filteredKeys.next()), score);
-                        count++;
-                    }
-                    return new Filter.ResultBatch() {
-                        @Override
-                        public Iterable<NodeKey> keys() {
-                            return () -> keysByScore.keySet().iterator();
-                        }
+        protected OperationBuilder<T> apply( ChildNode childNode,
+                                             boolean negated ) {
+            if (negated) {
+                // The other children of the node's ancestors are not in one range, so we can't filter the index ...
+                return this;
+            }
+            Path parent = pathOf(converter.toLowerValue(new Literal(childNode.getParentPath()), variables));
+            if (parent == null) {
+                // This index doesn't contain paths ...
+                return this;
+            }
+            return applyChildrenOf(parent);
+        }
 
-                        @Override
-                        public Iterable<Float> scores() {
-                            return () -> keysByScore.values().iterator();
-                        }
+        protected OperationBuilder<T> applyChildrenOf( Path parent ) {
+            // Find the descendants of the node, and then skip over all but the children ...
+            Range<T> descendants = intersect(Range.descendantsOf(parent, converter, variables));
+            return new ChildOperationBuilder<>(descendants.subMap(keysByValue, keysByValue.comparator()), descendants, statistics,
+                                               converter, nodeKeysAccessor, variables, parent);
+        }
 
-                        @Override
-                        public boolean hasNext() {
-                            return filteredKeys.hasNext();
-                        }
+        protected final Path pathOf( T key ) {
+            if (key == null) return null;
+            Object value = converter.toValue(key);
+            return value instanceof Path ? (Path)value : null;
+        }
 
-                        @Override
-                        public int size() {
-                            return keysByScore.size();
-                        }
-                    };
-                }
+        protected Iterator<String> keys() {
+            return nodeKeysAccessor.getNodeKeys(keysByValue);
+        }
 
-                @Override
-                public void close() {
-                    // Nothing to do ...
-                }
-            };
+        @Override
+        public Results getResults() {
+            return results(keys());
         }
 
         @Override
         public long estimateCount() {
+            return estimateCount(keysByValue, range);
+        }
+
+        /**
+         * Estimate the number of values in the supplied range of the index, using the statistics if possible to avoid counting
+         * the values.
+         *
+         * @param keysByValue the values within the range; may not be null
+         * @param range the range; may not be null
+         * @return the estimated number of values; never negative
+         */
+        protected long estimateCount( NavigableMap<T, V> keysByValue,
+                                      Range<T> range ) {
+            if (statistics != null) {
+                long estimate = statistics.estimateCount(range.lower, range.lowerIncluded, range.upper, range.upperIncluded,
+                                                         range.singleValue);
+                if (estimate >= 0L) return estimate;
+            }
             return keysByValue.size();
         }
     }
@@ -387,19 +515,23 @@ class Operations {
         private final boolean negated;
 
         protected SetOperationBuilder( NavigableMap<T, V> keysByValue,
+                                       Range<T> range,
+                                       ColumnStatistics<T> statistics,
                                        IndexValues.Converter<T> converter,
                                        NodeKeysAccessor<T, V> nodeKeysAccessor,
                                        Map<String, Object> variables,
                                        SetCriteria criteria,
                                        boolean negated ) {
-            super(keysByValue, converter, nodeKeysAccessor, variables);
+            super(keysByValue, range, statistics, converter, nodeKeysAccessor, variables);
             this.criteria = criteria;
             this.negated = negated;
         }
 
         @Override
-        protected OperationBuilder<T> create( NavigableMap<T, V> keysByValue ) {
-            return new SetOperationBuilder<>(keysByValue, converter, nodeKeysAccessor, variables, criteria, negated);
+        protected OperationBuilder<T> create( NavigableMap<T, V> keysByValue,
+                                              Range<T> range ) {
+            return new SetOperationBuilder<>(keysByValue, range, statistics, converter, nodeKeysAccessor, variables, criteria,
+                                             negated);
         }
 
         @Override
@@ -408,6 +540,12 @@ class Operations {
             throw new UnsupportedOperationException("Can't evaluate two SetCriteria that are not ANDed or ORed together");
         }
 
+        @Override
+        protected OperationBuilder<T> applyChildrenOf( Path parent ) {
+            // Keep the set criteria, and just limit the values to the descendants ...
+            return applyDescendantsOf(parent, false);
+        }
+
         private void addValues( StaticOperand valueOperand,
                                 Set<String> matchedKeys ) {
             if (valueOperand instanceof BindVariableName) {
@@ -431,20 +569,9 @@ class Operations {
 
             T lowValue = converter.toLowerValue(valueOperand, variables);
             T highValue = converter.toUpperValue(valueOperand, variables);
-            NavigableMap<T, V> submap = null;
-            if (lowValue == null) {
-                if (highValue == null) return;
-                // High but not low ...
-                submap = keysByValue.headMap(highValue, true);
-            } else {
-                if (highValue == null) {
-                    // Low but not high ...
-                    submap = keysByValue.tailMap(lowValue, true);
-                } else {
-                    // Both high and low ...
-                    submap = keysByValue.subMap(lowValue, true, highValue, true);
-                }
-            }
+            if (lowValue == null && highValue == null) return;
+            NavigableMap<T, V> submap = intersect(Range.equalTo(lowValue, highValue)).subMap(keysByValue,
+                                                                                               keysByValue.comparator());
             if (submap.isEmpty()) return; // no values for these keys
             nodeKeysAccessor.addAllTo(submap, matchedKeys);
         }
@@ -516,31 +643,238 @@ class Operations {
                 // Find the range of all keys that have this value ...
                 T lowValue = converter.toLowerValue(valueOperand, variables);
                 T highValue = converter.toUpperValue(valueOperand, variables);
-                NavigableMap<T, V> submap = null;
-                if (lowValue == null) {
-                    if (highValue == null) continue;
-                    // High but not low ...
-                    submap = keysByValue.headMap(highValue, true);
-                } else {
-                    if (highValue == null) {
-                        // Low but not high ...
-                        submap = keysByValue.tailMap(lowValue, true);
-                    } else {
-                        // Both high and low ...
-                        submap = keysByValue.subMap(lowValue, true, highValue, true);
-                    }
-                }
-                count += submap.size();
+                if (lowValue == null && highValue == null) continue;
+                Range<T> range = intersect(Range.equalTo(lowValue, highValue));
+                count += estimateCount(range.subMap(keysByValue, keysByValue.comparator()), range);
             }
 
-            if (!negated) {
-                // We've already found all of the keys for the given value, so just return them ...
-                count = keysByValue.size() - count;
+            if (negated) {
+                // We're supposed to find all of the keys that are NOT in the set ...
+                count = super.estimateCount() - count;
             }
             return Math.max(count, 0L);
         }
     }
 
+    /**
+     * This builder results in an operation that finds the children of a node in an index of node paths. The children are all
+     * within the range of the node's descendants, and each child is followed by its own descendants, so the operation looks up
+     * each child and then skips all of the child's descendants by looking up the child's next sibling. This reads only the
+     * entries of the children and of the indexed descendants that have no indexed parent.
+     *
+     * @param <T> the type of index key
+     * @param <V> the type of value to be iterated over
+     */
+    protected static class ChildOperationBuilder<T, V> extends BasicOperationBuilder<T, V> {
+        private final Path parent;
+
+        protected ChildOperationBuilder( NavigableMap<T, V> descendants,
+                                         Range<T> range,
+                                         ColumnStatistics<T> statistics,
+                                         Converter<T> converter,
+                                         NodeKeysAccessor<T, V> nodeKeysAccessor,
+                                         Map<String, Object> variables,
+                                         Path parent ) {
+            super(descendants, range, statistics, converter, nodeKeysAccessor, variables);
+            this.parent = parent;
+        }
+
+        @Override
+        protected OperationBuilder<T> create( NavigableMap<T, V> keysByValue,
+                                              Range<T> range ) {
+            return new ChildOperationBuilder<>(keysByValue, range, statistics, converter, nodeKeysAccessor, variables, parent);
+        }
+
+        @Override
+        protected Iterator<String> keys() {
+            return new Iterator<String>() {
+                private T next = keysByValue.isEmpty() ? null : keysByValue.firstKey();
+                private Iterator<String> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        if (next == null) return false;
+                        // Find the child that is or contains the next descendant ...
+                        Path descendant = pathOf(next);
+                        Path child = descendant.getAncestor(descendant.size() - parent.size() - 1);
+                        if (child.size() == descendant.size()) {
+                            Literal value = new Literal(child);
+                            Range<T> entries = intersect(Range.equalTo(converter.toLowerValue(value, variables),
+                                                                       converter.toUpperValue(value, variables)));
+                            current = nodeKeysAccessor.getNodeKeys(entries.subMap(keysByValue, keysByValue.comparator()));
+                        }
+                        // and skip the child's descendants ...
+                        Range<T> remaining = intersect(Range.above(Range.descendantsOf(child, converter, variables).upper, true));
+                        NavigableMap<T, V> following = remaining.subMap(keysByValue, keysByValue.comparator());
+                        next = following.isEmpty() ? null : following.firstKey();
+                    }
+                    return true;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public long estimateCount() {
+            // The number of descendants is an upper bound, since counting the children would require reading them ...
+            return super.estimateCount();
+        }
+    }
+
+    /**
+     * Obtain the entries of an index of node paths for the descendants of a node.
+     *
+     * @param keysByValue the index's map of values-to-NodeKey; may not be null
+     * @param converter the converter; may not be null
+     * @param ancestor the path of the node; may not be null
+     * @return the entries of the descendants, in path order; never null
+     */
+    protected static <T, V> NavigableMap<T, V> descendants( NavigableMap<T, V> keysByValue,
+                                                           Converter<T> converter,
+                                                           Path ancestor ) {
+        Map<String, Object> variables = Collections.emptyMap();
+        return Range.descendantsOf(ancestor, converter, variables).subMap(keysByValue, keysByValue.comparator());
+    }
+
+    /**
+     * Obtain the path of the next same-name-sibling of the node with the supplied path. In the order of paths, the descendants
+     * of a node are all after the node and before this path.
+     *
+     * @param path the path of a node; may not be null or the root path
+     * @return the path of the next same-name-sibling; never null
+     */
+    protected static Path nextSibling( Path path ) {
+        Path.Segment segment = path.getLastSegment();
+        return new ChildPath(path.getParent(), new BasicPathSegment(segment.getName(), segment.getIndex() + 1));
+    }
+
+    /**
+     * The range of values to which the constraints applied by an {@link BasicOperationBuilder operation builder} limit the
+     * index, which is used with the {@link ColumnStatistics} to estimate the number of values in the range.
+     *
+     * @param <T> the type of index key
+     */
+    protected static final class Range<T> {
+        private static final Range<Object> ALL = new Range<>(null, false, null, false, false);
+
+        @SuppressWarnings( "unchecked" )
+        protected static <T> Range<T> all() {
+            return (Range<T>)ALL;
+        }
+
+        protected static <T> Range<T> below( T upper,
+                                             boolean upperIncluded ) {
+            return new Range<>(null, false, upper, upperIncluded, false);
+        }
+
+        protected static <T> Range<T> above( T lower,
+                                             boolean lowerIncluded ) {
+            return new Range<>(lower, lowerIncluded, null, false, false);
+        }
+
+        protected static <T> Range<T> between( T lower,
+                                               boolean lowerIncluded,
+                                               T upper,
+                                               boolean upperIncluded ) {
+            return new Range<>(lower, lowerIncluded, upper, upperIncluded, false);
+        }
+
+        protected static <T> Range<T> equalTo( T lower,
+                                               T upper ) {
+            return new Range<>(lower, true, upper, true, true);
+        }
+
+        /**
+         * Create the range of the descendants of a node in an index of node paths. The descendants of a node are ordered after
+         * the node and before the node's next same-name-sibling.
+         *
+         * @param ancestor the path of the node; may not be null
+         * @param converter the converter; may not be null
+         * @param variables the bound variables; may not be null but may be empty
+         * @return the range; never null
+         */
+        protected static <T> Range<T> descendantsOf( Path ancestor,
+                                                     Converter<T> converter,
+                                                     Map<String, Object> variables ) {
+            T lower = converter.toUpperValue(new Literal(ancestor), variables);
+            if (ancestor.isRoot()) return above(lower, false);
+            return between(lower, false, converter.toLowerValue(new Literal(nextSibling(ancestor)), variables), false);
+        }
+
+        protected final T lower;
+        protected final boolean lowerIncluded;
+        protected final T upper;
+        protected final boolean upperIncluded;
+        protected final boolean singleValue;
+
+        private Range( T lower,
+                       boolean lowerIncluded,
+                       T upper,
+                       boolean upperIncluded,
+                       boolean singleValue ) {
+            this.lower = lower;
+            this.lowerIncluded = lowerIncluded;
+            this.upper = upper;
+            this.upperIncluded = upperIncluded;
+            this.singleValue = singleValue;
+        }
+
+        /**
+         * Obtain the part of the supplied map that is within this range.
+         *
+         * @param map the map, whose keys must all be within this range or within a larger range; may not be null
+         * @param comparator the comparator of the map's keys; may not be null
+         * @return the part of the map; never null
+         */
+        protected <V> NavigableMap<T, V> subMap( NavigableMap<T, V> map,
+                                                 Comparator<? super T> comparator ) {
+            if (lower == null) return upper == null ? map : map.headMap(upper, upperIncluded);
+            if (upper == null) return map.tailMap(lower, lowerIncluded);
+            int diff = comparator.compare(lower, upper);
+            if (diff > 0 || diff == 0 && !(lowerIncluded && upperIncluded)) return Collections.emptyNavigableMap();
+            return map.subMap(lower, lowerIncluded, upper, upperIncluded);
+        }
+
+        protected Range<T> intersect( Range<T> other,
+                                      Comparator<? super T> comparator ) {
+            T lower = this.lower;
+            boolean lowerIncluded = this.lowerIncluded;
+            if (lower == null) {
+                lower = other.lower;
+                lowerIncluded = other.lowerIncluded;
+            } else if (other.lower != null) {
+                int diff = comparator.compare(other.lower, lower);
+                if (diff > 0) {
+                    lower = other.lower;
+                    lowerIncluded = other.lowerIncluded;
+                } else if (diff == 0) {
+                    lowerIncluded &= other.lowerIncluded;
+                }
+            }
+            T upper = this.upper;
+            boolean upperIncluded = this.upperIncluded;
+            if (upper == null) {
+                upper = other.upper;
+                upperIncluded = other.upperIncluded;
+            } else if (other.upper != null) {
+                int diff = comparator.compare(other.upper, upper);
+                if (diff < 0) {
+                    upper = other.upper;
+                    upperIncluded = other.upperIncluded;
+                } else if (diff == 0) {
+                    upperIncluded &= other.upperIncluded;
+                }
+            }
+            return new Range<>(lower, lowerIncluded, upper, upperIncluded, singleValue || other.singleValue);
+        }
+    }
+
     /**
      * This builder delegates to both sides, and is used for {@link Or} constraints.
      *
@@ -581,6 +915,22 @@ class Operations {
             return new DualOperationBuilder<>(left, right);
         }
 
+        @Override
+        protected OperationBuilder<T> apply( DescendantNode descendantNode,
+                                             boolean negated ) {
+            OperationBuilder<T> left = this.left.apply(descendantNode, negated);
+            OperationBuilder<T> right = this.right.apply(descendantNode, negated);
+            return new DualOperationBuilder<>(left, right);
+        }
+
+        @Override
+        protected OperationBuilder<T> apply( ChildNode childNode,
+                                             boolean negated ) {
+            OperationBuilder<T> left = this.left.apply(childNode, negated);
+            OperationBuilder<T> right = this.right.apply(childNode, negated);
+            return new DualOperationBuilder<>(left, right);
+        }
+
         @Override
         public Results getResults() {
             final Results first = left.getResults();
@@ -640,6 +990,188 @@ class Operations {
         }
     }
 
+    /**
+     * An operation that evaluates the constraints against the bitmaps of the ordinals of the nodes with each value in an
+     * enumerated index. Unlike the {@link OperationBuilder builders}, the constraints that are ANDed together are evaluated as
+     * intersections of the sets of nodes, so that they are also correct for multi-valued properties.
+     *
+     * @param <T> the type of index key
+     */
+    protected static class BitmapFilterOperation<T> implements FilterOperation {
+        private final NavigableMap<T, CompressedBitmap> ordinalsByValue;
+        private final NodeOrdinals ordinals;
+        private final Object lock;
+        private final Converter<T> converter;
+        private final Collection<Constraint> constraints;
+        private final Map<String, Object> variables;
+        private boolean exact;
+
+        protected BitmapFilterOperation( NavigableMap<T, CompressedBitmap> ordinalsByValue,
+                                         NodeOrdinals ordinals,
+                                         Object lock,
+                                         Converter<T> converter,
+                                         Collection<Constraint> constraints,
+                                         Map<String, Object> variables ) {
+            this.ordinalsByValue = ordinalsByValue;
+            this.ordinals = ordinals;
+            this.lock = lock;
+            this.converter = converter;
+            this.constraints = constraints;
+            this.variables = variables;
+        }
+
+        /**
+         * Compute the ordinals of the nodes that satisfy all of the constraints. The index's bitmaps are only read while holding
+         * the index's lock, and the result is always a new bitmap. If any of the constraints cannot be evaluated exactly, the
+         * result contains more nodes than satisfy the constraints and {@link #exact} is set to false.
+         *
+         * @return the bitmap of ordinals; never null
+         */
+        protected CompressedBitmap matches() {
+            synchronized (lock) {
+                exact = true;
+                CompressedBitmap result = null;
+                for (Constraint constraint : constraints) {
+                    CompressedBitmap matches = evaluate(constraint, false);
+                    result = result == null ? matches : result.and(matches);
+                }
+                return result != null ? result : union(ordinalsByValue);
+            }
+        }
+
+        protected CompressedBitmap evaluate( Constraint constraint,
+                                             boolean negated ) {
+            if (constraint instanceof Between) return evaluate((Between)constraint, negated);
+            if (constraint instanceof Comparison) return evaluate((Comparison)constraint, negated);
+            if (constraint instanceof And) {
+                And and = (And)constraint;
+                CompressedBitmap left = evaluate(and.getConstraint1(), negated);
+                CompressedBitmap right = evaluate(and.getConstraint2(), negated);
+                // NOT (A AND B) is the same as (NOT A) OR (NOT B) ...
+                return negated ? left.or(right) : left.and(right);
+            }
+            if (constraint instanceof Or) {
+                Or or = (Or)constraint;
+                CompressedBitmap left = evaluate(or.getConstraint1(), negated);
+                CompressedBitmap right = evaluate(or.getConstraint2(), negated);
+                // NOT (A OR B) is the same as (NOT A) AND (NOT B) ...
+                return negated ? left.and(right) : left.or(right);
+            }
+            if (constraint instanceof Not) {
+                Not not = (Not)constraint;
+                return evaluate(not.getConstraint(), !negated);
+            }
+            if (constraint instanceof SetCriteria) {
+                SetCriteria criteria = (SetCriteria)constraint;
+                CompressedBitmap matches = new CompressedBitmap();
+                for (StaticOperand valueOperand : criteria.getValues()) {
+                    matches = addValues(valueOperand, matches);
+                }
+                return negated ? union(ordinalsByValue).andNot(matches) : matches;
+            }
+            if (!(constraint instanceof PropertyExistence)) {
+                // We don't know how to handle any of the other kinds of constraints ...
+                LOGGER.debug("Unable to process constraint, so ignoring: {0}", constraint);
+                exact = false;
+            } else if (negated) {
+                // There are no nodes without the property in this index, so it has to be done higher up ...
+                exact = false;
+            }
+            // Presumably this index only contains values for this property ...
+            return union(ordinalsByValue);
+        }
+
+        protected CompressedBitmap evaluate( Between between,
+                                             boolean negated ) {
+            T lower = converter.toLowerValue(between.getLowerBound(), variables);
+            T upper = converter.toUpperValue(between.getUpperBound(), variables);
+            boolean isLowerIncluded = between.isLowerBoundIncluded();
+            boolean isUpperIncluded = between.isUpperBoundIncluded();
+            if (negated) {
+                return union(ordinalsByValue.headMap(lower, !isLowerIncluded)).or(union(ordinalsByValue.tailMap(upper,
+                                                                                                             !isUpperIncluded)));
+            }
+            return union(ordinalsByValue.subMap(lower, isLowerIncluded, upper, isUpperIncluded));
+        }
+
+        protected CompressedBitmap evaluate( Comparison comparison,
+                                             boolean negated ) {
+            StaticOperand operand = comparison.getOperand2();
+            Operator op = comparison.operator();
+            if (negated) op = op.not();
+            switch (op) {
+                case EQUAL_TO:
+                    T lowerValue = converter.toLowerValue(operand, variables);
+                    T upperValue = converter.toUpperValue(operand, variables);
+                    return union(ordinalsByValue.subMap(lowerValue, true, upperValue, true));
+                case GREATER_THAN:
+                    return union(ordinalsByValue.tailMap(converter.toUpperValue(operand, variables), false));
+                case GREATER_THAN_OR_EQUAL_TO:
+                    return union(ordinalsByValue.tailMap(converter.toLowerValue(operand, variables), true));
+                case LESS_THAN:
+                    return union(ordinalsByValue.headMap(converter.toLowerValue(operand, variables), false));
+                case LESS_THAN_OR_EQUAL_TO:
+                    return union(ordinalsByValue.headMap(converter.toUpperValue(operand, variables), true));
+                case NOT_EQUAL_TO:
+                    CompressedBitmap lower = union(ordinalsByValue.headMap(converter.toLowerValue(operand, variables), false));
+                    return lower.or(union(ordinalsByValue.tailMap(converter.toUpperValue(operand, variables), false)));
+                case LIKE:
+                    // We can't handle LIKE with this kind of index, so return all of the nodes and let the LIKE be done
+                    // higher up ...
+                    exact = false;
+                    break;
+            }
+            return union(ordinalsByValue);
+        }
+
+        private CompressedBitmap addValues( StaticOperand valueOperand,
+                                            CompressedBitmap matches ) {
+            if (valueOperand instanceof BindVariableName) {
+                // We have to resolve the variable ...
+                Object varValue = this.variables.get(((BindVariableName)valueOperand).getBindVariableName());
+                if (varValue instanceof Collection) {
+                    for (Object value : (Collection<?>)varValue) {
+                        matches = addValues(new Literal(value), matches);
+                    }
+                    return matches;
+                }
+                return addValues(new Literal(varValue), matches);
+            }
+            T lowValue = converter.toLowerValue(valueOperand, variables);
+            T highValue = converter.toUpperValue(valueOperand, variables);
+            if (lowValue == null) {
+                if (highValue == null) return matches;
+                // High but not low ...
+                return matches.or(union(ordinalsByValue.headMap(highValue, true)));
+            }
+            if (highValue == null) {
+                // Low but not high ...
+                return matches.or(union(ordinalsByValue.tailMap(lowValue, true)));
+            }
+            return matches.or(union(ordinalsByValue.subMap(lowValue, true, highValue, true)));
+        }
+
+        private static <T> CompressedBitmap union( NavigableMap<T, CompressedBitmap> ordinalsByValue ) {
+            CompressedBitmap result = new CompressedBitmap();
+            for (CompressedBitmap bitmap : ordinalsByValue.values()) {
+                result = result.or(bitmap);
+            }
+            return result;
+        }
+
+        @Override
+        public Results getResults() {
+            CompressedBitmap matches = matches();
+            // The bitmap is a snapshot, so its cardinality is the number of nodes when all constraints were applied ...
+            return results(ordinals.nodeKeys(matches), exact ? matches.cardinality() : -1L);
+        }
+
+        @Override
+        public long estimateCount() {
+            return matches().cardinality();
+        }
+    }
+
     private Operations() {
     }
 
@@ -39,4 +39,33 @@ public interface MimeTypeDetector {
      */
     String mimeTypeOf( String name,
                        Binary binaryValue ) throws RepositoryException, IOException;
+
+    /**
+     * Returns the MIME-type of binary content based only upon the first bytes of the content. This is used to detect the
+     * MIME-type once, while the content is being stored, so that later lookups do not have to read the content again.
+     * 
+     * @param header the first bytes of the content; may not be <code>null</code>
+     * @param length the number of bytes at the beginning of <code>header</code> which belong to the content
+     * @return The MIME-type of the content, or <code>null</code> if the MIME-type cannot be determined from the first bytes
+     *         alone.
+     * @since 5.5
+     */
+    default String mimeTypeOfHeader( byte[] header,
+                                     int length ) {
+        return null;
+    }
+
+    /**
+     * Returns the MIME-type of a binary value whose MIME-type has already been detected and stored, taking the supplied name
+     * into account. This never reads the content of the binary value.
+     * 
+     * @param name The name of the data source; may be <code>null</code>.
+     * @param storedMimeType the MIME-type that was detected earlier; may not be <code>null</code>
+     * @return The MIME-type of the data source; never <code>null</code>
+     * @since 5.5
+     */
+    default String refineMimeType( String name,
+                                   String storedMimeType ) {
+        return storedMimeType;
+    }
 }
@@ -15,16 +15,19 @@
  */
 package org.modeshape.jcr.mimetype.tika;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import org.apache.tika.detect.DefaultDetector;
 import org.apache.tika.detect.Detector;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
 import org.apache.tika.mime.MimeTypes;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.Environment;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
@@ -39,8 +42,11 @@ import org.modeshape.jcr.mimetype.MimeTypeDetector;
 @Immutable
 @ThreadSafe
 public final class TikaContentDetector extends TikaMimeTypeDetector {
-    
+
+    private static final MediaType OLE2 = MediaType.application("x-tika-msoffice");
+
     private DefaultDetector detector;
+    private MimeTypes mimeTypes;
     
     /**
      * Creates a new content detector
@@ -55,7 +61,8 @@ public final class TikaContentDetector extends TikaMimeTypeDetector {
     protected void initDetector( ClassLoader loader ) {
         try {
             // this will also load ModeShape's custom-mimetypes.xml because it's placed in a org.apache.tika.mime package
-            this.detector = new DefaultDetector(MimeTypes.getDefaultMimeTypes(loader));
+            this.mimeTypes = MimeTypes.getDefaultMimeTypes(loader);
+            this.detector = new DefaultDetector(mimeTypes);
             if (logger.isDebugEnabled()) {
                 for (Detector detector : this.detector.getDetectors()) {
                     logger.debug(" - Found TIKA detector: " + detector.getClass().getName());
@@ -66,6 +73,50 @@ public final class TikaContentDetector extends TikaMimeTypeDetector {
         }
     }
 
+    @Override
+    public String mimeTypeOfHeader( byte[] header,
+                                    int length ) {
+        MediaType detectedMimeType = null;
+        try {
+            // only the magic bytes are used, since the container detectors need to read the whole zip or OLE2 content ...
+            detectedMimeType = mimeTypes.detect(new ByteArrayInputStream(header, 0, length), new Metadata());
+        } catch (Exception e) {
+            logger.debug(e, "Unable to extract mime-type from the content header");
+            return null;
+        }
+        MediaTypeRegistry registry = mimeTypes.getMediaTypeRegistry();
+        if (MediaType.OCTET_STREAM.equals(detectedMimeType) || registry.isInstanceOf(detectedMimeType, MediaType.APPLICATION_ZIP)
+            || registry.isInstanceOf(detectedMimeType, OLE2)) {
+            // the whole content has to be read to know more ...
+            return null;
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("MIME type for the content header ==> " + detectedMimeType);
+        }
+        return detectedMimeType.toString();
+    }
+
+    @Override
+    public String refineMimeType( String name,
+                                  String storedMimeType ) {
+        MediaType storedType = MediaType.parse(storedMimeType);
+        if (StringUtil.isBlank(name) || storedType == null) {
+            return storedMimeType;
+        }
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.RESOURCE_NAME_KEY, name);
+        try {
+            // like Tika, prefer the type of the name when it's more specific than the type of the content ...
+            MediaType nameType = mimeTypes.detect(null, metadata);
+            if (mimeTypes.getMediaTypeRegistry().isSpecializationOf(nameType, storedType)) {
+                return nameType.toString();
+            }
+        } catch (Exception e) {
+            logger.debug(e, "Unable to extract mime-type from the name '{0}'", name);
+        }
+        return storedMimeType;
+    }
+
     @Override
     protected String detect( InputStream inputStream, Metadata metadata ) {
         MediaType detectedMimeType = null;
@@ -0,0 +1,48 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.value.Name;
+
+/**
+ * Statistics about the content in the repository's workspaces that the query optimizer can use to estimate the number of rows
+ * produced by the different parts of a query plan. All values are estimates, and may be somewhat out of date.
+ */
+@ThreadSafe
+public interface ContentStatistics {
+
+    /**
+     * The value returned when a statistic is not known.
+     */
+    long UNKNOWN = -1L;
+
+    /**
+     * A {@link ContentStatistics} implementation that knows nothing about the content.
+     */
+    ContentStatistics NONE = ( workspaceName, nodeTypeName ) -> UNKNOWN;
+
+    /**
+     * Get the estimated number of nodes in the named workspace that have the named node type as their primary type or as one of
+     * their mixin types. Note that the count does not include nodes whose types are subtypes of the named node type.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     * @param nodeTypeName the name of the primary type or mixin type; may not be null
+     * @return the estimated number of nodes, or {@link #UNKNOWN} if the number is not known
+     */
+    long getNodeCount( String workspaceName,
+                       Name nodeTypeName );
+}
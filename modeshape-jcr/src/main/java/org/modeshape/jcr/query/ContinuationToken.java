@@ -0,0 +1,206 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.util.Base64;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.query.model.And;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.Constraint;
+import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.NullOrder;
+import org.modeshape.jcr.query.model.Order;
+import org.modeshape.jcr.query.model.Ordering;
+import org.modeshape.jcr.query.model.PropertyExistence;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.Query;
+import org.modeshape.jcr.query.model.QueryCommand;
+
+/**
+ * The position in the ordered results of a query just after the last row that was returned, used to obtain the next page of
+ * results without re-sorting and skipping all of the rows in the preceding pages.
+ * <p>
+ * A token contains the string form of the values of each of the query's {@link Ordering orderings} for the last row, followed by
+ * the identifier of the last row. Rows with the same ordering values are sorted by their identifiers, so every row has a distinct
+ * position and the next page consists of all the rows that sort after these values. The size of a token therefore does not
+ * depend on how many rows have the same ordering values.
+ * </p>
+ */
+@Immutable
+public final class ContinuationToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] values;
+
+    /**
+     * Create a new token.
+     *
+     * @param values the string form of the value of each ordering for the last row, with null for a null value, followed by the
+     *        identifier of the last row; may not be null
+     */
+    public ContinuationToken( String[] values ) {
+        CheckArg.isNotNull(values, "values");
+        this.values = values.clone();
+    }
+
+    /**
+     * Get the number of values in this token, including the row identifier.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get the string form of the specified value for the last row.
+     *
+     * @param index the index of the ordering, or the number of orderings for the row identifier
+     * @return the string form of the value, or null if the last row had no value for the ordering
+     */
+    public String getValue( int index ) {
+        return values[index];
+    }
+
+    /**
+     * Add to the supplied query a range constraint on the first ordering that excludes most of the rows that precede this token,
+     * so that indexes can be used to seek directly to the rows of the next page. The constraint is only added when it cannot
+     * exclude any rows that sort after this token: the first ordering must be on a property value, and rows without that
+     * property must either sort before all other rows or already be excluded by the query's criteria.
+     *
+     * @param command the query command; may not be null
+     * @return the query command with the additional constraint, or the supplied command if the constraint cannot be added
+     */
+    public QueryCommand seek( QueryCommand command ) {
+        if (!(command instanceof Query) || values.length == 0 || values[0] == null) return command;
+        Query query = (Query)command;
+        List<? extends Ordering> orderings = query.orderings();
+        if (orderings.size() + 1 != values.length || !(orderings.get(0).getOperand() instanceof PropertyValue)) return command;
+        Ordering first = orderings.get(0);
+        PropertyValue operand = (PropertyValue)first.getOperand();
+        if (first.nullOrder() != NullOrder.NULLS_FIRST && !excludesNulls(query.constraint(), operand)) return command;
+        Operator operator = first.order() == Order.DESCENDING ? Operator.LESS_THAN_OR_EQUAL_TO : Operator.GREATER_THAN_OR_EQUAL_TO;
+        Constraint seek = new Comparison(operand, operator, new Literal(values[0]));
+        Constraint constraint = query.constraint();
+        return query.constrainedBy(constraint != null ? new And(constraint, seek) : seek);
+    }
+
+    protected static boolean excludesNulls( Constraint constraint,
+                                            PropertyValue operand ) {
+        if (constraint instanceof And) {
+            And and = (And)constraint;
+            return excludesNulls(and.left(), operand) || excludesNulls(and.right(), operand);
+        }
+        if (constraint instanceof PropertyExistence) {
+            PropertyExistence existence = (PropertyExistence)constraint;
+            return existence.selectorName().equals(operand.selectorName())
+                   && existence.getPropertyName().equals(operand.getPropertyName());
+        }
+        if (constraint instanceof Comparison) {
+            return operand.equals(((Comparison)constraint).getOperand1());
+        }
+        return false;
+    }
+
+    /**
+     * Encode this token as an opaque, URL-safe string that is bound to the supplied query statement.
+     *
+     * @param statement the query statement; may not be null
+     * @return the encoded token; never null
+     */
+    public String encode( String statement ) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                output.writeInt(statement.hashCode());
+                output.writeInt(values.length);
+                for (String value : values) {
+                    output.writeBoolean(value != null);
+                    if (value != null) output.writeUTF(value);
+                }
+            }
+            return Base64.encodeBytes(bytes.toByteArray(), Base64.URL_SAFE);
+        } catch (IOException e) {
+            // Should never happen when writing to memory ...
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a token that was {@link #encode(String) encoded} for the supplied query statement.
+     *
+     * @param token the encoded token; may not be null
+     * @param statement the query statement; may not be null
+     * @return the token; never null
+     * @throws IllegalArgumentException if the token is not valid or was not created for the query statement
+     */
+    public static ContinuationToken decode( String token,
+                                            String statement ) {
+        try {
+            byte[] bytes = Base64.decode(token, Base64.URL_SAFE);
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                if (input.readInt() != statement.hashCode()) {
+                    throw new IllegalArgumentException("The continuation token was created for a different query");
+                }
+                String[] values = new String[checkCount(input.readInt(), bytes.length)];
+                for (int i = 0; i != values.length; ++i) {
+                    values[i] = input.readBoolean() ? input.readUTF() : null;
+                }
+                if (input.available() != 0) throw new IOException("Unexpected data after the values");
+                return new ContinuationToken(values);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
+
+    private static int checkCount( int count,
+                                   int maxCount ) throws IOException {
+        if (count < 0 || count > maxCount) throw new IOException("Unexpected count: " + count);
+        return count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if (obj == this) return true;
+        if (obj instanceof ContinuationToken) {
+            ContinuationToken that = (ContinuationToken)obj;
+            return Arrays.equals(this.values, that.values);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "after " + Arrays.toString(values);
+    }
+}
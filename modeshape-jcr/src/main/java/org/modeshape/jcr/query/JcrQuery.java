@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
+import javax.jcr.query.InvalidQueryException;
 import javax.jcr.query.Query;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.util.CheckArg;
@@ -47,6 +48,7 @@ public class JcrQuery extends JcrAbstractQuery {
     private final PlanHints hints;
     private final Map<String, Object> variables;
     private volatile Set<String> variableNames;
+    private String continuationToken;
     private final AtomicReference<CancellableQuery> executingQuery = new AtomicReference<CancellableQuery>();
 
     /**
@@ -107,6 +109,20 @@ public class JcrQuery extends JcrAbstractQuery {
     public org.modeshape.jcr.api.query.QueryResult execute() throws RepositoryException {
         context.checkValid();
         final long start = System.nanoTime();
+        QueryCommand query = this.query;
+        PlanHints hints = this.hints;
+        if (continuationToken != null) {
+            // Return only the rows after the position of the token ...
+            ContinuationToken continueAfter = null;
+            try {
+                continueAfter = ContinuationToken.decode(continuationToken, statement);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidQueryException(JcrI18n.invalidContinuationToken.text(statement), e);
+            }
+            query = continueAfter.seek(query);
+            hints = hints.clone();
+            hints.continueAfter = continueAfter;
+        }
         // Create an executable query and set it on this object ...
         CancellableQuery newExecutable = context.createExecutableQuery(query, hints, variables);
         CancellableQuery executable = executingQuery.getAndSet(newExecutable);
@@ -215,6 +231,11 @@ public class JcrQuery extends JcrAbstractQuery {
         query = query.withLimit((int)limit); // may not actually change if the limit matches the existing query
     }
 
+    @Override
+    public void setContinuationToken( String token ) {
+        this.continuationToken = token;
+    }
+
     @Override
     public void setOffset( long offset ) {
         if (offset > Integer.MAX_VALUE) offset = Integer.MAX_VALUE;
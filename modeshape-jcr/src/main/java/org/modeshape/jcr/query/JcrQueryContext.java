@@ -107,6 +107,22 @@ public interface JcrQueryContext {
      */
     boolean canRead( CachedNode node );
 
+    /**
+     * Determine whether the current context can read every node in the workspace, so that the permissions don't have to be
+     * {@link #canRead(CachedNode) checked} for each of the nodes in the query results.
+     * 
+     * @return {@code true} if the current context can read all of the nodes, {@code false} if the permissions may differ by node
+     */
+    boolean canReadAllNodes();
+
+    /**
+     * Determine whether the session in this context has transient changes that have not yet been saved. When it does, the values
+     * of a node in the query results may differ from the persisted values stored in the indexes.
+     * 
+     * @return {@code true} if there are unsaved changes, or {@code false} otherwise
+     */
+    boolean hasTransientChanges();
+
     /**
      * Create a JCR {@link Value} instance given the supplied value and property type.
      * 
@@ -37,9 +37,11 @@ import org.modeshape.common.collection.Problem.Status;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.CachedNodeSupplier;
+import org.modeshape.jcr.cache.PropertyTypeUtil;
 import org.modeshape.jcr.query.NodeSequence.Batch;
 import org.modeshape.jcr.query.NodeSequence.Restartable;
 import org.modeshape.jcr.query.QueryResults.Columns;
+import org.modeshape.jcr.query.engine.CoveredNode;
 import org.modeshape.jcr.query.engine.process.RestartableSequence;
 import org.modeshape.jcr.query.engine.process.SecureSequence;
 import org.modeshape.jcr.value.Name;
@@ -206,7 +208,16 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
 
     @Override
     public boolean isEmpty() {
-        return false;
+        if (sequence.isEmpty()) return true;
+        // When there's no need to check the permissions of each node, the number of rows may be known without reading them
+        // (e.g., when an index can count the nodes that satisfy the criteria) ...
+        return context.canReadAllNodes() && results.getRowCount() == 0L;
+    }
+
+    @Override
+    public String getContinuationToken() {
+        ContinuationToken continuation = results.getContinuation();
+        return continuation != null ? continuation.encode(queryStatement) : null;
     }
 
     @Override
@@ -525,6 +536,14 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
                     return iterator.jcrUuid(cachedNode);
                 }
             }
+            if (cachedNode instanceof CoveredNode && ((CoveredNode)cachedNode).isCovered(qName)
+                && !iterator.context.hasTransientChanges()) {
+                // The value was obtained from the index, so there's no need to load the node ...
+                org.modeshape.jcr.value.Property property = cachedNode.getProperty(qName, null);
+                if (property == null || property.isEmpty()) return null;
+                // Use only the first value of a multi-valued property ...
+                return iterator.context.createValue(PropertyTypeUtil.jcrPropertyTypeFor(property), property.getFirstValue());
+            }
             // Get the property's value ...
             Node node = iterator.context.getNode(cachedNode);
             if (node == null || !node.hasProperty(propertyName)) return null;
@@ -593,8 +612,8 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
 
     protected static class SingleSelectorQueryResultRow extends AbstractRow {
         protected final CachedNode cachedNode;
-        protected final Node node;
         protected final int selectorIndex;
+        private Node node;
 
         protected SingleSelectorQueryResultRow( QueryResultRowIterator iterator,
                                                 Batch batchAtRow,
@@ -602,7 +621,12 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             super(iterator, batchAtRow);
             this.selectorIndex = selectorIndex;
             this.cachedNode = batchAtRow.getNode(selectorIndex);
-            this.node = iterator.context.getNode(cachedNode);
+        }
+
+        protected final Node node() {
+            // Create the JCR node only when needed, since the values may all be available from the cached node ...
+            if (node == null) node = iterator.context.getNode(cachedNode);
+            return node;
         }
 
         @Override
@@ -610,7 +634,7 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (!iterator.hasSelector(selectorName)) {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
-            return node;
+            return node();
         }
 
         @Override
@@ -620,12 +644,12 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
 
         @Override
         public Node getNode() {
-            return node;
+            return node();
         }
 
         @Override
         public String getPath() throws RepositoryException {
-            return node.getPath();
+            return node().getPath();
         }
 
         @Override
@@ -633,7 +657,7 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (!iterator.hasSelector(selectorName)) {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
-            return node.getPath();
+            return node().getPath();
         }
 
         @Override
@@ -16,6 +16,7 @@
 package org.modeshape.jcr.query;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -39,6 +40,11 @@ public abstract class NodeSequence {
 
     protected static final Logger LOGGER = Logger.getLogger(NodeSequence.class);
 
+    /**
+     * The maximum number of rows that are buffered and {@link RowFilter#filterRows(RowBlock, BitSet) filtered at once}.
+     */
+    protected static final int FILTER_BLOCK_SIZE = 128;
+
     /**
      * Get the number of nodes in each row.
      * 
@@ -946,14 +952,30 @@ public abstract class NodeSequence {
      */
     public static NodeSequence filter( final NodeSequence sequence,
                                        final RowFilter filter ) {
+        return filter(sequence, filter, false);
+    }
+
+    /**
+     * Create a sequence of nodes that all satisfy the supplied filter. When the filter is known to accept all of the rows in the
+     * original sequence (e.g., because an index already applied the same criteria), the resulting sequence has the same
+     * {@link #getRowCount() row count} as the original sequence, so that the number of rows can be known without reading them.
+     * 
+     * @param sequence the original sequence that is to be limited; may be null
+     * @param filter the filter to apply to the nodes; if null this method simply returns <code>sequence</code>
+     * @param acceptsAllRows true if the filter is known to accept all of the rows in the original sequence, or false otherwise
+     * @return the sequence of filtered nodes; never null
+     */
+    public static NodeSequence filter( final NodeSequence sequence,
+                                       final RowFilter filter,
+                                       final boolean acceptsAllRows ) {
         if (sequence == null) return emptySequence(0);
         if (filter == null || sequence.isEmpty()) return sequence;
         return new NodeSequence() {
 
             @Override
             public long getRowCount() {
-                // we don't know how the filter affects the row count ...
-                return -1;
+                // we don't know how the filter affects the row count, unless it doesn't remove any rows ...
+                return acceptsAllRows ? sequence.getRowCount() : -1;
             }
 
             @Override
@@ -963,8 +985,8 @@ public abstract class NodeSequence {
 
             @Override
             public boolean isEmpty() {
-                // not known to be empty, so always return false ...
-                return false;
+                // not known to be empty unless the filter doesn't remove any rows ...
+                return acceptsAllRows && sequence.isEmpty();
             }
 
             @Override
@@ -1395,6 +1417,89 @@ public abstract class NodeSequence {
         };
     }
 
+    /**
+     * Create a batch of nodes around the supplied iterator and the scores iterator. Note that the supplied iterators are accessed
+     * lazily only when the batch is {@link Batch#nextRow() used}.
+     * 
+     * @param nodes the iterator over the nodes to be returned; if null, an {@link #emptySequence empty instance} is returned
+     * @param scores the iterator over the scores of the nodes; must return the same number of values as nodes returned by the
+     *        <code>nodes</code> iterator
+     * @param nodeCount the number of nodes in the iterator; must be -1 if not known, 0 if known to be empty, or a positive number
+     *        if the number of nodes is known
+     * @param workspaceName the name of the workspace in which all of the nodes exist
+     * @return the batch of nodes; never null
+     */
+    public static Batch batchOf( final Iterator<CachedNode> nodes,
+                                 final Iterator<Float> scores,
+                                 final long nodeCount,
+                                 final String workspaceName ) {
+        assert nodeCount >= -1;
+        if (nodes == null) return emptyBatch(workspaceName, 1);
+        return new Batch() {
+            private CachedNode current;
+            private float score;
+
+            @Override
+            public int width() {
+                return 1;
+            }
+
+            @Override
+            public long rowCount() {
+                return nodeCount;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return nodeCount == 0;
+            }
+
+            @Override
+            public String getWorkspaceName() {
+                return workspaceName;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public void nextRow() {
+                current = nodes.next();
+                Float score = scores.next();
+                this.score = score != null ? score.floatValue() : 1.0f;
+            }
+
+            @Override
+            public CachedNode getNode() {
+                return current;
+            }
+
+            @Override
+            public CachedNode getNode( int index ) {
+                if (index != 0) throw new IndexOutOfBoundsException();
+                return current;
+            }
+
+            @Override
+            public float getScore() {
+                return score;
+            }
+
+            @Override
+            public float getScore( int index ) {
+                if (index != 0) throw new IndexOutOfBoundsException();
+                return score;
+            }
+
+            @Override
+            public String toString() {
+                return "(batch node-count=" + rowCount() + " score=" + getScore() + " )";
+            }
+        };
+    }
+
     /**
      * Create a batch of nodes around the supplied iterable container. Note that the supplied iterator is accessed lazily only
      * when the batch is {@link Batch#nextRow() used}.
@@ -1751,6 +1856,27 @@ public abstract class NodeSequence {
          * @return true if the current row is acceptable, or false if it should be excluded
          */
         boolean isCurrentRowValid( Batch batch );
+
+        /**
+         * Evaluate this filter against all of the selected rows in the supplied block, and deselect each of the rows that do not
+         * satisfy the filter. Rows that are not selected upon entry must not be evaluated, and must remain unselected.
+         * <p>
+         * By default this method simply calls {@link #isCurrentRowValid(Batch)} for each selected row, but implementations can
+         * override this to evaluate all of the rows at once (e.g., by extracting the values of all rows before comparing them).
+         * Implementations should <i>never</i> call {@link Batch#hasNext()} or {@link Batch#nextRow()} on the block, but should
+         * instead use {@link RowBlock#moveTo(int)}.
+         * </p>
+         * 
+         * @param rows the block of rows; never null
+         * @param selected the rows in the block that are to be evaluated, and upon return the rows that satisfy the filter; never
+         *        null
+         */
+        default void filterRows( RowBlock rows,
+                                 BitSet selected ) {
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                if (!isCurrentRowValid(rows.moveTo(row))) selected.clear(row);
+            }
+        }
     }
 
     public static final RowFilter NO_PASS_ROW_FILTER = new RowFilter() {
@@ -1786,6 +1912,19 @@ public abstract class NodeSequence {
             public boolean isCurrentRowValid( Batch batch ) {
                 return first.isCurrentRowValid(batch) && second.isCurrentRowValid(batch);
             }
+
+            @Override
+            public void filterRows( RowBlock rows,
+                                    BitSet selected ) {
+                first.filterRows(rows, selected);
+                // Only evaluate the second filter for the rows that satisfy the first ...
+                if (!selected.isEmpty()) second.filterRows(rows, selected);
+            }
+
+            @Override
+            public String toString() {
+                return "(and " + first + "," + second + " )";
+            }
         };
     }
 
@@ -1798,14 +1937,55 @@ public abstract class NodeSequence {
             public boolean isCurrentRowValid( Batch batch ) {
                 return first.isCurrentRowValid(batch) || second.isCurrentRowValid(batch);
             }
+
+            @Override
+            public void filterRows( RowBlock rows,
+                                    BitSet selected ) {
+                BitSet remaining = (BitSet)selected.clone();
+                first.filterRows(rows, selected);
+                // Only evaluate the second filter for the rows that don't satisfy the first ...
+                remaining.andNot(selected);
+                if (remaining.isEmpty()) return;
+                second.filterRows(rows, remaining);
+                selected.or(remaining);
+            }
+
+            @Override
+            public String toString() {
+                return "(or " + first + "," + second + " )";
+            }
+        };
+    }
+
+    public static RowFilter requireNot( final RowFilter filter ) {
+        if (filter == null) return PASS_ROW_FILTER;
+        return new RowFilter() {
+            @Override
+            public boolean isCurrentRowValid( Batch batch ) {
+                return !filter.isCurrentRowValid(batch);
+            }
+
+            @Override
+            public void filterRows( RowBlock rows,
+                                    BitSet selected ) {
+                BitSet passing = (BitSet)selected.clone();
+                filter.filterRows(rows, passing);
+                selected.andNot(passing);
+            }
+
+            @Override
+            public String toString() {
+                return "(not " + filter + " )";
+            }
         };
     }
 
     /**
      * Create a batch that applies the given filter to the supplied batch. Only rows that satisfy the filter will be exposed by
-     * this batch. Note that this batch maintains nor caches any rows, and walks the supplied batch as needed (rather than up
-     * front). Therefore, the {@link #getRowCount()} is almost always -1 (except when the supplied batch is null or empty, or if
-     * the filter is null.
+     * this batch. Note that this batch walks the supplied batch as needed (rather than up front), buffering at most
+     * {@link #FILTER_BLOCK_SIZE} rows at a time so that the filter can {@link RowFilter#filterRows(RowBlock, BitSet) evaluate
+     * them all at once}. Therefore, the {@link #getRowCount()} is almost always -1 (except when the supplied batch is null or
+     * empty, or if the filter is null.
      * 
      * @param batch the batch to be filtered; if null an empty batch is returned
      * @param filter the filter to be applied to the rows in the batch; if null an empty batch is returned
@@ -1815,7 +1995,10 @@ public abstract class NodeSequence {
                                            final RowFilter filter ) {
         if (batch == null || batch.isEmpty() || batch.rowCount() == 0 || filter == null || batch.width() < 1) return batch;
         return new Batch() {
-            private boolean atNext = false;
+            private RowBlock block;
+            private BitSet selected;
+            private int current = -1;
+            private int next = -1;
 
             @Override
             public int width() {
@@ -1839,22 +2022,22 @@ public abstract class NodeSequence {
 
             @Override
             public CachedNode getNode() {
-                return batch.getNode();
+                return block.getNode();
             }
 
             @Override
             public CachedNode getNode( int index ) {
-                return batch.getNode(index);
+                return block.getNode(index);
             }
 
             @Override
             public float getScore() {
-                return batch.getScore();
+                return block.getScore();
             }
 
             @Override
             public float getScore( int index ) {
-                return batch.getScore(index);
+                return block.getScore(index);
             }
 
             @Override
@@ -1865,24 +2048,32 @@ public abstract class NodeSequence {
             @Override
             public void nextRow() {
                 if (findNext()) {
-                    atNext = false;
+                    current = next;
+                    next = -1;
+                    block.moveTo(current);
                     return;
                 }
                 throw new NoSuchElementException();
             }
 
             private boolean findNext() {
-                if (!atNext) {
-                    while (batch.hasNext()) {
-                        batch.nextRow();
-                        // See if the batch's current row satisfies the filter ...
-                        if (filter.isCurrentRowValid(batch)) {
-                            atNext = true;
-                            break;
-                        }
+                while (next < 0) {
+                    if (block != null) {
+                        next = selected.nextSetBit(current + 1);
+                        if (next >= 0) break;
+                    }
+                    // Buffer the next block of rows and filter them all at once ...
+                    if (block == null) {
+                        block = new RowBlock(batch.getWorkspaceName(), batch.width(), FILTER_BLOCK_SIZE);
+                        selected = new BitSet(FILTER_BLOCK_SIZE);
                     }
+                    if (block.fill(batch) == 0) return false;
+                    selected.clear();
+                    selected.set(0, block.size());
+                    filter.filterRows(block, selected);
+                    current = -1;
                 }
-                return atNext;
+                return true;
             }
 
             @Override
@@ -1892,6 +2083,136 @@ public abstract class NodeSequence {
         };
     }
 
+    /**
+     * A block of rows buffered from another {@link Batch}, which allows a {@link RowFilter} to
+     * {@link RowFilter#filterRows(RowBlock, BitSet) evaluate many rows at once}. The block can be positioned at any of its rows
+     * with {@link #moveTo(int)}, after which the block can be used as a {@link Batch} at that row.
+     */
+    @NotThreadSafe
+    public static final class RowBlock implements Batch {
+        private final String workspaceName;
+        private final int width;
+        private final CachedNode[][] nodes;
+        private final float[][] scores;
+        private int size = 0;
+        private int current = -1;
+
+        protected RowBlock( String workspaceName,
+                            int width,
+                            int capacity ) {
+            assert width > 0;
+            assert capacity > 0;
+            this.workspaceName = workspaceName;
+            this.width = width;
+            this.nodes = new CachedNode[capacity][width];
+            this.scores = new float[capacity][width];
+        }
+
+        /**
+         * Replace the rows in this block with the next rows from the supplied batch, reading at most as many rows as this block
+         * can hold.
+         * 
+         * @param batch the batch from which the rows are to be read; may not be null
+         * @return the number of rows in this block
+         */
+        protected int fill( Batch batch ) {
+            assert batch.width() == width;
+            size = 0;
+            current = -1;
+            while (size < nodes.length && batch.hasNext()) {
+                batch.nextRow();
+                for (int i = 0; i != width; ++i) {
+                    nodes[size][i] = batch.getNode(i);
+                    scores[size][i] = batch.getScore(i);
+                }
+                ++size;
+            }
+            return size;
+        }
+
+        /**
+         * Get the number of rows in this block.
+         * 
+         * @return the number of rows; never negative
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Position this block at the specified row.
+         * 
+         * @param row the 0-based index of the row; must be less than {@link #size()}
+         * @return this block, positioned at the specified row; never null
+         * @throws IndexOutOfBoundsException if the row is not valid
+         */
+        public RowBlock moveTo( int row ) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException();
+            current = row;
+            return this;
+        }
+
+        @Override
+        public int width() {
+            return width;
+        }
+
+        @Override
+        public String getWorkspaceName() {
+            return workspaceName;
+        }
+
+        @Override
+        public long rowCount() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current + 1 < size;
+        }
+
+        @Override
+        public void nextRow() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ++current;
+        }
+
+        @Override
+        public CachedNode getNode() {
+            return getNode(0);
+        }
+
+        @Override
+        public CachedNode getNode( int index ) {
+            if (current < 0) throw new NoSuchElementException();
+            if (index < 0 || index >= width) throw new IndexOutOfBoundsException();
+            return nodes[current][index];
+        }
+
+        @Override
+        public float getScore() {
+            return getScore(0);
+        }
+
+        @Override
+        public float getScore( int index ) {
+            if (current < 0) throw new NoSuchElementException();
+            if (index < 0 || index >= width) throw new IndexOutOfBoundsException();
+            return scores[current][index];
+        }
+
+        @Override
+        public String toString() {
+            return "(row-block size=" + size + " width=" + width + ")";
+        }
+    }
+
     /**
      * Create a batch that always has a {@link Batch#rowCount()}, even if that means returning a new Batch that buffers the
      * original's rows it into memory.
@@ -343,6 +343,15 @@ public class QueryContext {
         return schemata;
     }
 
+    /**
+     * Get the statistics about the repository content that can be used to estimate the sizes of the intermediate results.
+     * 
+     * @return the content statistics; never null
+     */
+    public ContentStatistics getStatistics() {
+        return ContentStatistics.NONE;
+    }
+
     /**
      * Get an immutable snapshot of the node types.
      * 
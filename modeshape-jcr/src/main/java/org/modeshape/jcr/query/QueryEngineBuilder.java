@@ -34,6 +34,8 @@ public abstract class QueryEngineBuilder {
     private ExecutionContext context;
     private Planner planner;
     private Optimizer optimizer;
+    private ContentStatistics statistics;
+    private QueryResultCache resultCache;
 
     public QueryEngineBuilder() {
     }
@@ -57,6 +59,16 @@ public abstract class QueryEngineBuilder {
         return this;
     }
 
+    public QueryEngineBuilder with( ContentStatistics statistics ) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    public QueryEngineBuilder with( QueryResultCache resultCache ) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
     public abstract QueryEngine build();
 
     protected final RepositoryConfiguration config() {
@@ -83,6 +95,14 @@ public abstract class QueryEngineBuilder {
         return this.optimizer != null ? this.optimizer : defaultOptimizer();
     }
 
+    protected final ContentStatistics statistics() {
+        return this.statistics != null ? this.statistics : ContentStatistics.NONE;
+    }
+
+    protected final QueryResultCache resultCache() {
+        return this.resultCache;
+    }
+
     protected Planner defaultPlanner() {
         return new CanonicalPlanner();
     }
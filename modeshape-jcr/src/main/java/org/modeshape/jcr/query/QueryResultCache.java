@@ -0,0 +1,809 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.SessionCache;
+import org.modeshape.jcr.cache.change.AbstractNodeChange;
+import org.modeshape.jcr.cache.change.AbstractPropertyChange;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+import org.modeshape.jcr.cache.change.NodeAdded;
+import org.modeshape.jcr.cache.change.NodeChanged;
+import org.modeshape.jcr.cache.change.NodeRemoved;
+import org.modeshape.jcr.cache.change.PropertyChanged;
+import org.modeshape.jcr.cache.change.PropertyRemoved;
+import org.modeshape.jcr.cache.change.WorkspaceAdded;
+import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.cache.document.TransactionalWorkspaceCache;
+import org.modeshape.jcr.query.NodeSequence.Batch;
+import org.modeshape.jcr.query.engine.process.DelegatingSequence;
+import org.modeshape.jcr.query.model.AllNodes;
+import org.modeshape.jcr.query.model.And;
+import org.modeshape.jcr.query.model.ChildNode;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.Constraint;
+import org.modeshape.jcr.query.model.DescendantNode;
+import org.modeshape.jcr.query.model.DynamicOperand;
+import org.modeshape.jcr.query.model.FullTextSearch;
+import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.Or;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.SameNode;
+import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.model.SetCriteria;
+import org.modeshape.jcr.query.model.StaticOperand;
+import org.modeshape.jcr.query.model.Visitors;
+import org.modeshape.jcr.query.plan.PlanHints;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Traversal;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+import org.modeshape.jcr.value.ValueFormatException;
+
+/**
+ * A cache of the rows produced by read-only queries, keyed by the optimized plan, the workspaces and the values of the bind
+ * variables. Each cached result records the keys and scores of the nodes in each row, so that the rows can be replayed without
+ * re-executing the query. The nodes are always obtained from the {@link QueryContext#getNodeCache(String) node cache} of the
+ * query that uses the cached result, so the values of the result columns are read from the (shared) workspace cache and any
+ * permission checks are still applied separately for each session.
+ * <p>
+ * Cached results are evicted whenever a {@link ChangeSet} contains a change that might alter them. Each cached result records
+ * the node types (including all subtypes) and, when all of the query's selectors are constrained to particular paths, the paths
+ * on which the result depends; changes to nodes of other types or outside those paths do not evict the result. Moving,
+ * renaming or reordering nodes evicts all results for the workspace, and changing the primary type or mixins of a node evicts
+ * all results that depend on the node's path. Changes in the system workspace are considered for the results in all workspaces,
+ * since every workspace exposes the system content under "/jcr:system".
+ * </p>
+ * <p>
+ * The results of queries are not cached when the query is only being planned, uses full-text search (since text extraction is
+ * asynchronous), or is executed by a session with transient changes or within a transaction. Results with more than the
+ * configured maximum number of rows are not cached, and neither are results that are only partially consumed.
+ * </p>
+ */
+@ThreadSafe
+public class QueryResultCache implements ChangeSetListener {
+
+    private final String systemWorkspaceName;
+    private final int maxRowsPerEntry;
+    private final Map<Key, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param systemWorkspaceName the name of the system workspace, whose content is visible in all workspaces; may not be null
+     * @param maxEntries the maximum number of query results to cache; must be positive
+     * @param maxRowsPerEntry the maximum number of rows in a cached query result; must not be negative
+     */
+    public QueryResultCache( String systemWorkspaceName,
+                             final int maxEntries,
+                             int maxRowsPerEntry ) {
+        assert systemWorkspaceName != null;
+        assert maxEntries > 0;
+        assert maxRowsPerEntry >= 0;
+        this.systemWorkspaceName = systemWorkspaceName;
+        this.maxRowsPerEntry = maxRowsPerEntry;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, Entry> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Obtain the key for the results of executing the supplied optimized plan in the given context.
+     *
+     * @param context the context in which the query is being executed; may not be null
+     * @param plan the optimized plan; may not be null
+     * @return the key, or null if the results of the query cannot be cached
+     */
+    public Key keyFor( QueryContext context,
+                       PlanNode plan ) {
+        PlanHints hints = context.getHints();
+        if (hints.planOnly || hints.continueAfter != null || usesFullTextSearch(plan)) return null;
+        for (String workspaceName : context.getWorkspaceNames()) {
+            NodeCache cache = context.getNodeCache(workspaceName);
+            if (cache instanceof SessionCache) {
+                SessionCache sessionCache = (SessionCache)cache;
+                // The query might see the transient changes ...
+                if (sessionCache.hasChanges()) return null;
+                cache = sessionCache.getWorkspace();
+            }
+            // The query might see the changes made within the transaction ...
+            if (cache instanceof TransactionalWorkspaceCache) return null;
+        }
+        return new Key(context.getWorkspaceNames(), plan.getString(), context.getVariables(), generation.get());
+    }
+
+    protected static boolean usesFullTextSearch( PlanNode plan ) {
+        final boolean[] result = new boolean[] {false};
+        Visitors.AbstractVisitor visitor = new Visitors.AbstractVisitor() {
+            @Override
+            public void visit( FullTextSearch obj ) {
+                result[0] = true;
+            }
+        };
+        for (PlanNode select : plan.findAllAtOrBelow(Type.SELECT)) {
+            Constraint criteria = select.getProperty(Property.SELECT_CRITERIA, Constraint.class);
+            if (criteria != null) Visitors.visitAll(criteria, visitor);
+        }
+        return result[0];
+    }
+
+    /**
+     * Get the cached rows for the query with the given key.
+     *
+     * @param key the key obtained from {@link #keyFor}; may not be null
+     * @param context the context in which the query is being executed; may not be null
+     * @return the sequence of cached rows, or null if there are no cached results for the query
+     */
+    public NodeSequence get( Key key,
+                             QueryContext context ) {
+        Entry entry = null;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) return null;
+        return new CachedSequence(entry, context.getNodeCache(entry.workspaceName));
+    }
+
+    /**
+     * Record the rows of the query with the given key as they are consumed. The results are added to this cache only after all
+     * of the rows have been consumed, and only if no changes that might affect them were made in the meantime.
+     *
+     * @param key the key obtained from {@link #keyFor}; may not be null
+     * @param context the context in which the query is being executed; may not be null
+     * @param plan the optimized plan; may not be null
+     * @param rows the rows produced by executing the query; may not be null
+     * @return the sequence that should be used in place of {@code rows}; never null
+     */
+    public NodeSequence record( Key key,
+                                QueryContext context,
+                                PlanNode plan,
+                                NodeSequence rows ) {
+        String workspaceName = context.getWorkspaceNames().iterator().next();
+        Dependencies dependencies = Dependencies.of(context, plan);
+        Entry entry = new Entry(workspaceName, rows.width(), dependencies);
+        if (rows.isEmpty()) {
+            put(key, entry);
+            return rows;
+        }
+        return new RecordingSequence(rows, key, entry);
+    }
+
+    /**
+     * Get the number of query results in this cache.
+     *
+     * @return the number of cached results
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Remove all query results from this cache.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    protected void put( Key key,
+                        Entry entry ) {
+        // Don't cache results that may have been affected by changes made while the query was executing ...
+        if (key.generation != generation.get()) return;
+        synchronized (entries) {
+            if (key.generation == generation.get()) entries.put(key, entry);
+        }
+    }
+
+    @Override
+    public void notify( ChangeSet changeSet ) {
+        if (changeSet.isEmpty()) return;
+        // Changes to content that was read by queries that are still executing make their results stale ...
+        generation.incrementAndGet();
+        String workspaceName = changeSet.getWorkspaceName();
+        // The "/jcr:system" content of every workspace is stored in the system workspace ...
+        boolean systemChange = systemWorkspaceName.equals(workspaceName);
+        synchronized (entries) {
+            if (entries.isEmpty()) return;
+            for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+                Entry entry = iter.next();
+                if (entry.dependencies.isAffectedBy(workspaceName, systemChange, changeSet)) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The key for a cached query result.
+     */
+    @Immutable
+    public static final class Key {
+        private final Set<String> workspaceNames;
+        private final String plan;
+        private final Map<String, Object> variables;
+        private final int hc;
+        /** The generation of the cache before the query was executed; not part of the key's identity */
+        protected final long generation;
+
+        protected Key( Set<String> workspaceNames,
+                       String plan,
+                       Map<String, Object> variables,
+                       long generation ) {
+            this.workspaceNames = new HashSet<>(workspaceNames);
+            this.plan = plan;
+            this.variables = variables.isEmpty() ? Collections.<String, Object>emptyMap() : new HashMap<>(variables);
+            this.generation = generation;
+            this.hc = plan.hashCode() * 31 + this.workspaceNames.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof Key) {
+                Key that = (Key)obj;
+                return this.hc == that.hc && this.plan.equals(that.plan) && this.workspaceNames.equals(that.workspaceNames)
+                       && this.variables.equals(that.variables);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "query in " + workspaceNames + " with variables " + variables + ":\n" + plan;
+        }
+    }
+
+    /**
+     * The node types and paths on which a cached query result depends.
+     */
+    @Immutable
+    protected static final class Dependencies {
+        private final Set<String> workspaceNames;
+        /** The names of the node types, or null if the result depends on nodes of any type */
+        private final Set<Name> nodeTypeNames;
+        /** The paths at or below which all nodes in the result exist, or null if the result depends on nodes anywhere */
+        private final List<Path> paths;
+
+        protected Dependencies( Set<String> workspaceNames,
+                                Set<Name> nodeTypeNames,
+                                List<Path> paths ) {
+            this.workspaceNames = workspaceNames;
+            this.nodeTypeNames = nodeTypeNames;
+            this.paths = paths;
+        }
+
+        protected static Dependencies of( final QueryContext context,
+                                          PlanNode plan ) {
+            final NameFactory names = context.getExecutionContext().getValueFactories().getNameFactory();
+            final PathFactory paths = context.getExecutionContext().getValueFactories().getPathFactory();
+            final Set<SelectorName> selectors = new HashSet<>();
+            final Map<SelectorName, Set<Name>> typesBySelector = new HashMap<>();
+            final Map<SelectorName, List<Path>> pathsBySelector = new HashMap<>();
+            plan.apply(Traversal.PRE_ORDER, new PlanNode.Operation() {
+                @Override
+                public void apply( PlanNode node ) {
+                    if (node.getType() == Type.SOURCE) {
+                        selectors.addAll(node.getSelectors());
+                        SelectorName tableName = node.getProperty(Property.SOURCE_NAME, SelectorName.class);
+                        if (tableName != null && !AllNodes.ALL_NODES_NAME.equals(tableName) && context.getNodeTypes() != null) {
+                            try {
+                                Set<Name> typeNames = context.getNodeTypes().getAllSubtypes(names.create(tableName.name()));
+                                if (typeNames != null && !typeNames.isEmpty()) {
+                                    for (SelectorName selector : node.getSelectors()) {
+                                        addAll(typesBySelector, selector, typeNames);
+                                    }
+                                }
+                            } catch (ValueFormatException e) {
+                                // Not a node type ...
+                            }
+                        }
+                    } else if (node.getType() == Type.SELECT) {
+                        Constraint criteria = node.getProperty(Property.SELECT_CRITERIA, Constraint.class);
+                        addConstraints(criteria, names, paths, typesBySelector, pathsBySelector);
+                    }
+                }
+            });
+            // The result depends only on particular node types or paths if every selector is so restricted ...
+            Set<Name> nodeTypeNames = null;
+            if (!selectors.isEmpty() && typesBySelector.keySet().containsAll(selectors)) {
+                nodeTypeNames = new HashSet<>();
+                for (Set<Name> selectorTypes : typesBySelector.values()) {
+                    nodeTypeNames.addAll(selectorTypes);
+                }
+            }
+            List<Path> scope = null;
+            if (!selectors.isEmpty() && pathsBySelector.keySet().containsAll(selectors)) {
+                scope = new ArrayList<>();
+                for (List<Path> selectorPaths : pathsBySelector.values()) {
+                    scope.addAll(selectorPaths);
+                }
+            }
+            return new Dependencies(new LinkedHashSet<>(context.getWorkspaceNames()), nodeTypeNames, scope);
+        }
+
+        private static void addConstraints( Constraint constraint,
+                                            NameFactory names,
+                                            PathFactory paths,
+                                            Map<SelectorName, Set<Name>> typesBySelector,
+                                            Map<SelectorName, List<Path>> pathsBySelector ) {
+            if (constraint instanceof And) {
+                And and = (And)constraint;
+                addConstraints(and.left(), names, paths, typesBySelector, pathsBySelector);
+                addConstraints(and.right(), names, paths, typesBySelector, pathsBySelector);
+                return;
+            }
+            // Conjunctions of several constraints on the same selector are rare; keeping them all is conservative ...
+            Map<SelectorName, Set<Name>> types = new HashMap<>();
+            if (addTypeConstraints(constraint, names, types)) {
+                for (Map.Entry<SelectorName, Set<Name>> entry : types.entrySet()) {
+                    addAll(typesBySelector, entry.getKey(), entry.getValue());
+                }
+                return;
+            }
+            SelectorName selector = null;
+            String path = null;
+            if (constraint instanceof DescendantNode) {
+                selector = ((DescendantNode)constraint).selectorName();
+                path = ((DescendantNode)constraint).getAncestorPath();
+            } else if (constraint instanceof ChildNode) {
+                selector = ((ChildNode)constraint).selectorName();
+                path = ((ChildNode)constraint).getParentPath();
+            } else if (constraint instanceof SameNode) {
+                selector = ((SameNode)constraint).selectorName();
+                path = ((SameNode)constraint).getPath();
+            }
+            if (selector == null || path == null) return;
+            try {
+                Path parsed = paths.create(path);
+                List<Path> selectorPaths = pathsBySelector.get(selector);
+                if (selectorPaths == null) {
+                    selectorPaths = new ArrayList<>();
+                    pathsBySelector.put(selector, selectorPaths);
+                }
+                if (!selectorPaths.contains(parsed)) selectorPaths.add(parsed);
+            } catch (ValueFormatException e) {
+                // Can't use this constraint ...
+            }
+        }
+
+        /**
+         * Find the node types in a constraint on the primary type or mixin types of a selector, such as the criteria that the
+         * views for each node type place on the {@link AllNodes all-nodes table}.
+         *
+         * @param constraint the constraint; may be null
+         * @param names the factory for names; may not be null
+         * @param typesBySelector the map into which the node types should be placed; may not be null
+         * @return true if the constraint (or all parts of a disjunction) only restricts the node types, or false otherwise
+         */
+        private static boolean addTypeConstraints( Constraint constraint,
+                                                   NameFactory names,
+                                                   Map<SelectorName, Set<Name>> typesBySelector ) {
+            if (constraint instanceof Or) {
+                Or or = (Or)constraint;
+                return addTypeConstraints(or.left(), names, typesBySelector)
+                       && addTypeConstraints(or.right(), names, typesBySelector);
+            }
+            DynamicOperand operand = null;
+            Collection<? extends StaticOperand> values = null;
+            if (constraint instanceof Comparison) {
+                Comparison comparison = (Comparison)constraint;
+                if (comparison.operator() != Operator.EQUAL_TO) return false;
+                operand = comparison.getOperand1();
+                values = Collections.singleton(comparison.getOperand2());
+            } else if (constraint instanceof SetCriteria) {
+                operand = ((SetCriteria)constraint).leftOperand();
+                values = ((SetCriteria)constraint).rightOperands();
+            }
+            if (!(operand instanceof PropertyValue)) return false;
+            PropertyValue property = (PropertyValue)operand;
+            try {
+                Name propertyName = names.create(property.getPropertyName());
+                if (!JcrLexicon.PRIMARY_TYPE.equals(propertyName) && !JcrLexicon.MIXIN_TYPES.equals(propertyName)) return false;
+                Set<Name> typeNames = new HashSet<>();
+                for (StaticOperand value : values) {
+                    if (!(value instanceof Literal)) return false;
+                    typeNames.add(names.create(((Literal)value).value()));
+                }
+                addAll(typesBySelector, property.selectorName(), typeNames);
+                return true;
+            } catch (ValueFormatException e) {
+                return false;
+            }
+        }
+
+        private static <T> void addAll( Map<SelectorName, Set<T>> valuesBySelector,
+                                        SelectorName selector,
+                                        Set<T> values ) {
+            Set<T> existing = valuesBySelector.get(selector);
+            if (existing == null) {
+                existing = new HashSet<>();
+                valuesBySelector.put(selector, existing);
+            }
+            existing.addAll(values);
+        }
+
+        protected boolean isAffectedBy( String workspaceName,
+                                        boolean systemChange,
+                                        ChangeSet changeSet ) {
+            if (workspaceName == null) return true;
+            for (Change change : changeSet) {
+                if (change instanceof WorkspaceAdded) continue;
+                if (change instanceof WorkspaceRemoved) {
+                    if (workspaceNames.contains(((WorkspaceRemoved)change).getWorkspaceName())) return true;
+                    continue;
+                }
+                if (!systemChange && !workspaceNames.contains(workspaceName)) continue;
+                if (!(change instanceof AbstractNodeChange)) continue;
+                if (isAffectedBy((AbstractNodeChange)change)) return true;
+            }
+            return false;
+        }
+
+        private boolean isAffectedBy( AbstractNodeChange change ) {
+            if (!(change instanceof AbstractPropertyChange || change instanceof NodeAdded || change instanceof NodeRemoved
+                  || change instanceof NodeChanged)) {
+                // The paths of this node and all of its descendants may have changed ...
+                return true;
+            }
+            if (paths != null && !isAtOrBelowAny(change.getPath())) return false;
+            if (nodeTypeNames == null) return true;
+            if (change instanceof PropertyChanged || change instanceof PropertyRemoved) {
+                Name propertyName = ((AbstractPropertyChange)change).getProperty().getName();
+                if (JcrLexicon.PRIMARY_TYPE.equals(propertyName) || JcrLexicon.MIXIN_TYPES.equals(propertyName)) {
+                    // The node may no longer be of a type on which the results depend ...
+                    return true;
+                }
+            }
+            Name primaryType = change.getPrimaryType();
+            if (primaryType == null || nodeTypeNames.contains(primaryType)) return true;
+            for (Name mixinType : change.getMixinTypes()) {
+                if (nodeTypeNames.contains(mixinType)) return true;
+            }
+            return false;
+        }
+
+        private boolean isAtOrBelowAny( Path path ) {
+            for (Path scope : paths) {
+                if (path.isAtOrBelow(scope)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A cached query result.
+     */
+    protected static final class Entry {
+        protected final String workspaceName;
+        protected final int width;
+        protected final Dependencies dependencies;
+        protected final List<NodeKey> keys = new ArrayList<>();
+        protected final List<Float> scores = new ArrayList<>();
+        protected int rowCount;
+
+        protected Entry( String workspaceName,
+                         int width,
+                         Dependencies dependencies ) {
+            this.workspaceName = workspaceName;
+            this.width = width;
+            this.dependencies = dependencies;
+        }
+
+        protected void addRow( Batch batch ) {
+            for (int i = 0; i != width; ++i) {
+                CachedNode node = batch.getNode(i);
+                keys.add(node != null ? node.getKey() : null);
+                scores.add(batch.getScore(i));
+            }
+            ++rowCount;
+        }
+    }
+
+    /**
+     * A sequence that records the rows of the delegate as they are consumed, and adds the result to the cache once all rows are
+     * consumed.
+     */
+    protected final class RecordingSequence extends DelegatingSequence {
+        private final Key key;
+        private Entry entry;
+
+        protected RecordingSequence( NodeSequence delegate,
+                                     Key key,
+                                     Entry entry ) {
+            super(delegate);
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public Batch nextBatch() {
+            final Batch batch = super.nextBatch();
+            if (entry == null) return batch;
+            if (batch == null) {
+                // All of the rows have been consumed ...
+                put(key, entry);
+                entry = null;
+                return null;
+            }
+            return new Batch() {
+                @Override
+                public int width() {
+                    return batch.width();
+                }
+
+                @Override
+                public String getWorkspaceName() {
+                    return batch.getWorkspaceName();
+                }
+
+                @Override
+                public long rowCount() {
+                    return batch.rowCount();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return batch.isEmpty();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return batch.hasNext();
+                }
+
+                @Override
+                public void nextRow() {
+                    batch.nextRow();
+                    Entry entry = RecordingSequence.this.entry;
+                    if (entry == null) return;
+                    if (entry.rowCount >= maxRowsPerEntry) {
+                        // Too many rows to cache ...
+                        RecordingSequence.this.entry = null;
+                        return;
+                    }
+                    entry.addRow(batch);
+                }
+
+                @Override
+                public CachedNode getNode() {
+                    return batch.getNode();
+                }
+
+                @Override
+                public CachedNode getNode( int index ) {
+                    return batch.getNode(index);
+                }
+
+                @Override
+                public float getScore() {
+                    return batch.getScore();
+                }
+
+                @Override
+                public float getScore( int index ) {
+                    return batch.getScore(index);
+                }
+
+                @Override
+                public String toString() {
+                    return "(recording " + batch + ")";
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            // Results that are not completely consumed are not cached ...
+            entry = null;
+            super.close();
+        }
+
+        @Override
+        public String toString() {
+            return "(recording " + delegate + ")";
+        }
+    }
+
+    /**
+     * A sequence over the rows of a cached result, which finds the nodes in the supplied cache.
+     */
+    protected static final class CachedSequence extends NodeSequence {
+        private final Entry entry;
+        private final NodeCache cache;
+        private boolean done;
+
+        protected CachedSequence( Entry entry,
+                                  NodeCache cache ) {
+            this.entry = entry;
+            this.cache = cache;
+        }
+
+        @Override
+        public int width() {
+            return entry.width;
+        }
+
+        @Override
+        public long getRowCount() {
+            // Nodes may have been removed since the result was cached, so count only the rows whose nodes still exist ...
+            long count = 0L;
+            for (int row = 0; row != entry.rowCount; ++row) {
+                if (exists(row)) ++count;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (int row = 0; row != entry.rowCount; ++row) {
+                if (exists(row)) return false;
+            }
+            return true;
+        }
+
+        private boolean exists( int row ) {
+            int offset = row * entry.width;
+            for (int i = 0; i != entry.width; ++i) {
+                NodeKey key = entry.keys.get(offset + i);
+                if (key != null && cache.getNode(key) == null) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Batch nextBatch() {
+            if (done || entry.rowCount == 0) return null;
+            done = true;
+            return new Batch() {
+                private final CachedNode[] nodes = new CachedNode[entry.width];
+                private final CachedNode[] next = new CachedNode[entry.width];
+                private int nextRow = 0;
+                private int currentRow = -1;
+                private int nextIndex = -1;
+
+                @Override
+                public int width() {
+                    return entry.width;
+                }
+
+                @Override
+                public String getWorkspaceName() {
+                    return entry.workspaceName;
+                }
+
+                @Override
+                public long rowCount() {
+                    return getRowCount();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return CachedSequence.this.isEmpty();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    if (nextIndex >= 0) return true;
+                    // Find the next row whose nodes all still exist ...
+                    while (nextRow < entry.rowCount) {
+                        int row = nextRow++;
+                        if (load(row)) {
+                            nextIndex = row;
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                private boolean load( int row ) {
+                    int offset = row * entry.width;
+                    for (int i = 0; i != entry.width; ++i) {
+                        NodeKey key = entry.keys.get(offset + i);
+                        next[i] = key != null ? cache.getNode(key) : null;
+                        if (key != null && next[i] == null) return false;
+                    }
+                    return true;
+                }
+
+                @Override
+                public void nextRow() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    System.arraycopy(next, 0, nodes, 0, entry.width);
+                    currentRow = nextIndex;
+                    nextIndex = -1;
+                }
+
+                @Override
+                public CachedNode getNode() {
+                    return getNode(0);
+                }
+
+                @Override
+                public CachedNode getNode( int index ) {
+                    if (currentRow < 0) throw new NoSuchElementException();
+                    return nodes[index];
+                }
+
+                @Override
+                public float getScore() {
+                    return getScore(0);
+                }
+
+                @Override
+                public float getScore( int index ) {
+                    if (currentRow < 0) throw new NoSuchElementException();
+                    if (index < 0 || index >= entry.width) throw new IndexOutOfBoundsException();
+                    return entry.scores.get(currentRow * entry.width + index);
+                }
+
+                @Override
+                public String toString() {
+                    return "(cached-batch size=" + entry.rowCount + ")";
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            done = true;
+        }
+
+        @Override
+        public String toString() {
+            return "(cached-rows " + entry.rowCount + ")";
+        }
+    }
+}
@@ -104,6 +104,15 @@ public interface QueryResults {
      */
     public Statistics getStatistics();
 
+    /**
+     * Get the position just after the last of the {@link #getRows() rows} that have been consumed, which can be used to obtain the
+     * next page of results of a query with an ORDER BY clause and a row limit.
+     * 
+     * @return the continuation token, or null if the rows are not ordered and limited or if not all of the rows have yet been
+     *         consumed
+     */
+    public ContinuationToken getContinuation();
+
     /**
      * Definition of the columns that are available in the results.
      */
@@ -0,0 +1,258 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReferences;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.PathCache;
+import org.modeshape.jcr.cache.ReferrerCounts;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
+
+/**
+ * A {@link CachedNode} implementation for a node returned by an index that covers all of the columns needed by a query. The
+ * values of the covered properties are obtained from the index itself, so that the query engine can evaluate criteria and
+ * extract column values without loading the node from the workspace cache. Any other information (e.g., the path, name, or
+ * properties not covered by the index) is obtained by lazily loading the real node the first time it is needed.
+ */
+@NotThreadSafe
+public final class CoveredNode implements CachedNode {
+
+    private final NodeKey key;
+    private final Map<Name, Property> coveredProperties;
+    private final Set<Name> coveredNames;
+    private final NodeCache cache;
+    private CachedNode node;
+
+    /**
+     * Create a new covered node.
+     *
+     * @param key the key of the node; may not be null
+     * @param coveredProperties the properties that were obtained from the index, keyed by name; may not be null
+     * @param coveredNames the names of all of the properties covered by the index; properties with these names that do not
+     *        appear in {@code coveredProperties} are considered to not exist on the node; may not be null
+     * @param cache the cache from which the real node can be loaded if needed; may not be null
+     */
+    public CoveredNode( NodeKey key,
+                        Map<Name, Property> coveredProperties,
+                        Set<Name> coveredNames,
+                        NodeCache cache ) {
+        assert key != null;
+        assert coveredProperties != null;
+        assert coveredNames != null;
+        assert cache != null;
+        this.key = key;
+        this.coveredProperties = coveredProperties;
+        this.coveredNames = coveredNames;
+        this.cache = cache;
+    }
+
+    /**
+     * Determine whether the value of the named property was obtained from the index.
+     *
+     * @param name the property name; may not be null
+     * @return true if the index covers the named property, or false otherwise
+     */
+    public boolean isCovered( Name name ) {
+        return coveredNames.contains(name);
+    }
+
+    /**
+     * Determine whether the real node has already been loaded from the cache.
+     *
+     * @return true if the node has been loaded, or false if all requests have so far been answered by the index
+     */
+    public boolean isLoaded() {
+        return node != null;
+    }
+
+    protected final CachedNode node() {
+        if (node == null) {
+            node = cache.getNode(key);
+            if (node == null) {
+                // The index returned a node that no longer exists ...
+                throw new NodeNotFoundException(key);
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public NodeKey getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean hasProperty( Name name,
+                                NodeCache cache ) {
+        if (coveredNames.contains(name)) return coveredProperties.containsKey(name);
+        return node().hasProperty(name, cache);
+    }
+
+    @Override
+    public Property getProperty( Name name,
+                                 NodeCache cache ) {
+        if (coveredNames.contains(name)) return coveredProperties.get(name);
+        return node().getProperty(name, cache);
+    }
+
+    @Override
+    public Name getName( NodeCache cache ) {
+        return node().getName(cache);
+    }
+
+    @Override
+    public Segment getSegment( NodeCache cache ) {
+        return node().getSegment(cache);
+    }
+
+    @Override
+    public Path getPath( NodeCache cache ) throws NodeNotFoundException {
+        return node().getPath(cache);
+    }
+
+    @Override
+    public Path getPath( PathCache pathCache ) throws NodeNotFoundException {
+        return node().getPath(pathCache);
+    }
+
+    @Override
+    public int getDepth( NodeCache cache ) throws NodeNotFoundException {
+        return node().getDepth(cache);
+    }
+
+    @Override
+    public NodeKey getParentKey( NodeCache cache ) {
+        return node().getParentKey(cache);
+    }
+
+    @Override
+    public NodeKey getParentKeyInAnyWorkspace( NodeCache cache ) {
+        return node().getParentKeyInAnyWorkspace(cache);
+    }
+
+    @Override
+    public Set<NodeKey> getAdditionalParentKeys( NodeCache cache ) {
+        return node().getAdditionalParentKeys(cache);
+    }
+
+    @Override
+    public Name getPrimaryType( NodeCache cache ) {
+        return node().getPrimaryType(cache);
+    }
+
+    @Override
+    public Set<Name> getMixinTypes( NodeCache cache ) {
+        return node().getMixinTypes(cache);
+    }
+
+    @Override
+    public int getPropertyCount( NodeCache cache ) {
+        return node().getPropertyCount(cache);
+    }
+
+    @Override
+    public boolean hasProperties( NodeCache cache ) {
+        return node().hasProperties(cache);
+    }
+
+    @Override
+    public Properties getPropertiesByName( NodeCache cache ) {
+        return node().getPropertiesByName(cache);
+    }
+
+    @Override
+    public Iterator<Property> getProperties( NodeCache cache ) {
+        return node().getProperties(cache);
+    }
+
+    @Override
+    public Iterator<Property> getProperties( Collection<?> namePatterns,
+                                             NodeCache cache ) {
+        return node().getProperties(namePatterns, cache);
+    }
+
+    @Override
+    public ChildReferences getChildReferences( NodeCache cache ) {
+        return node().getChildReferences(cache);
+    }
+
+    @Override
+    public Set<NodeKey> getReferrers( NodeCache cache,
+                                      ReferenceType type ) {
+        return node().getReferrers(cache, type);
+    }
+
+    @Override
+    public ReferrerCounts getReferrerCounts( NodeCache cache ) {
+        return node().getReferrerCounts(cache);
+    }
+
+    @Override
+    public boolean isAtOrBelow( NodeCache cache,
+                                Path path ) {
+        return node().isAtOrBelow(cache, path);
+    }
+
+    @Override
+    public boolean isExcludedFromSearch( NodeCache cache ) {
+        return node().isExcludedFromSearch(cache);
+    }
+
+    @Override
+    public boolean hasACL( NodeCache cache ) {
+        return node().hasACL(cache);
+    }
+
+    @Override
+    public Map<String, Set<String>> getPermissions( NodeCache cache ) {
+        return node().getPermissions(cache);
+    }
+
+    @Override
+    public boolean isExternal( NodeCache cache ) {
+        return node().isExternal(cache);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if (obj == this) return true;
+        if (obj instanceof CachedNode) {
+            return key.equals(((CachedNode)obj).getKey());
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "covered node " + key + " with " + coveredProperties.values();
+    }
+}
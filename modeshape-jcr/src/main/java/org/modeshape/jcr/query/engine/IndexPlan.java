@@ -19,6 +19,7 @@ package org.modeshape.jcr.query.engine;
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import javax.jcr.query.qom.Constraint;
 import javax.jcr.query.qom.JoinCondition;
@@ -40,6 +41,8 @@ public final class IndexPlan implements Comparable<IndexPlan> {
     private final Collection<Constraint> constraints;
     private final Collection<JoinCondition> joinConditions;
     private final Map<String, Object> parameters;
+    private final Collection<String> coveredColumns;
+    private final List<IndexPlan> unionOf;
 
     public IndexPlan( String name,
                       String workspaceName,
@@ -50,6 +53,35 @@ public final class IndexPlan implements Comparable<IndexPlan> {
                       long cardinalityEstimate,
                       Float selectivityEstimate,
                       Map<String, Object> parameters ) {
+        this(name, workspaceName, providerName, constraints, joinConditions, costEstimate, cardinalityEstimate,
+             selectivityEstimate, parameters, null);
+    }
+
+    public IndexPlan( String name,
+                      String workspaceName,
+                      String providerName,
+                      Collection<Constraint> constraints,
+                      Collection<JoinCondition> joinConditions,
+                      int costEstimate,
+                      long cardinalityEstimate,
+                      Float selectivityEstimate,
+                      Map<String, Object> parameters,
+                      Collection<String> coveredColumns ) {
+        this(name, workspaceName, providerName, constraints, joinConditions, costEstimate, cardinalityEstimate,
+             selectivityEstimate, parameters, coveredColumns, null);
+    }
+
+    private IndexPlan( String name,
+                       String workspaceName,
+                       String providerName,
+                       Collection<Constraint> constraints,
+                       Collection<JoinCondition> joinConditions,
+                       int costEstimate,
+                       long cardinalityEstimate,
+                       Float selectivityEstimate,
+                       Map<String, Object> parameters,
+                       Collection<String> coveredColumns,
+                       List<IndexPlan> unionOf ) {
         CheckArg.isNotEmpty(name, "name");
         CheckArg.isNonNegative(costEstimate, "costEstimate");
         CheckArg.isNonNegative(cardinalityEstimate, "cardinalityEstimate");
@@ -62,6 +94,93 @@ public final class IndexPlan implements Comparable<IndexPlan> {
         this.cardinalityEstimate = cardinalityEstimate;
         this.selectivityEstimate = (selectivityEstimate == null || selectivityEstimate < 0) ? null : selectivityEstimate;
         this.parameters = parameters == null ? NO_PARAMETERS : parameters;
+        this.coveredColumns = coveredColumns != null ? coveredColumns : Collections.<String>emptyList();
+        this.unionOf = unionOf != null ? unionOf : Collections.<IndexPlan>emptyList();
+    }
+
+    /**
+     * Create a plan that uses several indexes and combines the distinct nodes they return, as is done for a disjunction of
+     * constraints that are each answered by a different index. The cost and cardinality of the plan are the sums of those of
+     * the supplied plans.
+     *
+     * @param constraints the constraints that are applied by using all of the indexes; may be null or empty if the combined
+     *        indexes return more nodes than those that satisfy the disjunction
+     * @param plans the plans of the indexes that are to be combined; may not be null and must contain at least 2 plans
+     * @return the new plan; never null
+     */
+    public static IndexPlan union( Collection<Constraint> constraints,
+                                   List<IndexPlan> plans ) {
+        CheckArg.hasSizeOfAtLeast(plans, 2, "plans");
+        StringBuilder name = new StringBuilder("union(");
+        long costEstimate = 0L;
+        long cardinalityEstimate = 0L;
+        for (IndexPlan plan : plans) {
+            if (plan != plans.get(0)) name.append('|');
+            name.append(plan.getName());
+            costEstimate = Math.min(Integer.MAX_VALUE, costEstimate + plan.getCostEstimate());
+            long cardinality = plan.getCardinalityEstimate();
+            if (cardinality == Long.MAX_VALUE || cardinalityEstimate > Long.MAX_VALUE - cardinality) {
+                // At least one cardinality is unknown ...
+                cardinalityEstimate = Long.MAX_VALUE;
+            } else {
+                cardinalityEstimate += cardinality;
+            }
+        }
+        name.append(')');
+        return new IndexPlan(name.toString(), plans.get(0).getWorkspaceName(), null, constraints, null, (int)costEstimate,
+                             cardinalityEstimate, null, null, null, Collections.unmodifiableList(plans));
+    }
+
+    /**
+     * Determine whether this plan {@link #union(Collection, List) combines} the nodes returned by several indexes.
+     *
+     * @return true if this plan uses several indexes, or false if it uses a single index
+     * @see #getUnionOf()
+     */
+    public boolean isUnion() {
+        return !unionOf.isEmpty();
+    }
+
+    /**
+     * Get the plans of the indexes whose nodes are combined by this plan.
+     *
+     * @return the plans of the indexes; never null but empty if this plan is not a {@link #isUnion() union}
+     */
+    public List<IndexPlan> getUnionOf() {
+        return unionOf;
+    }
+
+    /**
+     * Create a copy of this plan that records that the index contains all of the supplied columns, which are all of the columns
+     * the query needs from the selector this index is used for.
+     *
+     * @param columns the names of the columns covered by the index; may not be null or empty
+     * @return the new plan; never null
+     */
+    public IndexPlan covering( Collection<String> columns ) {
+        CheckArg.isNotEmpty(columns, "columns");
+        return new IndexPlan(name, workspaceName, providerName, constraints, joinConditions, costEstimate, cardinalityEstimate,
+                             selectivityEstimate, parameters, Collections.unmodifiableCollection(columns), unionOf);
+    }
+
+    /**
+     * Determine whether the index contains all of the columns needed by the query, meaning the query can be answered from the
+     * index alone without loading the nodes.
+     *
+     * @return true if the index covers the query's columns, or false otherwise
+     * @see #getCoveredColumns()
+     */
+    public boolean isCovering() {
+        return !coveredColumns.isEmpty();
+    }
+
+    /**
+     * Get the names of the columns needed by the query which are stored in this index.
+     *
+     * @return the covered columns; never null but empty if the index does not {@link #isCovering() cover} the query
+     */
+    public Collection<String> getCoveredColumns() {
+        return coveredColumns;
     }
 
     /**
@@ -191,6 +310,9 @@ public final class IndexPlan implements Comparable<IndexPlan> {
         for (Map.Entry<String, Object> entry : parameters.entrySet()) {
             sb.append(", ").append(entry.getKey()).append("=").append(entry.getValue());
         }
+        if (isCovering()) {
+            sb.append(", covering=").append(coveredColumns);
+        }
         return sb.toString();
     }
 
@@ -220,8 +342,12 @@ public final class IndexPlan implements Comparable<IndexPlan> {
         }
 
         if (thisCostEstimate == thatCostEstimate && thisCardinalityEstimate == thatCardinalityEstimate) {
-            // in case both the costs and the cardinalities are the same, we compare lexicographically the names so that we're
+            // in case both the costs and the cardinalities are the same, favor the index which covers all the needed columns
+            // (since it doesn't require loading any nodes) and otherwise compare lexicographically the names so that we're
             // consistently selecting the same index
+            if (this.isCovering() != that.isCovering()) {
+                return this.isCovering() ? -1 : 1;
+            }
             return this.name.compareTo(that.name);
         }
 
@@ -229,6 +355,10 @@ public final class IndexPlan implements Comparable<IndexPlan> {
         // this means that if 2 indexes have the same cost (i.e. are from the same provider) we'll use the one which gives us fewer nodes
         BigDecimal thisCostByCardinality = BigDecimal.valueOf(thisCostEstimate).multiply(BigDecimal.valueOf(thisCardinalityEstimate));
         BigDecimal thatCostByCardinality = BigDecimal.valueOf(thatCostEstimate).multiply(BigDecimal.valueOf(thatCardinalityEstimate));
-        return thisCostByCardinality.compareTo(thatCostByCardinality);
+        int result = thisCostByCardinality.compareTo(thatCostByCardinality);
+        if (result == 0 && this.isCovering() != that.isCovering()) {
+            return this.isCovering() ? -1 : 1;
+        }
+        return result;
     }
 }
@@ -22,9 +22,11 @@ import java.util.Set;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.query.ContentStatistics;
 import org.modeshape.jcr.query.NodeSequence;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.QueryEngine;
+import org.modeshape.jcr.query.QueryResultCache;
 import org.modeshape.jcr.query.QueryResults.Columns;
 import org.modeshape.jcr.query.model.QueryCommand;
 import org.modeshape.jcr.query.optimize.AddIndexes;
@@ -105,7 +107,7 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                 };
             }
             // Finally create the query engine ...
-            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager());
+            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, statistics(), resultCache(), indexManager());
         }
 
         @Override
@@ -157,8 +159,10 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer,
+                                ContentStatistics statistics,
+                                QueryResultCache resultCache,
                                 IndexManager indexManager ) {
-        super(context, repositoryName, planner, optimizer);
+        super(context, repositoryName, planner, optimizer, statistics, resultCache);
         this.indexManager = indexManager;
     }
 
@@ -171,18 +175,22 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                                                         QuerySources sources ) {
         // First let the supertype try to determine a node sequence. This will find the native indexes ...
         NodeSequence sequence = super.createNodeSequenceForSource(originalQuery, context, sourceNode, indexPlan, columns, sources);
-        if (sequence != null) return sequence;
+        if (sequence != null || indexPlan.isUnion()) return sequence;
 
         // Look up the index by name ...
         String providerName = indexPlan.getProviderName();
+        if (providerName == null) return null;
         IndexProvider provider = indexManager.getProvider(providerName);
         if (provider != null) {
             // Use the index to get a NodeSequence ...
             Index index = provider.getIndex(indexPlan.getName(), indexPlan.getWorkspaceName());
             if (index != null) {
+                // When the index covers all of the columns used by the query, ask for the column values ...
+                ExecutionContext executionContext = context.getExecutionContext();
                 return sources.fromIndex(index, indexPlan.getCardinalityEstimate(), indexPlan.getConstraints(),
                                          indexPlan.getJoinConditions(), context.getVariables(),
-                                         indexPlan.getParameters(), context.getExecutionContext().getValueFactories(),
+                                         indexPlan.getParameters(), executionContext.getValueFactories(),
+                                         executionContext.getPropertyFactory(), indexPlan.getCoveredColumns(),
                                          provider.batchSize());
             }
         }
@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +45,8 @@ import org.modeshape.jcr.spi.index.provider.Filter;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
 import org.modeshape.jcr.value.ValueFactories;
 
 /**
@@ -320,9 +324,51 @@ public class QuerySources {
                                   final Map<String, Object> parameters,
                                   final ValueFactories valueFactories,
                                   final int batchSize) {
+        return fromIndex(index, cardinalityEstimate, constraints, joinConditions, variables, parameters, valueFactories, null,
+                         Collections.<String>emptySet(), batchSize);
+    }
+
+    /**
+     * Obtain a {@link NodeSequence} that uses the supplied index to find the node that satisfy the given constraints, and that
+     * when possible obtains the values of the supplied columns directly from the index. When the index returns
+     * {@link Filter.ResultBatch#columnValues() column values}, the nodes in the resulting sequence are {@link CoveredNode}
+     * instances that answer requests for the covered properties without loading the nodes from the workspace cache.
+     *
+     * @param index the index; may not be null
+     * @param cardinalityEstimate an estimation for the cardinality of that index, as returned during the planning phase
+     * @param constraints the constraints that apply to the index; may not be null but can be empty
+     * @param joinConditions the join constraints that apply to the index; may not be but can be empty
+     * @param variables the immutable map of variable values keyed by their name; never null but possibly empty
+     * @param parameters the provider-specific index parameters; may not be null, but may be empty
+     * @param valueFactories the value factories; never null
+     * @param propertyFactory the factory used to create the covered properties; may be null only if
+     *        <code>requestedColumns</code> is empty
+     * @param requestedColumns the names of the columns covered by the index whose values should be obtained from the index;
+     *        may not be null but may be empty
+     * @param batchSize the ideal number of nodes that are to be included in each batch; always positive
+     * @return the sequence of nodes; null if the index cannot be used (e.g., it might be rebuilding or in an inconsistent state)
+     */
+    public NodeSequence fromIndex(final Index index,
+                                  final long cardinalityEstimate,
+                                  final Collection<Constraint> constraints,
+                                  final Collection<JoinCondition> joinConditions,
+                                  final Map<String, Object> variables,
+                                  final Map<String, Object> parameters,
+                                  final ValueFactories valueFactories,
+                                  final PropertyFactory propertyFactory,
+                                  final Collection<String> requestedColumns,
+                                  final int batchSize) {
+        assert requestedColumns != null;
+        assert requestedColumns.isEmpty() || propertyFactory != null;
         if (!index.isEnabled()) {
             return null;
         }
+        final Collection<String> columns = index.returnsColumnValues() ? requestedColumns : Collections.<String>emptySet();
+        final Map<String, Name> columnNames = new HashMap<>();
+        for (String column : columns) {
+            columnNames.put(column, valueFactories.getNameFactory().create(column));
+        }
+        final Set<Name> coveredNames = Collections.unmodifiableSet(new HashSet<>(columnNames.values()));
         final IndexConstraints indexConstraints = new IndexConstraints() {
 
             @Override
@@ -354,6 +400,11 @@ public class QuerySources {
             public Collection<JoinCondition> getJoinConditions() {
                 return joinConditions;
             }
+
+            @Override
+            public Collection<String> getRequestedColumns() {
+                return columns;
+            }
         };
         // Return a node sequence that will lazily get the results from the index ...
         return new NodeSequence() {
@@ -370,7 +421,8 @@ public class QuerySources {
             @Override
             public long getRowCount() {
                 if (!more) return rowCount;
-                return -1;
+                // The index may be able to count the results without returning them ...
+                return getResults().count();
             }
 
             @Override
@@ -382,6 +434,8 @@ public class QuerySources {
                     // so we can delay the loading of the results until really needed ...
                     return false;
                 }
+                long count = results.count();
+                if (count >= 0) return count == 0;
                 readBatch();
                 return rowCount == 0;
             }
@@ -396,14 +450,61 @@ public class QuerySources {
                     }
                     readBatch();
                 }
-                Batch nextBatch = NodeSequence.batchOfKeys(currentBatch.keys().iterator(), 
-                                                           currentBatch.scores().iterator(),
-                                                           currentBatch.size(),
-                                                           workspaceName, repo);
+                // Read the keys and scores of the batch from the index now rather than when the batch is used, so that the
+                // batch remains valid after the following batches are read and the index is only used by the thread that
+                // obtains the batch ...
+                List<NodeKey> keys = toList(currentBatch.keys());
+                List<Float> scores = toList(currentBatch.scores());
+                Iterable<Map<String, Object>> values = columns.isEmpty() ? null : currentBatch.columnValues();
+                Batch nextBatch = null;
+                if (values != null) {
+                    // The index returned the values of the covered columns, so there's no need to load the nodes ...
+                    nextBatch = NodeSequence.batchOf(coveredNodes(keys.iterator(), toList(values).iterator()),
+                                                     scores.iterator(), keys.size(), workspaceName);
+                } else {
+                    nextBatch = NodeSequence.batchOfKeys(keys.iterator(), scores.iterator(), keys.size(), workspaceName,
+                                                         repo);
+                }
                 currentBatch = null;
                 return nextBatch;
             }
 
+            private <T> List<T> toList( Iterable<T> values ) {
+                List<T> list = new ArrayList<>(currentBatch.size());
+                for (T value : values) {
+                    list.add(value);
+                }
+                return list;
+            }
+
+            private Iterator<CachedNode> coveredNodes( final Iterator<NodeKey> keys,
+                                                       final Iterator<Map<String, Object>> values ) {
+                final NodeCache cache = repo.getWorkspaceCache(workspaceName);
+                return new Iterator<CachedNode>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public CachedNode next() {
+                        NodeKey key = keys.next();
+                        Map<Name, Property> properties = new HashMap<>();
+                        for (Map.Entry<String, Object> entry : values.next().entrySet()) {
+                            Name name = columnNames.get(entry.getKey());
+                            Object value = entry.getValue();
+                            if (name == null || value == null) continue;
+                            if (value instanceof Object[]) {
+                                properties.put(name, propertyFactory.create(name, (Object[])value));
+                            } else {
+                                properties.put(name, propertyFactory.create(name, value));
+                            }
+                        }
+                        return new CoveredNode(key, properties, coveredNames, cache);
+                    }
+                };
+            }
+
             @Override
             public void close() {
                 if (results != null) {
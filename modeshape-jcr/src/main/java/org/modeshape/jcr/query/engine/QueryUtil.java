@@ -19,6 +19,8 @@ import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import org.modeshape.jcr.query.model.Constraint;
 import org.modeshape.jcr.query.model.FullTextSearch;
 import org.modeshape.jcr.query.model.Visitors;
@@ -97,6 +99,66 @@ public class QueryUtil {
         return result;
     }
 
+    /**
+     * Create a predicate that determines whether string values match the supplied LIKE expression. This is equivalent to
+     * matching values against the {@link #toRegularExpression(String) regular expression} for the LIKE expression, except that
+     * the common cases of LIKE expressions with a literal value and only leading and/or trailing '%' (or '*') wildcards are
+     * evaluated with simple string comparisons rather than regular expressions.
+     * 
+     * @param likeExpression the like expression; may not be null
+     * @return the predicate that returns true for values that match the expression; never null
+     */
+    public static Predicate<String> toLikeMatcher( String likeExpression ) {
+        final Pattern pattern = Pattern.compile(toRegularExpression(likeExpression));
+        final Predicate<String> regex = value -> pattern.matcher(value).matches();
+        int start = 0;
+        int end = likeExpression.length();
+        final boolean leading = end > 0 && isMultiCharacterWildcard(likeExpression.charAt(0));
+        if (leading) ++start;
+        final boolean trailing = end > start && isMultiCharacterWildcard(likeExpression.charAt(end - 1));
+        if (trailing) --end;
+        final String literal = likeExpression.substring(start, end);
+        for (int i = 0; i != literal.length(); ++i) {
+            switch (literal.charAt(i)) {
+                case '%':
+                case '*':
+                case '_':
+                case '?':
+                case '\\':
+                case '[':
+                    // Any other wildcards, escapes or SNS brackets require the regular expression ...
+                    return regex;
+            }
+        }
+        if (!leading && !trailing) return literal::equals;
+        // The regular expression wildcards do not match line terminators, so use the regex for any such values ...
+        if (leading && trailing) {
+            return value -> hasLineTerminator(value) ? regex.test(value) : value.contains(literal);
+        }
+        if (leading) {
+            return value -> hasLineTerminator(value) ? regex.test(value) : value.endsWith(literal);
+        }
+        return value -> hasLineTerminator(value) ? regex.test(value) : value.startsWith(literal);
+    }
+
+    private static boolean isMultiCharacterWildcard( char c ) {
+        return c == '%' || c == '*';
+    }
+
+    private static boolean hasLineTerminator( String value ) {
+        for (int i = 0; i != value.length(); ++i) {
+            switch (value.charAt(i)) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return true;
+            }
+        }
+        return false;
+    }
+
     public static boolean includeFullTextScores( Constraint constraint ) {
         final AtomicBoolean includeFullTextScores = new AtomicBoolean(false);
         if (constraint != null) {
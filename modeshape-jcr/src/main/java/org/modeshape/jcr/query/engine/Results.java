@@ -19,7 +19,9 @@ import org.modeshape.common.collection.ImmutableProblems;
 import org.modeshape.common.collection.Problems;
 import org.modeshape.common.collection.SimpleProblems;
 import org.modeshape.jcr.cache.CachedNodeSupplier;
+import org.modeshape.jcr.query.ContinuationToken;
 import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.engine.process.ContinuationSequence;
 import org.modeshape.jcr.query.model.Column;
 import org.modeshape.jcr.query.model.TypeSystem;
 
@@ -129,6 +131,11 @@ public class Results implements org.modeshape.jcr.query.QueryResults {
         return statistics;
     }
 
+    @Override
+    public ContinuationToken getContinuation() {
+        return rows instanceof ContinuationSequence ? ((ContinuationSequence)rows).getContinuation() : null;
+    }
+
     @Override
     public String toString() {
         return toString(null, Integer.MAX_VALUE);
@@ -16,6 +16,8 @@
 package org.modeshape.jcr.query.engine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -27,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
@@ -43,8 +47,10 @@ import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.GraphI18n;
 import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.NodeTypes;
 import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.query.QueryCancelledException;
 import org.modeshape.jcr.api.query.qom.Operator;
 import org.modeshape.jcr.cache.CachedNode;
@@ -54,19 +60,24 @@ import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.PropertyTypeUtil;
 import org.modeshape.jcr.cache.RepositoryCache;
 import org.modeshape.jcr.query.BufferManager;
+import org.modeshape.jcr.query.ContinuationToken;
+import org.modeshape.jcr.query.ContentStatistics;
 import org.modeshape.jcr.query.NodeSequence;
 import org.modeshape.jcr.query.NodeSequence.Batch;
 import org.modeshape.jcr.query.NodeSequence.RowAccessor;
+import org.modeshape.jcr.query.NodeSequence.RowBlock;
 import org.modeshape.jcr.query.NodeSequence.RowFilter;
 import org.modeshape.jcr.query.PseudoColumns;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.QueryEngine;
 import org.modeshape.jcr.query.QueryEngineBuilder;
+import org.modeshape.jcr.query.QueryResultCache;
 import org.modeshape.jcr.query.QueryResults;
 import org.modeshape.jcr.query.QueryResults.Columns;
 import org.modeshape.jcr.query.QueryResults.Statistics;
 import org.modeshape.jcr.query.RowExtractors;
 import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.engine.process.ContinuationSequence;
 import org.modeshape.jcr.query.engine.process.DependentQuery;
 import org.modeshape.jcr.query.engine.process.DistinctSequence;
 import org.modeshape.jcr.query.engine.process.ExceptSequence;
@@ -74,6 +85,7 @@ import org.modeshape.jcr.query.engine.process.HashJoinSequence;
 import org.modeshape.jcr.query.engine.process.IntersectSequence;
 import org.modeshape.jcr.query.engine.process.JoinSequence.Range;
 import org.modeshape.jcr.query.engine.process.JoinSequence.RangeProducer;
+import org.modeshape.jcr.query.engine.process.ParallelSequence;
 import org.modeshape.jcr.query.engine.process.SortingSequence;
 import org.modeshape.jcr.query.model.And;
 import org.modeshape.jcr.query.model.ArithmeticOperand;
@@ -159,11 +171,34 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
     /** We don't use the standard logging convention here; we want clients to easily configure logging for the indexes */
     protected static final Logger LOGGER = Logger.getLogger("org.modeshape.jcr.query");
 
+    /**
+     * The maximum number of distinct LIKE expressions whose results are cached by the filter for a RELIKE constraint.
+     */
+    private static final int RELIKE_CACHE_SIZE = 1000;
+
+    /**
+     * The largest {@link Property#ESTIMATED_CARDINALITY estimated number} of rows on the right side of a join for which the rows
+     * are buffered on the heap rather than off-heap.
+     */
+    private static final long MAX_HEAP_JOIN_BUFFER_ROWS = 10000L;
+
+    /**
+     * The name of the thread pool used to scan several indexes at the same time. The pool has a fixed number of threads, so the
+     * number of concurrent index scans is bounded regardless of the number of queries.
+     */
+    protected static final String INDEX_SCAN_POOL_NAME = "modeshape-index-scans";
+
+    /**
+     * The maximum number of batches that are read from each index before they are needed when scanning several indexes at the
+     * same time.
+     */
+    private static final int MAX_BATCHES_AHEAD_OF_INDEX_SCANS = 4;
+
     public static class Builder extends QueryEngineBuilder {
 
         @Override
         public QueryEngine build() {
-            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer());
+            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer(), statistics(), resultCache());
         }
 
         @Override
@@ -179,16 +214,40 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
     protected final String repositoryName;
     protected final Planner planner;
     protected final Optimizer optimizer;
+    protected final ContentStatistics statistics;
+    protected final QueryResultCache resultCache;
 
     public ScanningQueryEngine( ExecutionContext context,
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer ) {
+        this(context, repositoryName, planner, optimizer, ContentStatistics.NONE, null);
+    }
+
+    /**
+     * Create a new query engine.
+     *
+     * @param context the execution context; may not be null
+     * @param repositoryName the name of the repository
+     * @param planner the planner; may not be null
+     * @param optimizer the optimizer; may not be null
+     * @param statistics the statistics about the repository content; may not be null
+     * @param resultCache the cache of query results; may be null if results are not to be cached
+     */
+    public ScanningQueryEngine( ExecutionContext context,
+                                String repositoryName,
+                                Planner planner,
+                                Optimizer optimizer,
+                                ContentStatistics statistics,
+                                QueryResultCache resultCache ) {
         assert planner != null;
         assert optimizer != null;
+        assert statistics != null;
         this.repositoryName = repositoryName;
         this.planner = planner;
         this.optimizer = optimizer;
+        this.statistics = statistics;
+        this.resultCache = resultCache;
     }
 
     /**
@@ -465,7 +524,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                             PlanHints hints,
                                             Map<String, Object> variables ) {
         return new ScanQueryContext(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata,
-                                    indexDefns, nodeTypes, bufferManager, hints, null, variables,
+                                    indexDefns, nodeTypes, bufferManager, hints, null, variables, statistics,
                                     new HashMap<PlanNode, Columns>());
     }
 
@@ -504,7 +563,30 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                 boolean includeSystemContent = context.getHints().includeSystemContent;
                 final QuerySources sources = new QuerySources(context.getRepositoryCache(), context.getNodeTypes(),
                                                               workspaceName, includeSystemContent);
-                rows = createNodeSequence(command, context, plan, columns, sources);
+                QueryResultCache.Key cacheKey = resultCache != null ? resultCache.keyFor(context, plan) : null;
+                rows = cacheKey != null ? resultCache.get(cacheKey, context) : null;
+                if (rows != null) {
+                    if (trace) {
+                        LOGGER.trace("Using cached results for query {0}", context.id());
+                    }
+                } else {
+                    rows = createNodeSequence(command, context, plan, columns, sources);
+                    if (rows != null && cacheKey != null) {
+                        rows = resultCache.record(cacheKey, context, plan, rows);
+                    }
+                }
+                if (rows != null && !context.getProblems().hasErrors()) {
+                    // Track the position of the consumed rows when the client may want to obtain the next page of results ...
+                    ContinuationToken continueAfter = context.getHints().continueAfter;
+                    PlanNode sort = plan.findAtOrBelow(Type.SORT);
+                    if (sort != null && ordersResults(sort) && (context.getHints().hasLimit || continueAfter != null)) {
+                        List<ExtractFromRow> extractors = createContinuationExtractors(sort, context, context.columnsFor(sort),
+                                                                                       sources);
+                        if (extractors != null) {
+                            rows = new ContinuationSequence(rows, extractors, continueAfter);
+                        }
+                    }
+                }
                 long nanos2 = System.nanoTime();
                 statistics = statistics.withResultsFormulationTime(Math.abs(nanos2 - nanos));
                 nanos = nanos2;
@@ -626,6 +708,11 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                 boolean pack = false;
                 boolean useHeap = false;
                 if (0 >= right.getRowCount() && right.getRowCount() < 100) useHeap = true;
+                Long rightEstimate = rightPlan.getProperty(Property.ESTIMATED_CARDINALITY, Long.class);
+                if (rightEstimate != null && rightEstimate.longValue() <= MAX_HEAP_JOIN_BUFFER_ROWS) {
+                    // The optimizer estimates that the rows on the right side are few enough to buffer on the heap ...
+                    useHeap = true;
+                }
                 ExtractFromRow leftExtractor = null;
                 ExtractFromRow rightExtractor = null;
                 RangeProducer<?> rangeProducer = null;
@@ -800,7 +887,8 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                 rows = createNodeSequence(originalQuery, context, plan.getFirstChild(), columns, sources);
                 Constraint constraint = plan.getProperty(Property.SELECT_CRITERIA, Constraint.class);
                 filter = createRowFilter(constraint, context, columns, sources);
-                rows = NodeSequence.filter(rows, filter);
+                // When the index already applied the criteria, the number of rows is known without reading them ...
+                rows = NodeSequence.filter(rows, filter, isAppliedByUsedIndex(plan, constraint, context));
                 break;
             case SET_OPERATION:
                 Operation operation = plan.getProperty(Property.SET_OPERATION, Operation.class);
@@ -827,7 +915,13 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                         if (first.isEmpty()) return second;
                         if (second.isEmpty()) return first;
                         // This is really just a sequence with the two parts ...
-                        rows = NodeSequence.append(first, second);
+                        if (isIndexScan(firstPlan) && isIndexScan(secondPlan)) {
+                            // Both parts scan indexes, so scan them at the same time ...
+                            rows = new ParallelSequence(Arrays.asList(first, second), indexScanPool(context),
+                                                        MAX_BATCHES_AHEAD_OF_INDEX_SCANS);
+                        } else {
+                            rows = NodeSequence.append(first, second);
+                        }
                         break;
                     }
                     case INTERSECT: {
@@ -892,8 +986,24 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                             if (orderings.size() == 1) {
                                 nullOrder = orderings.get(0).nullOrder();
                             }
-                            // Now create the single sorting extractor ...
-                            sortExtractor = createSortingExtractor(orderings, sourceNamesByAlias, context, columns, sources);
+                            ContinuationToken continueAfter = context.getHints().continueAfter;
+                            if (ordersResults(plan) && (context.getHints().hasLimit || continueAfter != null)) {
+                                // The results may be paged, so also sort by the row identifiers to give each row a position ...
+                                List<ExtractFromRow> extractors = createContinuationExtractors(plan, context, columns, sources);
+                                sortExtractor = RowExtractors.extractorWith(extractors);
+                                // Exclude the rows in the previous pages before sorting, so that they never need to be sorted ...
+                                if (continueAfter != null) {
+                                    try {
+                                        rows = NodeSequence.filter(rows, ContinuationSequence.rowsAfter(continueAfter, extractors));
+                                    } catch (RuntimeException e) {
+                                        context.getProblems().addError(e, JcrI18n.invalidContinuationToken, originalQuery);
+                                        return null;
+                                    }
+                                }
+                            } else {
+                                // Now create the single sorting extractor ...
+                                sortExtractor = createSortingExtractor(orderings, sourceNamesByAlias, context, columns, sources);
+                            }
                         } else {
                             // Order by the location(s) because it's before a merge-join ...
                             final TypeFactory<?> keyType = context.getTypeSystem().getReferenceFactory();
@@ -938,6 +1048,116 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return rows;
     }
 
+    /**
+     * Determine whether the criteria of the supplied SELECT node were already applied by the index used to obtain the nodes
+     * below the SELECT node. This is the case when the SELECT node is (perhaps through other SELECT nodes) above a SOURCE node
+     * whose used index was given the criteria, or when the criteria only restricts the node types to those of the nodes
+     * included in the index.
+     * 
+     * @param selectNode the {@link Type#SELECT} plan node; may not be null
+     * @param constraint the criteria of the SELECT node; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @return true if the index returns only nodes that satisfy the criteria, or false otherwise
+     */
+    protected boolean isAppliedByUsedIndex( PlanNode selectNode,
+                                            Constraint constraint,
+                                            QueryContext context ) {
+        PlanNode node = selectNode.getFirstChild();
+        while (node != null && node.getType() == Type.SELECT) {
+            node = node.getFirstChild();
+        }
+        if (node == null || node.getType() != Type.SOURCE) return false;
+        for (PlanNode indexNode : node.getChildren()) {
+            if (indexNode.getType() != Type.INDEX || !indexNode.hasProperty(Property.INDEX_USED)) continue;
+            IndexPlan index = indexNode.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+            if (index.getConstraints().contains(constraint)) return true;
+            IndexDefinition defn = context.getIndexDefinitions().getIndexDefinitions().get(index.getName());
+            return defn != null && isNodeTypeCriteria(constraint, defn.getNodeTypeName(), context);
+        }
+        return false;
+    }
+
+    /**
+     * Get the executor used to scan several indexes at the same time.
+     *
+     * @param context the context in which the query is to be executed; may not be null
+     * @return the executor; never null
+     */
+    protected Executor indexScanPool( QueryContext context ) {
+        return context.getExecutionContext().getThreadPool(INDEX_SCAN_POOL_NAME);
+    }
+
+    /**
+     * Determine whether the supplied plan node only scans an index for a single source and filters the nodes, which is the case
+     * when the only nodes below it are ACCESS, PROJECT, SELECT and SOURCE nodes and the source uses an index from a provider.
+     * This is only valid after the node sequence for the plan node has been created.
+     *
+     * @param plan the plan node; may not be null
+     * @return true if the results of the plan node come from an index, or false otherwise
+     */
+    protected static boolean isIndexScan( PlanNode plan ) {
+        PlanNode node = plan;
+        while (node.getType() == Type.ACCESS || node.getType() == Type.PROJECT || node.getType() == Type.SELECT) {
+            if (node.getChildCount() != 1) return false;
+            node = node.getFirstChild();
+        }
+        if (node.getType() != Type.SOURCE) return false;
+        for (PlanNode indexNode : node.getChildren()) {
+            if (indexNode.getType() != Type.INDEX || !indexNode.hasProperty(Property.INDEX_USED)) continue;
+            // The implicit indexes find the nodes in the cache rather than in an index ...
+            IndexPlan index = indexNode.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+            return index.isUnion() || index.getProviderName() != null;
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether the supplied criteria is satisfied by exactly those nodes that are of the given node type or one of its
+     * subtypes, as is the case for the criteria of the node type views.
+     * 
+     * @param constraint the criteria; may not be null
+     * @param nodeTypeName the name of the node type; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @return true if the criteria only restricts nodes to the node type and its subtypes, or false otherwise
+     */
+    protected boolean isNodeTypeCriteria( Constraint constraint,
+                                          String nodeTypeName,
+                                          QueryContext context ) {
+        NameFactory names = context.getExecutionContext().getValueFactories().getNameFactory();
+        Set<Name> typeNames = new HashSet<>();
+        if (!collectNodeTypeNames(constraint, names, typeNames)) return false;
+        return typeNames.equals(context.getNodeTypes().getAllSubtypes(names.create(nodeTypeName)));
+    }
+
+    private boolean collectNodeTypeNames( Constraint constraint,
+                                          NameFactory names,
+                                          Set<Name> typeNames ) {
+        if (constraint instanceof Or) {
+            Or or = (Or)constraint;
+            return collectNodeTypeNames(or.left(), names, typeNames) && collectNodeTypeNames(or.right(), names, typeNames);
+        }
+        Collection<?> values = null;
+        DynamicOperand operand = null;
+        if (constraint instanceof Comparison) {
+            Comparison comparison = (Comparison)constraint;
+            if (comparison.operator() != Operator.EQUAL_TO) return false;
+            operand = comparison.getOperand1();
+            values = Collections.singleton(comparison.getOperand2());
+        } else if (constraint instanceof SetCriteria) {
+            SetCriteria criteria = (SetCriteria)constraint;
+            operand = criteria.leftOperand();
+            values = criteria.rightOperands();
+        }
+        if (!(operand instanceof PropertyValue)) return false;
+        Name propertyName = names.create(((PropertyValue)operand).getPropertyName());
+        if (!JcrLexicon.PRIMARY_TYPE.equals(propertyName) && !JcrLexicon.MIXIN_TYPES.equals(propertyName)) return false;
+        for (Object value : values) {
+            if (!(value instanceof Literal)) return false;
+            typeNames.add(names.create(((Literal)value).value()));
+        }
+        return true;
+    }
+
     /**
      * Create a node sequence for the given source.
      * 
@@ -989,6 +1209,23 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                                         IndexPlan index,
                                                         Columns columns,
                                                         QuerySources sources ) {
+        if (index.isUnion()) {
+            // Scan each of the indexes at the same time, and remove the nodes returned by more than one of them ...
+            List<NodeSequence> parts = new ArrayList<>(index.getUnionOf().size());
+            for (IndexPlan part : index.getUnionOf()) {
+                NodeSequence sequence = createNodeSequenceForSource(originalQuery, context, sourceNode, part, columns, sources);
+                if (sequence == null) {
+                    // One of the indexes can't be used, so neither can the union ...
+                    for (NodeSequence partSequence : parts) {
+                        partSequence.close();
+                    }
+                    return null;
+                }
+                parts.add(sequence);
+            }
+            NodeSequence rows = new ParallelSequence(parts, indexScanPool(context), MAX_BATCHES_AHEAD_OF_INDEX_SCANS);
+            return new DistinctSequence(rows, context.getTypeSystem(), context.getBufferManager(), false);
+        }
         if (index.getProviderName() == null) {
             String name = index.getName();
             String pathStr = (String)index.getParameters().get(IndexPlanners.PATH_PARAMETER);
@@ -1022,6 +1259,59 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return null;
     }
 
+    /**
+     * Determine whether the supplied {@link Type#SORT} plan node defines the order of the query results, which is the case when
+     * it is not below any plan node other than PROJECT, LIMIT or DUP_REMOVE nodes.
+     * 
+     * @param sort the SORT plan node; may not be null
+     * @return true if the SORT node orders the query results, or false otherwise
+     */
+    protected static boolean ordersResults( PlanNode sort ) {
+        for (PlanNode parent = sort.getParent(); parent != null; parent = parent.getParent()) {
+            switch (parent.getType()) {
+                case PROJECT:
+                case LIMIT:
+                case DUP_REMOVE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create for each of the orderings of the supplied {@link Type#SORT} plan node an {@link ExtractFromRow} instance whose type
+     * orders the values in the same way that the rows are sorted, followed by the {@link ContinuationSequence#rowKeyExtractor
+     * extractor of the row identifiers} that orders the rows with the same values. These are used to sort the rows and to track
+     * and compare their positions when paging through results with {@link ContinuationToken continuation tokens}.
+     * 
+     * @param sort the SORT plan node; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @param columns the result column definition; may not be null
+     * @param sources the query sources for the repository; may not be null
+     * @return the extractors, or null if the SORT node does not sort by {@link Ordering orderings}
+     */
+    protected List<ExtractFromRow> createContinuationExtractors( PlanNode sort,
+                                                                 QueryContext context,
+                                                                 Columns columns,
+                                                                 QuerySources sources ) {
+        List<Object> orderBys = sort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class);
+        if (orderBys.isEmpty() || !(orderBys.get(0) instanceof Ordering)) return null;
+        Map<SelectorName, SelectorName> sourceNamesByAlias = new HashMap<SelectorName, SelectorName>();
+        for (PlanNode source : sort.findAllAtOrBelow(Type.SOURCE)) {
+            SelectorName name = source.getProperty(Property.SOURCE_NAME, SelectorName.class);
+            SelectorName alias = source.getProperty(Property.SOURCE_ALIAS, SelectorName.class);
+            if (alias != null) sourceNamesByAlias.put(alias, name);
+        }
+        List<ExtractFromRow> extractors = new ArrayList<>(orderBys.size());
+        for (Object orderBy : orderBys) {
+            extractors.add(createSortingExtractor((Ordering)orderBy, sourceNamesByAlias, context, columns, sources));
+        }
+        extractors.add(ContinuationSequence.rowKeyExtractor(context.getTypeSystem().getStringFactory()));
+        return extractors;
+    }
+
     /**
      * Create an {@link ExtractFromRow} instance that produces for given row a single object that can be used to sort all rows in
      * the specified order.
@@ -1111,48 +1401,18 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
             Or orConstraint = (Or)constraint;
             final RowFilter left = createRowFilter(orConstraint.left(), context, columns, sources);
             final RowFilter right = createRowFilter(orConstraint.right(), context, columns, sources);
-            return new RowFilter() {
-                @Override
-                public boolean isCurrentRowValid( Batch batch ) {
-                    return left.isCurrentRowValid(batch) || right.isCurrentRowValid(batch);
-                }
-
-                @Override
-                public String toString() {
-                    return "(or " + left + "," + right + " )";
-                }
-            };
+            return NodeSequence.requireEither(left, right);
         }
         if (constraint instanceof Not) {
             Not notConstraint = (Not)constraint;
             final RowFilter not = createRowFilter(notConstraint.getConstraint(), context, columns, sources);
-            return new RowFilter() {
-                @Override
-                public boolean isCurrentRowValid( Batch batch ) {
-                    return !not.isCurrentRowValid(batch);
-                }
-
-                @Override
-                public String toString() {
-                    return "(not " + not + " )";
-                }
-            };
+            return NodeSequence.requireNot(not);
         }
         if (constraint instanceof And) {
             And andConstraint = (And)constraint;
             final RowFilter left = createRowFilter(andConstraint.left(), context, columns, sources);
             final RowFilter right = createRowFilter(andConstraint.right(), context, columns, sources);
-            return new RowFilter() {
-                @Override
-                public boolean isCurrentRowValid( Batch batch ) {
-                    return left.isCurrentRowValid(batch) && right.isCurrentRowValid(batch);
-                }
-
-                @Override
-                public String toString() {
-                    return "(and " + left + "," + right + " )";
-                }
-            };
+            return NodeSequence.requireBoth(left, right);
         }
         if (constraint instanceof ChildNode) {
             ChildNode childConstraint = (ChildNode)constraint;
@@ -1516,14 +1776,13 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                     }
                                 };
                             }
-                            String regex = QueryUtil.toRegularExpression(expression);
-                            final Pattern pattern = Pattern.compile(regex);
+                            final Predicate<String> matcher = QueryUtil.toLikeMatcher(expression);
                             return new DynamicOperandFilter(operation) {
                                 @Override
                                 protected boolean evaluate( Object leftHandValue ) {
                                     if (leftHandValue == null) return false; // null values never match
                                     String value = types.asString(leftHandValue);
-                                    return pattern.matcher(value).matches();
+                                    return matcher.test(value);
                                 }
 
                                 @Override
@@ -1663,6 +1922,9 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
             final int index = columns.getSelectorIndex(selectorName);
             final NodeCache cache = context.getNodeCache(sources.getWorkspaceName());
             return new RowFilter() {
+                // Many rows typically have the same LIKE expressions, so compile each only once ...
+                private final Map<String, Boolean> matchesByExpression = new HashMap<>();
+
                 @Override
                 public boolean isCurrentRowValid( Batch batch ) {
                     CachedNode node = batch.getNode(index);
@@ -1672,9 +1934,15 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                     for (Object value : property) {
                         if (value == null) continue;
                         // The property value should be a LIKE expression ...
-                        String regex = toRegularExpression(value.toString());
-                        final Pattern pattern = Pattern.compile(regex);
-                        if (pattern.matcher(literalStr).matches()) return true;
+                        String likeExpression = value.toString();
+                        Boolean matches = matchesByExpression.get(likeExpression);
+                        if (matches == null) {
+                            // Bound the cache, since every row may have a different expression ...
+                            if (matchesByExpression.size() >= RELIKE_CACHE_SIZE) matchesByExpression.clear();
+                            matches = QueryUtil.toLikeMatcher(likeExpression).test(literalStr);
+                            matchesByExpression.put(likeExpression, matches);
+                        }
+                        if (matches.booleanValue()) return true;
                     }
                     return false;
                 }
@@ -2608,7 +2876,23 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
         @Override
         public boolean isCurrentRowValid( Batch batch ) {
-            Object lhs = extractor.getValueInRow(batch);
+            return matches(extractor.getValueInRow(batch));
+        }
+
+        @Override
+        public void filterRows( RowBlock rows,
+                                BitSet selected ) {
+            // Extract the values for all of the selected rows first, and then evaluate them all ...
+            Object[] values = new Object[rows.size()];
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                values[row] = extractor.getValueInRow(rows.moveTo(row));
+            }
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                if (!matches(values[row])) selected.clear(row);
+            }
+        }
+
+        private boolean matches( Object lhs ) {
             if (lhs == null) return false; // NULL never matches any value, even NULL
             if (lhs instanceof Object[]) {
                 // The value is an array, meaning the dynamic operand was a multi-valued property ...
@@ -2645,6 +2929,12 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
             return delegate().isCurrentRowValid(batch);
         }
 
+        @Override
+        public final void filterRows( RowBlock rows,
+                                      BitSet selected ) {
+            delegate().filterRows(rows, selected);
+        }
+
         protected final RowFilter delegate() {
             if (delegate == null) {
                 delegate = createFilter();
@@ -3031,6 +3321,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
     static class ScanQueryContext extends QueryContext {
 
         protected final Map<PlanNode, Columns> columnsByPlanNode;
+        protected final ContentStatistics statistics;
 
         protected ScanQueryContext( ExecutionContext context,
                                     RepositoryCache repositoryCache,
@@ -3043,12 +3334,19 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                     PlanHints hints,
                                     Problems problems,
                                     Map<String, Object> variables,
+                                    ContentStatistics statistics,
                                     Map<PlanNode, Columns> columnsByPlanNode ) {
             super(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata, indexDefns, nodeTypes,
                   bufferManager, hints, problems, variables);
+            this.statistics = statistics;
             this.columnsByPlanNode = columnsByPlanNode;
         }
 
+        @Override
+        public ContentStatistics getStatistics() {
+            return statistics;
+        }
+
         /**
          * Add a {@link Columns} object for the given plan node.
          * 
@@ -3073,25 +3371,29 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         @Override
         public ScanQueryContext with( Map<String, Object> variables ) {
             return new ScanQueryContext(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata,
-                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, columnsByPlanNode);
+                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, statistics,
+                                        columnsByPlanNode);
         }
 
         @Override
         public ScanQueryContext with( PlanHints hints ) {
             return new ScanQueryContext(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata,
-                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, columnsByPlanNode);
+                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, statistics,
+                                        columnsByPlanNode);
         }
 
         @Override
         public ScanQueryContext with( Problems problems ) {
             return new ScanQueryContext(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata,
-                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, columnsByPlanNode);
+                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, statistics,
+                                        columnsByPlanNode);
         }
 
         @Override
         public ScanQueryContext with( Schemata schemata ) {
             return new ScanQueryContext(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, schemata,
-                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, columnsByPlanNode);
+                                        indexDefns, nodeTypes, bufferManager, hints, problems, variables, statistics,
+                                        columnsByPlanNode);
         }
     }
 }
@@ -0,0 +1,266 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import java.util.Comparator;
+import java.util.List;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.query.ContinuationToken;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.model.TypeSystem.TypeFactory;
+
+/**
+ * A {@link NodeSequence} that tracks the ordering values of the rows as they are consumed, so that once all of the rows have been
+ * consumed it can produce the {@link ContinuationToken} for the position after the last row. The rows must be sorted by the
+ * {@link #rowKeyExtractor(TypeFactory) identifier of each row} after all of the query's orderings, so that no two rows have the
+ * same position.
+ * <p>
+ * This class also provides the {@link #rowsAfter(ContinuationToken, List) filter} that excludes the rows at or before the
+ * position of a token. That filter is applied <i>before</i> the rows are sorted, so that the rows of the previous pages never
+ * need to be sorted or skipped.
+ * </p>
+ */
+@NotThreadSafe
+public class ContinuationSequence extends DelegatingSequence {
+
+    private final List<ExtractFromRow> extractors;
+    private final ContinuationToken previous;
+    private Object[] lastValues;
+    private boolean exhausted = false;
+
+    /**
+     * Create a sequence that tracks the position of the rows that are consumed.
+     *
+     * @param delegate the ordered rows; may not be null
+     * @param extractors the extractors for each of the orderings followed by the {@link #rowKeyExtractor(TypeFactory) row
+     *        identifier extractor}, each with a type whose comparator orders the values in the same way as the rows are ordered;
+     *        may not be null or empty
+     * @param previous the token after which the rows start, or null if the rows start with the first row
+     */
+    public ContinuationSequence( NodeSequence delegate,
+                                 List<ExtractFromRow> extractors,
+                                 ContinuationToken previous ) {
+        super(delegate);
+        this.extractors = extractors;
+        this.previous = previous;
+        if (previous != null) {
+            // A page without rows continues at the same position ...
+            this.lastValues = valuesOf(previous, extractors);
+        }
+    }
+
+    /**
+     * Get the token for the position after the last row that was consumed.
+     *
+     * @return the token, or null if not all of the rows have yet been consumed or if there were no rows
+     */
+    public ContinuationToken getContinuation() {
+        if (!exhausted || lastValues == null) return null;
+        String[] values = new String[lastValues.length];
+        for (int i = 0; i != values.length; ++i) {
+            Object value = lastValues[i];
+            values[i] = value != null ? extractors.get(i).getType().asString(value) : null;
+        }
+        return new ContinuationToken(values);
+    }
+
+    @Override
+    public Batch nextBatch() {
+        final Batch batch = super.nextBatch();
+        if (batch == null) {
+            exhausted = true;
+            return null;
+        }
+        return new Batch() {
+            @Override
+            public int width() {
+                return batch.width();
+            }
+
+            @Override
+            public String getWorkspaceName() {
+                return batch.getWorkspaceName();
+            }
+
+            @Override
+            public long rowCount() {
+                return batch.rowCount();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return batch.isEmpty();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return batch.hasNext();
+            }
+
+            @Override
+            public void nextRow() {
+                batch.nextRow();
+                record(batch);
+            }
+
+            @Override
+            public CachedNode getNode() {
+                return batch.getNode();
+            }
+
+            @Override
+            public CachedNode getNode( int index ) {
+                return batch.getNode(index);
+            }
+
+            @Override
+            public float getScore() {
+                return batch.getScore();
+            }
+
+            @Override
+            public float getScore( int index ) {
+                return batch.getScore(index);
+            }
+
+            @Override
+            public String toString() {
+                return batch.toString();
+            }
+        };
+    }
+
+    protected void record( Batch batch ) {
+        Object[] values = new Object[extractors.size()];
+        for (int i = 0; i != values.length; ++i) {
+            values[i] = extractors.get(i).getValueInRow(batch);
+        }
+        lastValues = values;
+    }
+
+    @Override
+    public String toString() {
+        return "(continuation " + delegate + ")";
+    }
+
+    /**
+     * Create a filter that excludes all of the rows at or before the position of the supplied token.
+     *
+     * @param token the continuation token; may not be null
+     * @param extractors the extractors for each of the orderings followed by the {@link #rowKeyExtractor(TypeFactory) row
+     *        identifier extractor}, each with a type whose comparator orders the values in the same way as the rows are ordered;
+     *        may not be null or empty
+     * @return the row filter; never null
+     */
+    public static RowFilter rowsAfter( final ContinuationToken token,
+                                       final List<ExtractFromRow> extractors ) {
+        final Object[] tokenValues = valuesOf(token, extractors);
+        return new RowFilter() {
+            @Override
+            public boolean isCurrentRowValid( Batch batch ) {
+                Object[] values = new Object[tokenValues.length];
+                for (int i = 0; i != values.length; ++i) {
+                    values[i] = extractors.get(i).getValueInRow(batch);
+                }
+                // The row identifiers make the positions of all rows distinct ...
+                return compare(values, tokenValues, extractors) > 0;
+            }
+
+            @Override
+            public String toString() {
+                return "(filter rows " + token + ")";
+            }
+        };
+    }
+
+    /**
+     * Create the extractor of the identifier of each row, which is made from the keys of the nodes in the row. Sorting the rows
+     * by this identifier after all of the query's orderings gives every row a distinct position.
+     *
+     * @param stringType the type factory for strings; may not be null
+     * @return the extractor; never null
+     */
+    public static ExtractFromRow rowKeyExtractor( final TypeFactory<String> stringType ) {
+        return new ExtractFromRow() {
+            @Override
+            public TypeFactory<?> getType() {
+                return stringType;
+            }
+
+            @Override
+            public Object getValueInRow( RowAccessor row ) {
+                return rowKey(row);
+            }
+
+            @Override
+            public String toString() {
+                return "(row-key)";
+            }
+        };
+    }
+
+    /**
+     * Get the identifier of the current row, which is made from the keys of the nodes in the row.
+     *
+     * @param row the row; may not be null
+     * @return the row identifier; never null
+     */
+    protected static String rowKey( RowAccessor row ) {
+        int width = row.width();
+        if (width == 1) {
+            CachedNode node = row.getNode();
+            return node != null ? node.getKey().toString() : "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i != width; ++i) {
+            if (i != 0) sb.append(' ');
+            CachedNode node = row.getNode(i);
+            if (node != null) sb.append(node.getKey());
+        }
+        return sb.toString();
+    }
+
+    protected static Object[] valuesOf( ContinuationToken token,
+                                        List<ExtractFromRow> extractors ) {
+        if (token.size() != extractors.size()) {
+            throw new IllegalArgumentException("The continuation token does not match the query's orderings: " + token);
+        }
+        Object[] values = new Object[token.size()];
+        for (int i = 0; i != values.length; ++i) {
+            String value = token.getValue(i);
+            values[i] = value != null ? extractors.get(i).getType().create(value) : null;
+        }
+        return values;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    protected static int compare( Object[] values,
+                                  Object[] otherValues,
+                                  List<ExtractFromRow> extractors ) {
+        for (int i = 0; i != values.length; ++i) {
+            Object value = values[i];
+            Object other = otherValues[i];
+            if (value == null && other == null) continue;
+            TypeFactory<?> type = extractors.get(i).getType();
+            // The comparator also orders the null values as required by the ordering ...
+            int diff = ((Comparator<Object>)type.getComparator()).compare(value, other);
+            if (diff != 0) return diff;
+        }
+        return 0;
+    }
+}
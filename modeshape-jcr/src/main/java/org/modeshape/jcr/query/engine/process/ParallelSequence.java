@@ -0,0 +1,283 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.query.NodeSequence;
+
+/**
+ * A {@link NodeSequence} that returns all of the batches of several other sequences, in the same order as appending the
+ * sequences one after the other, but that obtains the batches of all of the sequences concurrently using the supplied executor.
+ * This is useful when obtaining each batch is expensive, as it is for sequences that scan an index: the index lookups then run
+ * at the same time instead of one after another.
+ * <p>
+ * Each sequence is read ahead by at most a few batches, so that a consumer that stops early (for example, because of a limit)
+ * does not cause all of the results to be read. A sequence is only ever used by one thread at a time, and a thread of the
+ * executor never waits for the consumer. When the consumer needs a batch from a sequence whose reading has not yet started
+ * (because all of the executor's threads are busy), the consumer reads the sequence itself. The returned batches are iterated by
+ * the consumer's thread, so any nodes that are loaded lazily by the batches are loaded in that thread.
+ * </p>
+ */
+public class ParallelSequence extends NodeSequence {
+
+    private final List<Part> parts;
+    private final int width;
+    private final Executor executor;
+    private final int maxBatchesAhead;
+    private int current = 0;
+    private boolean started = false;
+
+    /**
+     * Create a sequence that concurrently reads the supplied sequences.
+     *
+     * @param sequences the sequences, which must all have the same width; may not be null or empty
+     * @param executor the executor used to read the sequences; may not be null
+     * @param maxBatchesAhead the maximum number of batches that are read from each sequence before they are needed; must be
+     *        positive
+     */
+    public ParallelSequence( List<NodeSequence> sequences,
+                             Executor executor,
+                             int maxBatchesAhead ) {
+        CheckArg.isNotEmpty(sequences, "sequences");
+        CheckArg.isNotNull(executor, "executor");
+        CheckArg.isPositive(maxBatchesAhead, "maxBatchesAhead");
+        this.width = sequences.get(0).width();
+        this.parts = new ArrayList<>(sequences.size());
+        for (NodeSequence sequence : sequences) {
+            if (sequence.width() != width) {
+                throw new IllegalArgumentException("The sequences must have the same width: " + sequences);
+            }
+            this.parts.add(new Part(sequence));
+        }
+        this.executor = executor;
+        this.maxBatchesAhead = maxBatchesAhead;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public long getRowCount() {
+        // The sequences are being read by other threads, so we can't ask them ...
+        return -1L;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        // We don't know without reading the sequences ...
+        return false;
+    }
+
+    @Override
+    public Batch nextBatch() {
+        if (!started) {
+            // Start reading all of the sequences ...
+            started = true;
+            for (Part part : parts) {
+                part.readAhead();
+            }
+        }
+        while (current < parts.size()) {
+            Batch batch = parts.get(current).take();
+            if (batch != null) return batch;
+            ++current;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        RuntimeException error = null;
+        for (Part part : parts) {
+            try {
+                part.close();
+            } catch (RuntimeException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("(parallel width=").append(width);
+        for (Part part : parts) {
+            sb.append(' ').append(part.sequence);
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * One of the sequences and the batches that have been read from it but not yet returned.
+     */
+    private final class Part {
+        protected final NodeSequence sequence;
+        @GuardedBy( "this" )
+        private final Deque<Batch> batches = new ArrayDeque<>();
+        @GuardedBy( "this" )
+        private long generation;
+        @GuardedBy( "this" )
+        private boolean reading;
+        @GuardedBy( "this" )
+        private boolean running;
+        @GuardedBy( "this" )
+        private boolean finished;
+        @GuardedBy( "this" )
+        private boolean closed;
+        @GuardedBy( "this" )
+        private RuntimeException failure;
+
+        protected Part( NodeSequence sequence ) {
+            this.sequence = sequence;
+        }
+
+        protected void readAhead() {
+            final long task;
+            synchronized (this) {
+                if (reading || finished || closed || batches.size() >= maxBatchesAhead) return;
+                reading = true;
+                task = ++generation;
+            }
+            try {
+                executor.execute(() -> {
+                    if (claim(task)) read();
+                });
+            } catch (RejectedExecutionException e) {
+                // The executor is no longer accepting work, so read in this thread ...
+                if (claim(task)) read();
+            }
+        }
+
+        /**
+         * Claim the right to read the sequence for the supplied task. The task submitted to the executor may still be waiting for
+         * a thread when the consumer needs the next batch, and then the consumer claims the task and reads the sequence itself;
+         * this ensures that the consumer never waits for a task that cannot run because all of the executor's threads are busy.
+         *
+         * @param task the generation of the task
+         * @return true if the caller should read the sequence, or false if the task was already claimed
+         */
+        private synchronized boolean claim( long task ) {
+            if (task != generation || running || !reading) return false;
+            running = true;
+            return true;
+        }
+
+        private void read() {
+            try {
+                while (true) {
+                    synchronized (this) {
+                        if (closed) {
+                            reading = false;
+                            running = false;
+                            sequence.close();
+                            return;
+                        }
+                        if (batches.size() >= maxBatchesAhead) {
+                            // Stop reading until the consumer takes some of the batches ...
+                            reading = false;
+                            running = false;
+                            return;
+                        }
+                    }
+                    Batch batch = sequence.nextBatch();
+                    synchronized (this) {
+                        if (batch == null) {
+                            finished = true;
+                            reading = false;
+                            running = false;
+                            notifyAll();
+                            return;
+                        }
+                        if (!batch.isEmpty()) {
+                            batches.add(batch);
+                            notifyAll();
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failure = e;
+                    finished = true;
+                    reading = false;
+                    running = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Get the next batch read from the sequence, waiting for it if necessary.
+         *
+         * @return the batch, or null if there are no more batches
+         */
+        protected Batch take() {
+            while (true) {
+                Batch batch;
+                long task = 0L;
+                synchronized (this) {
+                    batch = batches.poll();
+                    if (batch == null) {
+                        if (failure != null) throw failure;
+                        if (finished) return null;
+                        if (running) {
+                            try {
+                                wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException(e);
+                            }
+                            continue;
+                        }
+                        if (reading) task = generation;
+                    }
+                }
+                if (batch != null) {
+                    // Make sure the sequence continues to be read while the batch is consumed ...
+                    readAhead();
+                    return batch;
+                }
+                if (task != 0L) {
+                    // The task has not yet started, so read the sequence in this thread ...
+                    if (claim(task)) read();
+                } else {
+                    readAhead();
+                }
+            }
+        }
+
+        protected void close() {
+            synchronized (this) {
+                closed = true;
+                batches.clear();
+                if (running) {
+                    // The reading thread will close the sequence ...
+                    return;
+                }
+                reading = false;
+            }
+            sequence.close();
+        }
+    }
+}
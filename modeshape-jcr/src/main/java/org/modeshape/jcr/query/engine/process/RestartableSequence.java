@@ -104,6 +104,11 @@ public class RestartableSequence extends NodeSequence implements Restartable {
     @Override
     public long getRowCount() {
         if (batches == null) return 0L;// closed
+        if (!loadedAll) {
+            // the original sequence may know how many rows it has without reading them ...
+            long rowCount = original.getRowCount();
+            if (rowCount >= 0L) return rowCount;
+        }
         loadRemaining();
         return totalSize;
     }
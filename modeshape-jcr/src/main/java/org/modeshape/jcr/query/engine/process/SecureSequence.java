@@ -28,6 +28,7 @@ import org.modeshape.jcr.query.NodeSequence;
 public class SecureSequence extends DelegatingSequence {
 
     protected final JcrQueryContext context;
+    private final boolean canReadAllNodes;
 
     /**
      * Creates a new secure sequence over an existing sequence.
@@ -39,6 +40,7 @@ public class SecureSequence extends DelegatingSequence {
                            JcrQueryContext context ) {
         super(delegate);
         this.context = context;
+        this.canReadAllNodes = context.canReadAllNodes();
     }
 
     @Override
@@ -55,8 +57,8 @@ public class SecureSequence extends DelegatingSequence {
 
     @Override
     public long getRowCount() {
-        //we do not know up front how many rows there will be
-        return -1;
+        // unless all the nodes can be read, we do not know up front how many rows there will be
+        return canReadAllNodes ? super.getRowCount() : -1;
     }
 
     @Override
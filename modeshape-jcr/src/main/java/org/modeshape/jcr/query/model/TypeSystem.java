@@ -354,7 +354,7 @@ public abstract class TypeSystem {
                             @Override
                             public int compare( T o1,
                                                 T o2 ) {
-                                if (o1 == null) return -1;
+                                if (o1 == null) return o2 == null ? 0 : -1;
                                 if (o2 == null) return 1;
                                 assert o1 != null;
                                 assert o2 != null;
@@ -376,7 +376,7 @@ public abstract class TypeSystem {
                             @Override
                             public int compare( T o1,
                                                 T o2 ) {
-                                if (o1 == null) return 1;
+                                if (o1 == null) return o2 == null ? 0 : 1;
                                 if (o2 == null) return -1;
                                 assert o1 != null;
                                 assert o2 != null;
@@ -403,7 +403,7 @@ public abstract class TypeSystem {
                             @Override
                             public int compare( T o1,
                                                 T o2 ) {
-                                if (o1 == null) return -1;
+                                if (o1 == null) return o2 == null ? 0 : -1;
                                 if (o2 == null) return 1;
                                 assert o1 != null;
                                 assert o2 != null;
@@ -425,7 +425,7 @@ public abstract class TypeSystem {
                             @Override
                             public int compare( T o1,
                                                 T o2 ) {
-                                if (o1 == null) return 1;
+                                if (o1 == null) return o2 == null ? 0 : 1;
                                 if (o2 == null) return -1;
                                 assert o1 != null;
                                 assert o2 != null;
@@ -16,6 +16,7 @@
 
 package org.modeshape.jcr.query.optimize;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -23,22 +24,46 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.jcr.query.qom.And;
 import javax.jcr.query.qom.Comparison;
 import javax.jcr.query.qom.Constraint;
 import javax.jcr.query.qom.DynamicOperand;
 import javax.jcr.query.qom.JoinCondition;
+import javax.jcr.query.qom.Or;
 import javax.jcr.query.qom.PropertyValue;
 import javax.jcr.query.qom.StaticOperand;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.api.index.IndexColumnDefinition;
+import org.modeshape.jcr.api.index.IndexDefinition;
+import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
 import org.modeshape.jcr.api.query.qom.SetCriteria;
+import org.modeshape.jcr.query.PseudoColumns;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.engine.IndexPlan;
 import org.modeshape.jcr.query.engine.IndexPlanners;
+import org.modeshape.jcr.query.model.ChildCount;
+import org.modeshape.jcr.query.model.ChildNode;
+import org.modeshape.jcr.query.model.Column;
+import org.modeshape.jcr.query.model.DescendantNode;
+import org.modeshape.jcr.query.model.FullTextSearch;
 import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.NodeDepth;
+import org.modeshape.jcr.query.model.NodeId;
+import org.modeshape.jcr.query.model.NodeLocalName;
+import org.modeshape.jcr.query.model.NodeName;
+import org.modeshape.jcr.query.model.NodePath;
+import org.modeshape.jcr.query.model.PropertyExistence;
+import org.modeshape.jcr.query.model.ReferenceValue;
+import org.modeshape.jcr.query.model.SameNode;
 import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.model.Visitable;
+import org.modeshape.jcr.query.model.Visitor;
+import org.modeshape.jcr.query.model.Visitors;
 import org.modeshape.jcr.query.plan.PlanNode;
 import org.modeshape.jcr.query.plan.PlanNode.Operation;
 import org.modeshape.jcr.query.plan.PlanNode.Property;
@@ -62,6 +87,12 @@ public class AddIndexes implements OptimizerRule {
 
     private static final AddIndexes IMPLICIT_INDEXES = new AddIndexes(null);
 
+    /**
+     * The plan node properties that may reference the columns of a selector.
+     */
+    private static final Property[] COLUMN_PROPERTIES = {Property.PROJECT_COLUMNS, Property.SELECT_CRITERIA,
+        Property.JOIN_CONDITION, Property.JOIN_CONSTRAINTS, Property.SORT_ORDER_BY, Property.GROUP_COLUMNS};
+
     /**
      * The instance of the rule that uses the implicit indexes, like those for finding nodes (or children or descendants) based
      * upon a path.
@@ -99,6 +130,7 @@ public class AddIndexes implements OptimizerRule {
             // Look for any SELECT nodes above this but below an ACCESS node, because all of the SELECT define
             // criteria that are all ANDed together ...
             final List<Constraint> constraints = new LinkedList<>();
+            final List<Constraint> selectConstraints = new LinkedList<>();
             final List<JoinCondition> joinConditions = new LinkedList<>();
             final Set<String> nodeTypeNames = new HashSet<>();
             final NodeTypes nodeTypes = context.getNodeTypes();
@@ -112,6 +144,7 @@ public class AddIndexes implements OptimizerRule {
                         Constraint constraint = node.getProperty(Property.SELECT_CRITERIA, Constraint.class);
                         if (constraint != null) {
                             constraints.add(constraint);
+                            selectConstraints.add(constraint);
                             // While we're at it, look for the constraint on the primary type. This tells us which node type
                             // we're working with ...
                             if (nodeTypeNames.isEmpty()) {
@@ -194,103 +227,27 @@ public class AddIndexes implements OptimizerRule {
                 // Add the alias ...
                 nodeTypeNames.add(selectorName.getString());
                 final List<IndexPlan> indexPlans = new LinkedList<>();
-                IndexCostCalculator calculator = new IndexCostCalculator() {
-                    @Override
-                    public Set<String> selectedNodeTypes() {
-                        return nodeTypeNames;
-                    }
-
-                    @Override
-                    public Collection<Constraint> andedConstraints() {
-                        return constraints;
-                    }
-
-                    @Override
-                    public Collection<JoinCondition> joinConditions() {
-                        return joinConditions;
-                    }
-
-                    @Override
-                    public Map<String, Object> getVariables() {
-                        return context.getVariables();
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<JoinCondition> joinConditions,
-                                          int costEstimate,
-                                          long cardinalityEstimate ) {
-                        IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, null, joinConditions,
-                                                            costEstimate, cardinalityEstimate, 1.0f, null);
-                        indexPlans.add(indexPlan);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          Map<String, Object> parameters ) {
-                        // Add a plan node for this index ...
-                        IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, constraints, null, costEstimate,
-                                                            cardinalityEstimate, selectivityEstimate, parameters);
-                        indexPlans.add(indexPlan);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate ) {
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, null);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          String parameterName,
-                                          Object parameterValue ) {
-                        Map<String, Object> params = Collections.singletonMap(parameterName, parameterValue);
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, params);
-                    }
-
-                    @Override
-                    public void addIndex( String name,
-                                          String workspaceName,
-                                          String providerName,
-                                          Collection<Constraint> constraints,
-                                          int costEstimate,
-                                          long cardinalityEstimate,
-                                          Float selectivityEstimate,
-                                          String parameterName1,
-                                          Object parameterValue1,
-                                          String parameterName2,
-                                          Object parameterValue2 ) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put(parameterName1, parameterValue1);
-                        params.put(parameterName2, parameterValue2);
-                        addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate,
-                                 selectivityEstimate, params);
-                    }
-                };
+                IndexCostCalculator calculator = new IndexPlanCollector(context, nodeTypeNames, constraints, joinConditions,
+                                                                        indexPlans);
                 // And collect the indexes from the index planner ...
                 planners.applyIndexes(context, calculator);
+                // And for each disjunction, see if the nodes satisfying each of its terms can be found with a different index ...
+                for (Constraint constraint : selectConstraints) {
+                    if (!(constraint instanceof Or)) continue;
+                    IndexPlan union = planUnion(context, (Or)constraint, nodeTypeNames);
+                    if (union != null) indexPlans.add(union);
+                }
                 if (!indexPlans.isEmpty()) {
+                    // Mark the index plans that cover all of the columns needed for this selector ...
+                    Set<String> requiredColumns = requiredColumns(plan, selectorName);
+                    if (requiredColumns != null && !requiredColumns.isEmpty()) {
+                        for (ListIterator<IndexPlan> iter = indexPlans.listIterator(); iter.hasNext();) {
+                            IndexPlan indexPlan = iter.next();
+                            if (covers(context, indexPlan, requiredColumns)) {
+                                iter.set(indexPlan.covering(requiredColumns));
+                            }
+                        }
+                    }
                     // Sort the index plans, so the best one is first ...
                     Collections.sort(indexPlans);
                     // Add an index node for each index ...
@@ -306,4 +263,335 @@ public class AddIndexes implements OptimizerRule {
         }
         return plan;
     }
+
+    /**
+     * Plan the use of several indexes for the supplied disjunction, where each of the terms of the disjunction is answered by its
+     * own index. This is useful when the terms constrain different properties, since no single index can then be used for the
+     * whole disjunction.
+     *
+     * @param context the query context; may not be null
+     * @param or the disjunction; may not be null
+     * @param nodeTypeNames the names of the node types that are selected; may not be null
+     * @return the plan that combines the best index for each of the terms, or null if there is a term for which no index can be
+     *         used or if all of the terms use the same index
+     */
+    protected IndexPlan planUnion( QueryContext context,
+                                   Or or,
+                                   Set<String> nodeTypeNames ) {
+        List<Constraint> terms = new ArrayList<>();
+        collectTerms(or, terms);
+        List<IndexPlan> plans = new ArrayList<>(terms.size());
+        Set<String> indexNames = new HashSet<>();
+        boolean appliesAll = true;
+        for (Constraint term : terms) {
+            List<Constraint> andedConstraints = new ArrayList<>();
+            collectAndedConstraints(term, andedConstraints);
+            List<IndexPlan> termPlans = new LinkedList<>();
+            planners.applyIndexes(context, new IndexPlanCollector(context, nodeTypeNames, andedConstraints,
+                                                                  Collections.<JoinCondition>emptyList(), termPlans));
+            IndexPlan best = null;
+            for (IndexPlan plan : termPlans) {
+                // Only use the provider indexes that actually evaluate some of the term's constraints ...
+                if (plan.getProviderName() == null || plan.getConstraints().isEmpty()) continue;
+                if (best == null || plan.compareTo(best) < 0) best = plan;
+            }
+            if (best == null) return null;
+            if (!best.getConstraints().containsAll(andedConstraints)) appliesAll = false;
+            plans.add(best);
+            indexNames.add(best.getName());
+        }
+        if (indexNames.size() < 2) {
+            // All of the terms use the same index, which would then be scanned several times ...
+            return null;
+        }
+        // When every index evaluates all of the constraints in its term, the union returns exactly the nodes that satisfy
+        // the disjunction ...
+        Collection<Constraint> applied = appliesAll ? Collections.<Constraint>singletonList(or) : null;
+        return IndexPlan.union(applied, plans);
+    }
+
+    private static void collectTerms( Constraint constraint,
+                                      List<Constraint> terms ) {
+        if (constraint instanceof Or) {
+            Or or = (Or)constraint;
+            collectTerms(or.getConstraint1(), terms);
+            collectTerms(or.getConstraint2(), terms);
+        } else {
+            terms.add(constraint);
+        }
+    }
+
+    private static void collectAndedConstraints( Constraint constraint,
+                                                 List<Constraint> andedConstraints ) {
+        if (constraint instanceof And) {
+            And and = (And)constraint;
+            collectAndedConstraints(and.getConstraint1(), andedConstraints);
+            collectAndedConstraints(and.getConstraint2(), andedConstraints);
+        } else {
+            andedConstraints.add(constraint);
+        }
+    }
+
+    /**
+     * Determine the names of all of the properties on the given selector that are used anywhere in the plan (e.g., in the
+     * projected columns, criteria, join conditions, or orderings).
+     *
+     * @param plan the plan; may not be null
+     * @param selectorName the name of the selector; may not be null
+     * @return the names of the properties used for the selector, or null if the query needs other information from the nodes
+     *         (e.g., their paths or names) and thus cannot be answered by an index alone
+     */
+    protected Set<String> requiredColumns( PlanNode plan,
+                                           final SelectorName selectorName ) {
+        final Set<String> propertyNames = new HashSet<>();
+        final AtomicBoolean needsNode = new AtomicBoolean(false);
+        Visitor visitor = new Visitors.AbstractVisitor() {
+            @Override
+            public void visit( Column column ) {
+                if (!selectorName.equals(column.selectorName())) return;
+                String propertyName = column.getPropertyName();
+                if (propertyName == null) {
+                    // All columns are needed ...
+                    needsNode.set(true);
+                } else if (PseudoColumns.isScore(propertyName) || PseudoColumns.isId(propertyName)) {
+                    // These never require the node ...
+                } else if (PseudoColumns.contains(propertyName, true)) {
+                    needsNode.set(true);
+                } else {
+                    propertyNames.add(propertyName);
+                }
+            }
+
+            @Override
+            public void visit( org.modeshape.jcr.query.model.PropertyValue value ) {
+                if (selectorName.equals(value.selectorName())) propertyNames.add(value.getPropertyName());
+            }
+
+            @Override
+            public void visit( PropertyExistence existence ) {
+                if (selectorName.equals(existence.selectorName())) propertyNames.add(existence.getPropertyName());
+            }
+
+            @Override
+            public void visit( ReferenceValue value ) {
+                if (!selectorName.equals(value.selectorName())) return;
+                if (value.getPropertyName() == null) {
+                    // Any reference property is used ...
+                    needsNode.set(true);
+                } else {
+                    propertyNames.add(value.getPropertyName());
+                }
+            }
+
+            @Override
+            public void visit( ChildNode node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( DescendantNode node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( SameNode node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( NodePath node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( NodeName node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( NodeLocalName node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( NodeDepth node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( NodeId node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( ChildCount node ) {
+                needsNode(node.selectorName());
+            }
+
+            @Override
+            public void visit( FullTextSearch node ) {
+                needsNode(node.selectorName());
+            }
+
+            private void needsNode( SelectorName selector ) {
+                if (selectorName.equals(selector)) needsNode.set(true);
+            }
+        };
+        for (PlanNode node : plan.findAllAtOrBelow()) {
+            for (Property property : COLUMN_PROPERTIES) {
+                Object value = node.getProperty(property);
+                if (value instanceof Visitable) {
+                    Visitors.visitAll((Visitable)value, visitor);
+                } else if (value instanceof Collection) {
+                    for (Object item : (Collection<?>)value) {
+                        if (item instanceof Visitable) Visitors.visitAll((Visitable)item, visitor);
+                    }
+                }
+            }
+            if (needsNode.get()) return null;
+        }
+        return propertyNames;
+    }
+
+    /**
+     * Determine whether the index described by the supplied plan stores the values of all of the required columns.
+     *
+     * @param context the query context; may not be null
+     * @param indexPlan the index plan; may not be null
+     * @param requiredColumns the names of the required columns; may not be null
+     * @return true if the index covers all of the required columns, or false otherwise
+     */
+    protected boolean covers( QueryContext context,
+                              IndexPlan indexPlan,
+                              Set<String> requiredColumns ) {
+        if (indexPlan.getProviderName() == null || context.getIndexDefinitions() == null) return false;
+        IndexDefinition defn = context.getIndexDefinitions().getIndexDefinitions().get(indexPlan.getName());
+        if (defn == null || defn.getKind() == IndexKind.TEXT || defn.getKind() == IndexKind.NODE_TYPE) return false;
+        Set<String> remaining = new HashSet<>(requiredColumns);
+        for (IndexColumnDefinition columnDefn : defn) {
+            if (columnDefn.getColumnType() == javax.jcr.PropertyType.BINARY) {
+                // Binary values are not stored in the indexes ...
+                continue;
+            }
+            remaining.remove(columnDefn.getPropertyName());
+        }
+        return remaining.isEmpty();
+    }
+
+    /**
+     * An {@link IndexCostCalculator} that describes a set of constraints to the index planners and collects the plans of the
+     * indexes that the planners add.
+     */
+    protected static final class IndexPlanCollector implements IndexCostCalculator {
+        private final QueryContext context;
+        private final Set<String> nodeTypeNames;
+        private final Collection<Constraint> constraints;
+        private final Collection<JoinCondition> joinConditions;
+        private final List<IndexPlan> indexPlans;
+
+        protected IndexPlanCollector( QueryContext context,
+                                      Set<String> nodeTypeNames,
+                                      Collection<Constraint> constraints,
+                                      Collection<JoinCondition> joinConditions,
+                                      List<IndexPlan> indexPlans ) {
+            this.context = context;
+            this.nodeTypeNames = nodeTypeNames;
+            this.constraints = constraints;
+            this.joinConditions = joinConditions;
+            this.indexPlans = indexPlans;
+        }
+
+        @Override
+        public Set<String> selectedNodeTypes() {
+            return nodeTypeNames;
+        }
+
+        @Override
+        public Collection<Constraint> andedConstraints() {
+            return constraints;
+        }
+
+        @Override
+        public Collection<JoinCondition> joinConditions() {
+            return joinConditions;
+        }
+
+        @Override
+        public Map<String, Object> getVariables() {
+            return context.getVariables();
+        }
+
+        @Override
+        public void addIndex( String name,
+                              String workspaceName,
+                              String providerName,
+                              Collection<JoinCondition> joinConditions,
+                              int costEstimate,
+                              long cardinalityEstimate ) {
+            IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, null, joinConditions, costEstimate,
+                                                cardinalityEstimate, 1.0f, null);
+            indexPlans.add(indexPlan);
+        }
+
+        @Override
+        public void addIndex( String name,
+                              String workspaceName,
+                              String providerName,
+                              Collection<Constraint> constraints,
+                              int costEstimate,
+                              long cardinalityEstimate,
+                              Float selectivityEstimate,
+                              Map<String, Object> parameters ) {
+            // Add a plan node for this index ...
+            IndexPlan indexPlan = new IndexPlan(name, workspaceName, providerName, constraints, null, costEstimate,
+                                                cardinalityEstimate, selectivityEstimate, parameters);
+            indexPlans.add(indexPlan);
+        }
+
+        @Override
+        public void addIndex( String name,
+                              String workspaceName,
+                              String providerName,
+                              Collection<Constraint> constraints,
+                              int costEstimate,
+                              long cardinalityEstimate,
+                              Float selectivityEstimate ) {
+            addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate, selectivityEstimate,
+                     null);
+        }
+
+        @Override
+        public void addIndex( String name,
+                              String workspaceName,
+                              String providerName,
+                              Collection<Constraint> constraints,
+                              int costEstimate,
+                              long cardinalityEstimate,
+                              Float selectivityEstimate,
+                              String parameterName,
+                              Object parameterValue ) {
+            Map<String, Object> params = Collections.singletonMap(parameterName, parameterValue);
+            addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate, selectivityEstimate,
+                     params);
+        }
+
+        @Override
+        public void addIndex( String name,
+                              String workspaceName,
+                              String providerName,
+                              Collection<Constraint> constraints,
+                              int costEstimate,
+                              long cardinalityEstimate,
+                              Float selectivityEstimate,
+                              String parameterName1,
+                              Object parameterValue1,
+                              String parameterName2,
+                              Object parameterValue2 ) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(parameterName1, parameterValue1);
+            params.put(parameterName2, parameterValue2);
+            addIndex(name, workspaceName, providerName, constraints, costEstimate, cardinalityEstimate, selectivityEstimate,
+                     params);
+        }
+    }
 }
@@ -0,0 +1,308 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.query.ContentStatistics;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.engine.IndexPlan;
+import org.modeshape.jcr.query.model.Constraint;
+import org.modeshape.jcr.query.model.DescendantNodeJoinCondition;
+import org.modeshape.jcr.query.model.JoinCondition;
+import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.model.Visitors;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.ValueFormatException;
+
+/**
+ * An {@link OptimizerRule optimizer rule} that uses the estimated number of rows produced by each part of the plan to choose the
+ * order in which the sources are joined. The estimates are based upon the cardinalities of the indexes that can be used for each
+ * source and upon the {@link ContentStatistics statistics} about the repository content, and are recorded on each JOIN node and
+ * on both of its children as the {@link Property#ESTIMATED_CARDINALITY} property. Nothing is changed when the estimates are not
+ * known.
+ * <p>
+ * Only inner joins whose condition is not a {@link DescendantNodeJoinCondition} are reordered. Within a left-deep chain of
+ * such joins, a source that is estimated to produce far fewer rows than the source joined just before it is moved down the
+ * chain, so that the intermediate results stay as small as possible. For example, this tree:
+ *
+ * <pre>
+ *             JOIN (t1.c = t3.c)
+ *            /     \
+ *          JOIN    t3 (~10 rows)
+ *         /    \
+ *       t1     t2 (~10000 rows)
+ * </pre>
+ *
+ * will be changed to this tree, provided that the condition of the upper join does not reference the 't2' selector:
+ *
+ * <pre>
+ *             JOIN
+ *            /     \
+ *          JOIN    t2 (~10000 rows)
+ *         /    \
+ *       t1     t3 (~10 rows)
+ * </pre>
+ *
+ * Finally, the children of each such join are swapped if needed so that the smaller side is on the right, since the rows on the
+ * right side of a join are the ones that are loaded into the buffer of the hash join.
+ * </p>
+ */
+@Immutable
+public class OrderJoinsByCardinality implements OptimizerRule {
+
+    public static final OrderJoinsByCardinality INSTANCE = new OrderJoinsByCardinality();
+
+    /**
+     * The value used for cardinalities that are not known.
+     */
+    protected static final long UNKNOWN = Long.MAX_VALUE;
+
+    /**
+     * The factor by which two estimates must differ before the order of the joins will be changed, which prevents the
+     * optimizer from reordering the joins based upon small differences between rough estimates.
+     */
+    protected static final long MINIMUM_RATIO = 2L;
+
+    @Override
+    public PlanNode execute( QueryContext context,
+                             PlanNode plan,
+                             LinkedList<OptimizerRule> ruleStack ) {
+        List<PlanNode> joins = plan.findAllAtOrBelow(Type.JOIN);
+        if (joins.isEmpty()) return plan;
+
+        // Move the smaller sources down each chain of joins, one step at a time, until nothing else can be moved ...
+        int maxPasses = joins.size() * joins.size();
+        boolean moved = true;
+        for (int pass = 0; moved && pass < maxPasses; ++pass) {
+            moved = false;
+            for (PlanNode join : joins) {
+                if (pushDownSmallerRightSide(context, join)) moved = true;
+            }
+        }
+
+        // Put the smaller side of each join on the right, since that's the side that gets buffered ...
+        for (PlanNode join : joins) {
+            if (!isReorderable(join)) continue;
+            long left = estimateCardinality(context, join.getFirstChild());
+            long right = estimateCardinality(context, join.getLastChild());
+            if (isMuchSmaller(left, right)) {
+                PlanNode first = join.getFirstChild();
+                first.removeFromParent();
+                join.addLastChild(first);
+            }
+        }
+
+        // Record the estimates so that they can be used when executing the join (and appear in the plan) ...
+        for (PlanNode join : joins) {
+            recordEstimate(context, join);
+            for (PlanNode child : join) {
+                recordEstimate(context, child);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Try to exchange the right side of the supplied join with the right side of the join that is its left child. This is done
+     * only when both joins can be {@link #isReorderable(PlanNode) reordered}, when the condition on the supplied join does not
+     * depend upon the right side of the lower join, and when the supplied join's right side is estimated to be much smaller.
+     *
+     * @param context the query context; may not be null
+     * @param upper the upper JOIN node; may not be null
+     * @return true if the joins were changed, or false otherwise
+     */
+    protected boolean pushDownSmallerRightSide( QueryContext context,
+                                                PlanNode upper ) {
+        PlanNode lower = upper.getFirstChild();
+        if (lower.getType() != Type.JOIN || !isReorderable(upper) || !isReorderable(lower)) return false;
+        PlanNode lowerRight = lower.getLastChild();
+        PlanNode upperRight = upper.getLastChild();
+
+        // The upper join condition must not depend on the selectors that would be moved out of the lower join ...
+        JoinCondition upperCondition = upper.getProperty(Property.JOIN_CONDITION, JoinCondition.class);
+        Set<SelectorName> upperSelectors = Visitors.getSelectorsReferencedBy(upperCondition);
+        for (SelectorName selector : lowerRight.getSelectors()) {
+            if (upperSelectors.contains(selector)) return false;
+        }
+        if (!isMuchSmaller(estimateCardinality(context, upperRight), estimateCardinality(context, lowerRight))) return false;
+
+        // Exchange the right sides of the two joins ...
+        lower.replaceChild(lowerRight, upperRight);
+        upper.addLastChild(lowerRight);
+
+        // And exchange their conditions, moving all of the additional join constraints to the upper join ...
+        JoinCondition lowerCondition = lower.getProperty(Property.JOIN_CONDITION, JoinCondition.class);
+        lower.setProperty(Property.JOIN_CONDITION, upperCondition);
+        upper.setProperty(Property.JOIN_CONDITION, lowerCondition);
+        List<Constraint> lowerConstraints = lower.getPropertyAsList(Property.JOIN_CONSTRAINTS, Constraint.class);
+        if (lowerConstraints != null && !lowerConstraints.isEmpty()) {
+            List<Constraint> constraints = new ArrayList<>(lowerConstraints);
+            List<Constraint> upperConstraints = upper.getPropertyAsList(Property.JOIN_CONSTRAINTS, Constraint.class);
+            if (upperConstraints != null) constraints.addAll(upperConstraints);
+            upper.setProperty(Property.JOIN_CONSTRAINTS, constraints);
+            lower.removeProperty(Property.JOIN_CONSTRAINTS);
+        }
+
+        // The lower join now applies to a different set of selectors ...
+        lower.getSelectors().clear();
+        for (PlanNode child : lower) {
+            lower.addSelectors(child.getSelectors());
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether the children of the supplied JOIN node can be reordered.
+     *
+     * @param join the JOIN node; may not be null
+     * @return true if the join is an inner join with a condition that does not depend upon the order of the children
+     */
+    protected boolean isReorderable( PlanNode join ) {
+        if (join.getType() != Type.JOIN || join.getChildCount() != 2) return false;
+        if (join.getProperty(Property.JOIN_TYPE, JoinType.class) != JoinType.INNER) return false;
+        JoinCondition condition = join.getProperty(Property.JOIN_CONDITION, JoinCondition.class);
+        // The ancestors must always be on the left side of a descendant join ...
+        return condition != null && !(condition instanceof DescendantNodeJoinCondition);
+    }
+
+    protected static boolean isMuchSmaller( long estimate,
+                                            long otherEstimate ) {
+        if (estimate == UNKNOWN || otherEstimate == UNKNOWN) return false;
+        return estimate <= otherEstimate / MINIMUM_RATIO && estimate < otherEstimate;
+    }
+
+    protected void recordEstimate( QueryContext context,
+                                   PlanNode node ) {
+        long estimate = estimateCardinality(context, node);
+        if (estimate != UNKNOWN) {
+            node.setProperty(Property.ESTIMATED_CARDINALITY, estimate);
+        } else {
+            node.removeProperty(Property.ESTIMATED_CARDINALITY);
+        }
+    }
+
+    /**
+     * Estimate the number of rows that will be produced by the supplied plan node.
+     *
+     * @param context the query context; may not be null
+     * @param node the plan node; may not be null
+     * @return the estimated number of rows, or {@link #UNKNOWN} if the number of rows cannot be estimated
+     */
+    protected long estimateCardinality( QueryContext context,
+                                        PlanNode node ) {
+        switch (node.getType()) {
+            case SOURCE:
+                return estimateSourceCardinality(context, node);
+            case ACCESS:
+                if (node.hasProperty(Property.ACCESS_NO_RESULTS)) return 0L;
+                break;
+            case JOIN:
+                long left = estimateCardinality(context, node.getFirstChild());
+                long right = estimateCardinality(context, node.getLastChild());
+                if (left == UNKNOWN || right == UNKNOWN) return UNKNOWN;
+                if (node.getProperty(Property.JOIN_TYPE, JoinType.class) == JoinType.CROSS
+                    || !node.hasProperty(Property.JOIN_CONDITION)) {
+                    return left != 0L && right > UNKNOWN / left ? UNKNOWN : left * right;
+                }
+                // We don't know how many rows on each side will match, so use the larger of the two ...
+                return Math.max(left, right);
+            case SET_OPERATION:
+                long total = 0L;
+                for (PlanNode child : node) {
+                    long estimate = estimateCardinality(context, child);
+                    if (estimate == UNKNOWN || estimate > UNKNOWN - total) return UNKNOWN;
+                    total += estimate;
+                }
+                return total;
+            case DEPENDENT_QUERY:
+                return estimateCardinality(context, node.getLastChild());
+            case LIMIT:
+                long estimate = estimateCardinality(context, node.getFirstChild());
+                Integer limit = node.getProperty(Property.LIMIT_COUNT, Integer.class);
+                return limit != null ? Math.min(estimate, limit.longValue()) : estimate;
+            default:
+                break;
+        }
+        return node.getChildCount() == 1 ? estimateCardinality(context, node.getFirstChild()) : UNKNOWN;
+    }
+
+    /**
+     * Estimate the number of rows that will be produced by the supplied SOURCE node, using the smallest of the cardinalities of
+     * the indexes that apply to the source and the number of nodes of the source's node type.
+     *
+     * @param context the query context; may not be null
+     * @param source the SOURCE node; may not be null
+     * @return the estimated number of rows, or {@link #UNKNOWN} if the number of rows cannot be estimated
+     */
+    protected long estimateSourceCardinality( QueryContext context,
+                                              PlanNode source ) {
+        long result = UNKNOWN;
+        for (PlanNode child : source) {
+            if (child.getType() != Type.INDEX) continue;
+            IndexPlan index = child.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+            if (index != null) result = Math.min(result, index.getCardinalityEstimate());
+        }
+        SelectorName sourceName = source.getProperty(Property.SOURCE_NAME, SelectorName.class);
+        if (sourceName != null) {
+            result = Math.min(result, countNodesOfType(context, sourceName.name()));
+        }
+        return result;
+    }
+
+    /**
+     * Use the {@link QueryContext#getStatistics() statistics} to count the nodes in all of the queried workspaces that are of
+     * the named node type or any of its subtypes.
+     *
+     * @param context the query context; may not be null
+     * @param nodeTypeName the name of the node type; may not be null
+     * @return the number of nodes, or {@link #UNKNOWN} if the number is not known
+     */
+    protected long countNodesOfType( QueryContext context,
+                                     String nodeTypeName ) {
+        ContentStatistics statistics = context.getStatistics();
+        if (statistics == null || statistics == ContentStatistics.NONE || context.getNodeTypes() == null) return UNKNOWN;
+        Set<Name> typeNames = null;
+        try {
+            Name name = context.getExecutionContext().getValueFactories().getNameFactory().create(nodeTypeName);
+            typeNames = context.getNodeTypes().getAllSubtypes(name);
+        } catch (ValueFormatException e) {
+            return UNKNOWN;
+        }
+        if (typeNames == null || typeNames.isEmpty() || context.getWorkspaceNames().isEmpty()) return UNKNOWN;
+        long total = 0L;
+        for (String workspaceName : context.getWorkspaceNames()) {
+            for (Name typeName : typeNames) {
+                long count = statistics.getNodeCount(workspaceName, typeName);
+                if (count == ContentStatistics.UNKNOWN) return UNKNOWN;
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
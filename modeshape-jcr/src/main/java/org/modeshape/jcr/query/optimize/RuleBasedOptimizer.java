@@ -83,6 +83,10 @@ public class RuleBasedOptimizer implements Optimizer {
         // Add indexes determination last ...
         populateIndexingRules(ruleStack, hints);
         ruleStack.addLast(OrderIndexesByCost.INSTANCE);
+        if (hints.hasJoin) {
+            // Order the joins only after the indexes (and their cardinalities) are known ...
+            ruleStack.addLast(OrderJoinsByCardinality.INSTANCE);
+        }
     }
 
     /**
@@ -18,6 +18,7 @@ package org.modeshape.jcr.query.plan;
 import java.io.Serializable;
 import javax.jcr.query.QueryResult;
 import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.query.ContinuationToken;
 import org.modeshape.jcr.query.QueryResults;
 
 @NotThreadSafe
@@ -106,6 +107,12 @@ public final class PlanHints implements Serializable, Cloneable {
      */
     public int rowsKeptInMemory = 200;
 
+    /**
+     * The position in the ordered results after which the rows should be returned, or null if the results should start with the
+     * first row. This is set when a client pages through results using {@link ContinuationToken continuation tokens}.
+     */
+    public ContinuationToken continueAfter = null;
+
     public PlanHints() {
     }
 
@@ -129,6 +136,7 @@ public final class PlanHints implements Serializable, Cloneable {
         sb.append(", useSessionContent=").append(useSessionContent);
         sb.append(", restartable=").append(restartable);
         sb.append(", rowsKeptInMemory=").append(rowsKeptInMemory);
+        if (continueAfter != null) sb.append(", continueAfter=").append(continueAfter);
         sb.append('}');
         return sb.toString();
     }
@@ -154,6 +162,7 @@ public final class PlanHints implements Serializable, Cloneable {
         clone.qualifyExpandedColumnNames = this.qualifyExpandedColumnNames;
         clone.restartable = this.restartable;
         clone.rowsKeptInMemory = this.rowsKeptInMemory;
+        clone.continueAfter = this.continueAfter;
         return clone;
     }
 }
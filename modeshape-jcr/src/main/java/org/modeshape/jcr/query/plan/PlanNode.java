@@ -207,6 +207,12 @@ public final class PlanNode implements Iterable<PlanNode>, Readable, Cloneable,
         INDEX_SPECIFICATION,
         /** Flag specifying whether the index has been used in the query. Value is a {@link Boolean} value. */
         INDEX_USED,
+
+        /**
+         * For JOIN nodes and their children, the estimated number of rows that will be produced by the node. Value is a
+         * {@link Long} value.
+         */
+        ESTIMATED_CARDINALITY,
     }
 
     public static interface Operation {
@@ -1092,6 +1098,9 @@ public final class PlanNode implements Iterable<PlanNode>, Readable, Cloneable,
                     for (Map.Entry<String, Object> param : index.getParameters().entrySet()) {
                         str.append(", ").append(param.getKey()).append('=').append(param.getValue());
                     }
+                    if (index.isCovering()) {
+                        str.append(", covering=").append(index.getCoveredColumns());
+                    }
                 } else {
                     str.append(value);
                 }
@@ -17,6 +17,7 @@
 package org.modeshape.jcr.spi.index;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import javax.jcr.query.qom.Constraint;
 import javax.jcr.query.qom.JoinCondition;
@@ -75,4 +76,16 @@ public interface IndexConstraints {
      * @return the parameters; never null but may be empty
      */
     Map<String, Object> getParameters();
+
+    /**
+     * Get the names of the index columns whose values ModeShape would like to obtain along with each matching node key. When
+     * this is not empty, the query planner has determined that the index covers all of the columns needed by the query and
+     * indexes that {@link Filter#returnsColumnValues() return column values} should expose them via
+     * {@link Filter.ResultBatch#columnValues()}, so that ModeShape doesn't have to load the nodes to read these values.
+     *
+     * @return the names of the requested columns (usually the JCR property names); never null but may be empty
+     */
+    default Collection<String> getRequestedColumns() {
+        return Collections.emptySet();
+    }
 }
@@ -69,6 +69,11 @@ public final class DefaultManagedIndex implements ManagedIndex {
         return index.filter(constraints, cardinalityEstimate);
     }
 
+    @Override
+    public boolean returnsColumnValues() {
+        return index.returnsColumnValues();
+    }
+
     @Override
     public IndexChangeAdapter getIndexChangeAdapter() {
         return adapter;
@@ -17,6 +17,7 @@
 package org.modeshape.jcr.spi.index.provider;
 
 import java.util.Iterator;
+import java.util.Map;
 import org.modeshape.common.collection.EmptyIterator;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.spi.index.IndexConstraints;
@@ -41,6 +42,17 @@ public interface Filter {
      */
     Results filter(IndexConstraints constraints, long cardinalityEstimate);
 
+    /**
+     * Determine whether the {@link ResultBatch batches} returned by this filter can contain the stored values of the
+     * {@link IndexConstraints#getRequestedColumns() requested columns}. Indexes that return {@code true} allow ModeShape to answer
+     * queries whose columns are all covered by the index without loading the matching nodes.
+     *
+     * @return true if this filter can return column values along with the node keys, or false otherwise
+     */
+    default boolean returnsColumnValues() {
+        return false;
+    }
+
     /**
      * The results of a {@link Filter#filter(IndexConstraints, long)} operation that contains the nodes that satisfy the
      * {@link Filter#filter(IndexConstraints, long) supplied constraints}.
@@ -68,6 +80,23 @@ public interface Filter {
          */
         ResultBatch getNextBatch(int batchSize);
 
+        /**
+         * Obtain the exact number of nodes in all of the batches of these results, without obtaining the nodes themselves. This
+         * allows ModeShape to answer queries that only need the number of results (or whether there are any results) without
+         * iterating over the results.
+         * <p>
+         * Implementations should return a count only when it is cheaper than obtaining the nodes, and only when every one of the
+         * {@link IndexConstraints#getConstraints() constraints} was applied exactly (e.g., an index that ignores a
+         * <code>LIKE</code> constraint and returns a superset of the matching nodes must not return a count). The count must be
+         * the same regardless of how many batches have already been obtained.
+         * </p>
+         *
+         * @return the number of nodes that satisfy the constraints, or -1 if the exact number is not known (the default)
+         */
+        default long count() {
+            return -1L;
+        }
+
         /**
          * Close any and all resources for the operation. This will always be called by ModeShape when the operation is no longer
          * needed, even if {@link #getNextBatch(int)} was never called.
@@ -121,6 +150,22 @@ public interface Filter {
          */
         Iterable<Float> scores();
 
+        /**
+         * Returns an {@link Iterable} over the values of the {@link IndexConstraints#getRequestedColumns() requested columns}
+         * for each of the matched documents from {@link #keys()}. This should have the same order as {@link #keys()}, and each
+         * map contains the column values keyed by the column name, where multi-valued columns are represented as arrays. A
+         * column which is requested but does not appear in the map is considered to have no value for that node.
+         * <p>
+         * By default this method returns {@code null}, signaling that this batch does not contain any column values and that
+         * ModeShape should obtain the values from the nodes themselves.
+         * </p>
+         *
+         * @return an iterable instance, or {@code null} if this batch does not contain column values
+         */
+        default Iterable<Map<String, Object>> columnValues() {
+            return null;
+        }
+
         /**
          * Checks if this batch is followed by another batch or is the last batch of the search results.
          * 
@@ -16,8 +16,11 @@
 
 package org.modeshape.jcr.spi.index.provider;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +32,12 @@ import org.modeshape.jcr.ModeShapeLexicon;
 import org.modeshape.jcr.cache.CachedNode.Properties;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.change.AbstractPropertyChange;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetAdapter.NodeTypePredicate;
+import org.modeshape.jcr.cache.change.NodeMoved;
+import org.modeshape.jcr.cache.change.NodeRenamed;
+import org.modeshape.jcr.cache.change.NodeReordered;
 import org.modeshape.jcr.cache.change.PropertyAdded;
 import org.modeshape.jcr.cache.change.PropertyChanged;
 import org.modeshape.jcr.cache.change.PropertyRemoved;
@@ -579,6 +587,39 @@ public class IndexChangeAdapters {
             super(context, matcher, workspaceName, index, JcrLexicon.PATH);
         }
 
+        @Override
+        public void notify( ChangeSet changeSet ) {
+            String workspaceName = changeSet.getWorkspaceName();
+            if (index instanceof Relocatable && workspaceName != null && includesWorkspace(workspaceName)) {
+                // The paths of the descendants of moved, renamed and reordered nodes change too, regardless of whether the
+                // nodes themselves are indexed, so relocate the descendants before the nodes themselves are changed ...
+                PathFactory pathFactory = context.getValueFactories().getPathFactory();
+                for (Change change : changeSet) {
+                    Map<Path, Path> newPathsByOldPath = new HashMap<>();
+                    if (change instanceof NodeMoved) {
+                        NodeMoved moved = (NodeMoved)change;
+                        newPathsByOldPath.put(moved.getOldPath(), moved.getNewPath());
+                    } else if (change instanceof NodeRenamed) {
+                        NodeRenamed renamed = (NodeRenamed)change;
+                        Path newPath = renamed.getPath();
+                        newPathsByOldPath.put(pathFactory.create(newPath.getParent(), renamed.getOldSegment()), newPath);
+                    } else if (change instanceof NodeReordered) {
+                        NodeReordered reordered = (NodeReordered)change;
+                        if (reordered.getOldPath() != null && !reordered.getOldPath().equals(reordered.getPath())) {
+                            newPathsByOldPath.put(reordered.getOldPath(), reordered.getPath());
+                        }
+                        for (Map<Path, Path> snsPathChanges : reordered.getSnsPathChangesByNodeKey().values()) {
+                            newPathsByOldPath.putAll(snsPathChanges);
+                        }
+                    }
+                    if (!newPathsByOldPath.isEmpty()) {
+                        ((Relocatable)index).relocateDescendants(newPathsByOldPath, propertyName);
+                    }
+                }
+            }
+            super.notify(changeSet);
+        }
+
         @Override
         protected Path convert( Path path ) {
             return path;
@@ -906,6 +947,18 @@ public class IndexChangeAdapters {
 
         @Override
         protected void addValues( NodeKey key, Property property ) {
+            if (property.isBinary() && index().supportsTextReaders()) {
+                // stream the extracted text into the index rather than loading it into memory ...
+                Reader reader = textReaderFrom(property);
+                if (reader != null) {
+                    try {
+                        index().add(nodeKey(key), propertyName(), reader);
+                    } finally {
+                        close(reader);
+                    }
+                }
+                return;
+            }
             StringBuilder builder = textFrom(property);
             if (builder.length() > 0) {
                 index().add(nodeKey(key), propertyName(), builder.toString());    
@@ -914,11 +967,55 @@ public class IndexChangeAdapters {
 
         @Override
         protected void removeValues( NodeKey key, Property property ) {
+            if (property.isBinary() && index().supportsTextReaders()) {
+                Reader reader = textReaderFrom(property);
+                if (reader != null) {
+                    try {
+                        index().remove(nodeKey(key), propertyName(), reader);
+                    } finally {
+                        close(reader);
+                    }
+                }
+                return;
+            }
             StringBuilder builder = textFrom(property);
             if (builder.length() > 0) {
                 index().remove(nodeKey(key),propertyName(), builder.toString());
             }
         }
+
+        protected Reader textReaderFrom( Property property ) {
+            List<Reader> readers = new ArrayList<>();
+            for (Iterator<Object> valuesIterator = property.iterator(); valuesIterator.hasNext();) {
+                Object value = valuesIterator.next();
+                assert value instanceof BinaryValue;
+                BinaryValue binaryValue = (BinaryValue) value;
+                try {
+                    Reader reader = context.getBinaryStore().getTextReader(binaryValue);
+                    if (reader != null) {
+                        readers.add(reader);
+                    }
+                } catch (BinaryStoreException e) {
+                    logger.debug(e, "Error trying to get extracted text for {0}", binaryValue);
+                }
+            }
+            switch (readers.size()) {
+                case 0:
+                    return null;
+                case 1:
+                    return readers.get(0);
+                default:
+                    return new SeparatedTextReader(readers);
+            }
+        }
+
+        private void close( Reader reader ) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                logger.debug(e, "Error trying to close the extracted text of {0}", propertyName());
+            }
+        }
         
         protected StringBuilder textFrom(Property property) {
             StringBuilder builder = new StringBuilder();
@@ -953,4 +1050,58 @@ public class IndexChangeAdapters {
         }
     }
 
+    /**
+     * A reader of the texts of several binary values, which are separated by a single space.
+     */
+    private static final class SeparatedTextReader extends Reader {
+        private final Iterator<Reader> readers;
+        private Reader current;
+        private boolean separate;
+
+        protected SeparatedTextReader( List<Reader> readers ) {
+            this.readers = readers.iterator();
+            this.current = this.readers.next();
+        }
+
+        @Override
+        public int read( char[] chars,
+                         int offset,
+                         int length ) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current != null) {
+                if (separate) {
+                    separate = false;
+                    chars[offset] = ' ';
+                    return 1;
+                }
+                int read = current.read(chars, offset, length);
+                if (read != -1) {
+                    return read;
+                }
+                current.close();
+                current = readers.hasNext() ? readers.next() : null;
+                separate = current != null;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException error = null;
+            for (Reader reader = current; reader != null; reader = readers.hasNext() ? readers.next() : null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            current = null;
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
 }
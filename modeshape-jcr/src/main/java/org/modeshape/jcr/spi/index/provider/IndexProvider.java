@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.RepositoryException;
 import javax.jcr.query.qom.Constraint;
 import javax.jcr.query.qom.JoinCondition;
@@ -40,6 +41,7 @@ import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.ModeShapeLexicon;
 import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.RepositoryStatistics;
 import org.modeshape.jcr.api.Logger;
 import org.modeshape.jcr.api.index.IndexColumnDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition;
@@ -162,6 +164,17 @@ public abstract class IndexProvider {
      */
     private String systemWorkspaceName;
 
+    /**
+     * The maximum number of change sets that are applied at once to the asynchronous indexes, or 0 if each asynchronous index
+     * should be updated separately with each change set; set via reflection
+     */
+    private int asyncIndexingBatchSize = 0;
+
+    /**
+     * The statistics of the repository that owns this provider, set via reflection; may be null
+     */
+    private RepositoryStatistics statistics;
+
     /**
      * A flag that tracks whether {@link #initialize()} has been called.
      */
@@ -184,6 +197,13 @@ public abstract class IndexProvider {
 
     private final Map<String, Map<String, AtomicIndex>> providedIndexesByIndexNameByWorkspaceName = new HashMap<>();
 
+    /**
+     * The queues of the changes that have yet to be applied to the asynchronous indexes, keyed by workspace name. A queue is
+     * registered with the {@link Observable} instead of the asynchronous {@link AtomicIndex}es in its workspace when
+     * {@link #asyncIndexingBatchSize} is positive.
+     */
+    private final Map<String, IndexUpdateQueue> updateQueuesByWorkspaceName = new HashMap<>();
+
     /**
      * An IndexWriter that does the work for this provider. This is {@link #refreshDelegateIndexWriter(org.modeshape.jcr.NodeTypes.Supplier) updated} every time the
      * {@link #providedIndexesByWorkspaceNameByIndexName provided indexes} are modified, and it is called by the
@@ -350,6 +370,11 @@ public abstract class IndexProvider {
 
         delegateWriter = NoOpQueryIndexWriter.INSTANCE;
         try {
+            // Apply the queued changes before the indexes are shutdown ...
+            for (IndexUpdateQueue queue : updateQueuesByWorkspaceName.values()) {
+                queue.shutdown();
+            }
+            updateQueuesByWorkspaceName.clear();
             // Shutdown each of the provided indexes ...
             for (Map<String, AtomicIndex> byWorkspaceName : providedIndexesByWorkspaceNameByIndexName.values()) {
                 for (AtomicIndex provided : byWorkspaceName.values()) {
@@ -561,6 +586,40 @@ public abstract class IndexProvider {
         return null;
     }
 
+    /**
+     * Get the number of saved change sets in the given workspace that have yet to be applied to this provider's asynchronous
+     * indexes. This is always 0 unless the changes for asynchronous indexes are queued and applied in batches.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     * @return the number of change sets; never negative
+     */
+    public final long getIndexUpdateLag( String workspaceName ) {
+        IndexUpdateQueue queue = updateQueue(workspaceName);
+        return queue != null ? queue.lag() : 0L;
+    }
+
+    /**
+     * Block until this provider's asynchronous indexes in the given workspace have been updated with all of the changes that
+     * were saved in that workspace before this method is called. This method returns immediately unless the changes for
+     * asynchronous indexes are queued and applied in batches.
+     *
+     * @param workspaceName the name of the workspace; may not be null
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout; may not be null
+     * @return true if the indexes have been updated, or false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public final boolean waitForIndexUpdates( String workspaceName,
+                                              long timeout,
+                                              TimeUnit unit ) throws InterruptedException {
+        IndexUpdateQueue queue = updateQueue(workspaceName);
+        return queue == null || queue.await(timeout, unit);
+    }
+
+    private synchronized IndexUpdateQueue updateQueue( String workspaceName ) {
+        return updateQueuesByWorkspaceName.get(workspaceName);
+    }
+
     /**
      * Get this provider's {@link ManagedIndex} instances for the given workspace.
      *
@@ -1409,6 +1468,16 @@ public abstract class IndexProvider {
             // The index should be updated synchronously in the same thread that submits the events to the bus (before the
             // 'notify' method returns), and the "in-thread" behavior is what does this ...
             observable.registerInThread(index);
+        } else if (asyncIndexingBatchSize > 0) {
+            // The index is to be updated asynchronously in batches, so the queue of the workspace should receive the changes
+            // in the same thread that submits them and then pass them to the index ...
+            IndexUpdateQueue queue = updateQueuesByWorkspaceName.get(index.workspaceName());
+            if (queue == null) {
+                queue = new IndexUpdateQueue(getName(), index.workspaceName(), asyncIndexingBatchSize, logger(), statistics);
+                updateQueuesByWorkspaceName.put(index.workspaceName(), queue);
+                observable.registerInThread(queue);
+            }
+            queue.add(index);
         } else {
             // The index is to be updated asynchronously, so use a normal listener ...
             observable.register(index);
@@ -1420,6 +1489,12 @@ public abstract class IndexProvider {
                                       ChangeBus observable ) {
         try {
             observable.unregister(index);
+            IndexUpdateQueue queue = updateQueuesByWorkspaceName.get(index.workspaceName());
+            if (queue != null && queue.remove(index)) {
+                observable.unregister(queue);
+                updateQueuesByWorkspaceName.remove(index.workspaceName());
+                queue.shutdown();
+            }
             removeIndex(index.indexDefinition(), index.managed(), index.workspaceName());
         } catch (RuntimeException e) {
             String msg = "Error removing index '{0}' in workspace '{1}' with definition: {2}";
@@ -1495,6 +1570,11 @@ public abstract class IndexProvider {
             return managedIndex.filter(constraints, cardinalityEstimate);
         }
 
+        @Override
+        public boolean returnsColumnValues() {
+            return managedIndex.returnsColumnValues();
+        }
+
         @Override
         public final void notify( ChangeSet changeSet ) {
             if (changeSet.getWorkspaceName() != null) {
@@ -0,0 +1,182 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.spi.index.provider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.jcr.RepositoryStatistics;
+import org.modeshape.jcr.api.Logger;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+import org.modeshape.jcr.cache.change.CoalescedChanges;
+
+/**
+ * A queue of the change sets saved in one workspace that have yet to be applied to the asynchronous indexes of a provider in
+ * that workspace. The queue is registered to be notified in the thread that saves the changes, so enqueueing is cheap and
+ * happens before the save completes; a single background thread then takes up to {@link #batchSize} change sets at a time,
+ * {@link CoalescedChanges combines} them so that successive changes to the same node are applied once, and passes the combined
+ * changes to each index, which then commits once for the whole batch.
+ */
+@ThreadSafe
+final class IndexUpdateQueue implements ChangeSetListener {
+
+    private final String workspaceName;
+    private final int batchSize;
+    private final Logger logger;
+    private final RepositoryStatistics statistics;
+    private final List<ChangeSetListener> indexes = new CopyOnWriteArrayList<>();
+    private final ExecutorService indexer;
+    @GuardedBy( "this" )
+    private final Deque<ChangeSet> queue = new ArrayDeque<>();
+    @GuardedBy( "this" )
+    private long enqueued;
+    @GuardedBy( "this" )
+    private long applied;
+    @GuardedBy( "this" )
+    private boolean draining;
+    @GuardedBy( "this" )
+    private boolean shutdown;
+
+    IndexUpdateQueue( String providerName,
+                      String workspaceName,
+                      int batchSize,
+                      Logger logger,
+                      RepositoryStatistics statistics ) {
+        assert batchSize > 0;
+        this.workspaceName = workspaceName;
+        this.batchSize = batchSize;
+        this.logger = logger;
+        this.statistics = statistics;
+        this.indexer = Executors.newSingleThreadExecutor(new NamedThreadFactory("modeshape-index-updates-" + providerName));
+    }
+
+    void add( ChangeSetListener index ) {
+        indexes.add(index);
+    }
+
+    /**
+     * Stop passing changes to the supplied index.
+     *
+     * @param index the index; may not be null
+     * @return true if there are no more indexes using this queue, or false otherwise
+     */
+    boolean remove( ChangeSetListener index ) {
+        indexes.remove(index);
+        return indexes.isEmpty();
+    }
+
+    @Override
+    public void notify( ChangeSet changeSet ) {
+        if (!workspaceName.equals(changeSet.getWorkspaceName()) || changeSet.isEmpty()) return;
+        synchronized (this) {
+            if (shutdown) return;
+            queue.add(changeSet);
+            ++enqueued;
+            if (!draining) {
+                draining = true;
+                indexer.execute(this::drain);
+            }
+        }
+        if (statistics != null) statistics.increment(ValueMetric.INDEX_UPDATE_QUEUE_SIZE);
+    }
+
+    private void drain() {
+        while (true) {
+            List<ChangeSet> batch = new ArrayList<>(batchSize);
+            synchronized (this) {
+                while (batch.size() < batchSize && !queue.isEmpty()) {
+                    batch.add(queue.poll());
+                }
+                if (batch.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+            }
+            ChangeSet changes = CoalescedChanges.coalesce(batch);
+            for (ChangeSetListener index : indexes) {
+                try {
+                    index.notify(changes);
+                } catch (RuntimeException e) {
+                    logger.error(e, "Error applying {0} queued change sets in workspace '{1}' to index: {2}", batch.size(),
+                                 workspaceName, index);
+                }
+            }
+            synchronized (this) {
+                applied += batch.size();
+                notifyAll();
+            }
+            if (statistics != null) statistics.increment(ValueMetric.INDEX_UPDATE_QUEUE_SIZE, -batch.size());
+        }
+    }
+
+    /**
+     * Get the number of change sets that have been saved but not yet applied to the indexes.
+     *
+     * @return the number of change sets; never negative
+     */
+    synchronized long lag() {
+        return enqueued - applied;
+    }
+
+    /**
+     * Block until all of the change sets that were enqueued before this method is called have been applied to the indexes.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout; may not be null
+     * @return true if the changes have been applied, or false if the timeout elapsed first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized boolean await( long timeout,
+                                TimeUnit unit ) throws InterruptedException {
+        long target = enqueued;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (applied < target) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting changes, and wait for the queued changes to be applied before stopping the background thread.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        indexer.shutdown();
+        try {
+            if (!indexer.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Stopped applying the {0} queued change sets in workspace '{1}' to the indexes", lag(), workspaceName);
+                indexer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            indexer.shutdownNow();
+        }
+    }
+}
@@ -18,8 +18,10 @@ package org.modeshape.jcr.spi.index.provider;
 
 import java.util.Set;
 import javax.jcr.PropertyType;
+import javax.jcr.query.qom.ChildNode;
 import javax.jcr.query.qom.ChildNodeJoinCondition;
 import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.DescendantNode;
 import javax.jcr.query.qom.DescendantNodeJoinCondition;
 import javax.jcr.query.qom.DynamicOperand;
 import javax.jcr.query.qom.EquiJoinCondition;
@@ -158,6 +160,12 @@ public class IndexUsage {
         if (constraint instanceof FullTextSearch) {
             return applies((FullTextSearch)constraint);
         }
+        if (constraint instanceof DescendantNode) {
+            return indexAppliesTo((DescendantNode)constraint);
+        }
+        if (constraint instanceof ChildNode) {
+            return indexAppliesTo((ChildNode)constraint);
+        }
         return false;
     }
 
@@ -195,6 +203,16 @@ public class IndexUsage {
         return applies(constraint.getOperand2());
     }
 
+    protected boolean indexAppliesTo( DescendantNode constraint ) {
+        // By default indexes can't really do anything with this ...
+        return false;
+    }
+
+    protected boolean indexAppliesTo( ChildNode constraint ) {
+        // By default indexes can't really do anything with this ...
+        return false;
+    }
+
     protected boolean indexAppliesTo( PropertyExistence constraint ) {
         // The selected node type must match or be a subtype of the indexed node type, and
         // one of the indexed columns must match the property ...
@@ -91,4 +91,20 @@ public interface ProvidedIndex<T> extends Filter, Costable, Reindexable, Lifecyc
      * @return the index name; never null
      */
     String getName();
+
+    /**
+     * Determine whether this index can consume the text of binary values from a {@link java.io.Reader}. If so, the values of
+     * binary properties passed to the {@code add} and {@code remove} methods of full text indexes may be readers of the
+     * extracted text, so that the text of large documents never has to be held in memory. The readers must be consumed before
+     * those methods return, and are closed by the caller.
+     * <p>
+     * By default, indexes receive the extracted text as strings.
+     * </p>
+     *
+     * @return {@code true} if this index accepts readers of extracted text, or {@code false} otherwise
+     * @since 5.5
+     */
+    default boolean supportsTextReaders() {
+        return false;
+    }
 }
@@ -0,0 +1,40 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.spi.index.provider;
+
+import java.util.Map;
+import org.modeshape.jcr.value.Path;
+
+/**
+ * Interface which can be implemented by an index of node paths that is able to change the paths of all of the descendants of
+ * a node. When a node is moved, renamed or reordered amongst its same-name-siblings, the repository only reports the change
+ * of that node, even though the paths of all of its descendants change as well.
+ *
+ * @since 5.5
+ */
+public interface Relocatable {
+
+    /**
+     * Change the indexed paths of all of the descendants of the nodes with the supplied old paths, so that they are below the
+     * corresponding new paths. The paths of the nodes themselves are not changed. All of the nodes are relocated at once, so
+     * that nodes can exchange their paths.
+     *
+     * @param newPathsByOldPath the new path of each node whose path changed, keyed by the node's old path; never null
+     * @param propertyName the name of the property whose values are the paths; never null
+     */
+    void relocateDescendants( Map<Path, Path> newPathsByOldPath,
+                              String propertyName );
+}
@@ -0,0 +1,185 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.text;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.api.text.TextExtractor;
+
+/**
+ * A {@link org.modeshape.jcr.api.text.TextExtractor.Output} implementation which keeps the incoming text in memory until it
+ * exceeds a limit, and then appends it and any further text to a temporary file, so that the text of large documents is never
+ * held in memory. The texts are separated by the configured separator, like in {@link TextExtractorOutput}.
+ * <p>
+ * Once all text has been recorded, the text can be read with {@link #getReader()}, and the output must be {@link #close()
+ * closed} to remove the temporary file.
+ * </p>
+ *
+ * @since 5.5
+ */
+@NotThreadSafe
+public final class SpooledTextExtractorOutput implements TextExtractor.Output, AutoCloseable {
+
+    /**
+     * The default maximum number of characters kept in memory is 64K.
+     */
+    public static final int DEFAULT_MAXIMUM_CHARACTERS_IN_MEMORY = 1 << 16;
+
+    private static final String DEFAULT_SEPARATOR = " ";
+
+    private final String separator;
+    private final int maximumCharactersInMemory;
+    private final StringBuilder buffer = new StringBuilder();
+    private File file;
+    private Writer fileWriter;
+    private long length;
+    private boolean hasText;
+
+    public SpooledTextExtractorOutput() {
+        this(DEFAULT_SEPARATOR, DEFAULT_MAXIMUM_CHARACTERS_IN_MEMORY);
+    }
+
+    public SpooledTextExtractorOutput( String separator,
+                                       int maximumCharactersInMemory ) {
+        this.separator = separator;
+        this.maximumCharactersInMemory = maximumCharactersInMemory;
+    }
+
+    @Override
+    public void recordText( String text ) {
+        if (text.isEmpty()) {
+            return;
+        }
+        try {
+            startText();
+            appendText(text.toCharArray(), 0, text.length());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Writer writer() {
+        return new Writer() {
+            private boolean started;
+
+            @SuppressWarnings( "synthetic-access" )
+            @Override
+            public void write( char[] chars,
+                               int offset,
+                               int length ) throws IOException {
+                if (length == 0) {
+                    return;
+                }
+                if (!started) {
+                    // everything written to this writer is a single text ...
+                    startText();
+                    started = true;
+                }
+                appendText(chars, offset, length);
+            }
+
+            @Override
+            public void flush() {
+                // the text is flushed when it is read
+            }
+
+            @Override
+            public void close() {
+                // the text is closed when it is read
+            }
+        };
+    }
+
+    /**
+     * Determine whether any of the recorded text contains characters other than whitespace.
+     *
+     * @return true if there is text that is not blank, or false otherwise
+     */
+    public boolean hasText() {
+        return hasText;
+    }
+
+    /**
+     * Open a reader for all of the recorded text. No more text should be recorded after this method is called.
+     *
+     * @return the reader; never null
+     * @throws IOException if the temporary file cannot be read
+     */
+    public Reader getReader() throws IOException {
+        if (file == null) {
+            return new StringReader(buffer.toString());
+        }
+        fileWriter.flush();
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            try {
+                fileWriter.close();
+            } finally {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+
+    private void startText() throws IOException {
+        if (length > 0) {
+            appendText(separator.toCharArray(), 0, separator.length());
+        }
+    }
+
+    private void appendText( char[] chars,
+                             int offset,
+                             int length ) throws IOException {
+        if (!hasText) {
+            for (int i = offset; i != offset + length; ++i) {
+                if (!Character.isWhitespace(chars[i])) {
+                    hasText = true;
+                    break;
+                }
+            }
+        }
+        this.length += length;
+        if (file == null && buffer.length() + length > maximumCharactersInMemory) {
+            // the text is too large to keep in memory, so move it to a file ...
+            file = File.createTempFile("modeshape-text-", ".txt");
+            fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            fileWriter.append(buffer);
+            buffer.setLength(0);
+        }
+        if (file != null) {
+            fileWriter.write(chars, offset, length);
+        } else {
+            buffer.append(chars, offset, length);
+        }
+    }
+}
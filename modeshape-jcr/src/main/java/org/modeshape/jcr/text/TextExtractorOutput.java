@@ -16,6 +16,7 @@
 
 package org.modeshape.jcr.text;
 
+import java.io.Writer;
 import org.modeshape.jcr.api.text.TextExtractor;
 
 
@@ -48,6 +49,40 @@ public final class TextExtractorOutput implements TextExtractor.Output {
         buffer.append(text);
     }
 
+    @Override
+    public Writer writer() {
+        return new Writer() {
+            private boolean started;
+
+            @Override
+            public void write( char[] chars,
+                               int offset,
+                               int length ) {
+                if (length == 0) {
+                    return;
+                }
+                if (!started) {
+                    // everything written to this writer is a single text ...
+                    if (buffer.length() > 0) {
+                        buffer.append(separator);
+                    }
+                    started = true;
+                }
+                buffer.append(chars, offset, length);
+            }
+
+            @Override
+            public void flush() {
+                // nothing to flush
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+    }
+
     public String getText() {
         return buffer.toString();
     }
@@ -22,9 +22,11 @@ import java.text.DecimalFormat;
 import javax.jcr.RepositoryException;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.common.util.SelfClosingInputStream;
+import org.modeshape.jcr.api.BoundedInputStream;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.ValueComparators;
@@ -65,15 +67,18 @@ public abstract class AbstractBinary implements BinaryValue {
         InputStream stream = null;
         Exception error = null;
         try {
-            stream = getStream();
-            // Read/skip the next 'position' bytes ...
-            long skip = position;
-            while (skip > 0) {
-                long skipped = stream.skip(skip);
-                if (skipped <= 0) return -1;
-                skip -= skipped;
+            // Read only the bytes starting at 'position' ...
+            stream = getStream(position, b.length);
+            // streams that are composed of several parts may return fewer bytes than requested, so fill the array ...
+            int total = 0;
+            while (total < b.length) {
+                int read = stream.read(b, total, b.length - total);
+                if (read == -1) {
+                    break;
+                }
+                total += read;
             }
-            return stream.read(b);
+            return total == 0 && b.length > 0 ? -1 : total;
         } catch (RepositoryException e) {
             error = e;
             throw e;
@@ -171,5 +176,39 @@ public abstract class AbstractBinary implements BinaryValue {
         }
     }
 
+    @Override
+    public InputStream getStream( long offset,
+                                  long length ) throws RepositoryException {
+        CheckArg.isNonNegative(offset, "offset");
+        CheckArg.isNonNegative(length, "length");
+        try {
+            return new SelfClosingInputStream(internalStream(offset, length));
+        } catch (RepositoryException re) {
+            throw re;
+        } catch (Exception e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     protected abstract InputStream internalStream() throws Exception;
+
+    /**
+     * Get a stream of part of the content. By default the content before the offset is skipped, so subclasses that can read
+     * the content starting at the offset should override this method.
+     *
+     * @param offset the position of the first byte that is to be read; never negative
+     * @param length the maximum number of bytes that are to be read; never negative
+     * @return the stream; never null
+     * @throws Exception if there is a problem obtaining the stream
+     */
+    protected InputStream internalStream( long offset,
+                                          long length ) throws Exception {
+        InputStream stream = internalStream();
+        try {
+            return BoundedInputStream.skipAndBound(stream, offset, length);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
 }
@@ -15,8 +15,13 @@
  */
 package org.modeshape.jcr.value.binary;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -24,6 +29,10 @@ import javax.jcr.RepositoryException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.common.util.SecureHash.HashingInputStream;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.TextExtractors;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
@@ -55,6 +64,16 @@ public abstract class AbstractBinaryStore implements BinaryStore {
     private static final int SMALL_BUFFER_SIZE = 1 << 12; // 4K
     private static final int TINY_BUFFER_SIZE = 1 << 11; // 2K
 
+    /**
+     * The number of bytes at the beginning of a binary value that are used to detect its MIME type while it is stored.
+     */
+    protected static final int MIME_TYPE_HEADER_SIZE = 1 << 14; // 16K
+
+    /**
+     * The buffers used to read content, which are reused by each thread so that storing a value does not allocate one.
+     */
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[MEDIUM_BUFFER_SIZE]);
+
     protected final Logger logger = Logger.getLogger(getClass());
     private final AtomicLong minBinarySizeInBytes = new AtomicLong(DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES);
 
@@ -101,6 +120,7 @@ public abstract class AbstractBinaryStore implements BinaryStore {
     public void setTextExtractors( TextExtractors textExtractors ) {
         CheckArg.isNotNull(textExtractors, "textExtractors");
         this.extractors = textExtractors;
+        textExtractors.resumePendingExtractions(this, new TextExtractorContext(detector()));
     }
 
     @Override
@@ -130,18 +150,43 @@ public abstract class AbstractBinaryStore implements BinaryStore {
         }
 
         // there isn't any text available, so wait for a job to finish and then return the result
+        return awaitExtraction(binary) ? getExtractedText(binary) : null;
+    }
+
+    @Override
+    public final Reader getTextReader( BinaryValue binary ) throws BinaryStoreException {
+        // try and locate an already extracted text from the store
+        if (binary instanceof StoredBinaryValue) {
+            Reader extractedText = getExtractedTextReader(binary);
+            if (extractedText != null) {
+                return extractedText;
+            }
+        }
+
+        // there isn't extracted text stored, so try to extract text if extraction is enabled
+        if (extractors == null || !extractors.extractionEnabled()) {
+            return null;
+        }
+
+        if (binary instanceof InMemoryBinaryValue) {
+            // The extracted text will never be stored, so try directly using the text extractors ...
+            String text = extractors.extract((InMemoryBinaryValue)binary, new TextExtractorContext(detector()));
+            return text != null ? new StringReader(text) : null;
+        }
+
+        // there isn't any text available, so wait for a job to finish and then return the result
+        return awaitExtraction(binary) ? getExtractedTextReader(binary) : null;
+    }
+
+    private boolean awaitExtraction( BinaryValue binary ) throws BinaryStoreException {
         try {
-            CountDownLatch latch = extractors.getWorkerLatch(binary.getKey(), false);
+            CountDownLatch latch = extractors.getWorkerLatch(binary.getKey());
             if (latch == null) {
                 // There is no latch, so just compute the text here ...
                 latch = extractors.extract(this, binary, new TextExtractorContext(detector()));
             }
-            // There was a latch, so wait till the work is done ...
-            if (latch != null && latch.await(DEFAULT_LATCH_WAIT_IN_SECONDS, TimeUnit.SECONDS)) {
-                return getExtractedText(binary);
-            }
-            // Stopped waiting ...
-            return null;
+            // There was a latch, so wait till the work is done (or stop waiting) ...
+            return latch != null && latch.await(DEFAULT_LATCH_WAIT_IN_SECONDS, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             throw new BinaryStoreException(e);
         }
@@ -159,7 +204,8 @@ public abstract class AbstractBinaryStore implements BinaryStore {
         if (binary instanceof StoredBinaryValue) {
             String storedMimeType = getStoredMimeType(binary);
             if (!StringUtil.isBlank(storedMimeType)) {
-                return storedMimeType;
+                // the stored MIME type was usually detected while the value was stored, so only the name is still relevant ...
+                return detector().refineMimeType(name, storedMimeType);
             }
         }
         
@@ -228,6 +274,42 @@ public abstract class AbstractBinaryStore implements BinaryStore {
      */
     public abstract String getExtractedText( BinaryValue source ) throws BinaryStoreException;
 
+    /**
+     * Stores the extracted text of a binary value into this store, reading the text from the supplied reader. Stores that can
+     * write the text incrementally should override this method so that the text of large documents is never held in memory; by
+     * default, the whole text is read and then stored with {@link #storeExtractedText(BinaryValue, String)}.
+     *
+     * @param source a {@code non-null} {@link BinaryValue} instance from which the text was extracted
+     * @param extractedText a {@code non-null} reader of the extracted text, which is always closed by this method
+     * @throws BinaryStoreException if the operation fails or if the extracted text cannot be stored for the given binary value
+     * (regardless of the reason)
+     * @since 5.5
+     */
+    public void storeExtractedText( BinaryValue source,
+                                    Reader extractedText ) throws BinaryStoreException {
+        try {
+            storeExtractedText(source, IoUtil.read(extractedText));
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    /**
+     * Returns a reader for the extracted text of a binary value, or {@code null} if such text hasn't been stored previously (but
+     * the binary value can be found in the store). Stores that can read the text incrementally should override this method; by
+     * default, the reader returns the text obtained with {@link #getExtractedText(BinaryValue)}.
+     *
+     * @param source a {@code non-null} {@link BinaryValue} instance from which the text was extracted
+     * @return a reader for the extracted text, or {@code null} if such text hasn't been stored in this store previously; the
+     *         caller is responsible for closing the reader
+     * @throws BinaryStoreException if the binary value cannot be found in the store.
+     * @since 5.5
+     */
+    public Reader getExtractedTextReader( BinaryValue source ) throws BinaryStoreException {
+        String extractedText = getExtractedText(source);
+        return extractedText != null ? new StringReader(extractedText) : null;
+    }
+
     /**
      * Get the text extractor that can be used to extract text by this store.
      *
@@ -246,6 +328,134 @@ public abstract class AbstractBinaryStore implements BinaryStore {
         return detector;
     }
 
+    /**
+     * Detect the MIME type of a binary value from the first bytes of its content, while the value is being stored.
+     *
+     * @param header the first bytes of the content; may not be null
+     * @param length the number of bytes at the beginning of {@code header} which belong to the content
+     * @return the MIME type, or null if it cannot be determined from the first bytes alone
+     * @see MimeTypeDetector#mimeTypeOfHeader(byte[], int)
+     */
+    protected final String detectMimeType( byte[] header,
+                                           int length ) {
+        if (detector == NullMimeTypeDetector.INSTANCE || length <= 0) {
+            return null;
+        }
+        try {
+            return detector.mimeTypeOfHeader(header, length);
+        } catch (RuntimeException e) {
+            logger.debug(e, "Unable to detect the MIME type from the first {0} bytes of a binary value", length);
+            return null;
+        }
+    }
+
+    /**
+     * Detect the MIME type of a binary value from the first bytes of a local copy of its content, while the value is being
+     * stored.
+     *
+     * @param stagedValue the local copy of the binary value, which is cheap to read; may not be null
+     * @return the MIME type, or null if it cannot be determined from the first bytes alone
+     */
+    protected final String detectMimeType( BinaryValue stagedValue ) {
+        if (detector == NullMimeTypeDetector.INSTANCE) {
+            return null;
+        }
+        byte[] header = new byte[(int)Math.min(MIME_TYPE_HEADER_SIZE, stagedValue.getSize())];
+        try {
+            return detectMimeType(header, stagedValue.read(header, 0));
+        } catch (IOException | RepositoryException e) {
+            logger.debug(e, "Unable to read the first bytes of binary value '{0}'", stagedValue.getKey());
+            return null;
+        }
+    }
+
+    /**
+     * Store the MIME type that was detected while a binary value was stored. Failures are only logged, since the MIME type
+     * can still be detected when it is first needed.
+     *
+     * @param binaryValue the binary value that was stored; may not be null
+     * @param mimeType the detected MIME type; may be null if the MIME type could not be detected
+     */
+    protected final void storeDetectedMimeType( BinaryValue binaryValue,
+                                                String mimeType ) {
+        if (StringUtil.isBlank(mimeType)) {
+            return;
+        }
+        try {
+            storeMimeType(binaryValue, mimeType);
+        } catch (BinaryStoreException e) {
+            logger.debug(e, "Unable to store the MIME type of binary value '{0}'", binaryValue.getKey());
+        }
+    }
+
+    /**
+     * Read the content of a binary value that is being stored, while computing its SHA-1 hash. Content that is smaller than the
+     * {@link #getMinimumBinarySizeInBytes() minimum binary size} is kept in memory, and larger content is written to the
+     * supplied sink. Either way, enough of the first bytes are kept to {@link #detectMimeType(byte[], int) detect} the MIME
+     * type of the content.
+     *
+     * @param stream the content; may not be null, and is always closed by this method
+     * @param sink the sink that larger content is written to; may not be null
+     * @return the content that was read; never null
+     * @throws IOException if there is a problem reading the content or writing it to the sink
+     * @throws BinaryStoreException if the sink is unable to store the content
+     * @throws NoSuchAlgorithmException if the SHA-1 algorithm is not available
+     */
+    protected final ReadContent readContent( InputStream stream,
+                                             ContentSink sink ) throws IOException, BinaryStoreException, NoSuchAlgorithmException {
+        // Read the content while computing the SHA-1 hash, but buffer only as much as can be kept in memory ...
+        HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
+        long threshold = getMinimumBinarySizeInBytes();
+        // Also read enough of the content to detect its MIME type ...
+        long headSize = Math.max(threshold, MIME_TYPE_HEADER_SIZE);
+        byte[] buffer = BUFFERS.get();
+        byte[] head = buffer;
+        int headLength = 0;
+        long numberOfBytes = 0L;
+        try {
+            int read = 0;
+            while (headLength < headSize && (read = hashingStream.read(head, headLength, head.length - headLength)) != -1) {
+                headLength += read;
+                if (headLength == head.length && headLength < threshold) {
+                    // The content might still be small enough to keep in memory, so grow the buffer ...
+                    head = Arrays.copyOf(head, (int)Math.min(threshold, Math.min(Integer.MAX_VALUE - 8L, 2L * head.length)));
+                }
+            }
+            numberOfBytes = headLength;
+            if (headLength >= threshold) {
+                // The content is too large to keep in memory ...
+                sink.write(head, headLength);
+                while ((read = hashingStream.read(buffer)) != -1) {
+                    sink.write(buffer, read);
+                    numberOfBytes += read;
+                }
+            }
+        } finally {
+            hashingStream.close();
+        }
+        return new ReadContent(new BinaryKey(hashingStream.getHash()), head, headLength, numberOfBytes, headLength < threshold);
+    }
+
+    /**
+     * Remove the files in a staging directory that were last modified before the supplied time. Staging files are normally
+     * removed as soon as their content is stored, so these were abandoned when a process was stopped.
+     *
+     * @param stagingDirectory the directory with the staging files; may not be null
+     * @param oldestTimestamp the time before which the files were last modified, in milliseconds
+     */
+    protected final void removeStagingFilesOlderThan( File stagingDirectory,
+                                                      long oldestTimestamp ) {
+        File[] files = stagingDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < oldestTimestamp) {
+                file.delete();
+            }
+        }
+    }
+
     @Override
     public BinaryValue storeValue( InputStream stream, String hint, boolean markAsUnused ) throws BinaryStoreException {
         return storeValue(stream, markAsUnused);
@@ -260,4 +470,54 @@ public abstract class AbstractBinaryStore implements BinaryStore {
     public void shutdown() {
         //does nothing by default
     }
+
+    /**
+     * The destination of content that is too large to keep in memory while it is {@link #readContent read}.
+     */
+    @FunctionalInterface
+    protected interface ContentSink {
+        /**
+         * Write the next bytes of the content.
+         *
+         * @param bytes the buffer with the bytes; may not be null
+         * @param length the number of bytes at the beginning of the buffer which are to be written
+         * @throws IOException if the bytes cannot be written
+         * @throws BinaryStoreException if the bytes cannot be stored
+         */
+        void write( byte[] bytes,
+                    int length ) throws IOException, BinaryStoreException;
+    }
+
+    /**
+     * The content of a binary value that was {@link #readContent read} while it is stored.
+     */
+    protected static final class ReadContent {
+        protected final BinaryKey key;
+        protected final byte[] head;
+        protected final int headLength;
+        protected final long size;
+        protected final boolean inMemory;
+
+        protected ReadContent( BinaryKey key,
+                               byte[] head,
+                               int headLength,
+                               long size,
+                               boolean inMemory ) {
+            this.key = key;
+            this.head = head;
+            this.headLength = headLength;
+            this.size = size;
+            this.inMemory = inMemory;
+        }
+
+        /**
+         * Get a copy of the content, which is only available when the content is kept in memory.
+         *
+         * @return the bytes of the content; never null
+         */
+        protected byte[] getBytes() {
+            assert inMemory;
+            return Arrays.copyOf(head, headLength);
+        }
+    }
 }
@@ -17,10 +17,14 @@ package org.modeshape.jcr.value.binary;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.RepositoryException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.jcr.TextExtractors;
+import org.modeshape.jcr.api.BoundedInputStream;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
@@ -109,6 +113,54 @@ public interface BinaryStore {
      */
     InputStream getInputStream( BinaryKey key ) throws BinaryStoreException;
 
+    /**
+     * Get an {@link InputStream} to part of the binary content with the supplied key, starting at the supplied offset and
+     * containing at most the supplied number of bytes. Stores should read the content starting at the offset where they are
+     * able to, rather than reading and discarding the content before the offset.
+     * <p/>
+     * <b>Caution:</b> always consume the {@link InputStream} using a {@code try-with-resources} idiom to ensure it's properly closed.
+     * <p/>
+     * By default, this method skips the content before the offset in the {@link #getInputStream(BinaryKey) stream} of the whole
+     * content.
+     *
+     * @param key the key to the binary content; never null
+     * @param offset the position of the first byte that is to be read; never negative
+     * @param length the maximum number of bytes that are to be read; never negative
+     * @return the input stream through which the content can be read, {@code never null}
+     * @throws BinaryStoreException if there is a problem reading the content from the store or if a valid, non-null
+     *         {@link InputStream} cannot be returned for the given key.
+     * @see #getInputStream(BinaryKey)
+     */
+    default InputStream getInputStream( BinaryKey key,
+                                        long offset,
+                                        long length ) throws BinaryStoreException {
+        InputStream stream = getInputStream(key);
+        try {
+            return BoundedInputStream.skipAndBound(stream, offset, length);
+        } catch (IOException e) {
+            try {
+                stream.close();
+            } catch (IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    /**
+     * Get the path of the local file that holds exactly the binary content with the supplied key, so that the content can be
+     * transferred without being copied through an {@link InputStream}. The file must only be read.
+     * <p/>
+     * By default, this method returns null.
+     *
+     * @param key the key to the binary content; never null
+     * @return the path of the file, or null if the store does not keep the content in a local file
+     * @throws BinaryStoreException if there is a problem finding the content in the store
+     */
+    default Path getLocalPath( BinaryKey key ) throws BinaryStoreException {
+        return null;
+    }
+
     /**
      * Searches for a binary which has the given key in this store. The store should return {@code true} as long the binary
      * is still present physically, regardless of any "trash" semantics.
@@ -147,6 +199,24 @@ public interface BinaryStore {
     void removeValuesUnusedLongerThan( long minimumAge,
                                        TimeUnit unit ) throws BinaryStoreException;
 
+    /**
+     * Remove binary values that have been {@link #markAsUnused(Iterable) unused} for at least the specified amount of time, just
+     * like {@link #removeValuesUnusedLongerThan(long, TimeUnit)}, and report how much storage was reclaimed by doing so. Stores
+     * that cannot tell how large the removed values were return a negative number.
+     *
+     * @param minimumAge the minimum time that a binary value has been {@link #markAsUnused(Iterable) unused} before it can be
+     *        removed; must be non-negative
+     * @param unit the time unit for the minimum age; may not be null
+     * @return the number of bytes of the values that were removed, or a negative number if this store cannot tell
+     * @throws BinaryStoreException if there is a problem removing the unused values
+     * @since 5.5
+     */
+    default long reclaimValuesUnusedLongerThan( long minimumAge,
+                                                TimeUnit unit ) throws BinaryStoreException {
+        removeValuesUnusedLongerThan(minimumAge, unit);
+        return -1L;
+    }
+
     /**
      * Get the text that can be extracted from this binary content. If text extraction isn't enabled (either full text search is
      * not enabled or there aren't any configured extractors), this returns {@code null}
@@ -167,6 +237,25 @@ public interface BinaryStore {
      */
     String getText( BinaryValue binary ) throws BinaryStoreException;
 
+    /**
+     * Get a reader for the text that can be extracted from the supplied binary content, like {@link #getText(BinaryValue)}
+     * does, but without requiring the whole text to be held in memory when the store can read the stored text incrementally.
+     * The caller is responsible for closing the reader.
+     * <p>
+     * By default, this method returns a reader for the text returned by {@link #getText(BinaryValue)}.
+     * </p>
+     *
+     * @param binary the binary content; may not be null
+     * @return the reader for the extracted text, or null if none could be extracted
+     * @throws BinaryStoreException if the binary content could not be accessed or if the given binary value cannot be found
+     *         within the store.
+     * @since 5.5
+     */
+    default Reader getTextReader( BinaryValue binary ) throws BinaryStoreException {
+        String text = getText(binary);
+        return text != null ? new StringReader(text) : null;
+    }
+
     /**
      * Get the MIME type for this binary value, never {@code null}.
      * <p>
@@ -0,0 +1,515 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.RepositoryException;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.jcr.TextExtractors;
+import org.modeshape.jcr.api.BoundedInputStream;
+import org.modeshape.jcr.mimetype.MimeTypeDetector;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * A {@link BinaryStore} that keeps copies of recently read binary values in a directory on the local file system, in front of
+ * another store whose values are expensive to read (such as a database or a remote service). Everything other than reading
+ * content is passed to the other store.
+ * <p>
+ * The first read of the whole content of a value that is not cached downloads the value into the cache, and every thread that
+ * reads the same value while it is downloaded waits for that one download rather than starting another. Reads of a part of a
+ * value that is not cached are served by the other store, while the whole value is downloaded in the background. When the
+ * cached values use more than the configured size, the least recently read values are removed from the cache.
+ * </p>
+ * <p>
+ * Binary values never change, so cached values are only removed when they are evicted or when they are marked as unused.
+ * </p>
+ *
+ * @since 5.5
+ */
+@ThreadSafe
+public class CachingBinaryStore implements BinaryStore {
+
+    /**
+     * The default maximum size (in bytes) of the cached values is 1073741824 bytes, or 1GB.
+     */
+    public static final long DEFAULT_MAXIMUM_CACHE_SIZE_IN_BYTES = 1L << 30;
+
+    private static final String TEMP_FILE_PREFIX = "ms-binary-cache";
+    private static final String TEMP_FILE_SUFFIX = "download";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The maximum number of values that are downloaded into the cache at the same time.
+     */
+    private static final int DOWNLOAD_THREAD_COUNT = 4;
+
+    protected final Logger logger = Logger.getLogger(getClass());
+
+    private final BinaryStore delegate;
+    private final File directory;
+    private final long maximumSize;
+    /**
+     * The sizes of the cached values, in the order in which they were least recently read. Guarded by itself.
+     */
+    private final LinkedHashMap<BinaryKey, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<BinaryKey, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+    private long size = 0L;
+    private ExecutorService downloader;
+
+    /**
+     * Create a store that caches the values of the supplied store.
+     *
+     * @param delegate the store whose values are cached; may not be null
+     * @param directory the directory where the cached values are kept; may not be null
+     * @param maximumSize the maximum total size of the cached values, in bytes; must be positive
+     */
+    public CachingBinaryStore( BinaryStore delegate,
+                               File directory,
+                               long maximumSize ) {
+        CheckArg.isNotNull(delegate, "delegate");
+        CheckArg.isNotNull(directory, "directory");
+        CheckArg.isPositive(maximumSize, "maximumSize");
+        this.delegate = delegate;
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the store whose values are cached.
+     *
+     * @return the store; never null
+     */
+    public BinaryStore getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the directory where the cached values are kept.
+     *
+     * @return the directory; never null
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the total size of the values that are currently cached.
+     *
+     * @return the size in bytes
+     */
+    public long getCachedSizeInBytes() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /**
+     * Determine whether the content of the value with the supplied key is currently cached.
+     *
+     * @param key the binary key; may not be null
+     * @return true if the content is cached, or false otherwise
+     */
+    public boolean isCached( BinaryKey key ) {
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+        directory.mkdirs();
+        // Keep the values cached before a restart, oldest first so that they're the first to be evicted ...
+        List<File> files = new ArrayList<>();
+        collectFiles(directory, files);
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().startsWith(TEMP_FILE_PREFIX)) {
+                // An incomplete download ...
+                file.delete();
+            } else {
+                added(new BinaryKey(file.getName()), file.length());
+            }
+        }
+    }
+
+    private static void collectFiles( File parent,
+                                      List<File> files ) {
+        File[] children = parent.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            if (downloader != null) {
+                downloader.shutdownNow();
+                downloader = null;
+            }
+        }
+        delegate.shutdown();
+    }
+
+    @Override
+    public long getMinimumBinarySizeInBytes() {
+        return delegate.getMinimumBinarySizeInBytes();
+    }
+
+    @Override
+    public void setMinimumBinarySizeInBytes( long minSizeInBytes ) {
+        delegate.setMinimumBinarySizeInBytes(minSizeInBytes);
+    }
+
+    @Override
+    public void setTextExtractors( TextExtractors textExtractors ) {
+        delegate.setTextExtractors(textExtractors);
+    }
+
+    @Override
+    public void setMimeTypeDetector( MimeTypeDetector mimeTypeDetector ) {
+        delegate.setMimeTypeDetector(mimeTypeDetector);
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   boolean markAsUnused ) throws BinaryStoreException {
+        return readThroughCache(delegate.storeValue(stream, markAsUnused));
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   String hint,
+                                   boolean markAsUnused ) throws BinaryStoreException {
+        return readThroughCache(delegate.storeValue(stream, hint, markAsUnused));
+    }
+
+    private BinaryValue readThroughCache( BinaryValue value ) {
+        // The values of the other store would otherwise read their content directly from that store ...
+        if (value instanceof StoredBinaryValue) {
+            return new StoredBinaryValue(this, value.getKey(), value.getSize());
+        }
+        return value;
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        InputStream stream = openCached(key, 0L, -1L);
+        if (stream != null) {
+            return stream;
+        }
+        File file = waitFor(download(key));
+        if (file != null) {
+            stream = open(file, 0L, -1L);
+            if (stream != null) {
+                return stream;
+            }
+        }
+        // The value is too large to be cached, couldn't be cached, or was evicted already ...
+        return delegate.getInputStream(key);
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long offset,
+                                       long length ) throws BinaryStoreException {
+        CheckArg.isNonNegative(offset, "offset");
+        CheckArg.isNonNegative(length, "length");
+        InputStream stream = openCached(key, offset, length);
+        if (stream != null) {
+            return stream;
+        }
+        // Don't make the caller wait for the whole value, but cache it for the reads that are likely to follow ...
+        download(key);
+        return delegate.getInputStream(key, offset, length);
+    }
+
+    @Override
+    public Path getLocalPath( BinaryKey key ) throws BinaryStoreException {
+        // A cached file may be evicted at any time, so only the files of the other store can be read directly ...
+        return delegate.getLocalPath(key);
+    }
+
+    @Override
+    public boolean hasBinary( BinaryKey key ) {
+        return delegate.hasBinary(key);
+    }
+
+    @Override
+    public void markAsUsed( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        delegate.markAsUsed(keys);
+    }
+
+    @Override
+    public void markAsUnused( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        delegate.markAsUnused(keys);
+        // The other store may remove these values at any time, so stop serving them from the cache ...
+        for (BinaryKey key : keys) {
+            evict(key);
+        }
+    }
+
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        delegate.removeValuesUnusedLongerThan(minimumAge, unit);
+    }
+
+    @Override
+    public long reclaimValuesUnusedLongerThan( long minimumAge,
+                                               TimeUnit unit ) throws BinaryStoreException {
+        return delegate.reclaimValuesUnusedLongerThan(minimumAge, unit);
+    }
+
+    @Override
+    public String getText( BinaryValue binary ) throws BinaryStoreException {
+        return delegate.getText(binary);
+    }
+
+    @Override
+    public Reader getTextReader( BinaryValue binary ) throws BinaryStoreException {
+        return delegate.getTextReader(binary);
+    }
+
+    @Override
+    public String getMimeType( BinaryValue binary,
+                               String name ) throws IOException, RepositoryException {
+        return delegate.getMimeType(binary, name);
+    }
+
+    @Override
+    public Iterable<BinaryKey> getAllBinaryKeys() throws BinaryStoreException {
+        return delegate.getAllBinaryKeys();
+    }
+
+    private InputStream openCached( BinaryKey key,
+                                    long offset,
+                                    long length ) {
+        synchronized (entries) {
+            // Record the read, even if the value is evicted before the file is opened ...
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+        return open(fileFor(key), offset, length);
+    }
+
+    private InputStream open( File file,
+                              long offset,
+                              long length ) {
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            if (length < 0L) {
+                return stream;
+            }
+            stream.getChannel().position(offset);
+            return new BoundedInputStream(stream, length);
+        } catch (FileNotFoundException e) {
+            // The value was evicted since it was looked up. An open file can still be read after it is deleted, though ...
+            return null;
+        } catch (IOException e) {
+            logger.debug(e, "Unable to read the cached binary value in '{0}'", file);
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // the stream is no longer used
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Download the value with the supplied key into the cache, unless it is being downloaded already.
+     *
+     * @param key the binary key; may not be null
+     * @return the future file of the downloaded value, which is null if the value is too large to be cached; never null
+     */
+    private CompletableFuture<File> download( final BinaryKey key ) {
+        CompletableFuture<File> download = downloads.get(key);
+        if (download == null) {
+            CompletableFuture<File> newDownload = new CompletableFuture<>();
+            download = downloads.putIfAbsent(key, newDownload);
+            if (download == null) {
+                download = newDownload;
+                try {
+                    downloader().execute(() -> {
+                        try {
+                            newDownload.complete(downloadNow(key));
+                        } catch (Throwable t) {
+                            newDownload.completeExceptionally(t);
+                        } finally {
+                            downloads.remove(key, newDownload);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // the store is being shut down ...
+                    downloads.remove(key, newDownload);
+                    newDownload.completeExceptionally(e);
+                }
+            }
+        }
+        return download;
+    }
+
+    private File downloadNow( BinaryKey key ) throws BinaryStoreException, IOException {
+        synchronized (entries) {
+            if (entries.containsKey(key)) {
+                // Another download of the value finished just before this one was started ...
+                return fileFor(key);
+            }
+        }
+        File temp = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, directory);
+        try {
+            long length = 0L;
+            try (InputStream input = delegate.getInputStream(key);
+                 OutputStream output = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = input.read(buffer)) != -1) {
+                    length += n;
+                    if (length > maximumSize) {
+                        return null;
+                    }
+                    output.write(buffer, 0, n);
+                }
+            }
+            File file = fileFor(key);
+            file.getParentFile().mkdirs();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            added(key, length);
+            return file;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private File waitFor( CompletableFuture<File> download ) throws BinaryStoreException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BinaryStoreException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BinaryStoreException) {
+                // The other store doesn't have the value ...
+                throw (BinaryStoreException)e.getCause();
+            }
+            // The value couldn't be written to the cache, so read it from the other store ...
+            logger.debug(e.getCause(), "Unable to cache a binary value in '{0}'", directory);
+            return null;
+        }
+    }
+
+    private synchronized ExecutorService downloader() {
+        if (downloader == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(DOWNLOAD_THREAD_COUNT, DOWNLOAD_THREAD_COUNT, 60L,
+                                                                 TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                                 new NamedThreadFactory("modeshape-binary-cache"));
+            executor.allowCoreThreadTimeOut(true);
+            downloader = executor;
+        }
+        return downloader;
+    }
+
+    private void added( BinaryKey key,
+                        long length ) {
+        List<BinaryKey> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Long previous = entries.put(key, length);
+            size += length - (previous != null ? previous : 0L);
+            Iterator<Map.Entry<BinaryKey, Long>> iterator = entries.entrySet().iterator();
+            while (size > maximumSize && iterator.hasNext()) {
+                Map.Entry<BinaryKey, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                size -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (BinaryKey evictedKey : evicted) {
+            deleteFile(evictedKey);
+        }
+    }
+
+    private void evict( BinaryKey key ) {
+        synchronized (entries) {
+            Long length = entries.remove(key);
+            if (length == null) {
+                return;
+            }
+            size -= length;
+        }
+        deleteFile(key);
+    }
+
+    private void deleteFile( BinaryKey key ) {
+        File file = fileFor(key);
+        if (!file.delete() && file.exists()) {
+            logger.debug("Unable to remove the cached binary value '{0}'", file);
+        }
+    }
+
+    private File fileFor( BinaryKey key ) {
+        String sha1 = key.toString();
+        File first = new File(directory, sha1.substring(0, 2));
+        File second = new File(first, sha1.substring(2, 4));
+        File third = new File(second, sha1.substring(4, 6));
+        return new File(third, sha1);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingBinaryStore[" + delegate + " cached in " + directory + "]";
+    }
+}
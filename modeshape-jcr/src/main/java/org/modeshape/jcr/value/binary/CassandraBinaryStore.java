@@ -154,7 +154,9 @@ public class CassandraBinaryStore extends AbstractBinaryStore {
                 BoundStatement statement = new BoundStatement(preparedStatement);
                 session.execute(statement.bind(key.toString(), new Date(), buffer(stream)));
             }
-            return new StoredBinaryValue(this, key, temp.getSize());
+            StoredBinaryValue value = new StoredBinaryValue(this, key, temp.getSize());
+            storeDetectedMimeType(value, detectMimeType(temp));
+            return value;
         } catch (BinaryStoreException e) {
             throw e;
         } catch (Exception e) {
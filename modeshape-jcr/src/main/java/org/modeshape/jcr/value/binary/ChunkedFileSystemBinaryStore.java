@@ -0,0 +1,882 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * A {@link BinaryStore} that splits the content of binary values into content-defined chunks, and stores each distinct chunk
+ * only once (keyed by the SHA-1 hash of the chunk) in a directory on the file system. Each binary value is then stored as a
+ * small manifest listing its chunks, so values which differ only in a few places (such as successive versions of a large
+ * document) share most of their chunks, and storing such a value only writes the chunks that are not already stored.
+ * <p>
+ * Chunk boundaries are found with a rolling "gear" hash of the content, so that inserting or removing bytes only changes the
+ * chunks around the change. Chunks are between a quarter and four times the configured average chunk size.
+ * </p>
+ * <p>
+ * The number of manifests that reference each chunk is counted, and a chunk is removed as soon as the last manifest that
+ * references it is removed. The counts are rebuilt from the manifests when the store is first used, so the store must not be
+ * shared by several processes.
+ * </p>
+ *
+ * @since 5.5
+ */
+@ThreadSafe
+public class ChunkedFileSystemBinaryStore extends AbstractBinaryStore {
+
+    /**
+     * The default average size (in bytes) of chunks is 65536 bytes, or 64KB.
+     */
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE_IN_BYTES = 1 << 16;
+
+    protected static final String CHUNKS_DIRECTORY_NAME = "chunks";
+    protected static final String MANIFESTS_DIRECTORY_NAME = "manifests";
+    protected static final String UNUSED_DIRECTORY_NAME = "unused";
+    protected static final String STAGING_DIRECTORY_NAME = "staging";
+
+    private static final String EXTRACTED_TEXT_SUFFIX = "-extracted-text";
+    private static final String MIME_TYPE_SUFFIX = "-mime-type";
+    private static final String TEMP_FILE_PREFIX = "ms-chunked-binstore";
+    private static final String TEMP_FILE_SUFFIX = "staging";
+    private static final int MANIFEST_FORMAT_VERSION = 1;
+    private static final int SHA1_LENGTH = 20;
+    private static final int MINIMUM_AVERAGE_CHUNK_SIZE_IN_BYTES = 1 << 8;
+    private static final int MAXIMUM_AVERAGE_CHUNK_SIZE_IN_BYTES = 1 << 24;
+
+    /**
+     * The number of chunks that a stream reads ahead of the chunk being consumed.
+     */
+    private static final int PREFETCHED_CHUNK_COUNT = 4;
+
+    /**
+     * The random values that are rolled into the hash for each byte value. They must never change, since the chunk boundaries of
+     * new content must match those of the content already stored.
+     */
+    private static final long[] GEAR = gear(0x4d6f646553686170L);
+
+    private static final ConcurrentHashMap<String, ChunkedFileSystemBinaryStore> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * Get the chunked binary store for the supplied directory, creating it if required.
+     *
+     * @param directory the directory where the chunks and manifests are stored; may not be null
+     * @param averageChunkSize the average size of the chunks of new content, in bytes; must be a power of two between 256 bytes
+     *        and 16MB
+     * @return the store; never null
+     */
+    public static ChunkedFileSystemBinaryStore create( File directory,
+                                                       int averageChunkSize ) {
+        String key = directory.getAbsolutePath();
+        ChunkedFileSystemBinaryStore store = INSTANCES.get(key);
+        if (store == null) {
+            store = new ChunkedFileSystemBinaryStore(directory, averageChunkSize);
+            ChunkedFileSystemBinaryStore existing = INSTANCES.putIfAbsent(key, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        return store;
+    }
+
+    private static long[] gear( long seed ) {
+        Random random = new Random(seed);
+        long[] gear = new long[256];
+        for (int i = 0; i != gear.length; ++i) {
+            gear[i] = random.nextLong();
+        }
+        return gear;
+    }
+
+    private final File directory;
+    private final File chunks;
+    private final File manifests;
+    private final File unused;
+    private final File staging;
+    private final int minimumChunkSize;
+    private final int maximumChunkSize;
+    private final long boundaryMask;
+    private final NamedLocks chunkLocks = new NamedLocks();
+    private final NamedLocks manifestLocks = new NamedLocks();
+    private final ConcurrentHashMap<BinaryKey, Integer> chunkReferences = new ConcurrentHashMap<>();
+    private volatile boolean initialized = false;
+    private ExecutorService prefetcher;
+
+    protected ChunkedFileSystemBinaryStore( File directory ) {
+        this(directory, DEFAULT_AVERAGE_CHUNK_SIZE_IN_BYTES);
+    }
+
+    protected ChunkedFileSystemBinaryStore( File directory,
+                                            int averageChunkSize ) {
+        CheckArg.isNotNull(directory, "directory");
+        CheckArg.isPowerOfTwo(averageChunkSize, "averageChunkSize");
+        CheckArg.isGreaterThanOrEqualTo(averageChunkSize, MINIMUM_AVERAGE_CHUNK_SIZE_IN_BYTES, "averageChunkSize");
+        CheckArg.isLessThanOrEqualTo(averageChunkSize, MAXIMUM_AVERAGE_CHUNK_SIZE_IN_BYTES, "averageChunkSize");
+        this.directory = directory;
+        this.chunks = new File(directory, CHUNKS_DIRECTORY_NAME);
+        this.manifests = new File(directory, MANIFESTS_DIRECTORY_NAME);
+        this.unused = new File(directory, UNUSED_DIRECTORY_NAME);
+        this.staging = new File(directory, STAGING_DIRECTORY_NAME);
+        this.minimumChunkSize = averageChunkSize / 4;
+        this.maximumChunkSize = averageChunkSize * 4;
+        // Use the highest bits of the hash, which depend on the most bytes ...
+        int bits = Integer.numberOfTrailingZeros(averageChunkSize);
+        this.boundaryMask = ((1L << bits) - 1) << (Long.SIZE - bits);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   boolean markAsUnused ) throws BinaryStoreException {
+        initializeIfNeeded();
+        Chunker chunker = null;
+        boolean published = false;
+        try {
+            // Content that is too large to keep in memory is split into chunks, and the new chunks are stored ...
+            chunker = new Chunker();
+            ReadContent content = readContent(stream, chunker);
+            if (content.inMemory) {
+                // We read all of the content, which is small enough to just store in-memory ...
+                return new InMemoryBinaryValue(this, content.key, content.getBytes());
+            }
+            chunker.finish();
+            publishManifest(content.key, content.size, chunker.chunkKeys, chunker.chunkLengths);
+            published = true;
+            StoredBinaryValue value = new StoredBinaryValue(this, content.key, content.size);
+            storeDetectedMimeType(value, detectMimeType(content.head, content.headLength));
+            if (markAsUnused) {
+                markAsUnused(content.key);
+            }
+            return value;
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemFailureException(e);
+        } finally {
+            if (chunker != null && !published) {
+                // The chunks that were stored are not referenced by a manifest after all ...
+                for (BinaryKey chunkKey : chunker.chunkKeys) {
+                    releaseChunk(chunkKey);
+                }
+            }
+        }
+    }
+
+    private void publishManifest( BinaryKey key,
+                                  long size,
+                                  List<BinaryKey> chunkKeys,
+                                  List<Integer> chunkLengths ) throws BinaryStoreException, IOException {
+        File manifestFile = findFile(manifests, key);
+        Lock lock = manifestLocks.writeLock(key.toString());
+        try {
+            if (manifestFile.exists()) {
+                // The value is already stored, and its manifest already references the chunks ...
+                for (BinaryKey chunkKey : chunkKeys) {
+                    releaseChunk(chunkKey);
+                }
+                findFile(unused, key).delete();
+                return;
+            }
+            File tmpFile = createStagingFile();
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                    output.writeInt(MANIFEST_FORMAT_VERSION);
+                    output.writeLong(size);
+                    output.writeInt(chunkKeys.size());
+                    for (int i = 0; i != chunkKeys.size(); ++i) {
+                        output.write(chunkKeys.get(i).toBytes());
+                        output.writeInt(chunkLengths.get(i));
+                    }
+                }
+                moveIntoPlace(tmpFile, manifestFile, false);
+            } finally {
+                tmpFile.delete();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store the supplied chunk if it is not already stored, and count one more reference to it.
+     *
+     * @param key the SHA-1 of the chunk; may not be null
+     * @param content the buffer holding the chunk; may not be null
+     * @param length the number of bytes in the chunk
+     * @throws IOException if the chunk could not be written
+     */
+    private void acquireChunk( BinaryKey key,
+                               byte[] content,
+                               int length ) throws IOException {
+        Lock lock = chunkLocks.writeLock(key.toString());
+        try {
+            File chunkFile = findFile(chunks, key);
+            if (!chunkFile.exists()) {
+                File tmpFile = createStagingFile();
+                try {
+                    try (FileOutputStream output = new FileOutputStream(tmpFile)) {
+                        output.write(content, 0, length);
+                    }
+                    moveIntoPlace(tmpFile, chunkFile, false);
+                } finally {
+                    tmpFile.delete();
+                }
+            }
+            chunkReferences.merge(key, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Count one less reference to the supplied chunk, and remove the chunk if it is no longer referenced.
+     *
+     * @param key the SHA-1 of the chunk; may not be null
+     */
+    private void releaseChunk( BinaryKey key ) {
+        Lock lock = chunkLocks.writeLock(key.toString());
+        try {
+            if (chunkReferences.computeIfPresent(key, (chunkKey, count) -> count > 1 ? count - 1 : null) == null) {
+                File chunkFile = findFile(chunks, key);
+                if (chunkFile.exists() && !chunkFile.delete()) {
+                    logger.debug("Unable to remove the unreferenced chunk '{0}'; it will be removed when the store is next started",
+                                 key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private File createStagingFile() throws IOException {
+        if (!staging.exists()) staging.mkdirs();
+        return File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, staging);
+    }
+
+    private void moveIntoPlace( File tmpFile,
+                                File destination,
+                                boolean replaceExisting ) throws IOException {
+        destination.getParentFile().mkdirs();
+        try {
+            Files.move(tmpFile.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            if (replaceExisting) {
+                Files.move(tmpFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(tmpFile.toPath(), destination.toPath());
+            }
+        }
+    }
+
+    private File findFile( File directory,
+                           BinaryKey key ) {
+        String sha1 = key.toString();
+        File first = new File(directory, sha1.substring(0, 2));
+        File second = new File(first, sha1.substring(2, 4));
+        File third = new File(second, sha1.substring(4, 6));
+        return new File(third, sha1);
+    }
+
+    private File findMetadataFile( BinaryKey key,
+                                   String suffix ) {
+        File manifestFile = findFile(manifests, key);
+        return new File(manifestFile.getParentFile(), manifestFile.getName() + suffix);
+    }
+
+    private Manifest readManifest( BinaryKey key ) throws BinaryStoreException {
+        File manifestFile = findFile(manifests, key);
+        if (!manifestFile.exists() || !manifestFile.canRead()) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory.getPath()));
+        }
+        try {
+            return readManifest(manifestFile);
+        } catch (NoSuchFileException e) {
+            // the manifest was removed since we checked ...
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory.getPath()));
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    private Manifest readManifest( File manifestFile ) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile.toPath())))) {
+            int version = input.readInt();
+            if (version != MANIFEST_FORMAT_VERSION) {
+                throw new IOException("Unexpected format version " + version + " of the binary manifest '" + manifestFile + "'");
+            }
+            long size = input.readLong();
+            int count = input.readInt();
+            BinaryKey[] keys = new BinaryKey[count];
+            long[] offsets = new long[count + 1];
+            byte[] sha1 = new byte[SHA1_LENGTH];
+            for (int i = 0; i != count; ++i) {
+                input.readFully(sha1);
+                keys[i] = new BinaryKey(sha1);
+                offsets[i + 1] = offsets[i] + input.readInt();
+            }
+            assert offsets[count] == size;
+            return new Manifest(keys, offsets);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        initializeIfNeeded();
+        Manifest manifest = readManifest(key);
+        return new ChunkInputStream(manifest, 0L, manifest.size());
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long offset,
+                                       long length ) throws BinaryStoreException {
+        initializeIfNeeded();
+        // Start reading with the chunk that holds the offset, rather than reading and discarding the content before it ...
+        return new ChunkInputStream(readManifest(key), offset, length);
+    }
+
+    @Override
+    public boolean hasBinary( BinaryKey key ) {
+        return findFile(manifests, key).exists();
+    }
+
+    @Override
+    public void markAsUsed( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        if (keys == null) {
+            return;
+        }
+        initializeIfNeeded();
+        for (BinaryKey key : keys) {
+            Lock lock = manifestLocks.writeLock(key.toString());
+            try {
+                findFile(unused, key).delete();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void markAsUnused( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        if (keys == null) {
+            return;
+        }
+        initializeIfNeeded();
+        for (BinaryKey key : keys) {
+            markAsUnused(key);
+        }
+    }
+
+    protected void markAsUnused( BinaryKey key ) throws BinaryStoreException {
+        Lock lock = manifestLocks.writeLock(key.toString());
+        try {
+            if (!findFile(manifests, key).exists()) {
+                // if the manifest doesn't exist, there's nothing to do
+                return;
+            }
+            // the time the value became unused is the time the marker was created ...
+            File marker = findFile(unused, key);
+            if (!marker.exists()) {
+                marker.getParentFile().mkdirs();
+                marker.createNewFile();
+            }
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        initializeIfNeeded();
+        long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        try {
+            removeValuesUnusedBefore(oldestTimestamp, unused);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+        removeStagingFilesOlderThan(staging, oldestTimestamp);
+    }
+
+    private void removeValuesUnusedBefore( long oldestTimestamp,
+                                           File parentDirectory ) throws IOException {
+        File[] files = parentDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                removeValuesUnusedBefore(oldestTimestamp, file);
+            } else if (file.lastModified() < oldestTimestamp) {
+                removeValue(new BinaryKey(file.getName()), oldestTimestamp);
+            }
+        }
+    }
+
+    private void removeValue( BinaryKey key,
+                              long oldestTimestamp ) throws IOException {
+        Manifest manifest = null;
+        Lock lock = manifestLocks.writeLock(key.toString());
+        try {
+            // the value might have been used again since the marker was found ...
+            File marker = findFile(unused, key);
+            if (!marker.exists() || marker.lastModified() >= oldestTimestamp) {
+                return;
+            }
+            File manifestFile = findFile(manifests, key);
+            if (manifestFile.exists()) {
+                manifest = readManifest(manifestFile);
+                if (!manifestFile.delete()) {
+                    // we'll try this again later on
+                    return;
+                }
+                findMetadataFile(key, EXTRACTED_TEXT_SUFFIX).delete();
+                findMetadataFile(key, MIME_TYPE_SUFFIX).delete();
+            }
+            marker.delete();
+        } finally {
+            lock.unlock();
+        }
+        if (manifest != null) {
+            for (BinaryKey chunkKey : manifest.keys) {
+                releaseChunk(chunkKey);
+            }
+        }
+    }
+
+    @Override
+    public String getExtractedText( BinaryValue source ) throws BinaryStoreException {
+        return storedString(source.getKey(), EXTRACTED_TEXT_SUFFIX);
+    }
+
+    @Override
+    public void storeExtractedText( BinaryValue source,
+                                    String extractedText ) throws BinaryStoreException {
+        storeString(source.getKey(), EXTRACTED_TEXT_SUFFIX, extractedText);
+    }
+
+    @Override
+    public Reader getExtractedTextReader( BinaryValue source ) throws BinaryStoreException {
+        BinaryKey key = source.getKey();
+        initializeIfNeeded();
+        if (!findFile(manifests, key).exists()) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory));
+        }
+        try {
+            return new InputStreamReader(Files.newInputStream(findMetadataFile(key, EXTRACTED_TEXT_SUFFIX).toPath()),
+                                         StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // means the text hasn't been stored yet
+            return null;
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    @Override
+    public void storeExtractedText( BinaryValue source,
+                                    Reader extractedText ) throws BinaryStoreException {
+        BinaryKey key = source.getKey();
+        initializeIfNeeded();
+        Lock lock = manifestLocks.writeLock(key.toString());
+        try {
+            if (!findFile(manifests, key).exists()) {
+                return;
+            }
+            File tmpFile = createStagingFile();
+            try {
+                // stream the text into the staging file, so that it is never held in memory ...
+                IoUtil.write(extractedText, new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(tmpFile)),
+                                                                   StandardCharsets.UTF_8));
+                moveIntoPlace(tmpFile, findMetadataFile(key, EXTRACTED_TEXT_SUFFIX), true);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            lock.unlock();
+            try {
+                extractedText.close();
+            } catch (IOException e) {
+                logger.debug(e, "Unable to close the reader of the text extracted from {0}", key);
+            }
+        }
+    }
+
+    @Override
+    protected String getStoredMimeType( BinaryValue binaryValue ) throws BinaryStoreException {
+        return storedString(binaryValue.getKey(), MIME_TYPE_SUFFIX);
+    }
+
+    @Override
+    protected void storeMimeType( BinaryValue binaryValue,
+                                  String mimeType ) throws BinaryStoreException {
+        storeString(binaryValue.getKey(), MIME_TYPE_SUFFIX, mimeType);
+    }
+
+    private String storedString( BinaryKey key,
+                                 String suffix ) throws BinaryStoreException {
+        initializeIfNeeded();
+        if (!findFile(manifests, key).exists()) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory));
+        }
+        try {
+            return new String(Files.readAllBytes(findMetadataFile(key, suffix).toPath()), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // means the string hasn't been stored yet
+            return null;
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    private void storeString( BinaryKey key,
+                              String suffix,
+                              String string ) throws BinaryStoreException {
+        initializeIfNeeded();
+        Lock lock = manifestLocks.writeLock(key.toString());
+        try {
+            if (!findFile(manifests, key).exists()) {
+                return;
+            }
+            File tmpFile = createStagingFile();
+            try {
+                Files.write(tmpFile.toPath(), string.getBytes(StandardCharsets.UTF_8));
+                moveIntoPlace(tmpFile, findMetadataFile(key, suffix), true);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<BinaryKey> getAllBinaryKeys() throws BinaryStoreException {
+        initializeIfNeeded();
+        Set<BinaryKey> keys = new HashSet<>();
+        for (File manifestFile : manifestFiles()) {
+            BinaryKey key = new BinaryKey(manifestFile.getName());
+            // There is a marker for this key, meaning the value is unused
+            if (findFile(unused, key).exists()) continue;
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private List<File> manifestFiles() {
+        List<File> files = new ArrayList<>();
+        collectFiles(manifests, 0, files);
+        return files;
+    }
+
+    private void collectFiles( File parentDirectory,
+                               int depth,
+                               List<File> files ) {
+        File[] children = parentDirectory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (depth < 3) {
+                if (child.isDirectory()) collectFiles(child, depth + 1, files);
+            } else if (child.isFile() && child.getName().length() == 40) {
+                // SHA-1s should be 40 characters, and this excludes the extracted text and mime-type files ...
+                files.add(child);
+            }
+        }
+    }
+
+    private void initializeIfNeeded() throws BinaryStoreException {
+        if (!initialized) {
+            initialize();
+        }
+    }
+
+    private synchronized void initialize() throws BinaryStoreException {
+        if (initialized) {
+            return;
+        }
+        // Count the references to each chunk from the persisted manifests ...
+        for (File manifestFile : manifestFiles()) {
+            try {
+                for (BinaryKey chunkKey : readManifest(manifestFile).keys) {
+                    chunkReferences.merge(chunkKey, 1, Integer::sum);
+                }
+            } catch (IOException e) {
+                throw new BinaryStoreException(e);
+            }
+        }
+        // and remove the chunks that were stored for values which were never completely stored ...
+        List<File> chunkFiles = new ArrayList<>();
+        collectFiles(chunks, 0, chunkFiles);
+        for (File chunkFile : chunkFiles) {
+            if (!chunkReferences.containsKey(new BinaryKey(chunkFile.getName()))) {
+                chunkFile.delete();
+            }
+        }
+        initialized = true;
+    }
+
+    private synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                                 new LinkedBlockingQueue<Runnable>(),
+                                                                 new NamedThreadFactory("modeshape-binary-chunks"));
+            executor.allowCoreThreadTimeOut(true);
+            prefetcher = executor;
+        }
+        return prefetcher;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+            prefetcher = null;
+        }
+    }
+
+    private byte[] readChunk( BinaryKey key ) throws IOException {
+        return Files.readAllBytes(findFile(chunks, key).toPath());
+    }
+
+    /**
+     * The list of chunks of a binary value, with the position of each chunk within the value.
+     */
+    private static final class Manifest {
+        protected final BinaryKey[] keys;
+        protected final long[] offsets;
+
+        protected Manifest( BinaryKey[] keys,
+                            long[] offsets ) {
+            this.keys = keys;
+            this.offsets = offsets;
+        }
+
+        protected long size() {
+            return offsets[keys.length];
+        }
+
+        /**
+         * Get the index of the chunk holding the byte at the supplied position.
+         *
+         * @param position the position within the value; never negative
+         * @return the index of the chunk, which is the number of chunks if the position is not less than the size
+         */
+        protected int chunkAt( long position ) {
+            int index = Arrays.binarySearch(offsets, position);
+            return index >= 0 ? Math.min(index, keys.length) : -index - 2;
+        }
+    }
+
+    /**
+     * Splits content into chunks at the positions where the rolling hash of the content matches the boundary mask, and stores
+     * each chunk as soon as it is complete.
+     */
+    private final class Chunker implements ContentSink {
+        protected final List<BinaryKey> chunkKeys = new ArrayList<>();
+        protected final List<Integer> chunkLengths = new ArrayList<>();
+        private final MessageDigest digest;
+        private byte[] chunk;
+        private int length;
+        private long hash;
+
+        protected Chunker() throws NoSuchAlgorithmException {
+            this.digest = MessageDigest.getInstance(Algorithm.SHA_1.digestName());
+        }
+
+        @Override
+        public void write( byte[] bytes,
+                           int count ) throws IOException {
+            if (chunk == null) {
+                // the content is small enough to keep in memory unless it is written here ...
+                chunk = new byte[maximumChunkSize];
+            }
+            for (int i = 0; i != count; ++i) {
+                byte b = bytes[i];
+                chunk[length++] = b;
+                hash = (hash << 1) + GEAR[b & 0xff];
+                if ((length >= minimumChunkSize && (hash & boundaryMask) == 0) || length == maximumChunkSize) {
+                    flush();
+                }
+            }
+        }
+
+        protected void finish() throws IOException {
+            flush();
+        }
+
+        private void flush() throws IOException {
+            if (length == 0) {
+                return;
+            }
+            digest.update(chunk, 0, length);
+            BinaryKey key = new BinaryKey(digest.digest());
+            acquireChunk(key, chunk, length);
+            chunkKeys.add(key);
+            chunkLengths.add(length);
+            length = 0;
+            hash = 0L;
+        }
+    }
+
+    /**
+     * An {@link InputStream} which reads the chunks of a value in order, while reading the next few chunks in the background.
+     */
+    private final class ChunkInputStream extends InputStream {
+        private final Manifest manifest;
+        private final long end;
+        private final Deque<Future<byte[]>> prefetched = new ArrayDeque<>(PREFETCHED_CHUNK_COUNT);
+        private int nextChunk;
+        private byte[] current;
+        private int position;
+        private long remaining;
+
+        protected ChunkInputStream( Manifest manifest,
+                                    long offset,
+                                    long length ) {
+            long start = Math.min(offset, manifest.size());
+            this.manifest = manifest;
+            this.remaining = Math.min(length, manifest.size() - start);
+            this.end = start + remaining;
+            this.nextChunk = manifest.chunkAt(start);
+            this.position = (int)(start - (nextChunk < manifest.keys.length ? manifest.offsets[nextChunk] : start));
+        }
+
+        private boolean advance() throws IOException {
+            if (remaining <= 0L) {
+                return false;
+            }
+            if (current != null && position < current.length) {
+                return true;
+            }
+            int lastChunk = manifest.chunkAt(end - 1);
+            while (nextChunk <= lastChunk && prefetched.size() < PREFETCHED_CHUNK_COUNT) {
+                final BinaryKey chunkKey = manifest.keys[nextChunk++];
+                prefetched.add(prefetcher().submit(() -> readChunk(chunkKey)));
+            }
+            Future<byte[]> chunk = prefetched.poll();
+            if (chunk == null) {
+                return false;
+            }
+            try {
+                byte[] content = chunk.get();
+                // only the first chunk is read from a position other than its start ...
+                position = current == null ? position : 0;
+                current = content;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+            }
+            return position < current.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!advance()) {
+                return -1;
+            }
+            --remaining;
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int count = (int)Math.min(Math.min(len, current.length - position), remaining);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : (int)Math.min(current.length - position, remaining);
+        }
+
+        @Override
+        public void close() {
+            remaining = 0L;
+            for (Future<byte[]> chunk : prefetched) {
+                chunk.cancel(false);
+            }
+            prefetched.clear();
+        }
+    }
+}
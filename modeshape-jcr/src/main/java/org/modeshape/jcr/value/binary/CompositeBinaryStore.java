@@ -17,6 +17,9 @@ package org.modeshape.jcr.value.binary;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -225,6 +228,49 @@ public class CompositeBinaryStore implements BinaryStore {
         throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, this.toString()));
     }
 
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long offset,
+                                       long length ) throws BinaryStoreException {
+        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
+
+        while (it.hasNext()) {
+            final Map.Entry<String, BinaryStore> entry = it.next();
+
+            final String binaryStoreKey = entry.getKey();
+
+            BinaryStore binaryStore = entry.getValue();
+            logger.trace("Checking binary store " + binaryStoreKey + " for key " + key);
+            try {
+                return binaryStore.getInputStream(key, offset, length);
+            } catch (BinaryStoreException e) {
+                // this exception is "normal", and is thrown
+                logger.trace(e, "The named store " + binaryStoreKey + " raised exception");
+            }
+        }
+
+        throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, this.toString()));
+    }
+
+    @Override
+    public Path getLocalPath( BinaryKey key ) throws BinaryStoreException {
+        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
+
+        while (it.hasNext()) {
+            final Map.Entry<String, BinaryStore> entry = it.next();
+
+            final String binaryStoreKey = entry.getKey();
+
+            BinaryStore binaryStore = entry.getValue();
+            logger.trace("Checking binary store " + binaryStoreKey + " for key " + key);
+            if (binaryStore.hasBinary(key)) {
+                return binaryStore.getLocalPath(key);
+            }
+        }
+
+        throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, this.toString()));
+    }
+
     @Override
     public boolean hasBinary( BinaryKey key ) {
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
@@ -276,12 +322,18 @@ public class CompositeBinaryStore implements BinaryStore {
         }
     }
 
-    @SuppressWarnings( "unused" )
     @Override
     public void removeValuesUnusedLongerThan( long minimumAge,
                                               TimeUnit unit ) throws BinaryStoreException {
+        reclaimValuesUnusedLongerThan(minimumAge, unit);
+    }
+
+    @Override
+    public long reclaimValuesUnusedLongerThan( long minimumAge,
+                                               TimeUnit unit ) {
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
+        long reclaimed = -1L;
         while (it.hasNext()) {
             Map.Entry<String, BinaryStore> entry = it.next();
 
@@ -289,11 +341,16 @@ public class CompositeBinaryStore implements BinaryStore {
             BinaryStore bs = entry.getValue();
 
             try {
-                bs.removeValuesUnusedLongerThan(minimumAge, unit);
+                long reclaimedByStore = bs.reclaimValuesUnusedLongerThan(minimumAge, unit);
+                if (reclaimedByStore >= 0L) {
+                    // report what the stores that can tell reclaimed ...
+                    reclaimed = Math.max(reclaimed, 0L) + reclaimedByStore;
+                }
             } catch (BinaryStoreException e) {
                 logger.debug(e, "The named store " + binaryStoreKey + " raised exception");
             }
         }
+        return reclaimed;
     }
 
     @Override
@@ -330,6 +387,36 @@ public class CompositeBinaryStore implements BinaryStore {
         throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
     }
 
+    @Override
+    public Reader getTextReader( BinaryValue binary ) throws BinaryStoreException {
+
+        if (binary instanceof InMemoryBinaryValue) {
+            String text = getText(binary);
+            return text != null ? new StringReader(text) : null;
+        }
+
+        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
+
+        while (it.hasNext()) {
+            Map.Entry<String, BinaryStore> entry = it.next();
+
+            final String binaryStoreKey = entry.getKey();
+            BinaryStore bs = entry.getValue();
+            try {
+                if (bs.hasBinary(binary.getKey())) {
+                    return bs.getTextReader(binary);
+                }
+            } catch (BinaryStoreException e) {
+                logger.debug(e, "The named store " + binaryStoreKey + " raised exception");
+                if (!it.hasNext()) {
+                    throw e;
+                }
+            }
+        }
+
+        throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
+    }
+
     @Override
     public String getMimeType( BinaryValue binary,
                                String name ) throws IOException, RepositoryException {
@@ -337,11 +424,12 @@ public class CompositeBinaryStore implements BinaryStore {
             return null;
         }
 
-        String detectedMimeType = detector.mimeTypeOf(name, binary);
         if (binary instanceof InMemoryBinaryValue) {
-            return detectedMimeType;
+            return detector.mimeTypeOf(name, binary);
         }
 
+        // the named store which has the binary knows the stored MIME type, so don't read the content here ...
+
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
         while (it.hasNext()) {
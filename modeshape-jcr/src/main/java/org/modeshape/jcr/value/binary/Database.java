@@ -18,12 +18,14 @@ package org.modeshape.jcr.value.binary;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
@@ -32,6 +34,7 @@ import org.modeshape.common.database.DatabaseUtil;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.api.BoundedInputStream;
 import org.modeshape.jcr.value.BinaryKey;
 
 /**
@@ -278,15 +281,35 @@ public class Database {
      */
     protected InputStream readContent( BinaryKey key,
                                        Connection connection ) throws SQLException {
+        return readContent(key, 0L, Long.MAX_VALUE, connection);
+    }
+
+    /**
+     * Attempts to return a stream of part of the content of a given binary value. Where the content column is a BLOB, only the
+     * requested part of the BLOB is read; otherwise the content before the offset is skipped. The {@code connection} is
+     * handled as in {@link #readContent(BinaryKey, Connection)}.
+     *
+     * @param key a {@link org.modeshape.jcr.value.BinaryKey} the key of the binary value, may not be null
+     * @param offset the position of the first byte that is to be read; may not be negative
+     * @param length the maximum number of bytes that are to be read; may not be negative
+     * @param connection a {@link java.sql.Connection} instance, may not be null
+     * @return either a stream that wraps the input stream of the binary value and closes the connection and the statement when it
+     * terminates or {@code null}, meaning that the binary was not found.
+     * @throws SQLException if anything unexpected fails
+     */
+    protected InputStream readContent( BinaryKey key,
+                                       long offset,
+                                       long length,
+                                       Connection connection ) throws SQLException {
         try {
             // first search the contents which are in use
-            InputStream is = readStreamFromStatement(USED_CONTENT_STMT_KEY, key, connection);
+            InputStream is = readStreamFromStatement(USED_CONTENT_STMT_KEY, key, offset, length, connection);
             if (is != null) {
                 // return the stream without closing the connection
                 return is;
             }
             // then search the contents which are in the trash
-            is = readStreamFromStatement(UNUSED_CONTENT_STMT_KEY, key, connection);
+            is = readStreamFromStatement(UNUSED_CONTENT_STMT_KEY, key, offset, length, connection);
             if (is != null) {
                 // return the stream without closing the connection
                 return is;
@@ -300,7 +323,8 @@ public class Database {
         }
     }
 
-    private InputStream readStreamFromStatement( String statement, BinaryKey key, Connection connection ) throws SQLException {
+    private InputStream readStreamFromStatement( String statement, BinaryKey key, long offset, long length,
+                                                 Connection connection ) throws SQLException {
         PreparedStatement readContentStatement = prepareStatement(statement, connection);
         try {
             readContentStatement.setString(1, key.toString());
@@ -309,7 +333,7 @@ public class Database {
                 tryToClose(readContentStatement);
                 return null;
             }
-            return new DatabaseBinaryStream(connection, readContentStatement, rs.getBinaryStream(1));
+            return new DatabaseBinaryStream(connection, readContentStatement, contentStream(rs, offset, length));
         } catch (SQLException e) {
             tryToClose(readContentStatement);
             throw e;
@@ -319,6 +343,30 @@ public class Database {
         }
     }
 
+    private InputStream contentStream( ResultSet rs,
+                                       long offset,
+                                       long length ) throws SQLException, IOException {
+        if (offset == 0L && length == Long.MAX_VALUE) {
+            return rs.getBinaryStream(1);
+        }
+        if (rs.getMetaData().getColumnType(1) == Types.BLOB) {
+            // Read only the requested part of the BLOB ...
+            Blob blob = rs.getBlob(1);
+            long size = blob != null ? blob.length() : 0L;
+            if (offset >= size) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            try {
+                return blob.getBinaryStream(offset + 1, Math.min(length, size - offset));
+            } catch (SQLException e) {
+                // Not all drivers support this (and not all of them throw SQLFeatureNotSupportedException) ...
+                LOGGER.debug(e, "Unable to read part of a BLOB, so the content before the offset will be skipped instead");
+            }
+        }
+        InputStream stream = rs.getBinaryStream(1);
+        return stream != null ? BoundedInputStream.skipAndBound(stream, offset, length) : null;
+    }
+
     protected void markUnused( Iterable<BinaryKey> keys,
                                Connection connection ) throws SQLException {
         try (PreparedStatement markUnusedSql = prepareStatement(MARK_UNUSED_STMT_KEY, connection)) {
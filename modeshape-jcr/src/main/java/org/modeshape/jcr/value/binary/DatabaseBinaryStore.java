@@ -181,6 +181,10 @@ public class DatabaseBinaryStore extends AbstractBinaryStore {
                             database.markUnused(Collections.singletonList(key), connection);
                         }
                     }
+                    String mimeType = detectMimeType(temp);
+                    if (mimeType != null) {
+                        database.setMimeType(key, mimeType, connection);
+                    }
                 }
                 return new StoredBinaryValue(DatabaseBinaryStore.this, key, temp.getSize());
             });
@@ -229,6 +233,24 @@ public class DatabaseBinaryStore extends AbstractBinaryStore {
         }
     }
 
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long offset,
+                                       long length ) throws BinaryStoreException {
+        Connection connection = newConnection();
+        try {
+            InputStream inputStream = database.readContent(key, offset, length, connection);
+            if (inputStream == null) {
+                // if we didn't find anything, the connection should've been closed already
+                throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, database.getTableName()));
+            }
+            // the connection & statement will be left open until the stream is closed !
+            return inputStream;
+        } catch (SQLException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
     @Override
     public void markAsUsed(final Iterable<BinaryKey> keys ) throws BinaryStoreException {
         dbCall(connection -> {
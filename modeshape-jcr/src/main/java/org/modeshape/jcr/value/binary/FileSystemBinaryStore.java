@@ -19,25 +19,40 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
-import org.modeshape.common.util.SecureHash;
-import org.modeshape.common.util.SecureHash.Algorithm;
-import org.modeshape.common.util.SecureHash.HashingInputStream;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
@@ -51,11 +66,18 @@ import org.modeshape.jcr.value.BinaryValue;
 public class FileSystemBinaryStore extends AbstractBinaryStore {
 
     protected static final String TRASH_DIRECTORY_NAME = "trash";
+    protected static final String STAGING_DIRECTORY_NAME = "staging";
+
+    /**
+     * The default number of threads that remove unused values from different shards of the store at the same time.
+     */
+    public static final int DEFAULT_GARBAGE_COLLECTION_THREADS = 2;
 
     private static final String EXTRACTED_TEXT_SUFFIX = "-extracted-text";
     private static final String MIME_TYPE_SUFFIX = "-mime-type";
     private static final String TEMP_FILE_PREFIX = "ms-fs-binstore";
     private static final String TEMP_FILE_SUFFIX = "hashing";
+    private static final String GARBAGE_COLLECTION_PROGRESS_FILE_NAME = "collected-shards";
     
     private static final ConcurrentHashMap<String, FileSystemBinaryStore> INSTANCES = new ConcurrentHashMap<String, FileSystemBinaryStore>();
 
@@ -83,7 +105,12 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private final File directory;
     private final File trash;
     private final NamedLocks locks = new NamedLocks();
+    private final ReentrantLock garbageCollectionLock = new ReentrantLock();
+    private final Object garbageCollectionState = new Object();
     private volatile boolean initialized = false;
+    private volatile int garbageCollectionThreads = DEFAULT_GARBAGE_COLLECTION_THREADS;
+    private volatile int garbageCollectionFilesPerSecond = 0;
+    private long nextGarbageCollectionPermit = 0L; // guarded by garbageCollectionState, as is the progress file
 
     protected FileSystemBinaryStore( File directory ) {
         this(directory, new File(directory, TRASH_DIRECTORY_NAME));
@@ -100,28 +127,22 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
 
     @Override
     public BinaryValue storeValue( InputStream stream, boolean markAsUnused ) throws BinaryStoreException {
-        File tmpFile = null;
-        BinaryValue value = null;
+        StagingFileSink sink = new StagingFileSink();
         try {
-            // Write the contents to a temporary file, and while we do grab the SHA-1 hash and the length ...
-            HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
-            IoUtil.write(hashingStream, new BufferedOutputStream(new FileOutputStream(tmpFile)),
-                         AbstractBinaryStore.MEDIUM_BUFFER_SIZE);
-            byte[] sha1 = hashingStream.getHash();
-            BinaryKey key = new BinaryKey(sha1);
-
-            final long numberOfBytes = tmpFile.length();
-            if (numberOfBytes < getMinimumBinarySizeInBytes()) {
-                // The content is small enough to just store in-memory ...
-                byte[] content = IoUtil.readBytes(tmpFile);
-                tmpFile.delete();
-                value = new InMemoryBinaryValue(this, key, content);
-            } else {
-                value = saveTempFileToStore(tmpFile, key, numberOfBytes);
-                if (markAsUnused) {
-                    markAsUnused(key);
-                }
+            ReadContent content;
+            try {
+                content = readContent(stream, sink);
+            } finally {
+                sink.close();
+            }
+            if (content.inMemory) {
+                // We read all of the content, which is small enough to just store in-memory ...
+                return new InMemoryBinaryValue(this, content.key, content.getBytes());
+            }
+            BinaryValue value = saveTempFileToStore(sink.file, content.key, content.size);
+            storeDetectedMimeType(value, detectMimeType(content.head, content.headLength));
+            if (markAsUnused) {
+                markAsUnused(content.key);
             }
             return value;
         } catch (IOException e) {
@@ -129,17 +150,32 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         } catch (NoSuchAlgorithmException e) {
             throw new SystemFailureException(e);
         } finally {
-            if (tmpFile != null) {
+            if (sink.file != null) {
                 try {
-                    tmpFile.delete();
+                    if (sink.file.exists()) sink.file.delete();
                 } catch (Throwable t) {
-                    Logger.getLogger(getClass()).warn(t, JcrI18n.unableToDeleteTemporaryFile, tmpFile.getAbsolutePath(),
+                    Logger.getLogger(getClass()).warn(t, JcrI18n.unableToDeleteTemporaryFile, sink.file.getAbsolutePath(),
                                                       t.getMessage());
                 }
             }
         }
     }
 
+    /**
+     * Create a new empty file in the staging area of this store, which is within the store's directory so that moving the file
+     * into its final location is a rename within the same file system.
+     *
+     * @param suffix the suffix of the file's name; may not be null
+     * @return the new file; never null
+     * @throws IOException if the file could not be created
+     */
+    private File createStagingFile( String suffix ) throws IOException, BinaryStoreException {
+        initializeStorageIfNeeded(directory);
+        File staging = new File(directory, STAGING_DIRECTORY_NAME);
+        if (!staging.exists()) staging.mkdirs();
+        return File.createTempFile(TEMP_FILE_PREFIX, suffix, staging);
+    }
+
     private BinaryValue saveTempFileToStore( File tmpFile,
                                              BinaryKey key,
                                              long numberOfBytes ) throws BinaryStoreException {
@@ -296,10 +332,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     protected final File findFile( File directory,
                                    BinaryKey key,
                                    boolean createParentDirsIfMissing ) throws BinaryStoreException {
-        if (!initialized) {
-            initializeStorage(directory);
-            initialized = true;
-        }
+        initializeStorageIfNeeded(directory);
         String sha1 = key.toString();
         File first = new File(directory, sha1.substring(0, 2));
         File second = new File(first, sha1.substring(2, 4));
@@ -325,6 +358,35 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         return new SharedLockingInputStream(key, persistedFile, locks);
     }
 
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long offset,
+                                       long length ) throws BinaryStoreException {
+        File persistedFile = findFile(directory, key, false);
+        if (!persistedFile.exists() || !persistedFile.canRead()) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory.getPath()));
+        }
+        // Read the file starting at the offset, rather than reading and discarding the content before the offset ...
+        return new SharedLockingInputStream(key, persistedFile, locks, offset, length);
+    }
+
+    @Override
+    public Path getLocalPath( BinaryKey key ) throws BinaryStoreException {
+        File persistedFile = findFile(directory, key, false);
+        if (!persistedFile.exists() || !persistedFile.canRead()) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, directory.getPath()));
+        }
+        // Each value is written to its own file exactly once, before it is moved into place, so the file can be read directly ...
+        return persistedFile.toPath();
+    }
+
+    private void initializeStorageIfNeeded( File directory ) throws BinaryStoreException {
+        if (!initialized) {
+            initializeStorage(directory);
+            initialized = true;
+        }
+    }
+
     @SuppressWarnings( "unused" )
     protected void initializeStorage( File directory ) throws BinaryStoreException {
         // do nothing by default
@@ -476,18 +538,130 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     @Override
     public void removeValuesUnusedLongerThan( long minimumAge,
                                               TimeUnit unit ) throws BinaryStoreException {
-        long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        reclaimValuesUnusedLongerThan(minimumAge, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This store looks for the unused values in the trash directory one shard at a time, where each shard is one of the top-level
+     * directories named after the first two characters of the SHA-1 hashes, using a small pool of
+     * {@link #setGarbageCollectionThreads(int) threads} and at most the {@link #setGarbageCollectionFilesPerSecond(int) configured
+     * number} of trash files per second. The shards that have been completely processed are recorded in the trash directory, so
+     * if the process is stopped before all shards were processed, the next call continues with the remaining shards.
+     * </p>
+     * <p>
+     * If another thread is already removing unused values, this method returns immediately.
+     * </p>
+     */
+    @Override
+    public long reclaimValuesUnusedLongerThan( long minimumAge,
+                                               TimeUnit unit ) throws BinaryStoreException {
+        if (!garbageCollectionLock.tryLock()) {
+            // the other thread will remove the values ...
+            return 0L;
+        }
         try {
-            removeFilesOlderThan(oldestTimestamp, trash);
+            long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+            AtomicLong reclaimed = new AtomicLong();
+            removeFilesOlderThan(oldestTimestamp, reclaimed);
+            removeStagingFilesOlderThan(new File(directory, STAGING_DIRECTORY_NAME), oldestTimestamp);
+            return reclaimed.get();
         } catch (IOException e) {
             throw new BinaryStoreException(e);
-        } catch (BinaryStoreException bse) {
-            throw bse;
+        } finally {
+            garbageCollectionLock.unlock();
+        }
+    }
+
+    /**
+     * Set the number of threads that remove unused values from different shards of this store at the same time.
+     *
+     * @param threads the number of threads; must be positive
+     * @since 5.5
+     */
+    public void setGarbageCollectionThreads( int threads ) {
+        CheckArg.isPositive(threads, "threads");
+        this.garbageCollectionThreads = threads;
+    }
+
+    /**
+     * Set the maximum number of trash files that are examined per second when removing unused values, which limits how much of
+     * the disk's throughput the removal uses.
+     *
+     * @param filesPerSecond the maximum number of files per second, or 0 if the rate should not be limited; may not be negative
+     * @since 5.5
+     */
+    public void setGarbageCollectionFilesPerSecond( int filesPerSecond ) {
+        CheckArg.isNonNegative(filesPerSecond, "filesPerSecond");
+        this.garbageCollectionFilesPerSecond = filesPerSecond;
+    }
+
+    private void removeFilesOlderThan( final long oldestTimestamp,
+                                       final AtomicLong reclaimed ) throws IOException, BinaryStoreException {
+        File[] shardDirectories = trash.listFiles(File::isDirectory);
+        if (shardDirectories == null) {
+            return;
+        }
+        File progress = new File(trash, GARBAGE_COLLECTION_PROGRESS_FILE_NAME);
+        Set<String> collectedShards = progress.exists() ? new HashSet<>(Files.readAllLines(progress.toPath())) : new HashSet<>();
+        List<File> shards = new ArrayList<>();
+        for (File shard : shardDirectories) {
+            if (!collectedShards.contains(shard.getName())) {
+                shards.add(shard);
+            }
+        }
+        Collections.sort(shards);
+
+        if (shards.size() <= 1 || garbageCollectionThreads <= 1) {
+            for (File shard : shards) {
+                removeFilesOlderThan(oldestTimestamp, shard, reclaimed);
+                shardCollected(progress, shard);
+            }
+        } else {
+            ExecutorService collectors = Executors.newFixedThreadPool(Math.min(garbageCollectionThreads, shards.size()),
+                                                                      new NamedThreadFactory("modeshape-binary-gc"));
+            try {
+                List<Future<Void>> results = new ArrayList<>(shards.size());
+                for (File shard : shards) {
+                    results.add(collectors.submit(() -> {
+                        removeFilesOlderThan(oldestTimestamp, shard, reclaimed);
+                        shardCollected(progress, shard);
+                        return null;
+                    }));
+                }
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BinaryStoreException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof BinaryStoreException) {
+                    throw (BinaryStoreException)e.getCause();
+                }
+                throw new BinaryStoreException(e.getCause());
+            } finally {
+                collectors.shutdownNow();
+            }
+        }
+        // All shards were processed, so the next call should process all of them again ...
+        progress.delete();
+    }
+
+    private void shardCollected( File progress,
+                                 File shard ) throws IOException {
+        synchronized (garbageCollectionState) {
+            try (Writer writer = new FileWriter(progress, true)) {
+                writer.write(shard.getName());
+                writer.write('\n');
+            }
         }
     }
 
     private void removeFilesOlderThan( long oldestTimestamp,
-                                       File parentDirectory ) throws IOException, BinaryStoreException {
+                                       File parentDirectory,
+                                       AtomicLong reclaimed ) throws IOException, BinaryStoreException {
         if (parentDirectory == null || !parentDirectory.exists() || parentDirectory.isFile()) {
             return;
         }
@@ -504,8 +678,9 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
             }
             // The file or directory should exist at this point (at least for now) ...
             if (fileOrDir.isDirectory()) {
-                removeFilesOlderThan(oldestTimestamp, fileOrDir);
+                removeFilesOlderThan(oldestTimestamp, fileOrDir, reclaimed);
             } else if (fileOrDir.isFile()) {
+                throttleGarbageCollection();
                 File file = fileOrDir;
                 if (file.lastModified() < oldestTimestamp) {
                     // we know that the files in the trash have the name as sha1
@@ -516,9 +691,11 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                         Lock lock = locks.writeLock(sha1);
                         try {
                             if (persistedFile.exists()) {
+                                long length = persistedFile.length();
                                 // only remove the trash files if we successfully deleted the main file
                                 // otherwise we'll try this again later on
                                 if (persistedFile.delete() && removeTrashFile(key)) {
+                                    reclaimed.addAndGet(length);
                                     pruneTrashRequired = true;
                                     pruneMainRequired = true;
                                     mainDirectoryToPrune = persistedFile.getParentFile();
@@ -545,6 +722,34 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         }
     }
 
+    /**
+     * Wait until the next trash file may be examined, so that all of the threads together examine no more than the configured
+     * number of files per second.
+     *
+     * @throws BinaryStoreException if the thread is interrupted while waiting
+     */
+    private void throttleGarbageCollection() throws BinaryStoreException {
+        int filesPerSecond = garbageCollectionFilesPerSecond;
+        if (filesPerSecond <= 0) {
+            return;
+        }
+        long delay;
+        synchronized (garbageCollectionState) {
+            long now = System.nanoTime();
+            long next = Math.max(nextGarbageCollectionPermit, now);
+            nextGarbageCollectionPermit = next + TimeUnit.SECONDS.toNanos(1) / filesPerSecond;
+            delay = next - now;
+        }
+        if (delay > 0L) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BinaryStoreException(e);
+            }
+        }
+    }
+
     @Override
     public String getExtractedText( BinaryValue source ) throws BinaryStoreException {
         if (!binaryValueExists(source)) {
@@ -581,11 +786,57 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         storeStringAtKey(extractedText, extractedTextKey);
     }
 
+    @Override
+    public Reader getExtractedTextReader( BinaryValue source ) throws BinaryStoreException {
+        if (!binaryValueExists(source)) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(source.getKey(), directory));
+        }
+        BinaryKey extractedTextKey = createKeyFromSourceWithSuffix(source.getKey(), EXTRACTED_TEXT_SUFFIX);
+        try {
+            // the text is stored with the same encoding used by IoUtil when storing strings ...
+            return new InputStreamReader(getInputStream(extractedTextKey));
+        } catch (BinaryStoreException e) {
+            // means the file wasn't found (isn't available yet) in the store
+            return null;
+        }
+    }
+
+    @Override
+    public void storeExtractedText( BinaryValue source,
+                                    Reader extractedText ) throws BinaryStoreException {
+        try {
+            // Look for an existing file ...
+            if (!binaryValueExists(source)) {
+                return;
+            }
+            BinaryKey extractedTextKey = createKeyFromSourceWithSuffix(source.getKey(), EXTRACTED_TEXT_SUFFIX);
+            File tmpFile = null;
+            try {
+                // stream the text into the staging file, so that it is never held in memory ...
+                tmpFile = createStagingFile(TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
+                IoUtil.write(extractedText, new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(tmpFile))));
+                saveTempFileToStore(tmpFile, extractedTextKey, tmpFile.length());
+            } catch (IOException e) {
+                throw new BinaryStoreException(e);
+            } finally {
+                if (tmpFile != null) {
+                    tmpFile.delete();
+                }
+            }
+        } finally {
+            try {
+                extractedText.close();
+            } catch (IOException e) {
+                logger.debug(e, "Unable to close the reader of the text extracted from {0}", source.getKey());
+            }
+        }
+    }
+
     private void storeStringAtKey( String string,
                                    BinaryKey key) throws BinaryStoreException {
         File tmpFile = null;
         try {
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
+            tmpFile = createStagingFile(TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
             IoUtil.write(string, new BufferedOutputStream(new FileOutputStream(tmpFile)));
             saveTempFileToStore(tmpFile, key, tmpFile.length());
         } catch (IOException e) {
@@ -674,4 +925,29 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private boolean isReadableDir( File dir ) {
         return dir != null && dir.isDirectory() && dir.canRead();
     }
+
+    /**
+     * The sink which writes content that is too large to keep in memory to a new staging file.
+     */
+    private final class StagingFileSink implements ContentSink {
+        protected File file;
+        private OutputStream output;
+
+        @Override
+        public void write( byte[] bytes,
+                           int length ) throws IOException, BinaryStoreException {
+            if (output == null) {
+                // Write the content to a staging file in the store's directory, so that it can later be renamed into place ...
+                file = createStagingFile(TEMP_FILE_SUFFIX);
+                output = new FileOutputStream(file);
+            }
+            output.write(bytes, 0, length);
+        }
+
+        protected void close() throws IOException {
+            if (output != null) {
+                output.close();
+            }
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.modeshape.jcr.value.binary;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
@@ -53,6 +54,11 @@ public class FileUrlBinaryValue extends UrlBinaryValue {
         return generateHash().toString();
     }
 
+    @Override
+    public Path getLocalPath() {
+        return convertURLtoFile(this.content).toPath();
+    }
+
     private synchronized BinaryKey generateHash() {
         if (this.hash == null) {
             try {
@@ -209,7 +209,9 @@ public class MongodbBinaryStore extends AbstractBinaryStore {
                 throw new BinaryStoreException(e);
             }
 
-            return new StoredBinaryValue(this, key, temp.getSize());
+            StoredBinaryValue value = new StoredBinaryValue(this, key, temp.getSize());
+            storeDetectedMimeType(value, detectMimeType(temp));
+            return value;
         } finally {
             // clean up temp store
             cache.markAsUnused(temp.getKey());
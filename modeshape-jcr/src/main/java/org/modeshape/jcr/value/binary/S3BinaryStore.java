@@ -42,7 +42,6 @@ import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 
 import javax.jcr.RepositoryException;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -281,8 +280,12 @@ public class S3BinaryStore extends AbstractBinaryStore {
             if (!s3Client.doesObjectExist(bucketName, key.toString())) {
                 ObjectMetadata metadata = new ObjectMetadata();
                 metadata.setContentLength(cachedFile.getSize());
-                // Set Mimetype
-                metadata.setContentType(fileSystemCache.getMimeType(cachedFile, key.toString()));
+                // Set the MIME type detected from the local copy, so that it is never read from S3 just to detect it
+                String mimeType = detectMimeType(cachedFile);
+                if (mimeType != null) {
+                    metadata.setContentType(mimeType);
+                    metadata.addUserMetadata(USER_MIME_TYPE_KEY, String.valueOf(true));
+                }
                 // Store content in S3
                 s3Client.putObject(bucketName, key.toString(), fileSystemCache.getInputStream(key), metadata);
             }
@@ -295,7 +298,7 @@ public class S3BinaryStore extends AbstractBinaryStore {
             }
 
             return new StoredBinaryValue(this, key, cachedFile.getSize());
-        } catch (AmazonClientException|RepositoryException |IOException e) {
+        } catch (AmazonClientException|RepositoryException e) {
             throw new BinaryStoreException(e);
         } finally {
             // Remove cached file
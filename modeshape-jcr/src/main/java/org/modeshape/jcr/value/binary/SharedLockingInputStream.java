@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.Callable;
 import java.util.concurrent.locks.Lock;
+import org.modeshape.jcr.api.BoundedInputStream;
 import org.modeshape.jcr.value.BinaryKey;
 
 /**
@@ -36,6 +37,8 @@ public final class SharedLockingInputStream extends InputStream {
     protected final BinaryKey key;
     protected final File file;
     protected final NamedLocks lockManager;
+    protected final long offset;
+    protected final long length;
     protected InputStream stream;
     protected Lock processLock;
     protected FileLocks.WrappedLock fileLock;
@@ -54,11 +57,34 @@ public final class SharedLockingInputStream extends InputStream {
     public SharedLockingInputStream( BinaryKey key,
                                      File file,
                                      NamedLocks lockManager ) {
+        this(key, file, lockManager, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a self-closing, (shared) locking {@link InputStream} to read part of the content of the supplied {@link File file}.
+     * The file is positioned at the offset, so the content before the offset is never read.
+     *
+     * @param key the binary key; may not be null
+     * @param file the file that is to be read; may not be null
+     * @param lockManager the manager of the locks, from which a read lock is to be obtained; may be null if no read lock is
+     *        needed
+     * @param offset the position in the file of the first byte that is to be read; may not be negative
+     * @param length the maximum number of bytes that are to be read; may not be negative
+     */
+    public SharedLockingInputStream( BinaryKey key,
+                                     File file,
+                                     NamedLocks lockManager,
+                                     long offset,
+                                     long length ) {
         assert key != null;
         assert file != null;
+        assert offset >= 0L;
+        assert length >= 0L;
         this.key = key;
         this.file = file;
         this.lockManager = lockManager;
+        this.offset = offset;
+        this.length = length;
     }
 
     protected void open() throws IOException {
@@ -72,10 +98,17 @@ public final class SharedLockingInputStream extends InputStream {
                 // Also get a shared file lock to prevent other processes from modifying the file ...
                 SharedLockingInputStream.this.fileLock = FileLocks.get().readLock(file);
 
-                // Now create a buffered stream ...
+                // Now create a buffered stream, starting at the offset ...
+                FileInputStream input = new FileInputStream(file);
+                long size = file.length();
+                if (offset > 0L) {
+                    input.getChannel().position(offset);
+                }
+                InputStream content = length < size - offset ? new BoundedInputStream(input, length) : input;
                 SharedLockingInputStream.this.stream = new BufferedInputStream(
-                                                                               new FileInputStream(file),
-                                                                               AbstractBinaryStore.bestBufferSize(file.length()));
+                                                                               content,
+                                                                               AbstractBinaryStore.bestBufferSize(
+                                                                                       Math.max(0L, Math.min(length, size - offset))));
                 SharedLockingInputStream.this.eofReached = false;
                 SharedLockingInputStream.this.anyRead = false;
                 SharedLockingInputStream.this.markZero = false;
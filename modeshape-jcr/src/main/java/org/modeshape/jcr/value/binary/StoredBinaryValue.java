@@ -17,6 +17,7 @@ package org.modeshape.jcr.value.binary;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import javax.jcr.RepositoryException;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.jcr.value.BinaryKey;
@@ -69,6 +70,17 @@ public class StoredBinaryValue extends AbstractBinary {
     protected InputStream internalStream() throws RepositoryException {
         return store.getInputStream(getKey());
     }
+
+    @Override
+    protected InputStream internalStream( long offset,
+                                          long length ) throws RepositoryException {
+        return store.getInputStream(getKey(), offset, length);
+    }
+
+    @Override
+    public Path getLocalPath() throws RepositoryException {
+        return store.getLocalPath(getKey());
+    }
     
     protected String mimeType() {
         return this.mimeType;
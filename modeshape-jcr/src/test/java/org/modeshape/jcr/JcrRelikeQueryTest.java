@@ -136,4 +136,28 @@ public class JcrRelikeQueryTest extends MultiUseAbstractTest {
 
         assertNodesNotFound(queryString2, Query.JCR_SQL2);
     }
+
+    @Test
+    public void testRelikeWithMoreDistinctPatternsThanAreCached() throws Exception {
+        AbstractJcrNode garage = session.getRootNode().addNode("garage");
+        try {
+            // More distinct expressions than the filter caches, with some repeated after the cache has been cleared ...
+            for (int i = 0; i != 1500; ++i) {
+                AbstractJcrNode car = garage.addNode("car" + i, "relike:Car");
+                car.setProperty("relike:maker", "maker" + (i % 1200) + "_");
+            }
+            session.save();
+
+            String queryString = "SELECT * from [relike:Car] as c where relike('maker1150x', c.[relike:maker]) "
+                                 + "and ISCHILDNODE(c, '/garage')";
+            assertNodesAreFound(queryString, Query.JCR_SQL2, "/garage/car1150");
+
+            String queryString2 = "SELECT * from [relike:Car] as c where relike('maker150x', c.[relike:maker]) "
+                                  + "and ISCHILDNODE(c, '/garage')";
+            assertNodesAreFound(queryString2, Query.JCR_SQL2, "/garage/car150", "/garage/car1350");
+        } finally {
+            garage.remove();
+            session.save();
+        }
+    }
 }
@@ -286,6 +286,15 @@ public class JcrValueTest {
         assertThat(new JcrValue(factories, PropertyType.BINARY, "test").getLength(), is(4L));
     }
 
+    @Test
+    public void shouldReadRangesOfAnyBinaryImplementation() throws Exception {
+        final String stringValue = "This is the string stringValue";
+        org.modeshape.jcr.api.Binary customBinary = new InMemoryTestBinary(stringValue.getBytes());
+        assertArrayEquals("is the".getBytes(), IoUtil.readBytes(customBinary.getStream(5, 6)));
+        assertArrayEquals("stringValue".getBytes(), IoUtil.readBytes(customBinary.getStream(19, 100)));
+        assertArrayEquals(new byte[0], IoUtil.readBytes(customBinary.getStream(100, 10)));
+    }
+
     @FixFor( "MODE-1308" )
     @Test
     public void shouldSupportAnyBinaryImplementation() throws Exception {
@@ -0,0 +1,96 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.junit.Assert.assertTrue;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+import org.junit.Test;
+
+/**
+ * Verifies the asynchronous indexes of the {@link LocalIndexProviderTest local provider} when the repository queues the changes
+ * for those indexes and applies them in batches, and that a session can wait for the indexes to catch up with its saves.
+ *
+ * @see LocalIndexProviderAsynchronousTest
+ */
+public class LocalIndexProviderBatchedAsynchronousTest extends AbstractIndexProviderTest {
+
+    private static final String CONFIG_FILE = "config/repo-config-persistent-local-provider-async-indexing.json";
+
+    @Override
+    protected InputStream repositoryConfiguration() {
+        return resource(CONFIG_FILE);
+    }
+
+    @Override
+    protected boolean useSynchronousIndexes() {
+        return false;
+    }
+
+    @Override
+    protected String providerName() {
+        return "local";
+    }
+
+    @Override
+    protected void waitForIndexes( long extraTime ) throws InterruptedException {
+        try {
+            assertTrue(indexManager().waitForIndexes(session().getWorkspace().getName(), 10, TimeUnit.SECONDS));
+        } catch (RepositoryException e) {
+            throw new AssertionError(e);
+        }
+        if (extraTime > 0L) Thread.sleep(extraTime);
+    }
+
+    @Test
+    public void shouldApplyLatestValuesOfNodesChangedInManySaves() throws Exception {
+        registerValueIndex("titleIndex", "mix:title", null, "*", "jcr:title", PropertyType.STRING);
+
+        Node root = session().getRootNode();
+        for (int i = 0; i != 5; ++i) {
+            Node book = root.addNode("book" + i);
+            book.addMixin("mix:title");
+            book.setProperty("jcr:title", "Title 0");
+        }
+        session.save();
+        // Change the same properties many times, removing and re-adding some of them along the way ...
+        for (int version = 1; version <= 25; ++version) {
+            for (int i = 0; i != 5; ++i) {
+                Node book = session.getNode("/book" + i);
+                if (i == 0 && version % 5 == 0) {
+                    book.getProperty("jcr:title").remove();
+                } else {
+                    book.setProperty("jcr:title", "Title " + version);
+                }
+            }
+            session.save();
+        }
+        session.getNode("/book4").remove();
+        session.save();
+        waitForIndexes();
+
+        Query query = jcrSql2Query("SELECT * FROM [mix:title] WHERE [jcr:title] = 'Title 25'");
+        validateQuery().rowCount(3L).useIndex("titleIndex").validate(query, query.execute());
+        query = jcrSql2Query("SELECT * FROM [mix:title] WHERE [jcr:title] = 'Title 24'");
+        validateQuery().rowCount(0L).useIndex("titleIndex").validate(query, query.execute());
+        query = jcrSql2Query("SELECT * FROM [mix:title] WHERE [jcr:title] = 'Title 0'");
+        validateQuery().rowCount(0L).useIndex("titleIndex").validate(query, query.execute());
+    }
+}
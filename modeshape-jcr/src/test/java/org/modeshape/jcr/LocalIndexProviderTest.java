@@ -18,6 +18,7 @@ package org.modeshape.jcr;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -47,6 +48,7 @@ import org.modeshape.common.FixFor;
 import org.modeshape.common.util.FileUtil;
 import org.modeshape.jcr.api.index.IndexManager;
 import org.modeshape.jcr.api.query.Query;
+import org.modeshape.jcr.api.query.QueryResult;
 import org.modeshape.jcr.query.engine.IndexPlanners;
 
 /**
@@ -611,6 +613,64 @@ public class LocalIndexProviderTest extends AbstractIndexProviderTest {
         validateQuery().rowCount(1L).useIndex("pathIndex").validate(query, query.execute());
     }
 
+    @Test
+    public void shouldUseNodePathIndexForDescendantAndChildConstraints() throws Exception {
+        registerValueIndex("pathIndex", "nt:unstructured", "Node path index", "*", "jcr:path", PropertyType.PATH);
+
+        Node sites = session().getRootNode().addNode("sites");
+        Node foo = sites.addNode("foo");
+        foo.addNode("article1");
+        foo.addNode("article2");
+        foo.addNode("section").addNode("article3");
+        sites.addNode("foo").addNode("article4");
+        sites.addNode("bar").addNode("article5");
+        session.save();
+
+        Query query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites/foo')");
+        validateQuery()
+                .rowCount(4L)
+                .considerIndexes("pathIndex", IndexPlanners.DESCENDANTS_BY_PATH_INDEX_NAME)
+                .useIndex("pathIndex")
+                .validate(query, query.execute());
+        assertPaths(query, "/sites/foo/article1", "/sites/foo/article2", "/sites/foo/section", "/sites/foo/section/article3");
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISCHILDNODE(node, '/sites/foo')");
+        validateQuery()
+                .rowCount(3L)
+                .considerIndexes("pathIndex", IndexPlanners.CHILDREN_BY_PATH_INDEX_NAME)
+                .validate(query, query.execute());
+        assertPaths(query, "/sites/foo/article1", "/sites/foo/article2", "/sites/foo/section");
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites') "
+                             + "AND NOT ISDESCENDANTNODE(node, '/sites/foo')");
+        assertPaths(query, "/sites/foo", "/sites/foo[2]", "/sites/foo[2]/article4", "/sites/bar", "/sites/bar/article5");
+
+        // Move a node, and the paths of its descendants should be changed in the index ...
+        session.move("/sites/foo/section", "/sites/bar/section");
+        session.save();
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites/bar')");
+        validateQuery()
+                .rowCount(3L)
+                .considerIndexes("pathIndex", IndexPlanners.DESCENDANTS_BY_PATH_INDEX_NAME)
+                .useIndex("pathIndex")
+                .validate(query, query.execute());
+        assertPaths(query, "/sites/bar/article5", "/sites/bar/section", "/sites/bar/section/article3");
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites/foo')");
+        assertPaths(query, "/sites/foo/article1", "/sites/foo/article2");
+
+        // Reorder same-name-siblings, which changes the paths of all of their descendants ...
+        sites.orderBefore("foo[2]", "foo");
+        session.save();
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites/foo')");
+        assertPaths(query, "/sites/foo/article4");
+
+        query = jcrSql2Query("SELECT * FROM [nt:unstructured] AS node WHERE ISDESCENDANTNODE(node, '/sites/foo[2]')");
+        assertPaths(query, "/sites/foo[2]/article1", "/sites/foo[2]/article2");
+    }
+
     @FixFor( "MODE-2290" )
     @Test
     public void shouldUseSingleColumnResidualPropertyIndexInQueryAgainstSameNodeType() throws Exception {
@@ -1022,6 +1082,58 @@ public class LocalIndexProviderTest extends AbstractIndexProviderTest {
         assertTrue("Not all paths found: " + expectedPaths, expectedPaths.isEmpty());
     }
 
+    @Test
+    public void shouldUseUnionOfIndexesWhenEachSideOfORUsesDifferentIndex() throws Exception {
+        registerNodeTypes("cnd/authors.cnd");
+        registerValueIndex("authors", "my:content", "Authors index", "*", "author", PropertyType.STRING);
+        registerValueIndex("coAuthors", "my:content", "Coauthors index", "*", "coAuthors", PropertyType.STRING);
+        registerValueIndex("contents", "my:content", "Contents index", "*", "content", PropertyType.STRING);
+
+        Node root = session.getRootNode();
+        for (int i = 0; i != 10; ++i) {
+            Node book = root.addNode("book" + i, "my:content");
+            book.setProperty("content", "book content " + i);
+            book.setProperty("author", "author" + i);
+            book.setProperty("coAuthors", new String[] {"author" + (i + 1), "author" + (i + 2)});
+        }
+        session.save();
+        waitForIndexes();
+
+        // Nodes found by more than one index are returned once ...
+        Query query = jcrSql2Query("SELECT * FROM [my:content] WHERE author = 'author3' OR coAuthors = 'author3'");
+        validateQuery().rowCount(3).useIndex("union(authors|coAuthors)").validate(query, query.execute());
+        assertPaths(query, "/book1", "/book2", "/book3");
+
+        query = jcrSql2Query("SELECT * FROM [my:content] WHERE author = 'author3' OR coAuthors = 'author3' "
+                             + "OR content = 'book content 7'");
+        validateQuery().rowCount(4).useIndex("union(authors|coAuthors|contents)").validate(query, query.execute());
+        assertPaths(query, "/book1", "/book2", "/book3", "/book7");
+
+        // The other criteria are still applied to the nodes found with the indexes ...
+        query = jcrSql2Query("SELECT * FROM [my:content] WHERE (author = 'author3' OR coAuthors = 'author3') "
+                             + "AND content <> 'book content 2'");
+        validateQuery().rowCount(2).validate(query, query.execute());
+        assertPaths(query, "/book1", "/book3");
+
+        // Both sides of a UNION scan an index ...
+        query = jcrSql2Query("SELECT [jcr:path] FROM [my:content] WHERE author = 'author3' UNION "
+                             + "SELECT [jcr:path] FROM [my:content] WHERE coAuthors = 'author3'");
+        validateQuery().rowCount(3).validate(query, query.execute());
+    }
+
+    private void assertPaths( Query query,
+                              String... paths ) throws RepositoryException {
+        final List<String> expectedPaths = new ArrayList<>(Arrays.asList(paths));
+        validateQuery().rowCount(paths.length).onEachRow(new ValidateQuery.Predicate() {
+            @Override
+            public void validate( int rowNumber,
+                                  Row row ) throws RepositoryException {
+                assertTrue("Unexpected path " + row.getPath(), expectedPaths.remove(row.getPath()));
+            }
+        }).validate(query, query.execute());
+        assertTrue("Not all paths found: " + expectedPaths, expectedPaths.isEmpty());
+    }
+
     @FixFor( "MODE-2401" )
     @Test
     public void shouldNotConsiderNonQueryableNodeTypes() throws RepositoryException, InterruptedException {
@@ -1416,4 +1528,64 @@ public class LocalIndexProviderTest extends AbstractIndexProviderTest {
                 .validate(query, query.execute());
         
     }
+
+    @Test
+    public void shouldReindexExistingContentInBatchesWithCorrectPaths() throws Exception {
+        // Create more content than fits in a single reindexing batch, including same-name siblings ...
+        Node parent = session().getRootNode().addNode("parent");
+        for (int i = 0; i != 5; ++i) {
+            Node child = parent.addNode("child");
+            child.setProperty("title", "child" + i);
+            for (int j = 0; j != 8; ++j) {
+                child.addNode("grandchild").setProperty("title", "grandchild" + i + "-" + j);
+            }
+        }
+        session().save();
+
+        // Registering the index reindexes all of the existing content ...
+        registerValueIndex("titleIndex", "nt:unstructured", "Title index", "*", "title", PropertyType.STRING);
+
+        Query query = jcrSql2Query("SELECT node.[jcr:path] FROM [nt:unstructured] AS node WHERE node.title > 'grandchild'");
+        validateQuery()
+                .rowCount(40L)
+                .useIndex("titleIndex")
+                .validate(query, query.execute());
+
+        query = jcrSql2Query("SELECT node.[jcr:path] FROM [nt:unstructured] AS node WHERE node.title = 'grandchild3-6'");
+        validateQuery()
+                .rowCount(1L)
+                .useIndex("titleIndex")
+                .onEachRow((rowNumber, row) -> assertEquals("/parent/child[4]/grandchild[7]", row.getPath()))
+                .validate(query, query.execute());
+    }
+
+    @Test
+    public void shouldKnowSizeOfResultsCountedByEnumeratedIndex() throws Exception {
+        registerEnumeratedIndex("statusIndex", "nt:unstructured", "Status index", "*", "status", PropertyType.STRING);
+        Node parent = session().getRootNode().addNode("tasks");
+        for (int i = 0; i != 10; ++i) {
+            parent.addNode("task" + i).setProperty("status", i % 3 == 0 ? "open" : "closed");
+        }
+        session().save();
+
+        // The index counts the nodes, so the size is known before any of the rows are read ...
+        QueryResult result = jcrSql2Query(
+                "SELECT [jcr:path] FROM [nt:unstructured] WHERE [status] = 'open'").execute();
+        assertThat(result.getNodes().getSize(), is(4L));
+        assertFalse(result.isEmpty());
+
+        result = jcrSql2Query("SELECT [jcr:path] FROM [nt:unstructured] WHERE [status] = 'open' LIMIT 2").execute();
+        assertThat(result.getRows().getSize(), is(2L));
+
+        result = jcrSql2Query("SELECT [jcr:path] FROM [nt:unstructured] WHERE [status] = 'pending'").execute();
+        assertTrue(result.isEmpty());
+        assertThat(result.getNodes().getSize(), is(0L));
+
+        // The index doesn't apply all of the criteria, so the rows have to be read to know how many there are ...
+        Query query = jcrSql2Query("SELECT [jcr:path] FROM [nt:unstructured] WHERE [status] = 'closed' AND NAME() LIKE 'task1%'");
+        validateQuery()
+                .rowCount(1L)
+                .useIndex("statusIndex")
+                .validate(query, query.execute());
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.query.InvalidQueryException;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.api.query.Query;
+import org.modeshape.jcr.api.query.QueryResult;
+
+public class QueryContinuationTest extends SingleUseAbstractTest {
+
+    private static final int NODE_COUNT = 47;
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        super.beforeEach();
+        Node items = session.getRootNode().addNode("items");
+        for (int i = 0; i != NODE_COUNT; ++i) {
+            Node item = items.addNode("item" + i);
+            // Many nodes have the same rank, and some have no rank at all ...
+            if (i % 5 != 0) item.setProperty("rank", "r" + (i % 7));
+        }
+        session.save();
+    }
+
+    @Test
+    public void shouldPageThroughAllResultsInOrderUsingContinuationTokens() throws Exception {
+        assertPagesMatchResults("SELECT [jcr:path], [rank] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') ORDER BY [rank]", 10);
+        assertPagesMatchResults("SELECT [jcr:path], [rank] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') ORDER BY [rank] DESC",
+                                7);
+        assertPagesMatchResults("SELECT [jcr:path], [rank] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') "
+                                + "ORDER BY [rank] DESC, [jcr:name]", 4);
+    }
+
+    @Test
+    public void shouldPageThroughResultsWhenSeekingOnFirstOrdering() throws Exception {
+        assertPagesMatchResults("SELECT [jcr:path], [rank] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') "
+                                + "AND [rank] IS NOT NULL ORDER BY [rank]", 3);
+        assertPagesMatchResults("SELECT [jcr:path], [rank] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') "
+                                + "ORDER BY [rank] ASC NULLS FIRST", 6);
+    }
+
+    @Test
+    public void shouldNotGrowContinuationTokensWhenManyRowsHaveTheSameValues() throws Exception {
+        // All of the rows have the same value, so each row is positioned only by its identifier ...
+        String sql = "SELECT [jcr:path] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') ORDER BY [jcr:primaryType]";
+        List<String> paths = new ArrayList<>();
+        Set<Integer> tokenLengths = new HashSet<>();
+        String token = null;
+        while (true) {
+            QueryResult result = query(sql, 5, token);
+            if (consume(result, paths) == 0) break;
+            token = result.getContinuationToken();
+            tokenLengths.add(token.length());
+        }
+        assertThat(paths.size(), is(NODE_COUNT));
+        assertThat(new HashSet<>(paths).size(), is(NODE_COUNT));
+        assertThat(tokenLengths.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotReturnContinuationTokenForUnorderedOrUnlimitedQueries() throws Exception {
+        QueryResult result = query("SELECT [jcr:path] FROM [nt:unstructured] WHERE ISCHILDNODE('/items')", 10, null);
+        consume(result, new ArrayList<String>());
+        assertThat(result.getContinuationToken(), is(nullValue()));
+
+        result = query("SELECT [jcr:path] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') ORDER BY [rank]", -1, null);
+        consume(result, new ArrayList<String>());
+        assertThat(result.getContinuationToken(), is(nullValue()));
+    }
+
+    @Test( expected = InvalidQueryException.class )
+    public void shouldNotAcceptContinuationTokenFromAnotherQuery() throws Exception {
+        QueryResult result = query("SELECT [jcr:path] FROM [nt:unstructured] WHERE ISCHILDNODE('/items') ORDER BY [rank]", 10,
+                                   null);
+        consume(result, new ArrayList<String>());
+        String token = result.getContinuationToken();
+        assertThat(token, is(notNullValue()));
+        query("SELECT [jcr:path] FROM [nt:unstructured] ORDER BY [rank]", 10, token);
+    }
+
+    @Test( expected = InvalidQueryException.class )
+    public void shouldNotAcceptMalformedContinuationToken() throws Exception {
+        query("SELECT [jcr:path] FROM [nt:unstructured] ORDER BY [rank]", 10, "not-a-token");
+    }
+
+    protected void assertPagesMatchResults( String sql,
+                                            int pageSize ) throws Exception {
+        List<String> expected = new ArrayList<>();
+        consume(query(sql, -1, null), expected);
+
+        List<String> actual = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        while (true) {
+            QueryResult result = query(sql, pageSize, token);
+            int count = consume(result, actual);
+            if (count == 0) break;
+            token = result.getContinuationToken();
+            assertThat(token, is(notNullValue()));
+            ++pages;
+        }
+        assertThat(pages, is((expected.size() + pageSize - 1) / pageSize));
+        // Rows with the same values may be in any order, so compare only the ordering values and the set of rows ...
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(new HashSet<>(actual), is(new HashSet<>(expected)));
+        for (int i = 0; i != expected.size(); ++i) {
+            assertThat(rankOf(actual.get(i)), is(rankOf(expected.get(i))));
+        }
+    }
+
+    protected QueryResult query( String sql,
+                                 int limit,
+                                 String token ) throws Exception {
+        Query query = (Query)session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        if (limit >= 0) query.setLimit(limit);
+        query.setContinuationToken(token);
+        return query.execute();
+    }
+
+    protected int consume( QueryResult result,
+                           List<String> paths ) throws Exception {
+        int count = 0;
+        for (NodeIterator iter = result.getNodes(); iter.hasNext();) {
+            paths.add(iter.nextNode().getPath());
+            ++count;
+        }
+        return count;
+    }
+
+    protected String rankOf( String path ) throws Exception {
+        Node node = session.getNode(path);
+        return node.hasProperty("rank") ? node.getProperty("rank").getString() : null;
+    }
+}
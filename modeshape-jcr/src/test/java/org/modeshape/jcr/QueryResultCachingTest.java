@@ -0,0 +1,202 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.NodeTypeTemplate;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.query.QueryResultCache;
+import org.modeshape.schematic.document.Json;
+
+public class QueryResultCachingTest extends SingleUseAbstractTest {
+
+    private QueryResultCache cache;
+
+    @Override
+    protected RepositoryConfiguration createRepositoryConfiguration( String repositoryName ) throws Exception {
+        return new RepositoryConfiguration(Json.read("{ 'queryCaching' : { 'maxEntries' : 10, 'maxRowsPerEntry' : 5 } }"),
+                                           repositoryName);
+    }
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        super.beforeEach();
+        cache = repository().queryManager().getResultCache();
+        Node a = session.getRootNode().addNode("a");
+        a.addNode("a1").setProperty("color", "red");
+        a.addNode("a2").setProperty("color", "red");
+        Node b = session.getRootNode().addNode("b");
+        b.addNode("b1").setProperty("color", "red");
+        session.save();
+        cache.clear();
+    }
+
+    @Test
+    public void shouldNotCacheResultsUnlessConfigured() throws Exception {
+        startRepositoryWithConfiguration("{}");
+        assertThat(repository().queryManager().getResultCache(), is(nullValue()));
+        session.getRootNode().addNode("c").setProperty("color", "red");
+        session.save();
+        assertQueryReturns("SELECT * FROM [nt:unstructured] WHERE color = 'red'", 1);
+    }
+
+    @Test
+    public void shouldReuseCachedResultsUntilContentChanges() throws Exception {
+        String sql = "SELECT * FROM [nt:unstructured] WHERE color = 'red'";
+        assertQueryReturns(sql, 3);
+        assertThat(cache.size(), is(1));
+        assertQueryReturns(sql, 3);
+        assertThat(cache.size(), is(1));
+
+        session.getNode("/b").addNode("b2").setProperty("color", "red");
+        session.save();
+        assertThat(cache.size(), is(0));
+        assertQueryReturns(sql, 4);
+        assertThat(cache.size(), is(1));
+
+        session.getNode("/a/a1").remove();
+        session.save();
+        assertQueryReturns(sql, 3);
+    }
+
+    @Test
+    public void shouldCacheResultsSeparatelyForEachValueOfBindVariables() throws Exception {
+        String sql = "SELECT * FROM [nt:unstructured] WHERE color = $color";
+        assertQueryReturns(sql, "color", "red", 3);
+        assertQueryReturns(sql, "color", "blue", 0);
+        assertThat(cache.size(), is(2));
+        assertQueryReturns(sql, "color", "red", 3);
+        assertQueryReturns(sql, "color", "blue", 0);
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void shouldKeepCachedResultsWhenChangesAreOutsideOfQueriedPaths() throws Exception {
+        String sql = "SELECT * FROM [nt:unstructured] AS n WHERE ISDESCENDANTNODE(n, '/a') AND n.color = 'red'";
+        assertQueryReturns(sql, 2);
+        assertThat(cache.size(), is(1));
+
+        session.getNode("/b").addNode("b2").setProperty("color", "red");
+        session.save();
+        assertThat(cache.size(), is(1));
+        assertQueryReturns(sql, 2);
+
+        session.getNode("/a").addNode("a3").setProperty("color", "red");
+        session.save();
+        assertThat(cache.size(), is(0));
+        assertQueryReturns(sql, 3);
+    }
+
+    @Test
+    public void shouldKeepCachedResultsWhenChangesAreToNodesOfOtherTypes() throws Exception {
+        String sql = "SELECT * FROM [nt:folder]";
+        assertQueryReturns(sql, 0);
+        assertThat(cache.size(), is(1));
+
+        session.getNode("/b").addNode("b2").setProperty("color", "red");
+        session.save();
+        assertThat(cache.size(), is(1));
+
+        session.getNode("/b").addNode("folder", "nt:folder");
+        session.save();
+        assertThat(cache.size(), is(0));
+        assertQueryReturns(sql, 1);
+    }
+
+    @Test
+    public void shouldEvictCachedResultsWhenNodesAreMoved() throws Exception {
+        String sql = "SELECT * FROM [nt:unstructured] AS n WHERE ISDESCENDANTNODE(n, '/a') AND n.color = 'red'";
+        assertQueryReturns(sql, 2);
+        session.move("/b/b1", "/a/b1");
+        session.save();
+        assertThat(cache.size(), is(0));
+        assertQueryReturns(sql, 3);
+    }
+
+    @Test
+    public void shouldNotCacheResultsWithTooManyRowsOrWhenSessionHasTransientChanges() throws Exception {
+        for (int i = 0; i != 5; ++i) {
+            session.getNode("/b").addNode("x" + i).setProperty("color", "red");
+        }
+        session.save();
+        cache.clear();
+        assertQueryReturns("SELECT * FROM [nt:unstructured] WHERE color = 'red'", 8);
+        assertThat(cache.size(), is(0));
+
+        session.getNode("/b").addNode("transient").setProperty("color", "blue");
+        assertQueryReturns("SELECT * FROM [nt:unstructured] WHERE color = 'blue'", 0);
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldEvictCachedResultsWhenSystemContentChanges() throws Exception {
+        String sql = "SELECT * FROM [nt:nodeType] AS t WHERE t.[jcr:nodeTypeName] = 'test:cached'";
+        assertQueryReturns(sql, 0);
+        assertThat(cache.size(), is(1));
+
+        NodeTypeManager nodeTypes = session.getWorkspace().getNodeTypeManager();
+        session.getWorkspace().getNamespaceRegistry().registerNamespace("test", "http://www.modeshape.org/test/cached");
+        NodeTypeTemplate nodeType = nodeTypes.createNodeTypeTemplate();
+        nodeType.setName("test:cached");
+        nodeTypes.registerNodeType(nodeType, false);
+        assertThat(cache.size(), is(0));
+        assertQueryReturns(sql, 1);
+    }
+
+    @Test
+    public void shouldNotCountCachedRowsOfNodesRemovedSinceTheResultWasCached() throws Exception {
+        String sql = "SELECT * FROM [nt:unstructured] WHERE color = 'red'";
+        assertQueryReturns(sql, 3);
+        assertThat(cache.size(), is(1));
+        QueryResult result = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2).execute();
+
+        session.getNode("/a/a1").remove();
+        session.save();
+        assertThat(result.getNodes().getSize(), is(2L));
+        assertThat(result.getRows().getSize(), is(2L));
+    }
+
+    protected void assertQueryReturns( String sql,
+                                       long expectedCount ) throws Exception {
+        assertQueryReturns(sql, null, null, expectedCount);
+    }
+
+    protected void assertQueryReturns( String sql,
+                                       String variableName,
+                                       String variableValue,
+                                       long expectedCount ) throws Exception {
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        if (variableName != null) {
+            query.bindValue(variableName, session.getValueFactory().createValue(variableValue));
+        }
+        QueryResult result = query.execute();
+        long count = 0L;
+        for (NodeIterator iter = result.getNodes(); iter.hasNext();) {
+            iter.nextNode();
+            ++count;
+        }
+        assertThat(count, is(expectedCount));
+    }
+}
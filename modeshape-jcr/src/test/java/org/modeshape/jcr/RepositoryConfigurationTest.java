@@ -24,6 +24,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.EnumSet;
 import org.junit.Before;
@@ -39,6 +40,10 @@ import org.modeshape.jcr.RepositoryConfiguration.JaasSecurity;
 import org.modeshape.jcr.RepositoryConfiguration.Security;
 import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.value.binary.BinaryStore;
+import org.modeshape.jcr.value.binary.CachingBinaryStore;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore;
+import org.modeshape.jcr.value.binary.DatabaseBinaryStore;
 import org.modeshape.jcr.value.binary.MongodbBinaryStore;
 import org.modeshape.schematic.Schematic;
 import org.modeshape.schematic.document.Document;
@@ -141,6 +146,15 @@ public class RepositoryConfigurationTest {
     public void shouldSuccessfullyValidateDriverBasedBinaryStorageConfiguration() {
         assertValid("config/database-url-binary-storage.json");
     }
+
+    @Test
+    public void shouldSuccessfullyValidateBinaryStorageConfigurationWithLocalCache() throws Exception {
+        RepositoryConfiguration config = assertValid("config/database-binary-storage-with-local-cache.json");
+        BinaryStore store = config.getBinaryStorage().getBinaryStore();
+        assertTrue(store instanceof CachingBinaryStore);
+        assertTrue(((CachingBinaryStore)store).getDelegate() instanceof DatabaseBinaryStore);
+        assertEquals(new File("target/binary-cache"), ((CachingBinaryStore)store).getDirectory());
+    }
    
     @Test
     @FixFor( "MODE-2574" )
@@ -177,6 +191,14 @@ public class RepositoryConfigurationTest {
         }
     }
 
+    @Test
+    public void shouldSuccessfullyValidateChunkedBinaryStorageConfiguration() throws Exception {
+        RepositoryConfiguration config = assertValid("config/chunked-binary-storage.json");
+        RepositoryConfiguration.BinaryStorage storage = config.getBinaryStorage();
+        assertEquals(RepositoryConfiguration.FieldValue.BINARY_STORAGE_TYPE_CHUNKED, storage.getType());
+        assertTrue(storage.getBinaryStore() instanceof ChunkedFileSystemBinaryStore);
+    }
+
     @Test
     public void shouldSuccessfullyValidateS3BinaryStorageConfiguration() {
         assertValid("config/s3-binary-storage.json");
@@ -516,6 +538,20 @@ public class RepositoryConfigurationTest {
         assertEquals(100, config.getLockTimeoutMillis());
     }
     
+    @Test
+    public void shouldUseDefaultReindexingParallelismAndBatchSize() throws Exception {
+        RepositoryConfiguration config = RepositoryConfiguration.read("{ 'name' = 'nm', 'reindexing' : { 'async' : false } }");
+        assertEquals(Default.REINDEXING_PARALLELISM, config.getReindexing().getParallelism());
+        assertEquals(Default.REINDEXING_BATCH_SIZE, config.getReindexing().getBatchSize());
+    }
+
+    @Test
+    public void shouldUseCustomReindexingParallelismAndBatchSize() throws Exception {
+        RepositoryConfiguration config = assertValid(RepositoryConfiguration.read("{ 'name' = 'nm', 'reindexing' : { 'parallelism' : 3, 'batchSize' : 20 } }"));
+        assertEquals(3, config.getReindexing().getParallelism());
+        assertEquals(20, config.getReindexing().getBatchSize());
+    }
+
     protected RepositoryConfiguration assertValid( RepositoryConfiguration config ) {
         Problems results = config.validate();
         assertThat(results.toString(), results.hasProblems(), is(false));
@@ -0,0 +1,154 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.Collections;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.query.ContentStatistics;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+
+public class RepositoryContentStatisticsTest {
+
+    private static final String SYSTEM = "system";
+    private static final String WORKSPACE = "default";
+    private static final NodeKey PARENT = new NodeKey("source1works1-parent");
+    private static final Set<Name> NO_MIXINS = Collections.emptySet();
+    private static final Set<Name> REFERENCEABLE = Collections.singleton(JcrMixLexicon.REFERENCEABLE);
+
+    private ExecutionContext context;
+    private RepositoryContentStatistics statistics;
+    private int nextKey;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        statistics = new RepositoryContentStatistics(SYSTEM);
+    }
+
+    @Test
+    public void shouldNotKnowTheCountsOfWorkspacesThatHaveNotBeenScanned() {
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(ContentStatistics.UNKNOWN));
+        RepositoryContentStatistics.Counts counts = statistics.startScan(WORKSPACE);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(ContentStatistics.UNKNOWN));
+        counts.complete();
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(1L));
+    }
+
+    @Test
+    public void shouldCountNodesAddedAndRemovedAfterTheScan() {
+        RepositoryContentStatistics.Counts counts = statistics.startScan(WORKSPACE);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, REFERENCEABLE);
+        counts.record(JcrNtLexicon.FOLDER, NO_MIXINS);
+        counts.complete();
+
+        RecordingChanges changes = changes(WORKSPACE);
+        added(changes, JcrNtLexicon.UNSTRUCTURED, REFERENCEABLE);
+        added(changes, JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        added(changes, JcrNtLexicon.FILE, NO_MIXINS);
+        removed(changes, JcrNtLexicon.FOLDER, NO_MIXINS);
+        statistics.notify(changes);
+
+        changes = changes(WORKSPACE);
+        removed(changes, JcrNtLexicon.UNSTRUCTURED, REFERENCEABLE);
+        statistics.notify(changes);
+
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(3L));
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrMixLexicon.REFERENCEABLE), is(1L));
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.FILE), is(1L));
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.FOLDER), is(0L));
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.RESOURCE), is(0L));
+    }
+
+    @Test
+    public void shouldIgnoreChangesThatArriveDuringTheScan() {
+        RepositoryContentStatistics.Counts counts = statistics.startScan(WORKSPACE);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+
+        // the scan also sees the node added while it runs, so counting the change as well would count the node twice ...
+        RecordingChanges changes = changes(WORKSPACE);
+        added(changes, JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        statistics.notify(changes);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        counts.complete();
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(2L));
+
+        // but changes made after the scan completed are counted ...
+        changes = changes(WORKSPACE);
+        added(changes, JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        statistics.notify(changes);
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(3L));
+    }
+
+    @Test
+    public void shouldIncludeSystemContentInTheCountsOfOtherWorkspaces() {
+        RepositoryContentStatistics.Counts counts = statistics.startScan(WORKSPACE);
+        counts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        counts.complete();
+        RepositoryContentStatistics.Counts systemCounts = statistics.startScan(SYSTEM);
+        systemCounts.record(JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        systemCounts.complete();
+
+        RecordingChanges changes = changes(SYSTEM);
+        added(changes, JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+        statistics.notify(changes);
+        assertThat(statistics.getNodeCount(SYSTEM, JcrNtLexicon.UNSTRUCTURED), is(2L));
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(3L));
+    }
+
+    @Test
+    public void shouldForgetTheCountsOfRemovedWorkspaces() {
+        statistics.startScan(WORKSPACE).complete();
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(0L));
+
+        RecordingChanges changes = changes(SYSTEM);
+        changes.workspaceRemoved(WORKSPACE);
+        statistics.notify(changes);
+        assertThat(statistics.getNodeCount(WORKSPACE, JcrNtLexicon.UNSTRUCTURED), is(ContentStatistics.UNKNOWN));
+    }
+
+    private RecordingChanges changes( String workspaceName ) {
+        return new RecordingChanges("session", "process", "repository", workspaceName, null);
+    }
+
+    private void added( RecordingChanges changes,
+                        Name primaryType,
+                        Set<Name> mixinTypes ) {
+        changes.nodeCreated(nextKey(), PARENT, nextPath(), primaryType, mixinTypes, null);
+    }
+
+    private void removed( RecordingChanges changes,
+                          Name primaryType,
+                          Set<Name> mixinTypes ) {
+        changes.nodeRemoved(nextKey(), PARENT, nextPath(), primaryType, mixinTypes, JcrNtLexicon.UNSTRUCTURED, NO_MIXINS);
+    }
+
+    private NodeKey nextKey() {
+        return new NodeKey("source1works1-node" + ++nextKey);
+    }
+
+    private Path nextPath() {
+        return context.getValueFactories().getPathFactory().create("/node" + nextKey);
+    }
+}
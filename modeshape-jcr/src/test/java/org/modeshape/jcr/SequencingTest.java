@@ -16,18 +16,26 @@
 package org.modeshape.jcr;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Node;
 import org.junit.Test;
 import org.modeshape.common.FixFor;
 import org.modeshape.common.collection.Problems;
 import org.modeshape.jcr.RepositoryConfiguration.FieldName;
+import org.modeshape.jcr.TestSequencersHolder.RecordingSequencer;
+import org.modeshape.jcr.api.monitor.Statistics;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+import org.modeshape.jcr.api.monitor.Window;
 import org.modeshape.jcr.sequencer.AbstractSequencerTest;
 import org.modeshape.schematic.Schematic;
 import org.modeshape.schematic.document.Document;
@@ -147,6 +155,247 @@ public class SequencingTest extends AbstractSequencerTest {
         assertThat(session.getRootNode().hasNode("output/foo"), is(false));
     }
 
+    @Test
+    public void shouldSequenceBatchesOfWorkAndIsolateFailures() throws Exception {
+        EditableDocument doc = Schematic.newDocument();
+        doc.getOrCreateDocument(FieldName.SEQUENCING).set(FieldName.SEQUENCING_BATCH_SIZE, 10);
+        addSequencer(doc, "seq1", TestSequencersHolder.FaultyForSomeInputs.class.getName(), "/inputs/*[@bar] => /output");
+        startRepositoryWithConfiguration(doc);
+        assertThat(repository.getConfiguration().getSequencing().getBatchSize(), is(10));
+
+        // create the parent of the output up front, so that concurrently running sequencers don't each create one ...
+        session.getRootNode().addNode("output");
+        Node inputs = session.getRootNode().addNode("inputs");
+        for (int i = 0; i != 5; ++i) {
+            inputs.addNode("foo" + i).setProperty("bar", i == 2 ? "fail" : "value of bar");
+        }
+        session.save();
+
+        // the failure of one work item in a batch doesn't prevent the output of the others from being saved ...
+        expectSequencingFailure(inputs.getNode("foo2"));
+        for (int i = 0; i != 5; ++i) {
+            if (i != 2) {
+                assertNotNull(getOutputNode("/output/foo" + i));
+                assertNotNull(session.getNode("/output/foo" + i + "/" + TestSequencersHolder.DERIVED_NODE_NAME));
+            }
+        }
+        assertThat(session.getRootNode().hasNode("output/foo2"), is(false));
+    }
+
+    @Test
+    public void shouldKeepThePreviousOutputWhenABatchedSequencerHasNoOutput() throws Exception {
+        RecordingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        EditableDocument sequencing = doc.getOrCreateDocument(FieldName.SEQUENCING);
+        sequencing.set(FieldName.SEQUENCING_BATCH_SIZE, 10);
+        sequencing.set(FieldName.MAX_POOL_SIZE, 1);
+        addSequencer(doc, "blocker", RecordingSequencer.class.getName(), "/block/*[@bar] => /output");
+        addSequencer(doc, "seq1", TestSequencersHolder.DecliningForSomeInputs.class.getName(), "/inputs/*[@bar] => /output");
+        startRepositoryWithConfiguration(doc);
+
+        session.getRootNode().addNode("output");
+        Node inputs = session.getRootNode().addNode("inputs");
+        Node foo0 = inputs.addNode("foo0");
+        foo0.setProperty("bar", "value of bar");
+        Node foo1 = inputs.addNode("foo1");
+        foo1.setProperty("bar", "value of bar");
+        session.save();
+        assertNotNull(getOutputNode("/output/foo0"));
+        assertNotNull(getOutputNode("/output/foo1"));
+        String derived0 = waitForNode("/output/foo0/" + TestSequencersHolder.DERIVED_NODE_NAME, null).getIdentifier();
+        String derived1 = waitForNode("/output/foo1/" + TestSequencersHolder.DERIVED_NODE_NAME, null).getIdentifier();
+
+        // hold the only sequencing thread, so that the changes to both inputs are sequenced in one batch ...
+        RecordingSequencer.blockFirstExecution();
+        session.getRootNode().addNode("block").addNode("first").setProperty("bar", "value of bar");
+        session.save();
+        assertTrue(RecordingSequencer.firstStarted.await(10, TimeUnit.SECONDS));
+        foo0.setProperty("bar", "decline");
+        foo1.setProperty("bar", "new value of bar");
+        session.save();
+        waitForQueueSize(2);
+        RecordingSequencer.release();
+
+        // the output of the second input is replaced, but the sequencer had no new output for the first one ...
+        assertThat(waitForNode("/output/foo1/" + TestSequencersHolder.DERIVED_NODE_NAME, derived1).getIdentifier(),
+                   is(not(derived1)));
+        Thread.sleep(100L);
+        session.refresh(false);
+        assertThat(session.getNode("/output/foo0/" + TestSequencersHolder.DERIVED_NODE_NAME).getIdentifier(), is(derived0));
+    }
+
+    @Test
+    public void shouldRunQueuedWorkOfSequencersWithHigherPriorityFirst() throws Exception {
+        RecordingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        doc.getOrCreateDocument(FieldName.SEQUENCING).set(FieldName.MAX_POOL_SIZE, 1);
+        addSequencer(doc, "low", RecordingSequencer.class.getName(), "/low/*[@bar] => /output");
+        addSequencer(doc, "high", RecordingSequencer.class.getName(), "/high/*[@bar] => /output");
+        doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("high").set("priority", 5);
+        startRepositoryWithConfiguration(doc);
+
+        RecordingSequencer.blockFirstExecution();
+        Node low = session.getRootNode().addNode("low");
+        Node high = session.getRootNode().addNode("high");
+        low.addNode("first").setProperty("bar", "value of bar");
+        session.save();
+        assertTrue(RecordingSequencer.firstStarted.await(10, TimeUnit.SECONDS));
+
+        // the only sequencing thread is busy, so the following work waits in the queue ...
+        low.addNode("low1").setProperty("bar", "value of bar");
+        session.save();
+        low.addNode("low2").setProperty("bar", "value of bar");
+        session.save();
+        high.addNode("high1").setProperty("bar", "value of bar");
+        session.save();
+        waitForQueueSize(3);
+
+        RecordingSequencer.release();
+        waitForExecutions(4);
+        assertThat(RecordingSequencer.EXECUTED, is(Arrays.asList("first", "high1", "low1", "low2")));
+    }
+
+    @Test
+    public void shouldLimitTheConcurrentExecutionsOfASequencer() throws Exception {
+        RecordingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        doc.getOrCreateDocument(FieldName.SEQUENCING).set(FieldName.MAX_POOL_SIZE, 4);
+        addSequencer(doc, "seq1", RecordingSequencer.class.getName(), "/inputs/*[@bar] => /output");
+        EditableDocument sequencer = doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("seq1");
+        sequencer.set("maxConcurrentExecutions", 1);
+        sequencer.set("pauseInMillis", 50L);
+        startRepositoryWithConfiguration(doc);
+
+        Node inputs = session.getRootNode().addNode("inputs");
+        session.save();
+        for (int i = 0; i != 6; ++i) {
+            inputs.addNode("foo" + i).setProperty("bar", "value of bar");
+            session.save();
+        }
+
+        waitForExecutions(6);
+        assertThat(RecordingSequencer.EXECUTED, is(Arrays.asList("foo0", "foo1", "foo2", "foo3", "foo4", "foo5")));
+        assertThat(RecordingSequencer.MAX_RUNNING.get(), is(1));
+    }
+
+    @Test
+    public void shouldCoalesceChangesToPropertiesThatAreAlreadyQueued() throws Exception {
+        RecordingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        doc.getOrCreateDocument(FieldName.SEQUENCING).set(FieldName.MAX_POOL_SIZE, 1);
+        addSequencer(doc, "seq1", RecordingSequencer.class.getName(), "/inputs/*[@bar] => /output");
+        startRepositoryWithConfiguration(doc);
+
+        RecordingSequencer.blockFirstExecution();
+        Node inputs = session.getRootNode().addNode("inputs");
+        inputs.addNode("first").setProperty("bar", "value of bar");
+        session.save();
+        assertTrue(RecordingSequencer.firstStarted.await(10, TimeUnit.SECONDS));
+
+        Node foo = inputs.addNode("foo");
+        for (int i = 0; i != 4; ++i) {
+            foo.setProperty("bar", "value " + i);
+            session.save();
+        }
+        // the changes are sent to the sequencers asynchronously, so wait until all of them have been queued ...
+        assertThat(waitForTotal(ValueMetric.SEQUENCER_COALESCED_COUNT, 3L), is(3L));
+        assertThat(repository.runningState().sequencers().queueSize(), is(1));
+
+        RecordingSequencer.release();
+        waitForExecutions(2);
+        Thread.sleep(100L);
+        assertThat(RecordingSequencer.EXECUTED, is(Arrays.asList("first", "foo")));
+        assertThat(repository.runningState().sequencers().queueSize(), is(0));
+    }
+
+    @Test
+    public void shouldRejectWorkWhenTheQueueIsFull() throws Exception {
+        RecordingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        EditableDocument sequencing = doc.getOrCreateDocument(FieldName.SEQUENCING);
+        sequencing.set(FieldName.MAX_POOL_SIZE, 1);
+        sequencing.set(FieldName.QUEUE_SIZE, 1);
+        addSequencer(doc, "seq1", RecordingSequencer.class.getName(), "/inputs/*[@bar] => /output");
+        startRepositoryWithConfiguration(doc);
+
+        RecordingSequencer.blockFirstExecution();
+        Node inputs = session.getRootNode().addNode("inputs");
+        inputs.addNode("first").setProperty("bar", "value of bar");
+        session.save();
+        assertTrue(RecordingSequencer.firstStarted.await(10, TimeUnit.SECONDS));
+
+        Node queued = inputs.addNode("queued");
+        queued.setProperty("bar", "value of bar");
+        session.save();
+        // the queue already holds one work item, so this one is dropped ...
+        inputs.addNode("rejected").setProperty("bar", "value of bar");
+        session.save();
+        // but changes to the queued work are still accepted, and once they are the rejected work has been seen too ...
+        queued.setProperty("bar", "new value of bar");
+        session.save();
+        assertThat(waitForTotal(ValueMetric.SEQUENCER_COALESCED_COUNT, 1L), is(1L));
+        assertThat(repository.runningState().sequencers().queueSize(), is(1));
+
+        RecordingSequencer.release();
+        waitForExecutions(2);
+        Thread.sleep(100L);
+        assertThat(RecordingSequencer.EXECUTED, is(Arrays.asList("first", "queued")));
+    }
+
+    private void waitForExecutions( int count ) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (RecordingSequencer.EXECUTED.size() < count && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10L);
+        }
+        assertThat(RecordingSequencer.EXECUTED.size(), is(count));
+    }
+
+    private Node waitForNode( String path,
+                              String replacedIdentifier ) throws Exception {
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < timeout) {
+            session.refresh(false);
+            if (session.nodeExists(path)) {
+                Node node = session.getNode(path);
+                if (!node.getIdentifier().equals(replacedIdentifier)) {
+                    return node;
+                }
+            }
+            Thread.sleep(10L);
+        }
+        return session.getNode(path);
+    }
+
+    private void waitForQueueSize( int size ) throws InterruptedException {
+        // the changes are sent to the sequencers asynchronously ...
+        Sequencers sequencers = repository.runningState().sequencers();
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (sequencers.queueSize() < size && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10L);
+        }
+        assertThat(sequencers.queueSize(), is(size));
+    }
+
+    private long waitForTotal( ValueMetric metric,
+                               long expected ) throws InterruptedException {
+        // the counts are only visible once the statistics have been rolled up, which happens every few seconds ...
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(15);
+        long total = 0L;
+        while (System.currentTimeMillis() < timeout) {
+            total = 0L;
+            for (Statistics stats : repository.getRepositoryStatistics().getHistory(metric, Window.PREVIOUS_60_SECONDS).getStats()) {
+                if (stats != null) {
+                    total += stats.getMaximum();
+                }
+            }
+            if (total >= expected) {
+                break;
+            }
+            Thread.sleep(100L);
+        }
+        return total;
+    }
+
     /**
      * Sequencer path expressions are matching expressions, and therefore we cannot verify that they actually represent paths. So,
      * even though this is an valid path expression, it won't match any real paths.
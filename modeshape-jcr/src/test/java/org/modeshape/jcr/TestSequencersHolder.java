@@ -20,6 +20,9 @@ import static org.junit.Assert.assertNotNull;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
@@ -46,6 +49,39 @@ public class TestSequencersHolder {
         }
     }
 
+    /**
+     * A sequencer that fails for input properties with the value "fail", and otherwise behaves like {@link DefaultSequencer}.
+     */
+    public static class FaultyForSomeInputs extends Sequencer {
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Sequencer.Context context ) throws Exception {
+            if ("fail".equals(inputProperty.getString())) {
+                throw new IllegalArgumentException("We're expecting to get this exception");
+            }
+            outputNode.addNode(DERIVED_NODE_NAME);
+            return true;
+        }
+    }
+
+    /**
+     * A sequencer that has no output for input properties with the value "decline", and otherwise behaves like
+     * {@link DefaultSequencer}.
+     */
+    public static class DecliningForSomeInputs extends Sequencer {
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Sequencer.Context context ) throws Exception {
+            if ("decline".equals(inputProperty.getString())) {
+                return false;
+            }
+            outputNode.addNode(DERIVED_NODE_NAME);
+            return true;
+        }
+    }
+
     public static class FaultyDuringInitialize extends Sequencer {
         public static final AtomicInteger EXECUTE_CALL_COUNTER = new AtomicInteger();
 
@@ -82,6 +118,59 @@ public class TestSequencersHolder {
         }
     }
 
+    /**
+     * A sequencer that records the names of the nodes it sequences and the number of executions that run at the same time, and
+     * which can hold back the first execution of any instance.
+     */
+    public static class RecordingSequencer extends Sequencer {
+        public static final List<String> EXECUTED = new CopyOnWriteArrayList<>();
+        public static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+        public static volatile CountDownLatch firstStarted = new CountDownLatch(1);
+        private static final AtomicInteger RUNNING = new AtomicInteger();
+        private static final AtomicBoolean BLOCK = new AtomicBoolean();
+        private static volatile CountDownLatch released = new CountDownLatch(1);
+
+        private long pauseInMillis;
+
+        public static void reset() {
+            EXECUTED.clear();
+            MAX_RUNNING.set(0);
+            RUNNING.set(0);
+            BLOCK.set(false);
+            firstStarted = new CountDownLatch(1);
+            released = new CountDownLatch(1);
+        }
+
+        public static void blockFirstExecution() {
+            BLOCK.set(true);
+        }
+
+        public static void release() {
+            released.countDown();
+        }
+
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Context context ) throws Exception {
+            if (BLOCK.compareAndSet(true, false)) {
+                firstStarted.countDown();
+                released.await();
+            }
+            int running = RUNNING.incrementAndGet();
+            try {
+                MAX_RUNNING.accumulateAndGet(running, Math::max);
+                if (pauseInMillis > 0L) {
+                    Thread.sleep(pauseInMillis);
+                }
+                EXECUTED.add(inputProperty.getParent().getName());
+            } finally {
+                RUNNING.decrementAndGet();
+            }
+            return false;
+        }
+    }
+
     /**
      * A sequencer which has different property types and is used to test the setting of property values.
      */
@@ -0,0 +1,253 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.TextExtractors.Priority;
+import org.modeshape.jcr.api.text.TextExtractor;
+import org.modeshape.jcr.mimetype.NullMimeTypeDetector;
+import org.modeshape.jcr.text.TextExtractorContext;
+import org.modeshape.jcr.value.BinaryValue;
+import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
+
+public class TextExtractorsTest {
+
+    private File directory;
+    private File queueDirectory;
+    private FileSystemBinaryStore store;
+    private TextExtractor.Context context;
+    private RecordingTextExtractor extractor;
+    private TextExtractors extractors;
+
+    @Before
+    public void beforeEach() {
+        directory = new File("target/text-extraction-fsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        queueDirectory = new File("target/text-extraction-queue/");
+        FileUtil.delete(queueDirectory);
+        store = FileSystemBinaryStore.create(directory, null);
+        store.setMinimumBinarySizeInBytes(1);
+        store.start();
+        context = new TextExtractorContext(NullMimeTypeDetector.INSTANCE);
+        extractor = new RecordingTextExtractor();
+    }
+
+    @After
+    public void afterEach() {
+        if (extractors != null) {
+            extractors.shutdown();
+        }
+        store.shutdown();
+        FileUtil.delete(directory);
+        FileUtil.delete(queueDirectory);
+    }
+
+    private TextExtractors newExtractors( int maxQueueSize,
+                                          File queueDirectory ) {
+        return new TextExtractors(Executors.newSingleThreadExecutor(), 1, maxQueueSize, queueDirectory, null,
+                                  new CopyOnWriteArrayList<TextExtractor>(Arrays.asList(extractor)));
+    }
+
+    private BinaryValue storeValue( String content ) throws Exception {
+        return store.storeValue(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    @Test
+    public void shouldExtractTheTextOfEachBinaryValueOnlyOnce() throws Exception {
+        extractors = newExtractors(10, null);
+        BinaryValue value = storeValue("first");
+        extractor.blockFirstExtraction();
+
+        CountDownLatch latch = extractors.extract(store, value, context);
+        assertTrue(extractor.firstStarted.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i != 5; ++i) {
+            assertThat(extractors.extract(store, value, context), is(sameInstance(latch)));
+        }
+        assertThat(extractors.getWorkerLatch(value.getKey()), is(sameInstance(latch)));
+
+        extractor.release();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(extractor.extracted, is(Arrays.asList("first")));
+        assertThat(store.getExtractedText(value), is("text of first"));
+        // the latch is discarded once the text has been stored ...
+        assertThat(extractors.getWorkerLatch(value.getKey()), is(nullValue()));
+    }
+
+    @Test
+    public void shouldExtractTheTextOfHigherPriorityValuesFirst() throws Exception {
+        extractors = newExtractors(10, null);
+        extractor.blockFirstExtraction();
+        CountDownLatch first = extractors.extract(store, storeValue("first"), context);
+        assertTrue(extractor.firstStarted.await(10, TimeUnit.SECONDS));
+
+        extractors.extract(store, storeValue("low"), context, Priority.LOW);
+        extractors.extract(store, storeValue("normal"), context, Priority.NORMAL);
+        BinaryValue raised = storeValue("raised");
+        extractors.extract(store, raised, context, Priority.LOW);
+        CountDownLatch last = extractors.extract(store, storeValue("high"), context, Priority.HIGH);
+        // asking again with a higher priority moves the value ahead of the less important work ...
+        extractors.extract(store, raised, context, Priority.HIGH);
+        assertThat(extractors.getQueueSize(), is(4));
+
+        extractor.release();
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        assertTrue(last.await(10, TimeUnit.SECONDS));
+        assertTrue(extractors.getWorkerLatch(storeValue("low").getKey()).await(10, TimeUnit.SECONDS));
+        assertThat(extractor.extracted, is(Arrays.asList("first", "raised", "high", "normal", "low")));
+        assertThat(extractors.getQueueSize(), is(0));
+    }
+
+    @Test
+    public void shouldExtractTheTextInTheCallingThreadWhenTheQueueIsFull() throws Exception {
+        extractors = newExtractors(1, null);
+        extractor.blockFirstExtraction();
+        CountDownLatch first = extractors.extract(store, storeValue("first"), context);
+        assertTrue(extractor.firstStarted.await(10, TimeUnit.SECONDS));
+        CountDownLatch queued = extractors.extract(store, storeValue("queued"), context);
+
+        BinaryValue value = storeValue("overflow");
+        CountDownLatch overflow = extractors.extract(store, value, context);
+        assertThat(overflow.getCount(), is(0L));
+        assertThat(store.getExtractedText(value), is("text of overflow"));
+        assertThat(extractor.threads.get(0), is(sameInstance(Thread.currentThread())));
+
+        extractor.release();
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        assertTrue(queued.await(10, TimeUnit.SECONDS));
+        assertThat(extractor.extracted, is(Arrays.asList("overflow", "first", "queued")));
+    }
+
+    @Test
+    public void shouldNotQueueValuesWithoutTextAgain() throws Exception {
+        extractors = newExtractors(10, null);
+        store.setTextExtractors(extractors);
+        extractor.withoutText = true;
+        BinaryValue value = storeValue("no text");
+        assertTrue(extractors.extract(store, value, context).await(10, TimeUnit.SECONDS));
+
+        CountDownLatch latch = extractors.getWorkerLatch(value.getKey());
+        assertThat(latch, is(notNullValue()));
+        assertThat(latch.getCount(), is(0L));
+        assertThat(store.getText(value), is(nullValue()));
+        assertThat(extractor.extracted, is(Arrays.asList("no text")));
+    }
+
+    @Test
+    public void shouldResumePendingExtractionsAfterRestart() throws Exception {
+        extractors = newExtractors(10, queueDirectory);
+        extractor.blockFirstExtraction();
+        BinaryValue first = storeValue("first");
+        BinaryValue second = storeValue("second");
+        BinaryValue third = storeValue("third");
+        extractors.extract(store, first, context);
+        assertTrue(extractor.firstStarted.await(10, TimeUnit.SECONDS));
+        extractors.extract(store, second, context);
+        extractors.extract(store, third, context);
+        assertTrue(new File(queueDirectory, TextExtractors.PENDING_EXTRACTIONS_FILE_NAME).exists());
+
+        // shutting down interrupts the blocked extraction and abandons the queued ones ...
+        extractors.shutdown();
+        assertThat(store.getExtractedText(first), is(nullValue()));
+
+        extractor = new RecordingTextExtractor();
+        extractors = newExtractors(10, queueDirectory);
+        store.setTextExtractors(extractors);
+        for (BinaryValue value : Arrays.asList(first, second, third)) {
+            assertThat(waitForText(value), is("text of " + IoUtil.read(value.getStream())));
+        }
+        extractors.shutdown();
+
+        // nothing is pending anymore, so nothing is resumed the next time ...
+        extractor = new RecordingTextExtractor();
+        extractors = newExtractors(10, queueDirectory);
+        store.setTextExtractors(extractors);
+        Thread.sleep(100);
+        assertTrue(extractor.extracted.isEmpty());
+    }
+
+    private String waitForText( BinaryValue value ) throws Exception {
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        String text = store.getExtractedText(value);
+        while (text == null && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+            text = store.getExtractedText(value);
+        }
+        return text;
+    }
+
+    /**
+     * A text extractor that records the content of the values it extracts text from, and which can hold back the first
+     * extraction.
+     */
+    protected static final class RecordingTextExtractor extends TextExtractor {
+        protected final List<String> extracted = new CopyOnWriteArrayList<>();
+        protected final List<Thread> threads = new CopyOnWriteArrayList<>();
+        protected final CountDownLatch firstStarted = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicBoolean block = new AtomicBoolean();
+        protected volatile boolean withoutText;
+
+        protected void blockFirstExtraction() {
+            block.set(true);
+        }
+
+        protected void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void extractFrom( org.modeshape.jcr.api.Binary binary,
+                                 Output output,
+                                 Context context ) throws Exception {
+            if (block.compareAndSet(true, false)) {
+                firstStarted.countDown();
+                released.await();
+            }
+            String content = IoUtil.read(binary.getStream());
+            extracted.add(content);
+            threads.add(Thread.currentThread());
+            if (!withoutText) {
+                output.recordText("text of " + content);
+            }
+        }
+
+        @Override
+        public boolean supportsMimeType( String mimeType ) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.change;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrNtLexicon;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+
+public class CoalescedChangesTest {
+
+    private static final NodeKey NODE_A = new NodeKey("source1works1-a");
+    private static final NodeKey NODE_B = new NodeKey("source1works1-b");
+
+    private ExecutionContext context;
+    private Path pathA;
+    private Path pathB;
+    private Name title;
+    private Name author;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        pathA = context.getValueFactories().getPathFactory().create("/a");
+        pathB = context.getValueFactories().getPathFactory().create("/b");
+        title = context.getValueFactories().getNameFactory().create("title");
+        author = context.getValueFactories().getNameFactory().create("author");
+    }
+
+    @Test
+    public void shouldReturnSingleChangeSetUnchanged() {
+        RecordingChanges changes = changes();
+        changes.propertyChanged(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "2"),
+                                property(title, "1"));
+        assertThat(CoalescedChanges.coalesce(Arrays.asList(changes)) == changes, is(true));
+    }
+
+    @Test
+    public void shouldCollapseSuccessiveChangesOfSameProperty() {
+        RecordingChanges first = changes();
+        first.propertyChanged(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "2"),
+                              property(title, "1"));
+        first.propertyAdded(NODE_B, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathB, property(title, "x"));
+        RecordingChanges second = changes();
+        second.propertyChanged(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "3"),
+                               property(title, "2"));
+        second.propertyChanged(NODE_B, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathB, property(title, "y"),
+                               property(title, "x"));
+
+        List<Change> result = coalesce(first, second);
+        assertThat(result.size(), is(2));
+        PropertyChanged changed = (PropertyChanged)result.get(0);
+        assertThat(changed.getOldProperty().getFirstValue(), is((Object)"1"));
+        assertThat(changed.getNewProperty().getFirstValue(), is((Object)"3"));
+        assertThat(result.get(1), is(instanceOf(PropertyAdded.class)));
+        assertThat(((PropertyAdded)result.get(1)).getProperty().getFirstValue(), is((Object)"y"));
+    }
+
+    @Test
+    public void shouldCollapseRemovalsAndAdditionsOfSameProperty() {
+        RecordingChanges first = changes();
+        first.propertyRemoved(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "1"));
+        first.propertyAdded(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(author, "me"));
+        RecordingChanges second = changes();
+        second.propertyAdded(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "2"));
+        second.propertyRemoved(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(author, "me"));
+
+        List<Change> result = coalesce(first, second);
+        assertThat(result.size(), is(1));
+        PropertyChanged changed = (PropertyChanged)result.get(0);
+        assertThat(changed.getOldProperty().getFirstValue(), is((Object)"1"));
+        assertThat(changed.getNewProperty().getFirstValue(), is((Object)"2"));
+    }
+
+    @Test
+    public void shouldApplyPropertyChangesBeforeLaterChangesOfSameNode() {
+        RecordingChanges first = changes();
+        first.propertyChanged(NODE_A, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathA, property(title, "2"),
+                              property(title, "1"));
+        first.propertyChanged(NODE_B, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathB, property(title, "y"),
+                              property(title, "x"));
+        RecordingChanges second = changes();
+        second.nodeRemoved(NODE_A, NODE_B, pathA, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), JcrNtLexicon.UNSTRUCTURED,
+                           Collections.emptySet());
+        second.propertyChanged(NODE_B, JcrNtLexicon.UNSTRUCTURED, Collections.emptySet(), pathB, property(title, "z"),
+                               property(title, "y"));
+
+        List<Change> result = coalesce(first, second);
+        assertThat(result.size(), is(3));
+        assertThat(((PropertyChanged)result.get(0)).getKey(), is(NODE_A));
+        assertThat(result.get(1), is(instanceOf(NodeRemoved.class)));
+        PropertyChanged changed = (PropertyChanged)result.get(2);
+        assertThat(changed.getKey(), is(NODE_B));
+        assertThat(changed.getOldProperty().getFirstValue(), is((Object)"x"));
+        assertThat(changed.getNewProperty().getFirstValue(), is((Object)"z"));
+    }
+
+    private RecordingChanges changes() {
+        return new RecordingChanges("session", "process", "repository", "workspace", null);
+    }
+
+    private Property property( Name name,
+                               String value ) {
+        return context.getPropertyFactory().create(name, value);
+    }
+
+    private List<Change> coalesce( ChangeSet... changeSets ) {
+        ChangeSet result = CoalescedChanges.coalesce(Arrays.asList(changeSets));
+        assertThat(result.getWorkspaceName(), is("workspace"));
+        List<Change> changes = new ArrayList<>();
+        for (Change change : result) {
+            changes.add(change);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class CompressedBitmapTest {
+
+    @Test
+    public void shouldAddAndRemoveValues() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        assertThat(bitmap.isEmpty(), is(true));
+        assertThat(bitmap.add(5), is(true));
+        assertThat(bitmap.add(5), is(false));
+        assertThat(bitmap.add(70000), is(true));
+        assertThat(bitmap.contains(5), is(true));
+        assertThat(bitmap.contains(70000), is(true));
+        assertThat(bitmap.contains(6), is(false));
+        assertThat(bitmap.cardinality(), is(2L));
+        assertThat(bitmap.remove(5), is(true));
+        assertThat(bitmap.remove(5), is(false));
+        assertThat(bitmap.remove(70000), is(true));
+        assertThat(bitmap.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldConvertBetweenSparseAndDenseChunks() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i != 10000; ++i) {
+            bitmap.add(i * 3);
+            expected.add(i * 3);
+        }
+        assertSame(expected, bitmap);
+        for (int i = 0; i != 10000; i += 2) {
+            bitmap.remove(i * 3);
+            expected.remove(i * 3);
+        }
+        assertSame(expected, bitmap);
+    }
+
+    @Test
+    public void shouldComputeUnionIntersectionAndDifference() {
+        Random random = new Random(42);
+        for (int round = 0; round != 20; ++round) {
+            // Mix sparse and dense chunks by varying the range of the values ...
+            int range = round % 2 == 0 ? 200000 : 20000;
+            CompressedBitmap first = new CompressedBitmap();
+            CompressedBitmap second = new CompressedBitmap();
+            TreeSet<Integer> firstValues = new TreeSet<>();
+            TreeSet<Integer> secondValues = new TreeSet<>();
+            for (int i = 0; i != 15000; ++i) {
+                int value = random.nextInt(range);
+                first.add(value);
+                firstValues.add(value);
+                value = random.nextInt(range / 2) + range / 4;
+                second.add(value);
+                secondValues.add(value);
+            }
+            TreeSet<Integer> union = new TreeSet<>(firstValues);
+            union.addAll(secondValues);
+            TreeSet<Integer> intersection = new TreeSet<>(firstValues);
+            intersection.retainAll(secondValues);
+            TreeSet<Integer> difference = new TreeSet<>(firstValues);
+            difference.removeAll(secondValues);
+            assertSame(union, first.or(second));
+            assertSame(intersection, first.and(second));
+            assertSame(difference, first.andNot(second));
+            // The operands should not have been changed ...
+            assertSame(firstValues, first);
+            assertSame(secondValues, second);
+        }
+    }
+
+    @Test
+    public void shouldCopyIndependently() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i != 5000; ++i) {
+            bitmap.add(i);
+        }
+        CompressedBitmap copy = bitmap.copy();
+        copy.remove(10);
+        copy.add(100000);
+        assertThat(bitmap.contains(10), is(true));
+        assertThat(bitmap.contains(100000), is(false));
+        assertThat(copy.cardinality(), is(5000L));
+    }
+
+    protected void assertSame( TreeSet<Integer> expected,
+                               CompressedBitmap actual ) {
+        assertThat(actual.cardinality(), is((long)expected.size()));
+        PrimitiveIterator.OfInt iter = actual.iterator();
+        for (Integer value : expected) {
+            assertThat(iter.hasNext(), is(true));
+            assertThat(iter.nextInt(), is(value.intValue()));
+        }
+        assertThat(iter.hasNext(), is(false));
+    }
+}
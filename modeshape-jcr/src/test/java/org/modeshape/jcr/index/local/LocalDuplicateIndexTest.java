@@ -19,6 +19,8 @@ package org.modeshape.jcr.index.local;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.Collections;
 import org.junit.Test;
 import org.modeshape.jcr.api.query.qom.Operator;
 
@@ -144,4 +146,52 @@ public class LocalDuplicateIndexTest extends AbstractLocalIndexTest {
         assertNoMatch(index, Operator.EQUAL_TO, 30L);
         assertThat(index.estimateTotalCount(), is(8L));
     }
+
+    @Test
+    public void shouldEstimateCardinalityFromStatisticsOfCommittedValues() {
+        LocalDuplicateIndex<Long> index = duplicateValueIndex(Long.class);
+        // Add 50 distinct values, each 20 times ...
+        for (int i = 0; i != 1000; ++i) {
+            index.add(key(i), "test", (long)(i % 50) * 10);
+        }
+        index.commit();
+        assertThat(index.estimateTotalCount(), is(1000L));
+
+        assertEstimate(index, Operator.EQUAL_TO, 100L, 20L);
+        // A value between two indexed values falls in a bucket with values, so it is estimated like its neighbours ...
+        assertEstimate(index, Operator.EQUAL_TO, 105L, 20L);
+        // but values outside of the histogram are not in any bucket ...
+        assertEstimate(index, Operator.EQUAL_TO, -10L, 0L);
+        assertEstimate(index, Operator.EQUAL_TO, 1000L, 0L);
+        assertEstimate(index, Operator.GREATER_THAN, 490L, 0L);
+        assertEstimate(index, Operator.LESS_THAN, 250L, 500L);
+        assertEstimate(index, Operator.GREATER_THAN_OR_EQUAL_TO, 250L, 500L);
+        assertEstimate(index, Operator.NOT_EQUAL_TO, 100L, 980L);
+
+        // The statistics are persisted with the index ...
+        LocalDuplicateIndex<Long> reopened = duplicateValueIndex(Long.class);
+        assertEstimate(reopened, Operator.LESS_THAN, 250L, 500L);
+
+        // and are rebuilt once enough values are changed ...
+        for (int i = 0; i != 500; ++i) {
+            reopened.remove(key(i));
+        }
+        reopened.commit();
+        assertThat(reopened.estimateTotalCount(), is(500L));
+        assertEstimate(reopened, Operator.LESS_THAN, 250L, 250L);
+    }
+
+    protected void assertEstimate( LocalDuplicateIndex<Long> index,
+                                   Operator op,
+                                   long value,
+                                   long expected ) {
+        long estimate = index.estimateCardinality(Collections.singletonList(constraints(propertyName, op, value).getConstraints()
+                                                                                                                  .iterator()
+                                                                                                                  .next()),
+                                                  Collections.<String, Object>emptyMap());
+        // Estimates from the histogram are within 10% of the actual count, and are exact when no bucket holds the values ...
+        long tolerance = expected / 10L;
+        assertTrue("Estimated " + estimate + " values " + op + " " + value + " but expected about " + expected,
+                   Math.abs(estimate - expected) <= tolerance);
+    }
 }
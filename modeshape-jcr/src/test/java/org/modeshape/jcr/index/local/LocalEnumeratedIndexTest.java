@@ -0,0 +1,161 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.jcr.query.qom.Constraint;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapdb.BTreeKeySerializer;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.model.And;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.Not;
+import org.modeshape.jcr.query.model.Or;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.SetCriteria;
+import org.modeshape.jcr.query.model.StaticOperand;
+import org.modeshape.jcr.spi.index.provider.Filter;
+import org.modeshape.jcr.value.PropertyType;
+import org.modeshape.jcr.value.ValueFactory;
+
+public class LocalEnumeratedIndexTest extends AbstractLocalIndexTest {
+
+    private LocalEnumeratedIndex index;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        index = enumeratedIndex();
+        // Node 1 is 'a', node 2 is 'b', node 3 is 'a' and 'b' (multi-valued), node 4 is 'c' ...
+        index.add(key(1), propertyName, "a");
+        index.add(key(2), propertyName, "b");
+        index.add(key(3), propertyName, "a");
+        index.add(key(3), propertyName, "b");
+        index.add(key(4), propertyName, "c");
+    }
+
+    protected LocalEnumeratedIndex enumeratedIndex() {
+        ValueFactory<String> factory = context.getValueFactories().getStringFactory();
+        @SuppressWarnings( "unchecked" )
+        BTreeKeySerializer<String> serializer = (BTreeKeySerializer<String>)serializers.bTreeKeySerializerFor(String.class,
+                                                                                                            PropertyType.STRING.getComparator(),
+                                                                                                            false);
+        return LocalEnumeratedIndex.create("myIndex", "myWorkspace", db, IndexValues.converter(factory), serializer);
+    }
+
+    @Test
+    public void shouldFindNodesWithValue() {
+        assertMatches(equalTo("a"), 1, 3);
+        assertMatches(equalTo("b"), 2, 3);
+        assertMatches(equalTo("d"));
+        assertThat(index.estimateTotalCount(), is(5L));
+    }
+
+    @Test
+    public void shouldIntersectConstraintsOnMultiValuedProperty() {
+        assertMatches(new And(equalTo("a"), equalTo("b")), 3);
+        assertMatches(new And(equalTo("a"), equalTo("c")));
+        assertThat(index.estimateCardinality(Arrays.<Constraint>asList(equalTo("a"), equalTo("b")), Collections.emptyMap()),
+                   is(1L));
+    }
+
+    @Test
+    public void shouldUniteConstraintsWithoutDuplicates() {
+        assertMatches(new Or(equalTo("a"), equalTo("b")), 1, 2, 3);
+        assertMatches(in("a", "c"), 1, 3, 4);
+        assertThat(index.estimateCardinality(Collections.<Constraint>singletonList(new Or(equalTo("a"), equalTo("b"))),
+                                             Collections.emptyMap()), is(3L));
+    }
+
+    @Test
+    public void shouldNegateConstraints() {
+        assertMatches(new Not(in("a")), 2, 4);
+        assertMatches(new Not(new And(equalTo("a"), equalTo("b"))), 1, 2, 3, 4);
+        assertMatches(new Not(new Or(equalTo("a"), equalTo("c"))), 2, 3);
+    }
+
+    @Test
+    public void shouldRemoveNodes() {
+        index.remove(key(3), propertyName, "a");
+        assertMatches(equalTo("a"), 1);
+        assertMatches(equalTo("b"), 2, 3);
+        index.remove(key(3));
+        assertMatches(equalTo("b"), 2);
+        assertThat(index.estimateTotalCount(), is(3L));
+    }
+
+    @Test
+    public void shouldRebuildBitmapsWhenReopened() {
+        index.remove(key(4));
+        index = enumeratedIndex();
+        assertMatches(new And(equalTo("a"), equalTo("b")), 3);
+        assertMatches(new Or(equalTo("a"), equalTo("c")), 1, 3);
+        index.add(key(5), propertyName, "c");
+        assertMatches(equalTo("c"), 5);
+    }
+
+    @Test
+    public void shouldNotCountNodesWhenConstraintCannotBeEvaluated() {
+        Comparison like = new Comparison(new PropertyValue(selector(), propertyName), Operator.LIKE, new Literal("a%"));
+        assertThat(index.filter(constraints(like), -1).count(), is(-1L));
+        assertThat(index.filter(constraints(new And(equalTo("a"), like)), -1).count(), is(-1L));
+        assertThat(index.filter(constraints(equalTo("a")), -1).count(), is(2L));
+    }
+
+    protected Comparison equalTo( String value ) {
+        return new Comparison(new PropertyValue(selector(), propertyName), Operator.EQUAL_TO, new Literal(value));
+    }
+
+    protected SetCriteria in( String... values ) {
+        StaticOperand[] operands = new StaticOperand[values.length];
+        for (int i = 0; i != values.length; ++i) {
+            operands[i] = new Literal(values[i]);
+        }
+        return new SetCriteria(new PropertyValue(selector(), propertyName), operands);
+    }
+
+    protected void assertMatches( Constraint constraint,
+                                  int... keys ) {
+        Set<NodeKey> expected = new HashSet<>();
+        for (int key : keys) {
+            expected.add(nodeKey(key(key)));
+        }
+        Set<NodeKey> actual = new HashSet<>();
+        Filter.Results results = index.filter(constraints(constraint), -1);
+        // The constraints are evaluated exactly, so the index knows how many nodes there are before returning them ...
+        assertThat(results.count(), is((long)expected.size()));
+        Filter.ResultBatch batch;
+        int count = 0;
+        while ((batch = results.getNextBatch(Integer.MAX_VALUE)).size() > 0) {
+            for (NodeKey key : batch.keys()) {
+                actual.add(key);
+                ++count;
+            }
+        }
+        assertThat(actual, is(expected));
+        assertThat(count, is(expected.size()));
+    }
+}
@@ -19,6 +19,7 @@ package org.modeshape.jcr.mimetype.tika;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
@@ -134,6 +135,42 @@ public class ContentDetectorTest {
         assertEquals(MediaType.TEXT_PLAIN.toString(), DETECTOR.mimeTypeOf(PDF_FILE, binaryFromFile(TXT_FILE)));
     }
 
+    @Test
+    public void shouldDetectMimeTypeFromContentHeader() throws Exception {
+        assertEquals("application/pdf", mimeTypeOfHeader(PDF_FILE));
+        assertEquals("application/postscript", mimeTypeOfHeader(POSTSCRIPT_FILE));
+        assertEquals(MediaType.TEXT_PLAIN.toString(), mimeTypeOfHeader(TXT_FILE));
+        assertEquals(MediaType.APPLICATION_XML.toString(), mimeTypeOfHeader(XSD_FILE));
+    }
+
+    @Test
+    public void shouldNotDetectMimeTypeOfContainersFromContentHeader() throws Exception {
+        assertNull(mimeTypeOfHeader(WORD_FILE));
+        assertNull(mimeTypeOfHeader(WORD_OPEN_XML_FILE));
+        assertNull(mimeTypeOfHeader(EXCEL_FILE));
+    }
+
+    @Test
+    public void shouldRefineStoredMimeTypeWithName() throws Exception {
+        assertEquals("text/jcr-cnd", DETECTOR.refineMimeType(CND_FILE, mimeTypeOfHeader(CND_FILE)));
+        assertEquals(MediaType.TEXT_PLAIN.toString(), DETECTOR.refineMimeType(null, mimeTypeOfHeader(CND_FILE)));
+        // the name is ignored when it doesn't match the content ...
+        assertEquals(MediaType.TEXT_PLAIN.toString(), DETECTOR.refineMimeType(PDF_FILE, mimeTypeOfHeader(TXT_FILE)));
+    }
+
+    private String mimeTypeOfHeader( String filePath ) throws IOException {
+        byte[] header = new byte[1 << 14];
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream(filePath)) {
+            assertThat(stream, is(notNullValue()));
+            int length = 0;
+            int read;
+            while (length < header.length && (read = stream.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+            return DETECTOR.mimeTypeOfHeader(header, length);
+        }
+    }
+
     private InMemoryTestBinary binaryFromFile( String filePath ) throws IOException {
         InputStream stream = getClass().getClassLoader().getResourceAsStream(filePath);
         assertThat(stream, is(notNullValue()));
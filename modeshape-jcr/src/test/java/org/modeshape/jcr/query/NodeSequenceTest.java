@@ -139,4 +139,41 @@ public class NodeSequenceTest extends AbstractNodeSequenceTest {
             seq.close();
         }
     }
+
+    @Test
+    public void shouldFilterBlocksOfRowsWithCompositeFilters() {
+        RowFilter even = rowFilterOfNodesWithKeyHashCodeDivisibleBy(2);
+        RowFilter third = rowFilterOfNodesWithKeyHashCodeDivisibleBy(3);
+        RowFilter[] filters = {NodeSequence.requireBoth(even, third), NodeSequence.requireEither(even, third),
+            NodeSequence.requireNot(even), NodeSequence.requireBoth(NodeSequence.requireNot(third), even)};
+        for (RowFilter filter : filters) {
+            // Count the rows that satisfy the filter one at a time ...
+            long expected = 0L;
+            NodeSequence all = allNodes(1.0f, 7);
+            try {
+                Batch batch = null;
+                while ((batch = all.nextBatch()) != null) {
+                    while (batch.hasNext()) {
+                        batch.nextRow();
+                        if (filter.isCurrentRowValid(batch)) ++expected;
+                    }
+                }
+            } finally {
+                all.close();
+            }
+            // The filtered sequences evaluate the filter over blocks of rows ...
+            assertThat(countRows(NodeSequence.filter(allNodes(1.0f, 7), filter)), is(expected));
+            assertThat(countRows(NodeSequence.filter(allNodes(1.0f, 300), filter)), is(expected));
+        }
+    }
+
+    protected RowFilter rowFilterOfNodesWithKeyHashCodeDivisibleBy( final int divisor ) {
+        return new RowFilter() {
+            @Override
+            public boolean isCurrentRowValid( Batch batch ) {
+                CachedNode node = batch.getNode();
+                return node != null && node.getKey().hashCode() % divisor == 0;
+            }
+        };
+    }
 }
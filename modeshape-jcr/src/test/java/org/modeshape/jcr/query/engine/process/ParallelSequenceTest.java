@@ -0,0 +1,102 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.AbstractNodeSequenceTest;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.NodeSequence.Batch;
+
+public class ParallelSequenceTest extends AbstractNodeSequenceTest {
+
+    private ExecutorService executor;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        this.executor = Executors.newFixedThreadPool(2);
+    }
+
+    @Override
+    @After
+    public void afterEach() {
+        try {
+            executor.shutdownNow();
+        } finally {
+            super.afterEach();
+        }
+    }
+
+    @Test
+    public void shouldReturnRowsOfAllSequencesInOrder() {
+        List<NodeKey> expected = keysOf(NodeSequence.append(allNodes(1.0f, 3), allNodes(1.0f, 5)));
+        NodeSequence parallel = new ParallelSequence(Arrays.asList(allNodes(1.0f, 3), allNodes(1.0f, 5)), executor, 2);
+        assertThat(keysOf(parallel), is(expected));
+    }
+
+    @Test
+    public void shouldReadSequencesInConsumerThreadWhenExecutorDoesNotRunTasks() {
+        List<NodeKey> expected = keysOf(NodeSequence.append(allNodes(1.0f, 4), allNodes(1.0f, 7)));
+        NodeSequence parallel = new ParallelSequence(Arrays.asList(allNodes(1.0f, 4), allNodes(1.0f, 7)), task -> {
+            // never run the task ...
+        }, 1);
+        assertThat(keysOf(parallel), is(expected));
+    }
+
+    @Test
+    public void shouldReturnNoRowsForEmptySequences() {
+        NodeSequence parallel = new ParallelSequence(Arrays.asList(NodeSequence.emptySequence(1),
+                                                                   NodeSequence.emptySequence(1)), executor, 2);
+        assertThat(keysOf(parallel).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldStopReadingSequencesWhenClosedEarly() {
+        NodeSequence parallel = new ParallelSequence(Arrays.asList(allNodes(1.0f, 2), allNodes(1.0f, 2)), executor, 1);
+        Batch batch = parallel.nextBatch();
+        assertThat(batch != null, is(true));
+        parallel.close();
+    }
+
+    protected List<NodeKey> keysOf( NodeSequence sequence ) {
+        List<NodeKey> keys = new ArrayList<>();
+        try {
+            Batch batch = null;
+            while ((batch = sequence.nextBatch()) != null) {
+                while (batch.hasNext()) {
+                    batch.nextRow();
+                    CachedNode node = batch.getNode();
+                    keys.add(node != null ? node.getKey() : null);
+                }
+            }
+        } finally {
+            sequence.close();
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import java.util.Collections;
+import java.util.LinkedList;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.query.AbstractQueryTest;
+import org.modeshape.jcr.query.BufferManager;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.engine.IndexPlan;
+import org.modeshape.jcr.query.model.DescendantNodeJoinCondition;
+import org.modeshape.jcr.query.model.EquiJoinCondition;
+import org.modeshape.jcr.query.model.JoinCondition;
+import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.validate.Schemata;
+
+public class OrderJoinsByCardinalityTest extends AbstractQueryTest {
+
+    private OrderJoinsByCardinality rule;
+    private QueryContext context;
+
+    @Before
+    public void beforeEach() {
+        context = new QueryContext(new ExecutionContext(), mock(RepositoryCache.class), Collections.singleton("workspace"),
+                                   mock(Schemata.class), mock(RepositoryIndexes.class), mock(NodeTypes.class),
+                                   mock(BufferManager.class));
+        rule = OrderJoinsByCardinality.INSTANCE;
+    }
+
+    @Test
+    public void shouldPutSmallerSideOfInnerJoinOnRight() {
+        PlanNode join = join(JoinType.INNER, new EquiJoinCondition(selector("t1"), "c1", selector("t2"), "c2"));
+        PlanNode t1 = source(join, "t1", 10L);
+        PlanNode t2 = source(join, "t2", 10000L);
+
+        PlanNode result = rule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(join)));
+        assertChildren(join, t2, t1);
+        assertThat(join.getProperty(Property.ESTIMATED_CARDINALITY, Long.class), is(10000L));
+        assertThat(t1.getProperty(Property.ESTIMATED_CARDINALITY, Long.class), is(10L));
+        assertThat(t2.getProperty(Property.ESTIMATED_CARDINALITY, Long.class), is(10000L));
+    }
+
+    @Test
+    public void shouldNotReorderJoinWhenCardinalitiesAreUnknown() {
+        PlanNode join = join(JoinType.INNER, new EquiJoinCondition(selector("t1"), "c1", selector("t2"), "c2"));
+        PlanNode t1 = source(join, "t1", 10L);
+        PlanNode t2 = new PlanNode(Type.SOURCE, join, selector("t2"));
+
+        rule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertChildren(join, t1, t2);
+        assertThat(join.getProperty(Property.ESTIMATED_CARDINALITY), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotReorderOuterOrDescendantJoins() {
+        PlanNode outer = join(JoinType.LEFT_OUTER, new EquiJoinCondition(selector("t1"), "c1", selector("t2"), "c2"));
+        PlanNode t1 = source(outer, "t1", 10L);
+        PlanNode t2 = source(outer, "t2", 10000L);
+        rule.execute(context, outer, new LinkedList<OptimizerRule>());
+        assertChildren(outer, t1, t2);
+
+        PlanNode descendant = join(JoinType.INNER, new DescendantNodeJoinCondition(selector("t1"), selector("t2")));
+        t1 = source(descendant, "t1", 10L);
+        t2 = source(descendant, "t2", 10000L);
+        rule.execute(context, descendant, new LinkedList<OptimizerRule>());
+        assertChildren(descendant, t1, t2);
+    }
+
+    @Test
+    public void shouldJoinSmallerSourcesFirstInChainOfInnerJoins() {
+        JoinCondition upperCondition = new EquiJoinCondition(selector("t1"), "c1", selector("t3"), "c3");
+        JoinCondition lowerCondition = new EquiJoinCondition(selector("t1"), "c1", selector("t2"), "c2");
+        PlanNode upper = join(JoinType.INNER, upperCondition);
+        PlanNode lower = new PlanNode(Type.JOIN, upper, selector("t1"), selector("t2"));
+        lower.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+        lower.setProperty(Property.JOIN_CONDITION, lowerCondition);
+        PlanNode t1 = source(lower, "t1", 100000L);
+        PlanNode t2 = source(lower, "t2", 10000L);
+        PlanNode t3 = source(upper, "t3", 10L);
+
+        rule.execute(context, upper, new LinkedList<OptimizerRule>());
+        // The smallest source should now be joined first, and on the buffered (right) side ...
+        assertThat(upper.getFirstChild(), is(sameInstance(lower)));
+        assertChildren(lower, t1, t3);
+        assertSelectors(lower, "t1", "t3");
+        assertThat(lower.getProperty(Property.JOIN_CONDITION, JoinCondition.class), is(sameInstance(upperCondition)));
+        assertThat(upper.getProperty(Property.JOIN_CONDITION, JoinCondition.class), is(sameInstance(lowerCondition)));
+        assertChildren(upper, lower, t2);
+    }
+
+    @Test
+    public void shouldNotMoveSourceDownChainWhenConditionReferencesSourceItWouldBeMovedPast() {
+        JoinCondition upperCondition = new EquiJoinCondition(selector("t2"), "c2", selector("t3"), "c3");
+        JoinCondition lowerCondition = new EquiJoinCondition(selector("t1"), "c1", selector("t2"), "c2");
+        PlanNode upper = join(JoinType.INNER, upperCondition);
+        PlanNode lower = new PlanNode(Type.JOIN, upper, selector("t1"), selector("t2"));
+        lower.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+        lower.setProperty(Property.JOIN_CONDITION, lowerCondition);
+        PlanNode t1 = source(lower, "t1", 100000L);
+        PlanNode t2 = source(lower, "t2", 10000L);
+        PlanNode t3 = source(upper, "t3", 10L);
+
+        rule.execute(context, upper, new LinkedList<OptimizerRule>());
+        assertChildren(lower, t1, t2);
+        assertChildren(upper, lower, t3);
+        assertThat(upper.getProperty(Property.JOIN_CONDITION, JoinCondition.class), is(sameInstance(upperCondition)));
+    }
+
+    protected PlanNode join( JoinType joinType,
+                             JoinCondition condition ) {
+        PlanNode join = new PlanNode(Type.JOIN);
+        join.setProperty(Property.JOIN_TYPE, joinType);
+        join.setProperty(Property.JOIN_CONDITION, condition);
+        return join;
+    }
+
+    protected PlanNode source( PlanNode parent,
+                               String name,
+                               long cardinality ) {
+        parent.addSelector(selector(name));
+        PlanNode source = new PlanNode(Type.SOURCE, parent, selector(name));
+        PlanNode index = new PlanNode(Type.INDEX, source, selector(name));
+        index.setProperty(Property.INDEX_SPECIFICATION, new IndexPlan(name + "Index", "workspace", "provider", null, null, 1,
+                                                                      cardinality, null, null));
+        return source;
+    }
+}
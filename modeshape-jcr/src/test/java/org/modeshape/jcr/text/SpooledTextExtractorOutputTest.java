@@ -0,0 +1,86 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.text;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.modeshape.common.util.IoUtil;
+
+public class SpooledTextExtractorOutputTest {
+
+    @Test
+    public void shouldSeparateTheRecordedTexts() throws Exception {
+        try (SpooledTextExtractorOutput output = new SpooledTextExtractorOutput()) {
+            output.recordText("first");
+            output.recordText("");
+            try (Writer writer = output.writer()) {
+                writer.write("sec");
+                writer.write("ond");
+            }
+            output.recordText("third");
+            assertTrue(output.hasText());
+            assertThat(IoUtil.read(output.getReader()), is("first second third"));
+        }
+    }
+
+    @Test
+    public void shouldNotHaveTextWhenOnlyWhitespaceIsRecorded() throws Exception {
+        try (SpooledTextExtractorOutput output = new SpooledTextExtractorOutput()) {
+            assertFalse(output.hasText());
+            output.recordText(" \t");
+            output.recordText("\n");
+            assertFalse(output.hasText());
+        }
+    }
+
+    @Test
+    public void shouldSpoolLargeTextsToATemporaryFile() throws Exception {
+        Set<String> existingFiles = spooledFiles();
+        StringBuilder expected = new StringBuilder();
+        try (SpooledTextExtractorOutput output = new SpooledTextExtractorOutput(" ", 100)) {
+            try (Writer writer = output.writer()) {
+                for (int i = 0; i != 100; ++i) {
+                    String chunk = "chunk" + i + ",";
+                    writer.write(chunk);
+                    expected.append(chunk);
+                }
+            }
+            output.recordText("end");
+            expected.append(" end");
+            Set<String> files = spooledFiles();
+            files.removeAll(existingFiles);
+            assertThat(files.size(), is(1));
+            assertThat(IoUtil.read(output.getReader()), is(expected.toString()));
+        }
+        // the temporary file is removed once the output is closed ...
+        Set<String> files = spooledFiles();
+        files.removeAll(existingFiles);
+        assertTrue(files.isEmpty());
+    }
+
+    private Set<String> spooledFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("modeshape-text-"));
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
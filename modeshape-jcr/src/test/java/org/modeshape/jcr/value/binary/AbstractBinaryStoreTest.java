@@ -25,6 +25,7 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -142,6 +143,37 @@ public abstract class AbstractBinaryStoreTest {
         assertTrue("Did not expect BinaryStore to contain the key", !getBinaryStore().hasBinary(invalidBinaryKey()));
     }
 
+    @Test
+    public void shouldReadRangesOfStoredBinary() throws Exception {
+        BinaryValue value = storeAndValidate(STORED_LARGE_KEY, STORED_LARGE_BINARY);
+        int size = STORED_LARGE_BINARY.length;
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, 0, 100);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, 5000, 3000);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, size - 10, 100);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, size, 100);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, size + 10, 100);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, 100, 0);
+        assertRange(STORED_LARGE_KEY, STORED_LARGE_BINARY, 100, Long.MAX_VALUE);
+
+        // and read the range through the value ...
+        assertArrayEquals(Arrays.copyOfRange(STORED_LARGE_BINARY, 1000, 1100), IoUtil.readBytes(value.getStream(1000, 100)));
+        byte[] buffer = new byte[100];
+        assertEquals(100, value.read(buffer, 2000));
+        assertArrayEquals(Arrays.copyOfRange(STORED_LARGE_BINARY, 2000, 2100), buffer);
+    }
+
+    private void assertRange( BinaryKey key,
+                              byte[] data,
+                              long offset,
+                              long length ) throws BinaryStoreException, IOException {
+        int from = (int)Math.min(offset, data.length);
+        int to = (int)Math.min(data.length, from + Math.min(length, data.length));
+        byte[] expected = Arrays.copyOfRange(data, from, to);
+        try (InputStream stream = getBinaryStore().getInputStream(key, offset, length)) {
+            assertArrayEquals(expected, IoUtil.readBytes(stream));
+        }
+    }
+
     private BinaryValue storeAndValidate( BinaryKey key,
                                           byte[] data ) throws BinaryStoreException, IOException {
         BinaryValue res = getBinaryStore().storeValue(new ByteArrayInputStream(data), false);
@@ -251,6 +283,21 @@ public abstract class AbstractBinaryStoreTest {
     }
 
 
+    @Test
+    public void shouldDetectAndStoreMimeTypeWhileStoringValue() throws Exception {
+        byte[] randomBinary = new byte[(int)(AbstractBinaryStore.DEFAULT_MINIMUM_BINARY_SIZE_IN_BYTES * 2)];
+        RANDOM.nextBytes(randomBinary);
+        BinaryStore binaryStore = getBinaryStore();
+        binaryStore.setMimeTypeDetector(new HeaderMimeTypeDetector());
+        try {
+            BinaryValue binaryValue = binaryStore.storeValue(new ByteArrayInputStream(randomBinary), false);
+            // the content is not read again to get the MIME type ...
+            assertEquals(HeaderMimeTypeDetector.HEADER_TYPE, binaryStore.getMimeType(binaryValue, "foobar.txt"));
+        } finally {
+            binaryStore.setMimeTypeDetector(DEFAULT_DETECTOR);
+        }
+    }
+
     @Test
     public void shouldExtractAndStoreTextWhenExtractorConfigured() throws Exception {
         TextExtractors extractors = new TextExtractors(Executors.newSingleThreadExecutor(),
@@ -273,6 +320,28 @@ public abstract class AbstractBinaryStoreTest {
         }
     }
 
+    @Test
+    public void shouldReadTheExtractedTextWhenExtractorConfigured() throws Exception {
+        TextExtractors extractors = new TextExtractors(Executors.newSingleThreadExecutor(),
+                                                       new ArrayList<>(Arrays.asList(new DummyTextExtractor())));
+        try {
+            BinaryStore binaryStore = getBinaryStore();
+            binaryStore.setTextExtractors(extractors);
+
+            BinaryValue binaryValue = getBinaryStore().storeValue(new ByteArrayInputStream(STORED_LARGE_BINARY), false);
+            Reader extractedText = binaryStore.getTextReader(binaryValue);
+            if (extractedText == null) {
+                // if nothing is found the first time, sleep and try again
+                Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+                extractedText = binaryStore.getTextReader(binaryValue);
+            }
+            assertNotNull(extractedText);
+            assertEquals(DummyTextExtractor.EXTRACTED_TEXT, IoUtil.read(extractedText));
+        } finally {
+            extractors.shutdown();
+        }
+    }
+
     @Test
     @FixFor("MODE-2547")
     public void shouldStoreBinariesConcurrently() throws Exception {
@@ -321,6 +390,23 @@ public abstract class AbstractBinaryStoreTest {
         }
     }
 
+    protected static final class HeaderMimeTypeDetector implements MimeTypeDetector {
+
+        public static final String HEADER_TYPE = "application/header";
+
+        @Override
+        public String mimeTypeOf( String name,
+                                  Binary binaryValue ) {
+            throw new AssertionError("The MIME type should have been detected while the value was stored");
+        }
+
+        @Override
+        public String mimeTypeOfHeader( byte[] header,
+                                        int length ) {
+            return HEADER_TYPE;
+        }
+    }
+
     protected static final class DummyTextExtractor extends TextExtractor {
         private static final String EXTRACTED_TEXT = "some text";
 
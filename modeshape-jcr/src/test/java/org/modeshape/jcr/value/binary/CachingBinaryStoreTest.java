@@ -0,0 +1,261 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.store.DataSourceConfig;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+public class CachingBinaryStoreTest extends AbstractBinaryStoreTest {
+
+    private static final int MIN_BINARY_SIZE = 20;
+    private static final long MAXIMUM_CACHE_SIZE = 3 * 1024L;
+
+    private File directory;
+    private File cacheDirectory;
+    private CountingFileSystemBinaryStore fileSystemStore;
+    private CachingBinaryStore store;
+
+    @Before
+    public void beforeEach() {
+        directory = new File("target/cached-fsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        cacheDirectory = new File("target/binary-cache/");
+        FileUtil.delete(cacheDirectory);
+        fileSystemStore = new CountingFileSystemBinaryStore(directory);
+        store = new CachingBinaryStore(fileSystemStore, cacheDirectory, MAXIMUM_CACHE_SIZE);
+        store.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        store.setMimeTypeDetector(DEFAULT_DETECTOR);
+        store.start();
+    }
+
+    @After
+    public void afterEach() {
+        store.shutdown();
+        FileUtil.delete(directory);
+        FileUtil.delete(cacheDirectory);
+    }
+
+    @Override
+    protected BinaryStore getBinaryStore() {
+        return store;
+    }
+
+    @Override
+    @Test( expected = BinaryStoreException.class )
+    public void shouldStoreZeroLengthBinary() throws BinaryStoreException, IOException {
+        // the file system binary store will not store a 0 byte size content
+        super.shouldStoreZeroLengthBinary();
+    }
+
+    @Test
+    public void shouldReadValuesFromTheOtherStoreOnlyOnce() throws Exception {
+        byte[] content = randomBytes(1024);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        assertFalse(store.isCached(value.getKey()));
+
+        for (int i = 0; i != 3; ++i) {
+            assertArrayEquals(content, IoUtil.readBytes(value.getStream()));
+        }
+        assertThat(fileSystemStore.reads.get(), is(1));
+        assertTrue(store.isCached(value.getKey()));
+        assertThat(store.getCachedSizeInBytes(), is(1024L));
+    }
+
+    @Test
+    public void shouldDownloadValueOnceForConcurrentReaders() throws Exception {
+        byte[] content = randomBytes(1024);
+        final BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        fileSystemStore.readsStarted = new CountDownLatch(1);
+        fileSystemStore.readsAllowed = new CountDownLatch(1);
+
+        int readers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i != readers; ++i) {
+                results.add(executor.submit(() -> IoUtil.readBytes(store.getInputStream(key))));
+            }
+            // wait until the download has started, give the other readers time to ask for the value, and finish the download ...
+            assertTrue(fileSystemStore.readsStarted.await(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            fileSystemStore.readsAllowed.countDown();
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(content, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(fileSystemStore.reads.get(), is(1));
+    }
+
+    @Test
+    public void shouldServeRangesFromTheOtherStoreAndCacheTheValueInTheBackground() throws Exception {
+        byte[] content = randomBytes(1024);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 300), IoUtil.readBytes(store.getInputStream(key, 100, 200)));
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!store.isCached(key) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertTrue(store.isCached(key));
+        assertArrayEquals(Arrays.copyOfRange(content, 500, 1024), IoUtil.readBytes(store.getInputStream(key, 500, 2048)));
+        assertThat(fileSystemStore.reads.get(), is(2));
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyReadValues() throws Exception {
+        List<BinaryKey> keys = new ArrayList<>();
+        for (int i = 0; i != 3; ++i) {
+            keys.add(store.storeValue(new ByteArrayInputStream(randomBytes(1024)), false).getKey());
+            IoUtil.readBytes(store.getInputStream(keys.get(i)));
+        }
+        // read the first value again, so that the second is the least recently read ...
+        IoUtil.readBytes(store.getInputStream(keys.get(0)));
+        BinaryKey fourth = store.storeValue(new ByteArrayInputStream(randomBytes(1024)), false).getKey();
+        IoUtil.readBytes(store.getInputStream(fourth));
+
+        assertTrue(store.isCached(keys.get(0)));
+        assertFalse(store.isCached(keys.get(1)));
+        assertTrue(store.isCached(keys.get(2)));
+        assertTrue(store.isCached(fourth));
+        assertThat(store.getCachedSizeInBytes(), is(MAXIMUM_CACHE_SIZE));
+    }
+
+    @Test
+    public void shouldNotCacheValuesLargerThanTheCache() throws Exception {
+        byte[] content = randomBytes((int)MAXIMUM_CACHE_SIZE + 1);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        assertArrayEquals(content, IoUtil.readBytes(store.getInputStream(key)));
+        assertFalse(store.isCached(key));
+        assertThat(store.getCachedSizeInBytes(), is(0L));
+    }
+
+    @Test
+    public void shouldEvictValuesMarkedAsUnused() throws Exception {
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(randomBytes(1024)), false).getKey();
+        IoUtil.readBytes(store.getInputStream(key));
+        assertTrue(store.isCached(key));
+        store.markAsUnused(Collections.singleton(key));
+        assertFalse(store.isCached(key));
+        assertThat(store.getCachedSizeInBytes(), is(0L));
+    }
+
+    @Test
+    public void shouldKeepCachedValuesWhenRestarted() throws Exception {
+        byte[] content = randomBytes(1024);
+        BinaryKey key = store.storeValue(new ByteArrayInputStream(content), false).getKey();
+        IoUtil.readBytes(store.getInputStream(key));
+
+        store.shutdown();
+        fileSystemStore = new CountingFileSystemBinaryStore(directory);
+        store = new CachingBinaryStore(fileSystemStore, cacheDirectory, MAXIMUM_CACHE_SIZE);
+        store.start();
+        assertTrue(store.isCached(key));
+        assertArrayEquals(content, IoUtil.readBytes(store.getInputStream(key)));
+        assertThat(fileSystemStore.reads.get(), is(0));
+    }
+
+    @Test
+    public void shouldCacheValuesOfDatabaseStore() throws Exception {
+        DataSourceConfig config = new DataSourceConfig();
+        DatabaseBinaryStore databaseStore = new DatabaseBinaryStore(config.getDriverClassName(), config.getUrl(),
+                                                                    config.getUsername(), config.getPassword());
+        CachingBinaryStore cachingStore = new CachingBinaryStore(databaseStore, cacheDirectory, MAXIMUM_CACHE_SIZE);
+        cachingStore.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        cachingStore.start();
+        try {
+            byte[] content = randomBytes(1024);
+            BinaryValue value = cachingStore.storeValue(new ByteArrayInputStream(content), false);
+            assertArrayEquals(content, IoUtil.readBytes(value.getStream()));
+            assertTrue(cachingStore.isCached(value.getKey()));
+            assertArrayEquals(Arrays.copyOfRange(content, 10, 20),
+                              IoUtil.readBytes(cachingStore.getInputStream(value.getKey(), 10, 10)));
+            cachingStore.markAsUnused(Collections.singleton(value.getKey()));
+            assertFalse(cachingStore.isCached(value.getKey()));
+        } finally {
+            cachingStore.shutdown();
+        }
+    }
+
+    private static byte[] randomBytes( int size ) {
+        byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A file system store that counts how often the content of its values is read, and which can hold reads back.
+     */
+    protected static class CountingFileSystemBinaryStore extends FileSystemBinaryStore {
+        protected final AtomicInteger reads = new AtomicInteger();
+        protected volatile CountDownLatch readsStarted;
+        protected volatile CountDownLatch readsAllowed;
+
+        protected CountingFileSystemBinaryStore( File directory ) {
+            super(directory);
+        }
+
+        @Override
+        public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+            reads.incrementAndGet();
+            if (readsStarted != null) {
+                readsStarted.countDown();
+                try {
+                    readsAllowed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getInputStream(key);
+        }
+
+        @Override
+        public InputStream getInputStream( BinaryKey key,
+                                           long offset,
+                                           long length ) throws BinaryStoreException {
+            reads.incrementAndGet();
+            return super.getInputStream(key, offset, length);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+public class ChunkedFileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
+
+    private static final int MIN_BINARY_SIZE = 20;
+    private static final int AVERAGE_CHUNK_SIZE = 1024;
+
+    private File directory;
+    private ChunkedFileSystemBinaryStore store;
+
+    @Before
+    public void beforeEach() {
+        directory = new File("target/chunked-fsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        store = newStore();
+    }
+
+    @After
+    public void afterEach() {
+        store.shutdown();
+        FileUtil.delete(directory);
+    }
+
+    private ChunkedFileSystemBinaryStore newStore() {
+        ChunkedFileSystemBinaryStore store = new ChunkedFileSystemBinaryStore(directory, AVERAGE_CHUNK_SIZE);
+        store.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        store.setMimeTypeDetector(DEFAULT_DETECTOR);
+        return store;
+    }
+
+    @Override
+    protected BinaryStore getBinaryStore() {
+        return store;
+    }
+
+    @Override
+    @Test( expected = BinaryStoreException.class )
+    public void shouldStoreZeroLengthBinary() throws BinaryStoreException, IOException {
+        // values smaller than the minimum size are kept in memory, so the store does not have an empty value
+        super.shouldStoreZeroLengthBinary();
+    }
+
+    @Test
+    public void shouldStoreOnlyTheChunksThatValuesDoNotShare() throws Exception {
+        byte[] original = randomBytes(1024 * 1024);
+        // insert a few bytes in the middle of the content, which shifts all of the following bytes ...
+        byte[] edited = new byte[original.length + 10];
+        System.arraycopy(original, 0, edited, 0, 500 * 1024);
+        System.arraycopy(original, 500 * 1024, edited, 500 * 1024 + 10, original.length - 500 * 1024);
+
+        BinaryValue originalValue = store.storeValue(new ByteArrayInputStream(original), false);
+        int originalChunks = countChunkFiles();
+        assertTrue("Expected the content to be split into many chunks", originalChunks > 100);
+
+        BinaryValue editedValue = store.storeValue(new ByteArrayInputStream(edited), false);
+        assertThat(editedValue.getKey(), is(BinaryKey.keyFor(edited)));
+        assertThat(editedValue.getSize(), is((long)edited.length));
+        int newChunks = countChunkFiles() - originalChunks;
+        assertTrue("Expected only the chunks around the change to be stored, but stored " + newChunks, newChunks <= 5);
+
+        assertArrayEquals(original, IoUtil.readBytes(store.getInputStream(originalValue.getKey())));
+        assertArrayEquals(edited, IoUtil.readBytes(store.getInputStream(editedValue.getKey())));
+        assertArrayEquals(Arrays.copyOfRange(edited, 499 * 1024, 503 * 1024),
+                          IoUtil.readBytes(store.getInputStream(editedValue.getKey(), 499 * 1024, 4 * 1024)));
+    }
+
+    @Test
+    public void shouldRemoveChunksWhenNoLongerReferenced() throws Exception {
+        byte[] original = randomBytes(256 * 1024);
+        byte[] edited = original.clone();
+        edited[100 * 1024] ^= 1;
+        BinaryValue originalValue = store.storeValue(new ByteArrayInputStream(original), false);
+        BinaryValue editedValue = store.storeValue(new ByteArrayInputStream(edited), false);
+        // storing the same content again must not add references ...
+        store.storeValue(new ByteArrayInputStream(edited), false);
+
+        store.markAsUnused(Collections.singleton(originalValue.getKey()));
+        Thread.sleep(100);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        assertFalse(store.hasBinary(originalValue.getKey()));
+        assertArrayEquals(edited, IoUtil.readBytes(store.getInputStream(editedValue.getKey())));
+
+        store.markAsUnused(Collections.singleton(editedValue.getKey()));
+        Thread.sleep(100);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        assertFalse(store.hasBinary(editedValue.getKey()));
+        assertThat(countChunkFiles(), is(0));
+    }
+
+    @Test
+    public void shouldCountReferencesFromStoredManifestsWhenStarted() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        int chunks = countChunkFiles();
+
+        // write a chunk which isn't referenced by any manifest, as if a process stopped while storing a value ...
+        String sha1 = BinaryKey.keyFor(new byte[] {1}).toString();
+        File orphan = new File(directory, "chunks/" + sha1.substring(0, 2) + "/" + sha1.substring(2, 4) + "/"
+                                          + sha1.substring(4, 6) + "/" + sha1);
+        orphan.getParentFile().mkdirs();
+        try (OutputStream output = new FileOutputStream(orphan)) {
+            output.write(1);
+        }
+
+        store.shutdown();
+        store = newStore();
+        assertArrayEquals(content, IoUtil.readBytes(store.getInputStream(value.getKey())));
+        assertFalse(orphan.exists());
+        assertThat(countChunkFiles(), is(chunks));
+
+        store.markAsUnused(Collections.singleton(value.getKey()));
+        Thread.sleep(100);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        assertThat(countChunkFiles(), is(0));
+    }
+
+    @Test
+    public void shouldKeepValuesSmallerThanMinimumSizeInMemory() throws Exception {
+        store.setMinimumBinarySizeInBytes(4096);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(randomBytes(4000)), false);
+        assertThat(value, instanceOf(InMemoryBinaryValue.class));
+        assertThat(countChunkFiles(), is(0));
+    }
+
+    @Test
+    public void shouldReadStreamsOneByteAtATime() throws Exception {
+        byte[] content = randomBytes(32 * 1024);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        try (InputStream stream = store.getInputStream(value.getKey(), 1000, 20000)) {
+            for (int i = 1000; i != 21000; ++i) {
+                assertThat(stream.read(), is(content[i] & 0xff));
+            }
+            assertThat(stream.read(), is(-1));
+        }
+    }
+
+    @Test
+    public void shouldReadRangesThatSpanChunkBoundaries() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content), false);
+        assertTrue("Expected the content to be split into many chunks", countChunkFiles() > 10);
+        // each range is several chunks long, so it starts in one chunk and ends in another ...
+        byte[] buffer = new byte[3 * AVERAGE_CHUNK_SIZE + 17];
+        for (int position = 0; position + buffer.length <= content.length; position += 997) {
+            assertThat(value.read(buffer, position), is(buffer.length));
+            assertArrayEquals(Arrays.copyOfRange(content, position, position + buffer.length), buffer);
+        }
+        // and a range that ends with the content returns only the remaining bytes ...
+        int position = content.length - AVERAGE_CHUNK_SIZE;
+        assertThat(value.read(buffer, position), is(AVERAGE_CHUNK_SIZE));
+        assertArrayEquals(Arrays.copyOfRange(content, position, content.length),
+                          Arrays.copyOfRange(buffer, 0, AVERAGE_CHUNK_SIZE));
+    }
+
+    private static byte[] randomBytes( int size ) {
+        byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+    private int countChunkFiles() {
+        return countFiles(new File(directory, ChunkedFileSystemBinaryStore.CHUNKS_DIRECTORY_NAME));
+    }
+
+    private int countFiles( File parent ) {
+        File[] children = parent.listFiles();
+        if (children == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File child : children) {
+            count += child.isDirectory() ? countFiles(child) : 1;
+        }
+        return count;
+    }
+}
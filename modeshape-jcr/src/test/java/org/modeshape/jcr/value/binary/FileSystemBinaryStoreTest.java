@@ -18,6 +18,7 @@ package org.modeshape.jcr.value.binary;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
@@ -34,6 +35,8 @@ import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -59,6 +62,7 @@ import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.jcr.api.Binary;
 import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -211,6 +215,111 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         assertThat(countTrashFiles(), is(0));
     }
 
+    @Test
+    public void shouldKeepValuesSmallerThanMinimumSizeInMemoryWithoutStagingFiles() throws Exception {
+        // use a minimum size larger than the buffer used to read the content ...
+        store.setMinimumBinarySizeInBytes(200 * 1024);
+        byte[] small = new byte[150 * 1024];
+        byte[] large = new byte[200 * 1024];
+        Random random = new Random();
+        random.nextBytes(small);
+        random.nextBytes(large);
+
+        BinaryValue smallValue = store.storeValue(new ByteArrayInputStream(small), false);
+        assertThat(smallValue, instanceOf(InMemoryBinaryValue.class));
+        assertThat(smallValue.getKey(), is(BinaryKey.keyFor(small)));
+        assertThat(IoUtil.readBytes(smallValue.getStream()), is(small));
+        assertThat(countStoredFiles(), is(0));
+
+        BinaryValue largeValue = store.storeValue(new ByteArrayInputStream(large), false);
+        assertThat(largeValue, instanceOf(StoredBinaryValue.class));
+        assertThat(largeValue.getKey(), is(BinaryKey.keyFor(large)));
+        assertThat(largeValue.getSize(), is((long)large.length));
+        assertThat(IoUtil.readBytes(store.getInputStream(largeValue.getKey())), is(large));
+        assertThat(countStoredFiles(), is(1));
+
+        // the content was staged within the store's directory, and nothing was left behind ...
+        File staging = new File(directory, FileSystemBinaryStore.STAGING_DIRECTORY_NAME);
+        assertThat(staging.isDirectory(), is(true));
+        assertThat(staging.listFiles().length, is(0));
+    }
+
+    @Test
+    public void shouldExposeLocalFileOfStoredValues() throws Exception {
+        byte[] large = new byte[200 * 1024];
+        new Random().nextBytes(large);
+        BinaryValue largeValue = store.storeValue(new ByteArrayInputStream(large), false);
+        Path path = largeValue.getLocalPath();
+        assertThat(path, is(store.getLocalPath(largeValue.getKey())));
+        assertThat(path.startsWith(directory.toPath()), is(true));
+        assertThat(Files.readAllBytes(path), is(large));
+
+        BinaryValue smallValue = store.storeValue(new ByteArrayInputStream(new byte[] {1, 2, 3}), false);
+        assertThat(smallValue.getLocalPath(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldRemoveUnusedValuesFromAllShardsAndReportReclaimedBytes() throws Exception {
+        store.setGarbageCollectionThreads(4);
+        List<BinaryKey> keys = storeRandomValues(20, 1024);
+        store.markAsUnused(keys);
+        Thread.sleep(10);
+
+        assertThat(store.reclaimValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS), is(20 * 1024L));
+        for (BinaryKey key : keys) {
+            assertThat(store.hasBinary(key), is(false));
+        }
+        assertThat(new File(trash, "collected-shards").exists(), is(false));
+    }
+
+    @Test
+    public void shouldResumeRemovalOfUnusedValuesWithShardsNotYetProcessed() throws Exception {
+        List<BinaryKey> keys = storeRandomValues(20, 1024);
+        store.markAsUnused(keys);
+        Thread.sleep(10);
+        // record the shard of the first value as processed, as if an earlier removal had been stopped after processing it ...
+        String processedShard = keys.get(0).toString().substring(0, 2);
+        Files.write(new File(trash, "collected-shards").toPath(), Arrays.asList(processedShard));
+
+        store.reclaimValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        for (BinaryKey key : keys) {
+            assertThat(store.hasBinary(key), is(key.toString().startsWith(processedShard)));
+        }
+        // the next removal starts from scratch ...
+        store.reclaimValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        for (BinaryKey key : keys) {
+            assertThat(store.hasBinary(key), is(false));
+        }
+    }
+
+    @Test
+    public void shouldLimitTheRateOfRemovingUnusedValues() throws Exception {
+        store.setGarbageCollectionFilesPerSecond(20);
+        List<BinaryKey> keys = storeRandomValues(6, 1024);
+        store.markAsUnused(keys);
+        Thread.sleep(10);
+
+        long start = System.nanoTime();
+        store.reclaimValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+        // the first file is examined immediately, and each of the other five files 50 milliseconds after the previous one ...
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 240L, is(true));
+        for (BinaryKey key : keys) {
+            assertThat(store.hasBinary(key), is(false));
+        }
+    }
+
+    private List<BinaryKey> storeRandomValues( int count,
+                                               int size ) throws BinaryStoreException {
+        List<BinaryKey> keys = new ArrayList<>();
+        Random random = new Random();
+        for (int i = 0; i != count; ++i) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            keys.add(store.storeValue(new ByteArrayInputStream(content), false).getKey());
+        }
+        return keys;
+    }
+
     @Test
     public void shouldStoreLargeFile() throws Exception {
         print = true;
@@ -230,6 +230,11 @@ public class TestUtil {
                 return null;
             }
 
+            @Override
+            public String getContinuationToken() {
+                return null;
+            }
+
             @Override
             public void close() {
                 // nothing to do
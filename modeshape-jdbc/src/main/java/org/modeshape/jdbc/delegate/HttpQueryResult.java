@@ -88,6 +88,11 @@ public final class HttpQueryResult implements QueryResult {
         throw new UnsupportedOperationException("Method getSelectorNames() not supported");
     }
 
+    @Override
+    public String getContinuationToken() {
+        return null;
+    }
+
     @Override
     public void close() {
         // do nothing
@@ -48,6 +48,7 @@ import org.modeshape.schematic.document.Document.Field;
 import org.modeshape.schematic.document.Json;
 import org.modeshape.schematic.document.MaxKey;
 import org.modeshape.schematic.document.MinKey;
+import org.modeshape.schematic.document.Null;
 import org.modeshape.schematic.document.ObjectId;
 import org.modeshape.schematic.document.Symbol;
 import org.modeshape.schematic.document.Timestamp;
@@ -65,7 +66,7 @@ public class CompactJsonWriter implements JsonWriter {
     @Override
     public void write( Object object,
                        Writer writer ) throws IOException {
-        if (object == null) {
+        if (Null.matches(object)) {
             writeNull(writer);
         } else if (object instanceof String) {
             write((String)object, writer);
@@ -31,6 +31,7 @@ import org.modeshape.schematic.document.Code;
 import org.modeshape.schematic.document.CodeWithScope;
 import org.modeshape.schematic.document.MaxKey;
 import org.modeshape.schematic.document.MinKey;
+import org.modeshape.schematic.document.Null;
 import org.modeshape.schematic.document.ObjectId;
 import org.modeshape.schematic.document.Symbol;
 import org.modeshape.schematic.document.Timestamp;
@@ -203,6 +204,17 @@ public class CompactJsonWriterTest {
         assertSame(expected, actual);
     }
 
+    @Test
+    public void shouldCorrectlyWriteSimpleBsonObjectWithNullObjectValue() {
+        BasicDocument top = new BasicDocument();
+        top.put("firstName", "Jack");
+        top.put("lastName", Null.getInstance());
+        top.put("age", 31);
+        String actual = writer.write(top);
+        String expected = "{ \"firstName\" : \"Jack\" , \"lastName\" : null , \"age\" : 31 }";
+        assertSame(expected, actual);
+    }
+
     @Test
     public void shouldCorrectlyWriteBsonObjectWithNestedObjectValue() {
         BasicDocument address = new BasicDocument();
@@ -108,6 +108,15 @@ public abstract class AbstractRestTest {
         return new Response(newDefaultRequest(HttpGet.class, null, null, url));
     }
 
+    protected Response doGet( String url,
+                              String... headerNamesAndValues ) throws Exception {
+        HttpGet request = newDefaultRequest(HttpGet.class, null, null, url);
+        for (int i = 0; i < headerNamesAndValues.length; i += 2) {
+            request.setHeader(headerNamesAndValues[i], headerNamesAndValues[i + 1]);
+        }
+        return new Response(request);
+    }
+
     protected Response doPost( String payloadFile,
                                String url ) throws Exception {
         InputStream is = null;
@@ -371,12 +380,16 @@ public abstract class AbstractRestTest {
             return this;
         }
 
-        private Response hasHeader( String name,
-                                    String value ) {
+        protected Response hasHeader( String name,
+                                      String value ) {
             assertEquals(value, response.getFirstHeader(name).getValue());
             return this;
         }
 
+        protected String header( String name ) {
+            return response.getFirstHeader(name) != null ? response.getFirstHeader(name).getValue() : null;
+        }
+
         protected String getContentTypeHeader() {
             return response.getFirstHeader("Content-Type").getValue();
         }
@@ -395,6 +408,18 @@ public abstract class AbstractRestTest {
             return hasCode(HttpURLConnection.HTTP_OK);
         }
 
+        protected Response isPartialContent() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_PARTIAL);
+        }
+
+        protected Response isNotModified() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_NOT_MODIFIED);
+        }
+
+        protected Response isRangeNotSatisfiable() throws Exception {
+            return hasCode(416);
+        }
+
         protected Response isCreated() throws Exception {
             return hasCode(HttpURLConnection.HTTP_CREATED);
         }
@@ -354,6 +354,31 @@ public class ModeShapeRestServiceTest extends AbstractRestTest {
                                                                .hasContentDisposition(contentDisposition);
     }
 
+    @Test
+    public void shouldRetrieveRangesOfBinaryPropertyValue() throws Exception {
+        doPost("put/node_with_binary_property.json", itemsUrl(TEST_NODE)).isCreated();
+        String url = binaryUrl(TEST_NODE, "testProperty");
+        Response response = doGet(url).isOk().hasHeader("Accept-Ranges", "bytes");
+        assertEquals("testValue", response.contentAsString());
+        String etag = response.header("ETag");
+        assertNotNull(etag);
+
+        // the client already has the content ...
+        doGet(url, "If-None-Match", etag).isNotModified();
+
+        // single ranges ...
+        response = doGet(url, "Range", "bytes=4-").isPartialContent().hasHeader("Content-Range", "bytes 4-8/9");
+        assertEquals("Value", response.contentAsString());
+        assertEquals("testV", doGet(url, "Range", "bytes=0-4").isPartialContent().contentAsString());
+        assertEquals("lue", doGet(url, "Range", "bytes=-3").isPartialContent().contentAsString());
+        assertEquals("Value", doGet(url, "Range", "bytes=4-", "If-Range", etag).isPartialContent().contentAsString());
+        doGet(url, "Range", "bytes=9-").isRangeNotSatisfiable().hasHeader("Content-Range", "bytes */9");
+
+        // the entire content when the client has a different version, or when several ranges are requested ...
+        assertEquals("testValue", doGet(url, "Range", "bytes=4-", "If-Range", "\"other\"").isOk().contentAsString());
+        assertEquals("testValue", doGet(url, "Range", "bytes=0-1,4-5").isOk().contentAsString());
+    }
+
     @Test
     public void shouldReturnNotFoundForInvalidBinaryProperty() throws Exception {
         doPost("put/node_with_binary_property.json", itemsUrl(TEST_NODE)).isCreated();
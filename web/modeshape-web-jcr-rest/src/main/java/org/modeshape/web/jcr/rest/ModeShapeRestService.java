@@ -25,10 +25,12 @@ import javax.jcr.RepositoryException;
 import javax.jcr.query.Query;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -37,6 +39,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import org.codehaus.jettison.json.JSONException;
@@ -287,17 +290,22 @@ public final class ModeShapeRestService {
 
     /**
      * Retrieves the binary content of the binary property at the given path, allowing 2 extra (optional) parameters: the
-     * mime-type and the content-disposition of the binary value.
+     * mime-type and the content-disposition of the binary value. The SHA-1 hash of the binary value is its entity tag, so
+     * conditional requests are supported, as are requests for a single range of the content.
      *
      * @param request a non-null {@link HttpServletRequest} request
+     * @param response a non-null {@link HttpServletResponse} response, on which the length of the content is set
+     * @param preconditions a non-null {@link Request} used to evaluate the conditional headers of the request
      * @param repositoryName a non-null {@link String} representing the name of a repository.
      * @param workspaceName a non-null {@link String} representing the name of a workspace.
      * @param path a non-null {@link String} representing the absolute path to a binary property.
      * @param mimeType an optional {@link String} representing the "already-known" mime-type of the binary. Can be {@code null}
      * @param contentDisposition an optional {@link String} representing the client-preferred content disposition of the respose.
      *        Can be {@code null}
-     * @return the binary stream of the requested binary property or NOT_FOUND if either the property isn't found or it isn't a
-     *         binary
+     * @param range the optional value of the {@code Range} header. Can be {@code null}
+     * @param ifRange the optional value of the {@code If-Range} header. Can be {@code null}
+     * @return the binary stream (or the requested part of it) of the requested binary property, NOT_MODIFIED if the client
+     *         already has the content, or NOT_FOUND if either the property isn't found or it isn't a binary
      * @throws RepositoryException if any JCR related operation fails, including the case when the path to the property isn't
      *         valid.
      */
@@ -305,11 +313,15 @@ public final class ModeShapeRestService {
     @Path( "{repositoryName}/{workspaceName}/" + RestHelper.BINARY_METHOD_NAME + "{path:.+}" )
     @Produces( {MediaType.TEXT_HTML, MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON} )
     public Response getBinary( @Context HttpServletRequest request,
+                               @Context HttpServletResponse response,
+                               @Context Request preconditions,
                                @PathParam( "repositoryName" ) String repositoryName,
                                @PathParam( "workspaceName" ) String workspaceName,
                                @PathParam( "path" ) String path,
                                @QueryParam( "mimeType" ) String mimeType,
-                               @QueryParam( "contentDisposition" ) String contentDisposition ) throws RepositoryException {
+                               @QueryParam( "contentDisposition" ) String contentDisposition,
+                               @HeaderParam( "Range" ) String range,
+                               @HeaderParam( "If-Range" ) String ifRange ) throws RepositoryException {
         Property binaryProperty = binaryHandler.getBinaryProperty(request, repositoryName, workspaceName, path);
         if (binaryProperty.getType() != PropertyType.BINARY) {
             return Response.status(Response.Status.NOT_FOUND)
@@ -323,7 +335,7 @@ public final class ModeShapeRestService {
             contentDisposition = binaryHandler.getDefaultContentDisposition(binaryProperty);
         }
 
-        return Response.ok(binary.getStream(), mimeType).header("Content-Disposition", contentDisposition).build();
+        return binaryHandler.getBinaryResponse(preconditions, response, binary, mimeType, contentDisposition, range, ifRange);
     }
 
     /**
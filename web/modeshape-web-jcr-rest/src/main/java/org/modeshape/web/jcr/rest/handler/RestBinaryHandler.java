@@ -27,10 +27,14 @@ import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.StringUtil;
+import org.modeshape.jcr.api.BoundedInputStream;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.web.jcr.rest.model.RestItem;
 import org.modeshape.web.jcr.rest.model.RestProperty;
@@ -47,6 +51,9 @@ public final class RestBinaryHandler extends AbstractHandler {
      */
     public static final String DEFAULT_CONTENT_DISPOSITION_PREFIX = "attachment;filename=";
     private static final String DEFAULT_MIME_TYPE = MediaType.APPLICATION_OCTET_STREAM;
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String BYTES_UNIT = "bytes=";
 
     /**
      * Returns a binary {@link Property} for the given repository, workspace and path.
@@ -101,6 +108,148 @@ public final class RestBinaryHandler extends AbstractHandler {
         }
     }
 
+    /**
+     * Returns the response which serves the content of a binary value. The SHA-1 hash of the value is used as its entity tag,
+     * so that conditional requests can be answered without sending the content, and a request for a single range of bytes is
+     * answered with only that part of the content (which is read starting at the range, where the binary supports that).
+     * Requests for several ranges are answered with the entire content. The content is always read through a stream opened by
+     * the binary value, so that the binary store can keep the value from being removed while the response is written.
+     *
+     * @param request a non-null {@link Request} against which the preconditions are evaluated
+     * @param response a non-null {@link HttpServletResponse} on which the length of the content is set
+     * @param binary a non-null {@link Binary} value
+     * @param mimeType the mime-type of the binary value; may be null
+     * @param contentDisposition the content disposition of the response; may be null
+     * @param range the value of the {@code Range} header of the request; may be null
+     * @param ifRange the value of the {@code If-Range} header of the request; may be null
+     * @return the response; never null
+     * @throws RepositoryException if any JCR related operation involving the binary value fails
+     */
+    public Response getBinaryResponse( Request request,
+                                       HttpServletResponse response,
+                                       Binary binary,
+                                       String mimeType,
+                                       String contentDisposition,
+                                       String range,
+                                       String ifRange ) throws RepositoryException {
+        EntityTag entityTag = null;
+        if (binary instanceof org.modeshape.jcr.api.Binary) {
+            String hash = ((org.modeshape.jcr.api.Binary)binary).getHexHash();
+            if (!StringUtil.isBlank(hash)) {
+                entityTag = new EntityTag(hash);
+                Response.ResponseBuilder preconditionsFailed = request.evaluatePreconditions(entityTag);
+                if (preconditionsFailed != null) {
+                    // the client already has the content, or has a different version of it ...
+                    return preconditionsFailed.tag(entityTag).build();
+                }
+            }
+        }
+
+        long size = binary.getSize();
+        long[] bytes = null;
+        // a range is only valid for the version of the content the client already has ...
+        if (range != null && (ifRange == null || entityTag != null && isSameEntityTag(entityTag, ifRange))) {
+            bytes = byteRange(range, size);
+        }
+
+        Response.ResponseBuilder builder;
+        if (bytes == null) {
+            response.setContentLengthLong(size);
+            builder = Response.ok(content(binary, 0, size), mimeType);
+        } else if (bytes.length == 0) {
+            builder = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE).header(CONTENT_RANGE, "bytes */" + size);
+        } else {
+            long length = bytes[1] - bytes[0] + 1;
+            response.setContentLengthLong(length);
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                              .entity(content(binary, bytes[0], length))
+                              .type(mimeType)
+                              .header(CONTENT_RANGE, "bytes " + bytes[0] + "-" + bytes[1] + "/" + size);
+        }
+        if (entityTag != null) {
+            builder.tag(entityTag);
+        }
+        return builder.header(ACCEPT_RANGES, "bytes").header("Content-Disposition", contentDisposition).build();
+    }
+
+    private InputStream content( Binary binary,
+                                 long offset,
+                                 long length ) throws RepositoryException {
+        if (offset == 0 && length == binary.getSize()) {
+            return binary.getStream();
+        }
+        if (binary instanceof org.modeshape.jcr.api.Binary) {
+            return ((org.modeshape.jcr.api.Binary)binary).getStream(offset, length);
+        }
+        return rangeStream(binary, offset, length);
+    }
+
+    private InputStream rangeStream( Binary binary,
+                                     long offset,
+                                     long length ) throws RepositoryException {
+        InputStream stream = binary.getStream();
+        try {
+            return BoundedInputStream.skipAndBound(stream, offset, length);
+        } catch (IOException e) {
+            try {
+                stream.close();
+            } catch (IOException ioe) {
+                logger.debug("Cannot close binary stream", ioe);
+            }
+            throw new RepositoryException(e);
+        }
+    }
+
+    private static boolean isSameEntityTag( EntityTag entityTag,
+                                            String ifRange ) {
+        // only strong entity tags are allowed; a date is never the same, since the content has no modification date
+        String value = ifRange.trim();
+        return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+               && value.substring(1, value.length() - 1).equals(entityTag.getValue());
+    }
+
+    /**
+     * Returns the first and last positions of the single byte range specified by the value of a {@code Range} header, as
+     * defined by RFC 7233.
+     *
+     * @param range the value of the header; may not be null
+     * @param size the size of the content
+     * @return the first and last positions of the range; an empty array if the range cannot be satisfied; or null if the header
+     *         is to be ignored because it is invalid, or because it specifies several ranges
+     */
+    protected static long[] byteRange( String range,
+                                       long size ) {
+        String value = range.trim();
+        if (!value.startsWith(BYTES_UNIT) || value.indexOf(',') != -1) {
+            return null;
+        }
+        value = value.substring(BYTES_UNIT.length()).trim();
+        int dash = value.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        try {
+            String first = value.substring(0, dash).trim();
+            String last = value.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // a suffix range, which is the last bytes of the content ...
+                long suffix = Long.parseLong(last);
+                if (suffix < 0) {
+                    return null;
+                }
+                return suffix == 0 || size == 0 ? new long[0] : new long[] {Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            return start >= size ? new long[0] : new long[] {start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Updates the {@link Property property} at the given path with the content from the given {@link InputStream}.
      *
@@ -53,7 +53,8 @@ public final class RestQueryHandler extends AbstractHandler {
 
     private static final String MODE_URI = "mode:uri";
     private static final String UNKNOWN_TYPE = "unknown-type";
-    private static final List<String> SKIP_QUERY_PARAMETERS = Arrays.asList("offset", "limit");
+    private static final String CONTINUATION = "continuation";
+    private static final List<String> SKIP_QUERY_PARAMETERS = Arrays.asList("offset", "limit", CONTINUATION);
 
     /**
      * Executes a the given query string (based on the language information) against a JCR repository, returning a rest model
@@ -68,7 +69,8 @@ public final class RestQueryHandler extends AbstractHandler {
      * @param offset a numeric value which indicates the index in the result set from where results should be returned.
      * @param limit a numeric value indicating the maximum number of rows to return.
      * @param uriInfo a non-null {@link UriInfo} object which is provided by RestEASY, allowing extra request parameters to be
-     *        retrieved.
+     *        retrieved. The optional "continuation" parameter is the continuation token returned with the previous page of
+     *        results, and specifies that only the rows after that page should be returned.
      * @return a {@link RestQueryHandler} instance
      * @throws RepositoryException if any operation fails at the JCR level
      */
@@ -86,8 +88,17 @@ public final class RestQueryHandler extends AbstractHandler {
         assert statement != null;
 
         Session session = getSession(request, repositoryName, workspaceName);
-        Query query = createQuery(language, statement, session);
+        org.modeshape.jcr.api.query.Query query = createQuery(language, statement, session);
         bindExtraVariables(uriInfo, session.getValueFactory(), query);
+        if (limit >= 0) {
+            // Let the query engine limit the rows, so that it can produce a continuation token for the next page ...
+            long rowLimit = Math.max(offset, 0) + limit;
+            query.setLimit(rowLimit < 0 ? Long.MAX_VALUE : rowLimit);
+        }
+        String continuation = continuationToken(uriInfo);
+        if (continuation != null) {
+            query.setContinuationToken(continuation);
+        }
 
         QueryResult result = query.execute();
         RestQueryResult restQueryResult = new RestQueryResult();
@@ -98,6 +109,9 @@ public final class RestQueryHandler extends AbstractHandler {
         String baseUrl = RestHelper.repositoryUrl(request);
 
         setRows(offset, limit, session, result, restQueryResult, columnNames, baseUrl);
+        if (result instanceof org.modeshape.jcr.api.query.QueryResult) {
+            restQueryResult.setContinuationToken(((org.modeshape.jcr.api.query.QueryResult)result).getContinuationToken());
+        }
 
         return restQueryResult;
     }
@@ -316,6 +330,14 @@ public final class RestQueryHandler extends AbstractHandler {
         return (org.modeshape.jcr.api.query.Query)queryManager.createQuery(statement, language);
     }
 
+    private String continuationToken( UriInfo uriInfo ) {
+        if (uriInfo == null) {
+            return null;
+        }
+        String token = uriInfo.getQueryParameters().getFirst(CONTINUATION);
+        return StringUtil.isBlank(token) ? null : token;
+    }
+
     private void bindExtraVariables( UriInfo uriInfo,
                                      ValueFactory valueFactory,
                                      Query query ) throws RepositoryException {
@@ -34,6 +34,7 @@ import org.modeshape.common.util.StringUtil;
 public final class RestQueryResult implements JSONAble {
     private final Map<String, String> columns;
     private final List<RestRow> rows;
+    private String continuationToken;
 
     /**
      * Creates an empty instance
@@ -69,6 +70,17 @@ public final class RestQueryResult implements JSONAble {
         return this;
     }
 
+    /**
+     * Sets the token that can be used to request the page of results that follows this one.
+     * 
+     * @param continuationToken the continuation token; may be null if there is none
+     * @return this instance
+     */
+    public RestQueryResult setContinuationToken( String continuationToken ) {
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     @Override
     public JSONObject toJSON() throws JSONException {
         JSONObject result = new JSONObject();
@@ -82,6 +94,9 @@ public final class RestQueryResult implements JSONAble {
             }
             result.put("rows", rows);
         }
+        if (continuationToken != null) {
+            result.put("continuation", continuationToken);
+        }
         return result;
     }
 
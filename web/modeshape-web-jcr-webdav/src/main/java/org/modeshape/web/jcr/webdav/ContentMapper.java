@@ -17,6 +17,7 @@ package org.modeshape.web.jcr.webdav;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Date;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -59,6 +60,16 @@ public interface ContentMapper {
      */
     InputStream getResourceContent( Node node ) throws RepositoryException, IOException;
 
+    /**
+     * @param node the node to check; may not be null
+     * @return the path of a local file that holds exactly the contents for the node, which can be sent without being copied
+     *         through a stream; null if the node maps to a WebDAV folder or if its contents are not stored in such a file
+     * @throws RepositoryException if the node cannot be accessed
+     */
+    default Path getResourcePath( Node node ) throws RepositoryException {
+        return null;
+    }
+
     /**
      * @param node the node to check; may not be null
      * @return the length of the file content for the node; -1 if the node maps to a WebDAV folder
@@ -17,12 +17,14 @@ package org.modeshape.web.jcr.webdav;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.servlet.ServletContext;
@@ -116,6 +118,13 @@ public class DefaultContentMapper implements ContentMapper {
         return node.getProperty(CONTENT_NODE_NAME + "/" + DATA_PROP_NAME).getBinary().getStream();
     }
 
+    @Override
+    public Path getResourcePath( Node node ) throws RepositoryException {
+        if (!node.hasNode(CONTENT_NODE_NAME)) return null;
+        Binary binary = node.getProperty(CONTENT_NODE_NAME + "/" + DATA_PROP_NAME).getBinary();
+        return binary instanceof org.modeshape.jcr.api.Binary ? ((org.modeshape.jcr.api.Binary)binary).getLocalPath() : null;
+    }
+
     @Override
     public long getResourceLength( Node node ) throws RepositoryException {
         if (!node.hasNode(CONTENT_NODE_NAME)) {
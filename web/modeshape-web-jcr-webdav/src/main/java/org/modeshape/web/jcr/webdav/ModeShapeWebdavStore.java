@@ -17,6 +17,7 @@ package org.modeshape.web.jcr.webdav;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -288,6 +289,26 @@ public class ModeShapeWebdavStore implements IWebdavStore {
         }
     }
 
+    @Override
+    public Path getResourcePath( ITransaction transaction,
+                                 String resourceUri ) {
+        try {
+            ResolvedRequest resolved = resolveRequest(resourceUri);
+            if (resolved.getPath() == null) {
+                // Not a node, so there's no content ...
+                return null;
+            }
+            Node node = nodeFor(transaction, resolved); // throws exception if not found
+            if (!isFile(node)) {
+                return null;
+            }
+            return contentMapper.getResourcePath(node);
+
+        } catch (RepositoryException re) {
+            throw translate(re);
+        }
+    }
+
     @Override
     public long getResourceLength( ITransaction transaction,
                                    String resourceUri ) {
@@ -18,6 +18,7 @@
 package org.modeshape.webdav;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.security.Principal;
 import java.util.List;
 import java.util.Map;
@@ -103,6 +104,21 @@ public interface IWebdavStore {
     InputStream getResourceContent( ITransaction transaction,
                                     String resourceUri );
 
+    /**
+     * Gets the path of a local file that holds exactly the content of the resource specified by <code>resourceUri</code>, so
+     * that the content can be sent without being copied through the {@link #getResourceContent(ITransaction, String) stream}.
+     * By default, stores do not expose any such file.
+     * 
+     * @param transaction indicates that the method is within the scope of a WebDAV transaction
+     * @param resourceUri URI of the content resource
+     * @return the path of the file, or <code>null</code> if the content is not stored in a local file that can be read directly
+     * @throws WebdavException if something goes wrong on the store level
+     */
+    default Path getResourcePath( ITransaction transaction,
+                                  String resourceUri ) {
+        return null;
+    }
+
     /**
      * Sets / stores the content of the resource specified by <code>resourceUri</code>.
      * 
@@ -23,6 +23,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -206,6 +207,14 @@ public class LocalFileSystemStore implements IWebdavStore {
         return in;
     }
 
+    @Override
+    public Path getResourcePath( ITransaction transaction,
+                                 String uri ) throws WebdavException {
+        LOG.trace("LocalFileSystemStore.getResourcePath(" + uri + ")");
+        File file = new File(root, uri);
+        return file.isFile() ? file.toPath() : null;
+    }
+
     @Override
     public long getResourceLength( ITransaction transaction,
                                    String resourceUri ) throws WebdavException {
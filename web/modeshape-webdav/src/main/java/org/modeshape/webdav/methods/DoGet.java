@@ -18,6 +18,8 @@ package org.modeshape.webdav.methods;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Locale;
@@ -33,6 +35,11 @@ import org.modeshape.webdav.locking.ResourceLocks;
 
 public class DoGet extends DoHead {
 
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
     public DoGet( IWebdavStore store,
                   String dftIndexFile,
                   String insteadOf404,
@@ -45,6 +52,7 @@ public class DoGet extends DoHead {
 
     @Override
     protected void doBody( ITransaction transaction,
+                           HttpServletRequest req,
                            HttpServletResponse resp,
                            String path ) {
 
@@ -60,23 +68,17 @@ public class DoGet extends DoHead {
                 resp.sendError(WebdavStatus.SC_METHOD_NOT_ALLOWED);
                 return;
             }
+            Path file = store.getResourcePath(transaction, path);
+            if (file != null && sendFile(req, resp, file)) {
+                // the container will send the file after this request has been serviced ...
+                return;
+            }
             OutputStream out = resp.getOutputStream();
-            InputStream in = store.getResourceContent(transaction, path);
             try {
-                int read = -1;
-                byte[] copyBuffer = new byte[BUF_SIZE];
-
-                while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
-                    out.write(copyBuffer, 0, read);
-                }
+                copyContent(store.getResourceContent(transaction, path), out);
             } finally {
                 // flushing causes a IOE if a file is opened on the webserver
                 // client disconnected before server finished sending response
-                try {
-                    in.close();
-                } catch (Exception e) {
-                    logger.warn(e, new TextI18n("Closing InputStream causes Exception!"));
-                }
                 try {
                     out.flush();
                     out.close();
@@ -89,6 +91,48 @@ public class DoGet extends DoHead {
         }
     }
 
+    /**
+     * Asks the servlet container to send the content of the file itself, if the container supports that (as Tomcat does with
+     * its "sendfile" request attributes). Such containers can send the file without copying its content through the servlet.
+     * 
+     * @param req the request; may not be null
+     * @param resp the response; may not be null
+     * @param file the file whose content is to be sent; may not be null
+     * @return true if the container will send the file, or false if the content must be written to the response
+     * @throws IOException if the size of the file cannot be determined
+     */
+    protected boolean sendFile( HttpServletRequest req,
+                                HttpServletResponse resp,
+                                Path file ) throws IOException {
+        if (!Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            return false;
+        }
+        long size = Files.size(file);
+        resp.setContentLengthLong(size);
+        req.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+        req.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+        req.setAttribute(SENDFILE_END_ATTRIBUTE, size);
+        return true;
+    }
+
+    private void copyContent( InputStream in,
+                              OutputStream out ) throws IOException {
+        try {
+            int read = -1;
+            byte[] copyBuffer = new byte[BUF_SIZE];
+
+            while ((read = in.read(copyBuffer, 0, copyBuffer.length)) != -1) {
+                out.write(copyBuffer, 0, read);
+            }
+        } finally {
+            try {
+                in.close();
+            } catch (Exception e) {
+                logger.warn(e, new TextI18n("Closing InputStream causes Exception!"));
+            }
+        }
+    }
+
     @Override
     protected void folderBody( ITransaction transaction,
                                String path,
@@ -137,7 +137,7 @@ public class DoHead extends AbstractMethod {
                                 }
                             }
 
-                            doBody(transaction, resp, path);
+                            doBody(transaction, req, resp, path);
                         }
                     } else {
                         folderBody(transaction, path, resp, req);
@@ -174,6 +174,7 @@ public class DoHead extends AbstractMethod {
 
     @SuppressWarnings( "unused" )
     protected void doBody( ITransaction transaction,
+                           HttpServletRequest req,
                            HttpServletResponse resp,
                            String path ) throws IOException {
         // no body for HEAD